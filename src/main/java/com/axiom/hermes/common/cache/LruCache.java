@@ -0,0 +1,96 @@
+package com.axiom.hermes.common.cache;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Потокобезопасный кэш ограниченного размера с вытеснением давно не использованных значений (LRU).
+ * Чтобы значение, прочитанное из базы до фиксации чужих изменений, не попало в кэш после
+ * их инвалидации, запись выполняется с меткой версии, полученной до чтения (см. stamp()).
+ * @param <K> тип ключа
+ * @param <V> тип значения
+ */
+public class LruCache<K, V> {
+
+    private final int capacity;
+    private final LinkedHashMap<K, V> entries;
+    private long version;
+
+    /**
+     * Создает кэш
+     * @param capacity максимальное количество значений (0 - кэш отключен)
+     */
+    public LruCache(int capacity) {
+        this.capacity = Math.max(0, capacity);
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+                return size() > LruCache.this.capacity;
+            }
+        };
+    }
+
+    /**
+     * Возвращает значение из кэша
+     * @param key ключ
+     * @return значение или null если его нет в кэше
+     */
+    public synchronized V get(K key) {
+        return entries.get(key);
+    }
+
+    /**
+     * Возвращает текущую версию кэша, которая увеличивается при каждой инвалидации
+     * @return версия кэша
+     */
+    public synchronized long stamp() {
+        return version;
+    }
+
+    /**
+     * Помещает значение в кэш, если с момента получения метки не было инвалидаций
+     * @param key ключ
+     * @param value значение
+     * @param stamp метка версии, полученная до чтения значения из источника
+     */
+    public synchronized void put(K key, V value, long stamp) {
+        if (capacity == 0 || stamp != version) return;
+        entries.put(key, value);
+    }
+
+    /**
+     * Удаляет значение из кэша
+     * @param key ключ
+     */
+    public synchronized void invalidate(K key) {
+        version++;
+        entries.remove(key);
+    }
+
+    /**
+     * Удаляет значения, ключи которых удовлетворяют условию
+     * @param condition условие удаления
+     */
+    public synchronized void invalidateIf(Predicate<K> condition) {
+        version++;
+        entries.keySet().removeIf(condition);
+    }
+
+    /**
+     * Очищает кэш
+     */
+    public synchronized void clear() {
+        version++;
+        entries.clear();
+    }
+
+    /**
+     * Возвращает количество значений в кэше
+     * @return количество значений
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+}
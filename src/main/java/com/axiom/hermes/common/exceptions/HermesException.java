@@ -11,6 +11,7 @@ public class HermesException extends Exception {
     public static final int REQUEST_TOO_LARGE =413;
     public static final int UNSUPPORTED_MEDIA = 415;
     public static final int INTERNAL_SERVER_ERROR = 500;
+    public static final int SERVICE_UNAVAILABLE = 503;
 
     private final int status;
     private final String error;
@@ -0,0 +1,198 @@
+package com.axiom.hermes.common.http;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Журнал доступа. Поток запроса только кладет запись в кольцевой буфер (без блокировок
+ * и ввода-вывода; при переполнении запись отбрасывается), фоновый поток пачками пишет
+ * записи в файл с ротацией по размеру. Успешные запросы можно записывать выборочно,
+ * ошибки (статус 400 и выше) записываются всегда.
+ */
+@ApplicationScoped
+public class AccessLog {
+
+    private static final Logger LOG = Logger.getLogger(AccessLog.class);
+
+    private static final int BATCH_SIZE = 1024;                              // Записей за один проход
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    @ConfigProperty(name = "hermes.access-log.path")
+    Optional<String> logPath;
+
+    @ConfigProperty(name = "hermes.access-log.buffer-size", defaultValue = "8192")
+    int bufferSize;
+
+    @ConfigProperty(name = "hermes.access-log.sample-rate", defaultValue = "1.0")
+    double sampleRate;
+
+    @ConfigProperty(name = "hermes.access-log.max-file-size", defaultValue = "104857600")
+    long maxFileSize;
+
+    @ConfigProperty(name = "hermes.access-log.max-files", defaultValue = "5")
+    int maxFiles;
+
+    @Inject MeterRegistry registry;
+
+    private volatile AccessLogBuffer<Entry> buffer;    // null - журнал выключен
+    private volatile boolean running;
+    private Thread writerThread;
+    private Path path;
+    private Writer writer;
+    private long fileSize;
+
+    void onStart(@Observes StartupEvent event) {
+        if (logPath.isEmpty()) return;
+        path = Paths.get(logPath.get());
+        try {
+            openFile();
+        } catch (IOException e) {
+            LOG.warn("Access log is disabled, cannot open " + path, e);
+            return;
+        }
+        AccessLogBuffer<Entry> ring = new AccessLogBuffer<>(bufferSize);
+        FunctionCounter.builder("hermes.accesslog.dropped", ring, AccessLogBuffer::getDropped)
+                .description("Access log entries dropped because the buffer was full")
+                .register(registry);
+        running = true;
+        writerThread = new Thread(this::writeLoop, "access-log");
+        writerThread.setDaemon(true);
+        writerThread.start();
+        buffer = ring;
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (writerThread == null) return;
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Записывает запрос в журнал (не блокирует вызывающий поток)
+     * @param method HTTP метод
+     * @param path путь запроса без параметров
+     * @param status HTTP статус ответа
+     * @param elapsedNanos время обработки в наносекундах
+     * @param remoteAddress адрес клиента
+     */
+    public void record(String method, String path, int status, long elapsedNanos, String remoteAddress) {
+        AccessLogBuffer<Entry> ring = buffer;
+        if (ring == null) return;
+        if (status < 400 && sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) return;
+        ring.offer(new Entry(System.currentTimeMillis(), method, path, status, elapsedNanos, remoteAddress));
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+    // Фоновая запись в файл
+    //-----------------------------------------------------------------------------------------------------
+
+    private void writeLoop() {
+        StringBuilder line = new StringBuilder(256);
+        while (true) {
+            boolean stopping = !running;
+            int written = buffer == null ? 0 : buffer.drain(entry -> write(entry, line), BATCH_SIZE);
+            try {
+                if (written > 0) writer.flush();
+            } catch (IOException e) {
+                LOG.warn("Cannot write access log " + path, e);
+            }
+            if (stopping && written == 0) break;
+            // Буфер разобран - ждем новых записей
+            if (written < BATCH_SIZE) LockSupport.parkNanos(IDLE_PARK_NANOS);
+        }
+        try {
+            writer.close();
+        } catch (IOException e) {
+            LOG.warn("Cannot close access log " + path, e);
+        }
+    }
+
+    private void write(Entry entry, StringBuilder line) {
+        line.setLength(0);
+        line.append(Instant.ofEpochMilli(entry.timestamp)).append(' ')
+                .append(entry.remoteAddress).append(' ')
+                .append(entry.method).append(' ')
+                .append(entry.path).append(' ')
+                .append(entry.status).append(' ')
+                .append(entry.elapsedNanos / 1000).append("us\n");
+        try {
+            if (fileSize + line.length() > maxFileSize && fileSize > 0) rotate();
+            writer.append(line);
+            fileSize += line.length();
+        } catch (IOException e) {
+            LOG.warn("Cannot write access log " + path, e);
+        }
+    }
+
+    /**
+     * access.log -> access.log.1 -> ... -> access.log.N (самый старый удаляется)
+     */
+    private void rotate() throws IOException {
+        writer.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path older = rotated(i);
+            if (Files.exists(older)) Files.move(older, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+        }
+        if (maxFiles > 0) Files.move(path, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        else Files.deleteIfExists(path);
+        openFile();
+    }
+
+    private Path rotated(int number) {
+        return path.resolveSibling(path.getFileName() + "." + number);
+    }
+
+    private void openFile() throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        if (parent != null) Files.createDirectories(parent);
+        writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        fileSize = Files.size(path);
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Запись журнала (форматируется в фоновом потоке)
+     */
+    private static class Entry {
+        final long timestamp;
+        final String method;
+        final String path;
+        final int status;
+        final long elapsedNanos;
+        final String remoteAddress;
+
+        Entry(long timestamp, String method, String path, int status, long elapsedNanos, String remoteAddress) {
+            this.timestamp = timestamp;
+            this.method = method;
+            this.path = path;
+            this.status = status;
+            this.elapsedNanos = elapsedNanos;
+            this.remoteAddress = remoteAddress;
+        }
+    }
+
+}
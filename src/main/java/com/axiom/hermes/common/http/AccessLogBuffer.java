@@ -0,0 +1,91 @@
+package com.axiom.hermes.common.http;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+
+/**
+ * Кольцевой буфер без блокировок: много писателей, один читатель. Писатель занимает ячейку
+ * сдвигом хвоста (CAS) и никогда не ждет - если буфер полон, запись отбрасывается.
+ * @param <E> тип записи
+ */
+public class AccessLogBuffer<E> {
+
+    private final AtomicReferenceArray<E> slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();      // Следующая ячейка для записи
+    private final AtomicLong dropped = new AtomicLong();   // Отброшено записей
+    private volatile long head = 0;                        // Следующая ячейка для чтения (только читатель)
+
+    /**
+     * @param capacity вместимость (округляется вверх до степени двойки)
+     */
+    public AccessLogBuffer(int capacity) {
+        if (capacity < 1) throw new IllegalArgumentException("Capacity must be positive");
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) size <<= 1;
+        slots = new AtomicReferenceArray<>(size);
+        mask = size - 1;
+    }
+
+    /**
+     * Добавляет запись (вызывается из любого потока)
+     * @param entry запись
+     * @return false если буфер полон и запись отброшена
+     */
+    public boolean offer(E entry) {
+        while (true) {
+            long position = tail.get();
+            // Устаревшее значение head только занижает свободное место
+            if (position - head >= slots.length()) {
+                dropped.incrementAndGet();
+                return false;
+            }
+            if (tail.compareAndSet(position, position + 1)) {
+                slots.set((int) (position & mask), entry);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Передает накопленные записи по порядку (вызывается только из потока читателя).
+     * Останавливается на ячейке, которую писатель занял, но еще не заполнил.
+     * @param consumer получатель записей
+     * @param maxEntries максимум записей за вызов
+     * @return количество переданных записей
+     */
+    public int drain(Consumer<E> consumer, int maxEntries) {
+        int drained = 0;
+        long position = head;
+        while (drained < maxEntries) {
+            int index = (int) (position & mask);
+            E entry = slots.get(index);
+            if (entry == null) break;
+            slots.lazySet(index, null);
+            position++;
+            // Ячейка освобождена до сдвига head - писатель не перезапишет непрочитанное
+            head = position;
+            consumer.accept(entry);
+            drained++;
+        }
+        return drained;
+    }
+
+    /**
+     * Количество отброшенных записей
+     * @return количество
+     */
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    /**
+     * Вместимость буфера
+     * @return количество ячеек
+     */
+    public int getCapacity() {
+        return slots.length();
+    }
+
+}
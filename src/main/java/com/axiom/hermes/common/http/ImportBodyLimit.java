@@ -0,0 +1,35 @@
+package com.axiom.hermes.common.http;
+
+import io.quarkus.vertx.http.runtime.VertxHttpRecorder;
+import io.vertx.ext.web.Router;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+
+/**
+ * Лимит размера файлов импорта. Общий лимит тела запроса (quarkus.http.limits.max-body-size)
+ * Quarkus проверяет до вызова сервиса: по заголовку Content-Length, а при передаче по частям
+ * (Transfer-Encoding: chunked) - по мере чтения тела. Для адресов импорта лимит чтения
+ * по частям заменяется на hermes.import.max-size, поэтому файлы больше общего лимита
+ * передаются по частям. Принятые байты дополнительно считает BulkImport при приеме файла.
+ */
+@ApplicationScoped
+public class ImportBodyLimit {
+
+    private static final String[] IMPORT_PATHS = { "/catalogue/import", "/customers/import" };
+
+    @ConfigProperty(name = "hermes.import.max-size", defaultValue = "268435456")
+    long maxSize;
+
+    void onRouter(@Observes Router router) {
+        for (String path : IMPORT_PATHS) {
+            // После проверки общего лимита (order = -2), до передачи запроса в RESTEasy
+            router.post(path).order(-1).handler(context -> {
+                context.put(VertxHttpRecorder.MAX_REQUEST_SIZE_KEY, maxSize);
+                context.next();
+            });
+        }
+    }
+
+}
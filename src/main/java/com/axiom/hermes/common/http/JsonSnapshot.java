@@ -0,0 +1,70 @@
+package com.axiom.hermes.common.http;
+
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Заранее сериализованный JSON ответ (и его gzip копия) с версией ресурса.
+ * Отдается без повторной сериализации и сжатия на каждый запрос.
+ */
+public class JsonSnapshot {
+
+    private final byte[] json;                   // JSON в UTF-8
+    private final byte[] gzip;                   // JSON сжатый gzip или null
+    private final ResourceVersion version;       // Версия данных снимка
+    private final long sequence;                 // Порядковый номер сборки снимка
+
+    public JsonSnapshot(String json, boolean compress, ResourceVersion version, long sequence) {
+        this.json = json.getBytes(StandardCharsets.UTF_8);
+        this.gzip = compress ? gzip(this.json) : null;
+        this.version = version;
+        this.sequence = sequence;
+    }
+
+    /**
+     * Формирует ответ: 304 если у клиента актуальная версия, иначе сохраненные байты
+     * (сжатые, если клиент принимает gzip)
+     * @param headers заголовки запроса
+     * @return ответ
+     */
+    public Response toResponse(HttpHeaders headers) {
+        Response.ResponseBuilder notModified = version.evaluate(headers);
+        if (notModified != null) return notModified.header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING).build();
+
+        String acceptEncoding = headers.getHeaderString(HttpHeaders.ACCEPT_ENCODING);
+        boolean useGzip = gzip != null && acceptEncoding != null && acceptEncoding.contains("gzip");
+        Response.ResponseBuilder responseBuilder = Response.ok(useGzip ? gzip : json, MediaType.APPLICATION_JSON_TYPE)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (useGzip) responseBuilder.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return version.tag(responseBuilder).build();
+    }
+
+    public ResourceVersion getVersion() {
+        return version;
+    }
+
+    public long getSequence() {
+        return sequence;
+    }
+
+    public int getSize() {
+        return json.length;
+    }
+
+    private static byte[] gzip(byte[] data) {
+        ByteArrayOutputStream output = new ByteArrayOutputStream(data.length / 4 + 64);
+        try (GZIPOutputStream gzipOutput = new GZIPOutputStream(output)) {
+            gzipOutput.write(data);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return output.toByteArray();
+    }
+
+}
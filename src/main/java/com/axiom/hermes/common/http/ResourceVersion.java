@@ -0,0 +1,118 @@
+package com.axiom.hermes.common.http;
+
+import javax.ws.rs.core.CacheControl;
+import javax.ws.rs.core.EntityTag;
+import javax.ws.rs.core.HttpHeaders;
+import javax.ws.rs.core.Response;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.Date;
+
+/**
+ * Версия ресурса для условных HTTP запросов (ETag/Last-Modified, If-None-Match/If-Modified-Since).
+ * Вычисляется без загрузки самого ресурса, чтобы ответ 304 стоил одного запроса по индексу.
+ */
+public class ResourceVersion {
+
+    private final long lastModified;             // Время последнего изменения в миллисекундах
+    private final EntityTag entityTag;           // Тег версии ресурса
+    private final long count;                    // Количество элементов (для списков)
+
+    public ResourceVersion(long lastModified, String tag) {
+        this(lastModified, tag, 0);
+    }
+
+    private ResourceVersion(long lastModified, String tag, long count) {
+        this.lastModified = lastModified;
+        this.entityTag = new EntityTag(tag);
+        this.count = count;
+    }
+
+    /**
+     * Версия списка ресурсов: время последнего изменения и количество элементов
+     * (количество меняется при удалении элемента, которое не меняет время изменения)
+     * @param lastModified максимальное время изменения элементов списка
+     * @param count количество элементов списка
+     * @return версия списка
+     */
+    public static ResourceVersion of(long lastModified, long count) {
+        return new ResourceVersion(lastModified, Long.toHexString(lastModified) + "-" + Long.toHexString(count), count);
+    }
+
+    /**
+     * Версия представления ресурса (страницы, набора полей): то же время изменения,
+     * но свой тег для каждого варианта
+     * @param variant параметры представления
+     * @return версия представления
+     */
+    public ResourceVersion variant(String variant) {
+        return new ResourceVersion(lastModified, entityTag.getValue() + "-" + variant, count);
+    }
+
+    /**
+     * Проверяет условия GET запроса. If-None-Match имеет приоритет над If-Modified-Since,
+     * который сравнивается с точностью до секунды.
+     * @param headers заголовки запроса
+     * @return ответ 304 Not Modified если у клиента актуальная версия, иначе null
+     */
+    public Response.ResponseBuilder evaluate(HttpHeaders headers) {
+        String ifNoneMatch = headers.getHeaderString(HttpHeaders.IF_NONE_MATCH);
+        if (ifNoneMatch != null) {
+            for (String tag : ifNoneMatch.split(",")) {
+                tag = tag.trim();
+                if (tag.startsWith("W/")) tag = tag.substring(2);
+                if (tag.equals("*") || tag.equals("\"" + entityTag.getValue() + "\"")) return notModified();
+            }
+            return null;
+        }
+        String ifModifiedSince = headers.getHeaderString(HttpHeaders.IF_MODIFIED_SINCE);
+        if (ifModifiedSince != null) {
+            try {
+                long since = ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toEpochSecond();
+                if (lastModified / 1000 <= since) return notModified();
+            } catch (DateTimeParseException e) {
+                // Некорректная дата - заголовок игнорируется
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Добавляет в ответ заголовки версии ресурса
+     * @param responseBuilder ответ
+     * @return ответ с заголовками ETag, Last-Modified и Cache-Control
+     */
+    public Response.ResponseBuilder tag(Response.ResponseBuilder responseBuilder) {
+        // Клиент может хранить ответ, но перед использованием должен проверить его актуальность
+        CacheControl cacheControl = new CacheControl();
+        cacheControl.setNoCache(true);
+        cacheControl.setNoTransform(false);
+        return responseBuilder
+                .tag(entityTag)
+                .lastModified(getLastModifiedDate())
+                .cacheControl(cacheControl);
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+
+    public EntityTag getEntityTag() {
+        return entityTag;
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    private Response.ResponseBuilder notModified() {
+        return tag(Response.notModified());
+    }
+
+    private Date getLastModifiedDate() {
+        // HTTP даты имеют точность до секунды
+        return new Date(lastModified / 1000 * 1000);
+    }
+
+}
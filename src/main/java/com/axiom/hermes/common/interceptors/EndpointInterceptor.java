@@ -0,0 +1,36 @@
+package com.axiom.hermes.common.interceptors;
+
+import com.axiom.hermes.common.metrics.HermesMetrics;
+import io.quarkus.vertx.http.runtime.CurrentVertxRequest;
+
+import javax.inject.Inject;
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ResourceInfo;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.ext.Provider;
+import java.io.IOException;
+
+/**
+ * Запоминает шаблон пути выбранного метода сервиса для метрик времени обработки
+ * (выполняется до вызова метода, поэтому шаблон известен и если метод завершится исключением)
+ */
+@Provider
+public class EndpointInterceptor implements ContainerRequestFilter {
+
+    @Context
+    ResourceInfo resourceInfo;
+
+    @Inject
+    CurrentVertxRequest currentRequest;
+
+    @Inject
+    HermesMetrics metrics;
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException {
+        String endpoint = metrics.endpoint(resourceInfo);
+        if (endpoint != null) currentRequest.getCurrent().put(RequestInterceptor.ENDPOINT, endpoint);
+    }
+
+}
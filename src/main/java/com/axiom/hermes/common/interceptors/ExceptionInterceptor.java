@@ -1,7 +1,9 @@
 package com.axiom.hermes.common.interceptors;
 
 import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.metrics.HermesMetrics;
 
+import javax.inject.Inject;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.ext.ExceptionMapper;
 import javax.ws.rs.ext.Provider;
@@ -13,8 +15,12 @@ import java.sql.Timestamp;
 @Provider
 public class ExceptionInterceptor implements ExceptionMapper<HermesException> {
 
+    @Inject
+    HermesMetrics metrics;
+
     @Override
     public Response toResponse(HermesException exception) {
+        metrics.error(exception.getStatus());
         return Response
                 .status(exception.getStatus())
                 .entity(exception.getPrettyJSON())
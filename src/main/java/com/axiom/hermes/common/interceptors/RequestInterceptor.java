@@ -1,36 +1,57 @@
 package com.axiom.hermes.common.interceptors;
 
-import io.vertx.core.Handler;
-import io.vertx.core.buffer.Buffer;
+import com.axiom.hermes.common.http.AccessLog;
+import com.axiom.hermes.common.metrics.HermesMetrics;
+import io.quarkus.vertx.http.runtime.CurrentVertxRequest;
 import io.vertx.core.http.HttpServerRequest;
-import org.jboss.logging.Logger;
+import io.vertx.core.http.HttpServerResponse;
+import io.vertx.core.net.SocketAddress;
+import io.vertx.ext.web.RoutingContext;
 
+import javax.inject.Inject;
 import javax.ws.rs.container.ContainerRequestContext;
 import javax.ws.rs.container.ContainerRequestFilter;
-import javax.ws.rs.core.Context;
-import javax.ws.rs.core.UriInfo;
+import javax.ws.rs.container.PreMatching;
 import javax.ws.rs.ext.Provider;
 import java.io.IOException;
 
+/**
+ * Учитывает запрос в метриках и журнале доступа. Начало отмечается до выбора метода сервиса
+ * (учитываются и запросы к несуществующим адресам), окончание - когда ответ отправлен целиком
+ * или соединение закрыто. Это происходит всегда, в том числе при исключениях без обработчика,
+ * и включает передачу потоковых ответов. Обработчик окончания выполняется уже вне контекста
+ * RESTEasy, поэтому использует только запрос, ответ и контекст Vert.x, полученные здесь.
+ */
 @Provider
+@PreMatching
 public class RequestInterceptor implements ContainerRequestFilter {
 
-    private static final Logger LOG = Logger.getLogger(RequestInterceptor.class);
+    static final String ENDPOINT = RequestInterceptor.class.getName() + ".endpoint";
 
-    @Context
-    UriInfo info;
+    @Inject
+    CurrentVertxRequest currentRequest;
 
-    @Context
-    HttpServerRequest request;
+    @Inject
+    HermesMetrics metrics;
+
+    @Inject
+    AccessLog accessLog;
 
     @Override
     public void filter(ContainerRequestContext requestContext) throws IOException {
-/*
-        final String method = requestContext.getMethod();
-        final String path = info.getPath();
-        final String address = request.remoteAddress().toString();
-
-        LOG.infof("Request %s %s from IP %s", method, path, address);*/
+        final long started = System.nanoTime();
+        final RoutingContext context = currentRequest.getCurrent();
+        final HttpServerRequest request = context.request();
+        final HttpServerResponse response = context.response();
+        metrics.requestStarted();
+        context.addEndHandler(result -> {
+            long elapsed = System.nanoTime() - started;
+            String method = request.rawMethod();
+            int status = response.getStatusCode();
+            metrics.requestFinished(method, context.get(ENDPOINT), status, elapsed);
+            SocketAddress address = request.remoteAddress();
+            accessLog.record(method, request.path(), status, elapsed, address == null ? "-" : address.host());
+        });
     }
 
 }
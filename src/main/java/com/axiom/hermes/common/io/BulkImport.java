@@ -0,0 +1,303 @@
+package com.axiom.hermes.common.io;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.json.bind.JsonbException;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Пакетный импорт из CSV или NDJSON. Файл принимается во временный файл и обрабатывается
+ * в фоне частями: каждую часть наследник сохраняет одной транзакцией. Ход импорта доступен
+ * по его ID. Импорты одного вида выполняются по очереди.
+ * @param <R> тип строки файла импорта
+ */
+public abstract class BulkImport<R extends ImportRow> {
+
+    public static final String FORMAT_CSV = "text/csv";
+    public static final String FORMAT_NDJSON = "application/x-ndjson";
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    @ConfigProperty(name = "hermes.import.chunk-size", defaultValue = "500")
+    protected int chunkSize;
+
+    @ConfigProperty(name = "hermes.import.max-size", defaultValue = "268435456")
+    protected long maxSize;
+
+    @ConfigProperty(name = "hermes.import.history-size", defaultValue = "20")
+    protected int historySize;
+
+    private final Logger log = Logger.getLogger(getClass());
+    private final Class<R> rowType;
+    private final String threadName;
+    private final AtomicLong sequence = new AtomicLong();
+    private final Jsonb jsonb = JsonbBuilder.create();
+    private Map<Long, ImportStatus> statuses;
+    private ExecutorService executor;
+
+    /**
+     * @param rowType тип строки файла импорта (для NDJSON)
+     * @param threadName имя потока обработки импортов
+     */
+    protected BulkImport(Class<R> rowType, String threadName) {
+        this.rowType = rowType;
+        this.threadName = threadName;
+    }
+
+    @PostConstruct
+    protected void init() {
+        // Храним состояние только последних импортов
+        statuses = Collections.synchronizedMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, ImportStatus> eldest) {
+                return size() > historySize;
+            }
+        });
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Останавливает обработку импортов (вызывается наследником при остановке приложения)
+     */
+    protected void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * Принимает файл импорта и ставит его в очередь на обработку
+     * @param input поток файла (закрывает вызывающий)
+     * @param format формат файла: text/csv или application/x-ndjson
+     * @return состояние импорта
+     * @throws HermesException информация об ошибке
+     */
+    public ImportStatus start(InputStream input, String format) throws HermesException {
+        if (!FORMAT_CSV.equals(format) && !FORMAT_NDJSON.equals(format)) {
+            throw new HermesException(UNSUPPORTED_MEDIA, "Unsupported import format",
+                    "Only " + FORMAT_CSV + " and " + FORMAT_NDJSON + " are supported.");
+        }
+        Path file = spool(input);
+        ImportStatus status = new ImportStatus(sequence.incrementAndGet(), format);
+        statuses.put(status.getImportID(), status);
+        executor.execute(() -> process(status, file));
+        return status;
+    }
+
+    /**
+     * Возвращает состояние импорта
+     * @param importID импорта
+     * @return состояние импорта
+     * @throws HermesException информация об ошибке
+     */
+    public ImportStatus getStatus(long importID) throws HermesException {
+        ImportStatus status = statuses.get(importID);
+        if (status == null) {
+            throw new HermesException(NOT_FOUND, "Import not found",
+                    "Requested importID=" + importID + " not found.");
+        }
+        return status;
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+    // Реализуется наследником
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Колонка, без которой CSV файл не может быть импортирован (в нижнем регистре)
+     * @return имя колонки
+     */
+    protected abstract String keyColumn();
+
+    /**
+     * Разбирает запись CSV файла
+     * @param fields значения полей по имени колонки в нижнем регистре (пустые поля - null)
+     * @param lineNumber номер строки
+     * @return строка импорта
+     * @throws RowException ошибка в строке (строка пропускается)
+     */
+    protected abstract R parseCsv(Map<String, String> fields, long lineNumber) throws RowException;
+
+    /**
+     * Сохраняет часть файла одной транзакцией
+     * @param chunk строки части файла
+     * @param errors сюда добавляются сообщения о пропущенных строках
+     * @return количество созданных записей (остальные строки без ошибок - обновленные записи)
+     * @throws HermesException информация об ошибке (импорт прерывается)
+     */
+    protected abstract int importChunk(List<R> chunk, List<String> errors) throws HermesException;
+
+    /**
+     * Ошибка в строке файла импорта
+     */
+    public static class RowException extends Exception {
+        final long lineNumber;
+
+        public RowException(long lineNumber, String message) {
+            super(message);
+            this.lineNumber = lineNumber;
+        }
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private Path spool(InputStream input) throws HermesException {
+        Path file = null;
+        try {
+            file = Files.createTempFile("hermes-import", ".tmp");
+            long size = 0;
+            try (OutputStream output = Files.newOutputStream(file)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new HermesException(REQUEST_TOO_LARGE, "Import file is too large",
+                                "Maximum import file size is limited to " + maxSize + " bytes");
+                    }
+                    output.write(buffer, 0, read);
+                }
+            }
+            return file;
+        } catch (IOException | HermesException e) {
+            deleteQuietly(file);
+            if (e instanceof HermesException) throw (HermesException) e;
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Cannot receive import file", e.getMessage());
+        }
+    }
+
+    private void process(ImportStatus status, Path file) {
+        status.setState(ImportStatus.RUNNING);
+        try (Reader reader = new InputStreamReader(Files.newInputStream(file), StandardCharsets.UTF_8)) {
+            RowSource<R> rows = FORMAT_CSV.equals(status.getFormat()) ? new CsvRows(reader) : new JsonRows(reader);
+            List<R> chunk = new ArrayList<>(chunkSize);
+            R row;
+            while (true) {
+                try {
+                    row = rows.next();
+                } catch (RowException e) {
+                    status.addError("line " + e.lineNumber + ": " + e.getMessage());
+                    continue;
+                }
+                if (row == null) break;
+                chunk.add(row);
+                if (chunk.size() == chunkSize) {
+                    processChunk(status, chunk);
+                    chunk.clear();
+                }
+            }
+            if (!chunk.isEmpty()) processChunk(status, chunk);
+            status.finish(ImportStatus.COMPLETED);
+        } catch (Exception e) {
+            log.warn("Import " + status.getImportID() + " failed: " + e.getMessage());
+            status.addError("import aborted: " + e.getMessage());
+            status.finish(ImportStatus.FAILED);
+        } finally {
+            deleteQuietly(file);
+        }
+    }
+
+    private void processChunk(ImportStatus status, List<R> chunk) throws HermesException {
+        List<String> errors = new ArrayList<>();
+        int created = importChunk(chunk, errors);
+        status.addChunk(created, chunk.size() - created - errors.size(), errors);
+    }
+
+    private void deleteQuietly(Path file) {
+        if (file == null) return;
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Cannot delete temporary file " + file, e);
+        }
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+    // Чтение строк файла импорта
+    //-----------------------------------------------------------------------------------------------------
+
+    private interface RowSource<T> {
+        T next() throws IOException, RowException;
+    }
+
+    /**
+     * CSV с заголовком (порядок колонок любой, имена колонок без учета регистра)
+     */
+    private class CsvRows implements RowSource<R> {
+        private final CsvReader csv;
+        private final List<String> columns = new ArrayList<>();
+
+        CsvRows(Reader reader) throws IOException {
+            csv = new CsvReader(reader);
+            List<String> header = csv.next();
+            if (header == null) return;
+            for (String column : header) columns.add(column.trim().toLowerCase(Locale.ROOT));
+            if (!columns.contains(keyColumn())) {
+                throw new IOException("CSV header must contain " + keyColumn() + " column");
+            }
+        }
+
+        @Override
+        public R next() throws IOException, RowException {
+            if (columns.isEmpty()) return null;
+            List<String> values = csv.next();
+            if (values == null) return null;
+            Map<String, String> fields = new HashMap<>();
+            for (int i = 0; i < columns.size() && i < values.size(); i++) {
+                String value = values.get(i).trim();
+                if (!value.isEmpty()) fields.put(columns.get(i), value);
+            }
+            long lineNumber = csv.getLineNumber();
+            R row = parseCsv(fields, lineNumber);
+            row.setLineNumber(lineNumber);
+            return row;
+        }
+    }
+
+    /**
+     * NDJSON: один JSON объект строки импорта на строку
+     */
+    private class JsonRows implements RowSource<R> {
+        private final BufferedReader reader;
+        private long lineNumber = 0;
+
+        JsonRows(Reader reader) {
+            this.reader = new BufferedReader(reader);
+        }
+
+        @Override
+        public R next() throws IOException, RowException {
+            String line;
+            do {
+                line = reader.readLine();
+                if (line == null) return null;
+                lineNumber++;
+            } while (line.isBlank());
+            try {
+                R row = jsonb.fromJson(line, rowType);
+                row.setLineNumber(lineNumber);
+                return row;
+            } catch (JsonbException e) {
+                throw new RowException(lineNumber, "invalid JSON " + e.getMessage());
+            }
+        }
+    }
+
+}
@@ -0,0 +1,109 @@
+package com.axiom.hermes.common.io;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Потоковое чтение CSV (RFC 4180): поля в двойных кавычках могут содержать разделители,
+ * переводы строк и удвоенные кавычки. Читает по одной записи, не загружая файл в память.
+ */
+public class CsvReader implements Closeable {
+
+    private final Reader reader;
+    private final char separator;
+    private int lineNumber = 0;               // Номер строки, с которой началась последняя запись
+    private int currentLine = 1;              // Номер текущей строки
+    private int pushback = -2;                // Прочитанный наперед символ (-2 - нет)
+
+    public CsvReader(Reader reader) {
+        this(reader, ',');
+    }
+
+    public CsvReader(Reader reader, char separator) {
+        this.reader = reader;
+        this.separator = separator;
+    }
+
+    /**
+     * Читает следующую запись
+     * @return значения полей записи или null если записей больше нет
+     * @throws IOException ошибка чтения или незакрытая кавычка
+     */
+    public List<String> next() throws IOException {
+        int ch = read();
+        // Пропускаем пустые строки
+        while (ch == '\r' || ch == '\n') {
+            if (ch == '\n') currentLine++;
+            ch = read();
+        }
+        if (ch == -1) return null;
+        lineNumber = currentLine;
+
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        boolean wasQuoted = false;
+        while (true) {
+            if (quoted) {
+                if (ch == -1) throw new IOException("Unclosed quote in CSV record at line " + lineNumber);
+                if (ch == '"') {
+                    int following = read();
+                    if (following == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        ch = following;
+                        continue;
+                    }
+                } else {
+                    if (ch == '\n') currentLine++;
+                    field.append((char) ch);
+                }
+            } else if (ch == '"' && field.length() == 0 && !wasQuoted) {
+                quoted = true;
+                wasQuoted = true;
+            } else if (ch == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+                wasQuoted = false;
+            } else if (ch == '\r' || ch == '\n' || ch == -1) {
+                if (ch == '\r') {
+                    int following = read();
+                    if (following != '\n') pushback = following;
+                }
+                if (ch != -1) currentLine++;
+                fields.add(field.toString());
+                return fields;
+            } else {
+                field.append((char) ch);
+            }
+            ch = read();
+        }
+    }
+
+    /**
+     * Номер строки, с которой началась последняя прочитанная запись
+     * @return номер строки (с 1)
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private int read() throws IOException {
+        if (pushback != -2) {
+            int ch = pushback;
+            pushback = -2;
+            return ch;
+        }
+        return reader.read();
+    }
+
+}
@@ -0,0 +1,16 @@
+package com.axiom.hermes.common.io;
+
+/**
+ * Строка файла пакетного импорта
+ */
+public interface ImportRow {
+
+    /**
+     * Номер строки в файле импорта (для сообщений об ошибках)
+     * @return номер строки (с 1)
+     */
+    long getLineNumber();
+
+    void setLineNumber(long lineNumber);
+
+}
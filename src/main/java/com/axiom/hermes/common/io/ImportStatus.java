@@ -0,0 +1,107 @@
+package com.axiom.hermes.common.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Состояние пакетного импорта (обновляется по мере обработки частей файла)
+ */
+public class ImportStatus {
+    //-------------------------------------------------------------------------------------------
+    public static final String QUEUED = "queued";            // Ожидает обработки
+    public static final String RUNNING = "running";          // Обрабатывается
+    public static final String COMPLETED = "completed";      // Обработан
+    public static final String FAILED = "failed";            // Прерван из-за ошибки
+    public static final int MAX_ERRORS = 100;                // Сколько сообщений об ошибках хранить
+    //-------------------------------------------------------------------------------------------
+
+    private final long importID;             // ID импорта
+    private final String format;             // Формат файла (MIME type)
+    private volatile String state;           // Состояние импорта
+    private volatile long processed;         // Обработано строк
+    private volatile long created;           // Создано записей
+    private volatile long updated;           // Обновлено записей
+    private volatile long failed;            // Пропущено строк с ошибками
+    private final List<String> errors = new ArrayList<>();   // Первые сообщения об ошибках
+    private final long startTime;            // Время приёма файла в миллисекундах
+    private volatile long endTime;           // Время завершения обработки в миллисекундах
+
+    public ImportStatus(long importID, String format) {
+        this.importID = importID;
+        this.format = format;
+        this.state = QUEUED;
+        this.startTime = System.currentTimeMillis();
+    }
+
+    /**
+     * Учитывает результат обработки части файла
+     * @param created создано записей
+     * @param updated обновлено записей
+     * @param chunkErrors ошибки в строках
+     */
+    public synchronized void addChunk(long created, long updated, List<String> chunkErrors) {
+        this.created += created;
+        this.updated += updated;
+        this.processed += created + updated;
+        for (String error : chunkErrors) addError(error);
+    }
+
+    /**
+     * Учитывает строку, пропущенную из-за ошибки
+     * @param error сообщение об ошибке
+     */
+    public synchronized void addError(String error) {
+        failed++;
+        processed++;
+        if (errors.size() < MAX_ERRORS) errors.add(error);
+    }
+
+    public synchronized void finish(String state) {
+        this.state = state;
+        this.endTime = System.currentTimeMillis();
+    }
+
+    public long getImportID() {
+        return importID;
+    }
+
+    public String getFormat() {
+        return format;
+    }
+
+    public String getState() {
+        return state;
+    }
+
+    public void setState(String state) {
+        this.state = state;
+    }
+
+    public long getProcessed() {
+        return processed;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public long getUpdated() {
+        return updated;
+    }
+
+    public long getFailed() {
+        return failed;
+    }
+
+    public synchronized List<String> getErrors() {
+        return new ArrayList<>(errors);
+    }
+
+    public long getStartTime() {
+        return startTime;
+    }
+
+    public long getEndTime() {
+        return endTime;
+    }
+}
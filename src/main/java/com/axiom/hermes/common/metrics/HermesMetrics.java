@@ -0,0 +1,229 @@
+package com.axiom.hermes.common.metrics;
+
+import io.agroal.api.AgroalDataSource;
+import io.agroal.api.AgroalDataSourceMetrics;
+import io.micrometer.core.instrument.*;
+import io.quarkus.runtime.StartupEvent;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.persistence.EntityManagerFactory;
+import javax.ws.rs.Path;
+import javax.ws.rs.container.ResourceInfo;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToDoubleFunction;
+
+import static com.axiom.hermes.model.inventory.entities.StockTransaction.*;
+
+/**
+ * Метрики сервера (Micrometer, публикуются для Prometheus по адресу /metrics): время ответа
+ * по методам сервиса, ошибки по HTTP статусу, запросы в обработке, пул соединений,
+ * статистика Hibernate и складские счётчики. Счётчики кэшируются, чтобы запись метрики
+ * не создавала объектов на каждый запрос.
+ */
+@ApplicationScoped
+public class HermesMetrics {
+
+    private static final String UNMATCHED = "UNMATCHED";
+
+    @Inject MeterRegistry registry;
+    @Inject AgroalDataSource dataSource;
+    @Inject EntityManagerFactory entityManagerFactory;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final Map<Method, String> endpoints = new ConcurrentHashMap<>();
+    private final Map<String, Timer> requestTimers = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> errorCounters = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> postingCounters = new ConcurrentHashMap<>();
+    private final Map<Integer, Counter> rejectionCounters = new ConcurrentHashMap<>();
+    private final Map<String, Timer> lockTimers = new ConcurrentHashMap<>();
+
+    void onStart(@Observes StartupEvent event) {
+        Gauge.builder("hermes.http.inflight", inFlight, AtomicInteger::get)
+                .description("Requests being processed")
+                .register(registry);
+        bindDataSource();
+        bindHibernate();
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+    // HTTP запросы
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Отмечает начало обработки запроса
+     */
+    public void requestStarted() {
+        inFlight.incrementAndGet();
+    }
+
+    /**
+     * Учитывает время обработки запроса (вызывается, когда ответ полностью отправлен
+     * или соединение закрыто)
+     * @param method HTTP метод
+     * @param endpoint шаблон пути метода сервиса (null - метод не найден)
+     * @param status HTTP статус ответа
+     * @param elapsedNanos время обработки в наносекундах
+     */
+    public void requestFinished(String method, String endpoint, int status, long elapsedNanos) {
+        inFlight.decrementAndGet();
+        String path = endpoint == null ? UNMATCHED : endpoint;
+        requestTimers.computeIfAbsent(method + " " + path + " " + status, key ->
+                Timer.builder("hermes.http.requests")
+                        .description("Request processing time by endpoint")
+                        .tag("method", method)
+                        .tag("endpoint", path)
+                        .tag("status", String.valueOf(status))
+                        .publishPercentileHistogram()
+                        .minimumExpectedValue(Duration.ofMillis(1))
+                        .maximumExpectedValue(Duration.ofSeconds(30))
+                        .register(registry))
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Шаблон пути метода сервиса (по аннотациям @Path, без параметров запроса)
+     * @param resource вызванный метод сервиса
+     * @return шаблон пути или null, если метод не найден
+     */
+    public String endpoint(ResourceInfo resource) {
+        Method method = resource == null ? null : resource.getResourceMethod();
+        if (method == null) return null;
+        return endpoints.computeIfAbsent(method, m -> {
+            Path typePath = resource.getResourceClass().getAnnotation(Path.class);
+            Path methodPath = m.getAnnotation(Path.class);
+            String path = (typePath == null ? "" : typePath.value()) + (methodPath == null ? "" : methodPath.value());
+            return path.isEmpty() ? "/" : path.replace("//", "/");
+        });
+    }
+
+    /**
+     * Учитывает ошибку, возвращенную клиенту
+     * @param status HTTP статус ошибки
+     */
+    public void error(int status) {
+        errorCounters.computeIfAbsent(status, code ->
+                Counter.builder("hermes.http.errors")
+                        .description("HermesException responses by status")
+                        .tag("status", String.valueOf(code))
+                        .register(registry))
+                .increment();
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+    // Складской учёт
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Учитывает проведенную складскую транзакцию
+     * @param opCode код операции
+     */
+    public void stockPosted(int opCode) {
+        postingCounters.computeIfAbsent(opCode, code ->
+                Counter.builder("hermes.stock.postings")
+                        .description("Committed stock transactions by operation")
+                        .tag("operation", operationName(code))
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * Учитывает отказ в расходе товара из-за нехватки остатков
+     * @param opCode код операции
+     */
+    public void outOfStock(int opCode) {
+        rejectionCounters.computeIfAbsent(opCode, code ->
+                Counter.builder("hermes.stock.rejections")
+                        .description("Outgoing stock transactions rejected for insufficient stock")
+                        .tag("operation", operationName(code))
+                        .register(registry))
+                .increment();
+    }
+
+    /**
+     * Учитывает время ожидания блокировки строки (SELECT ... FOR UPDATE)
+     * @param entity заблокированная сущность
+     * @param nanos время ожидания в наносекундах
+     */
+    public void lockWait(String entity, long nanos) {
+        lockTimers.computeIfAbsent(entity, name ->
+                Timer.builder("hermes.lock.wait")
+                        .description("Time spent acquiring pessimistic row locks")
+                        .tag("entity", name)
+                        .register(registry))
+                .record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private static String operationName(int opCode) {
+        switch (opCode) {
+            case IN_PURCHASE: return "purchase";
+            case IN_SALE_RETURN: return "sale_return";
+            case OUT_SALE: return "sale";
+            case OUT_PURCHASE_RETURN: return "purchase_return";
+            case OUT_WRITE_OFF: return "write_off";
+            default: return String.valueOf(opCode);
+        }
+    }
+
+    /**
+     * Показатели пула соединений Agroal (сбор включается здесь же)
+     */
+    private void bindDataSource() {
+        dataSource.getConfiguration().setMetricsEnabled(true);
+        AgroalDataSourceMetrics pool = dataSource.getMetrics();
+        poolGauge("hermes.jdbc.connections.active", pool, AgroalDataSourceMetrics::activeCount);
+        poolGauge("hermes.jdbc.connections.available", pool, AgroalDataSourceMetrics::availableCount);
+        poolGauge("hermes.jdbc.connections.awaiting", pool, AgroalDataSourceMetrics::awaitingCount);
+        poolGauge("hermes.jdbc.connections.max.used", pool, AgroalDataSourceMetrics::maxUsedCount);
+        FunctionCounter.builder("hermes.jdbc.connections.acquired", pool, AgroalDataSourceMetrics::acquireCount)
+                .register(registry);
+        FunctionCounter.builder("hermes.jdbc.connections.created", pool, AgroalDataSourceMetrics::creationCount)
+                .register(registry);
+        FunctionCounter.builder("hermes.jdbc.connections.leaks", pool, AgroalDataSourceMetrics::leakDetectionCount)
+                .register(registry);
+        TimeGauge.builder("hermes.jdbc.connections.blocking.max", pool, TimeUnit.MILLISECONDS,
+                metrics -> metrics.blockingTimeMax().toMillis())
+                .register(registry);
+        FunctionCounter.builder("hermes.jdbc.connections.blocking.total", pool,
+                metrics -> metrics.blockingTimeTotal().toNanos() / 1e9)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    private void poolGauge(String name, AgroalDataSourceMetrics pool, ToDoubleFunction<AgroalDataSourceMetrics> value) {
+        Gauge.builder(name, pool, value).register(registry);
+    }
+
+    /**
+     * Статистика Hibernate (сбор включается здесь же)
+     */
+    private void bindHibernate() {
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.setStatisticsEnabled(true);
+        hibernateCounter("hermes.hibernate.statements", statistics, Statistics::getPrepareStatementCount);
+        hibernateCounter("hermes.hibernate.queries", statistics, Statistics::getQueryExecutionCount);
+        hibernateCounter("hermes.hibernate.entities.loaded", statistics, Statistics::getEntityLoadCount);
+        hibernateCounter("hermes.hibernate.entities.fetched", statistics, Statistics::getEntityFetchCount);
+        hibernateCounter("hermes.hibernate.flushes", statistics, Statistics::getFlushCount);
+        hibernateCounter("hermes.hibernate.transactions", statistics, Statistics::getSuccessfulTransactionCount);
+        hibernateCounter("hermes.hibernate.optimistic.failures", statistics, Statistics::getOptimisticFailureCount);
+        TimeGauge.builder("hermes.hibernate.query.max", statistics, TimeUnit.MILLISECONDS,
+                Statistics::getQueryExecutionMaxTime)
+                .register(registry);
+    }
+
+    private void hibernateCounter(String name, Statistics statistics, ToDoubleFunction<Statistics> value) {
+        FunctionCounter.builder(name, statistics, value).register(registry);
+    }
+
+}
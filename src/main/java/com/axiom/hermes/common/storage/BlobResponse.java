@@ -0,0 +1,92 @@
+package com.axiom.hermes.common.storage;
+
+import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * Формирует ответ с содержимым файла хранилища без загрузки его в память: данные передаются
+ * из канала файла через FileChannel.transferTo. Поддерживает запрос части файла (Range: bytes=).
+ */
+public class BlobResponse {
+
+    /**
+     * Формирует ответ с содержимым файла или его частью
+     * @param channel открытый канал файла (будет закрыт после передачи)
+     * @param contentType тип содержимого
+     * @param filename название файла для Content-Disposition
+     * @param range значение заголовка Range или null
+     * @return ответ 200, 206 (часть файла) или 416 (запрошенная часть вне файла)
+     * @throws IOException ошибка чтения размера файла
+     */
+    public static Response.ResponseBuilder build(FileChannel channel, String contentType, String filename, String range)
+            throws IOException {
+        long size = channel.size();
+        long start = 0;
+        long end = size - 1;
+        boolean partial = false;
+
+        // Поддерживается один диапазон: bytes=first-last, bytes=first- или bytes=-suffix,
+        // иначе (в том числе при first > last) заголовок игнорируется и отдается весь файл
+        if (range != null && range.startsWith("bytes=") && range.indexOf(',') < 0) {
+            String spec = range.substring(6).trim();
+            int dash = spec.indexOf('-');
+            try {
+                if (dash == 0) {
+                    long suffix = Long.parseLong(spec.substring(1));
+                    if (suffix < 0) throw new NumberFormatException("Negative suffix length");
+                    // Нулевой суффикс не выбирает ни одного байта - диапазон невыполним
+                    start = suffix == 0 ? size : Math.max(0, size - suffix);
+                    partial = true;
+                } else if (dash > 0) {
+                    start = Long.parseLong(spec.substring(0, dash));
+                    if (dash < spec.length() - 1) {
+                        long last = Long.parseLong(spec.substring(dash + 1));
+                        if (last < start) throw new NumberFormatException("Last byte before first byte");
+                        end = Math.min(end, last);
+                    }
+                    partial = true;
+                }
+            } catch (NumberFormatException e) {
+                start = 0;
+                end = size - 1;
+                partial = false;
+            }
+            if (partial && start >= size) {
+                channel.close();
+                return Response.status(416)
+                        .header("Content-Range", "bytes */" + size)
+                        .header("Accept-Ranges", "bytes");
+            }
+        }
+
+        long first = start;
+        long length = end - start + 1;
+        StreamingOutput body = output -> {
+            try (FileChannel source = channel) {
+                WritableByteChannel target = Channels.newChannel(output);
+                long position = first;
+                long remaining = length;
+                while (remaining > 0) {
+                    long transferred = source.transferTo(position, remaining, target);
+                    if (transferred <= 0) break;
+                    position += transferred;
+                    remaining -= transferred;
+                }
+            }
+        };
+
+        Response.ResponseBuilder responseBuilder = partial ? Response.status(206) : Response.ok();
+        responseBuilder.entity(body)
+                .header("Content-Type", contentType)
+                .header("Content-Length", length)
+                .header("Accept-Ranges", "bytes")
+                .header("Content-Disposition", "inline; filename=\"" + filename + "\"");
+        if (partial) responseBuilder.header("Content-Range", "bytes " + start + "-" + end + "/" + size);
+        return responseBuilder;
+    }
+
+}
@@ -0,0 +1,217 @@
+package com.axiom.hermes.common.storage;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Хранилище двоичных объектов (изображений) на диске с адресацией по содержимому:
+ * имя файла - SHA-256 от его содержимого, поэтому одинаковые файлы хранятся один раз,
+ * а записанный файл никогда не изменяется. В базе данных хранится только хэш.
+ */
+@ApplicationScoped
+public class BlobStore {
+
+    private static final Logger LOG = Logger.getLogger(BlobStore.class);
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    @ConfigProperty(name = "hermes.blobs.path", defaultValue = "blobs")
+    String rootPath;
+
+    /**
+     * Сохраняет двоичный объект (если такого ещё нет)
+     * @param data содержимое
+     * @return хэш содержимого (SHA-256 hex), по которому объект можно получить
+     * @throws HermesException информация об ошибке
+     */
+    public String put(byte[] data) throws HermesException {
+        String hash = toHex(sha256().digest(data));
+        Path path = getPath(hash);
+        if (Files.exists(path)) {
+            // Обновляем время изменения, чтобы параллельное удаление "осиротевшего" объекта его не тронуло
+            touch(path);
+            return hash;
+        }
+        try {
+            Files.createDirectories(path.getParent());
+            // Пишем во временный файл и переименовываем, чтобы читатели не увидели недописанный файл
+            Path temp = Files.createTempFile(path.getParent(), hash, ".tmp");
+            try {
+                Files.write(temp, data);
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            } finally {
+                Files.deleteIfExists(temp);
+            }
+        } catch (FileAlreadyExistsException e) {
+            // Тот же объект параллельно записан другим запросом
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Cannot store file", e.getMessage());
+        }
+        return hash;
+    }
+
+    /**
+     * Сохраняет двоичный объект из потока, не загружая его в память: содержимое пишется
+     * во временный файл, хэш вычисляется при том же чтении, размер проверяется по ходу записи
+     * @param input поток содержимого (закрывает вызывающий)
+     * @param maxSize максимальный размер объекта в байтах
+     * @return хэш содержимого (SHA-256 hex), по которому объект можно получить
+     * @throws HermesException информация об ошибке, REQUEST_TOO_LARGE если поток длиннее maxSize
+     */
+    public String put(InputStream input, long maxSize) throws HermesException {
+        MessageDigest digest = sha256();
+        Path temp = null;
+        try {
+            Path root = Paths.get(rootPath);
+            Files.createDirectories(root);
+            temp = Files.createTempFile(root, "upload", ".tmp");
+            long size = 0;
+            try (OutputStream output = Files.newOutputStream(temp)) {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = input.read(buffer)) != -1) {
+                    size += read;
+                    if (size > maxSize) {
+                        throw new HermesException(REQUEST_TOO_LARGE, "File size is too large",
+                                "Maximum file size is limited to " + maxSize + " bytes");
+                    }
+                    digest.update(buffer, 0, read);
+                    output.write(buffer, 0, read);
+                }
+            }
+            String hash = toHex(digest.digest());
+            Path path = getPath(hash);
+            if (Files.exists(path)) {
+                touch(path);
+                return hash;
+            }
+            Files.createDirectories(path.getParent());
+            try {
+                Files.move(temp, path, StandardCopyOption.ATOMIC_MOVE);
+            } catch (FileAlreadyExistsException e) {
+                // Тот же объект параллельно записан другим запросом
+                touch(path);
+            }
+            return hash;
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Cannot store file", e.getMessage());
+        } finally {
+            if (temp != null) {
+                try {
+                    Files.deleteIfExists(temp);
+                } catch (IOException e) {
+                    LOG.warn("Cannot delete temporary file " + temp, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Возвращает размер двоичного объекта
+     * @param hash хэш содержимого
+     * @return размер в байтах
+     * @throws HermesException информация об ошибке
+     */
+    public long size(String hash) throws HermesException {
+        try {
+            return Files.size(getPath(hash));
+        } catch (NoSuchFileException e) {
+            throw new HermesException(NOT_FOUND, "File not found", "Stored file " + hash + " not found.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Cannot read file", e.getMessage());
+        }
+    }
+
+    /**
+     * Открывает двоичный объект на чтение
+     * @param hash хэш содержимого
+     * @return канал файла объекта (закрывает вызывающий)
+     * @throws HermesException информация об ошибке
+     */
+    public FileChannel open(String hash) throws HermesException {
+        try {
+            return FileChannel.open(getPath(hash), StandardOpenOption.READ);
+        } catch (NoSuchFileException e) {
+            throw new HermesException(NOT_FOUND, "File not found", "Stored file " + hash + " not found.");
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Cannot read file", e.getMessage());
+        }
+    }
+
+    /**
+     * Удаляет двоичный объект, на который больше нет ссылок, если его не сохраняли повторно
+     * после указанного момента (иначе на него могла появиться новая ссылка)
+     * @param hash хэш содержимого
+     * @param unusedSince момент, когда была проверена ссылка на объект
+     */
+    public void delete(String hash, long unusedSince) {
+        if (hash == null) return;
+        try {
+            Path path = getPath(hash);
+            if (Files.getLastModifiedTime(path).toMillis() >= unusedSince) return;
+            Files.deleteIfExists(path);
+        } catch (NoSuchFileException e) {
+            // Уже удален
+        } catch (IOException | HermesException e) {
+            LOG.warn("Cannot delete stored file " + hash, e);
+        }
+    }
+
+    /**
+     * Возвращает путь к файлу объекта: корень/ab/cd/abcd...
+     * @param hash хэш содержимого
+     * @return путь к файлу
+     * @throws HermesException информация об ошибке
+     */
+    public Path getPath(String hash) throws HermesException {
+        if (hash == null || hash.length() != 64 || !hash.matches("[0-9a-f]+")) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter", "Invalid file hash " + hash);
+        }
+        return Paths.get(rootPath, hash.substring(0, 2), hash.substring(2, 4), hash);
+    }
+
+    private static void touch(Path path) {
+        try {
+            Files.setLastModifiedTime(path, FileTime.fromMillis(System.currentTimeMillis()));
+        } catch (IOException e) {
+            LOG.warn("Cannot touch stored file " + path, e);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            chars[i * 2] = HEX[(bytes[i] >> 4) & 0xF];
+            chars[i * 2 + 1] = HEX[bytes[i] & 0xF];
+        }
+        return new String(chars);
+    }
+
+}
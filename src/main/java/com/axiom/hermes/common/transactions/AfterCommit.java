@@ -0,0 +1,45 @@
+package com.axiom.hermes.common.transactions;
+
+import javax.transaction.*;
+
+/**
+ * Выполняет действия после успешной фиксации текущей транзакции
+ * (для обновления структур в памяти, которые не должны видеть откатившиеся изменения)
+ */
+public class AfterCommit {
+
+    /**
+     * Регистрирует действие, которое будет выполнено после фиксации текущей транзакции.
+     * Если активной транзакции нет - действие выполняется сразу.
+     * @param transactionManager менеджер транзакций
+     * @param action действие
+     */
+    public static void run(TransactionManager transactionManager, Runnable action) {
+        try {
+            Transaction transaction = transactionManager.getTransaction();
+            if (transaction == null || transaction.getStatus() == Status.STATUS_NO_TRANSACTION) {
+                action.run();
+                return;
+            }
+            transaction.registerSynchronization(new Synchronization() {
+                @Override
+                public void beforeCompletion() { }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != Status.STATUS_COMMITTED) return;
+                    try {
+                        action.run();
+                    } catch (RuntimeException e) {
+                        e.printStackTrace();
+                    }
+                }
+            });
+        } catch (RollbackException e) {
+            // Транзакция уже помечена на откат - действие выполнять не нужно
+        } catch (IllegalStateException | SystemException e) {
+            e.printStackTrace();
+        }
+    }
+
+}
@@ -0,0 +1,279 @@
+package com.axiom.hermes.model.analytics;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.analytics.entities.DailyCustomerSales;
+import com.axiom.hermes.model.analytics.entities.DailyProductSales;
+import com.axiom.hermes.model.customers.entities.SalesOrder;
+import com.axiom.hermes.model.customers.entities.SalesOrderItem;
+import com.axiom.hermes.model.inventory.entities.StockTransaction;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static com.axiom.hermes.common.exceptions.HermesException.INTERNAL_SERVER_ERROR;
+import static com.axiom.hermes.model.inventory.entities.StockTransaction.IN_SALE_RETURN;
+import static com.axiom.hermes.model.inventory.entities.StockTransaction.OUT_SALE;
+
+/**
+ * Аналитика продаж: дневные агрегаты по товарам и клиентам.
+ * Агрегаты обновляются инкрементально в той же транзакции, что и складская проводка
+ * или изменение статуса заказа, поэтому отчёты не сканируют журнал складских транзакций.
+ */
+@ApplicationScoped
+public class Analytics {
+
+    public static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+    @Inject EntityManager entityManager;
+
+    //-----------------------------------------------------------------------------------------------------
+    // Инкрементальное обновление агрегатов
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Учитывает в агрегатах складскую проводку продажи (OUT_SALE) или возврата от клиента (IN_SALE_RETURN),
+     * остальные проводки игнорируются
+     * @param transaction проведенная складская транзакция
+     */
+    @Transactional
+    public void registerTransaction(StockTransaction transaction) {
+        int opCode = transaction.getOperationCode();
+        if (opCode != OUT_SALE && opCode != IN_SALE_RETURN) return;
+
+        // Возврат уменьшает продажи за день, в который он проведен
+        long sign = opCode == OUT_SALE ? 1 : -1;
+        long quantity = sign * transaction.getQuantity();
+        double revenue = quantity * transaction.getUnitCost();
+        long epochDay = toEpochDay(transaction.getTimestamp());
+
+        upsertProductSales(epochDay, transaction.getProductID(), quantity, revenue, 0);
+
+        // Если проводка сделана по заказу - учитываем продажу и у клиента
+        if (transaction.getOrderID() > 0) {
+            SalesOrder salesOrder = entityManager.find(SalesOrder.class, transaction.getOrderID());
+            if (salesOrder != null) {
+                upsertCustomerSales(epochDay, salesOrder.getCustomerID(), quantity, revenue, 0);
+            }
+        }
+    }
+
+    /**
+     * Учитывает в агрегатах изменение статуса заказа: переход в подтвержденный статус увеличивает
+     * количество заказов за день, возврат из подтвержденного статуса - уменьшает
+     * @param salesOrder заказ с уже установленным новым статусом
+     * @param oldStatus предыдущий статус заказа
+     * @param items позиции заказа
+     */
+    @Transactional
+    public void registerOrderStatus(SalesOrder salesOrder, int oldStatus, List<SalesOrderItem> items) {
+        boolean wasConfirmed = oldStatus >= SalesOrder.STATUS_CONFIRMED;
+        boolean isConfirmed = salesOrder.getStatus() >= SalesOrder.STATUS_CONFIRMED;
+        if (wasConfirmed == isConfirmed) return;
+
+        long delta = isConfirmed ? 1 : -1;
+        long epochDay = toEpochDay(System.currentTimeMillis());
+
+        upsertCustomerSales(epochDay, salesOrder.getCustomerID(), 0, 0, delta);
+        for (SalesOrderItem item : items) {
+            upsertProductSales(epochDay, item.getProductID(), 0, 0, delta);
+        }
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+    // Отчёты
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Возвращает дневные продажи товарной позиции за период
+     * @param productID товарной позиции
+     * @param startTime с какого времени (0 - без ограничения)
+     * @param endTime по какое время (0 - без ограничения)
+     * @return список дневных продаж товарной позиции
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<DailyProductSales> getProductSales(long productID, long startTime, long endTime)
+            throws HermesException {
+        Validator.nonNegativeInteger("productID", productID);
+        Validator.nonNegativeInteger("startTime", startTime);
+        Validator.nonNegativeInteger("endTime", endTime);
+
+        String query = "SELECT a FROM DailyProductSales a WHERE a.productID=:productID " +
+                "AND a.epochDay BETWEEN :startDay AND :endDay ORDER BY a.epochDay";
+        try {
+            return entityManager.createQuery(query, DailyProductSales.class)
+                    .setParameter("productID", productID)
+                    .setParameter("startDay", startDay(startTime))
+                    .setParameter("endDay", endDay(endTime))
+                    .getResultList();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Query failed", e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает дневные покупки клиента за период
+     * @param customerID клиента
+     * @param startTime с какого времени (0 - без ограничения)
+     * @param endTime по какое время (0 - без ограничения)
+     * @return список дневных покупок клиента
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<DailyCustomerSales> getCustomerSales(long customerID, long startTime, long endTime)
+            throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        Validator.nonNegativeInteger("startTime", startTime);
+        Validator.nonNegativeInteger("endTime", endTime);
+
+        String query = "SELECT a FROM DailyCustomerSales a WHERE a.customerID=:customerID " +
+                "AND a.epochDay BETWEEN :startDay AND :endDay ORDER BY a.epochDay";
+        try {
+            return entityManager.createQuery(query, DailyCustomerSales.class)
+                    .setParameter("customerID", customerID)
+                    .setParameter("startDay", startDay(startTime))
+                    .setParameter("endDay", endDay(endTime))
+                    .getResultList();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Query failed", e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает итоги продаж по дням за период
+     * @param startTime с какого времени (0 - без ограничения)
+     * @param endTime по какое время (0 - без ограничения)
+     * @return список итогов продаж по дням
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<DailySales> getDailySales(long startTime, long endTime) throws HermesException {
+        Validator.nonNegativeInteger("startTime", startTime);
+        Validator.nonNegativeInteger("endTime", endTime);
+
+        // Количество и выручку берем из агрегатов по товарам (включая продажи без заказа),
+        // а количество заказов из агрегатов по клиентам (по товарам заказ учтен в каждой позиции)
+        String salesQuery = "SELECT NEW com.axiom.hermes.model.analytics.DailySales(" +
+                "a.epochDay, SUM(a.quantity), SUM(a.revenue)) FROM DailyProductSales a " +
+                "WHERE a.epochDay BETWEEN :startDay AND :endDay GROUP BY a.epochDay ORDER BY a.epochDay";
+        String ordersQuery = "SELECT a.epochDay, SUM(a.orderCount) FROM DailyCustomerSales a " +
+                "WHERE a.epochDay BETWEEN :startDay AND :endDay GROUP BY a.epochDay";
+
+        List<DailySales> dailySales;
+        List<Object[]> dailyOrders;
+        try {
+            dailySales = entityManager.createQuery(salesQuery, DailySales.class)
+                    .setParameter("startDay", startDay(startTime))
+                    .setParameter("endDay", endDay(endTime))
+                    .getResultList();
+            dailyOrders = entityManager.createQuery(ordersQuery, Object[].class)
+                    .setParameter("startDay", startDay(startTime))
+                    .setParameter("endDay", endDay(endTime))
+                    .getResultList();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Query failed", e.getMessage());
+        }
+
+        Map<Long, Long> ordersByDay = new HashMap<>();
+        for (Object[] row : dailyOrders) {
+            ordersByDay.put(Validator.asLong(row[0]), Validator.asLong(row[1]));
+        }
+        for (DailySales day : dailySales) {
+            day.setOrderCount(ordersByDay.getOrDefault(day.getEpochDay(), 0L));
+        }
+        return dailySales;
+    }
+
+    /**
+     * Возвращает продажи (OUT_SALE) за период, сгруппированные по товару и минуте
+     * (используется для первичного наполнения рейтинга самых продаваемых товаров)
+     * @param startTime с какого времени
+     * @param endTime до какого времени (не включительно)
+     * @return строки: productID, номер минуты с 1970-01-01, количество
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public List<Object[]> getMinuteSales(long startTime, long endTime) throws HermesException {
+        String sqlQuery = "SELECT productID, timestamp / 60000 AS minute, SUM(quantity) " +
+                "FROM StockTransaction " +
+                "WHERE operationCode=" + OUT_SALE + " AND timestamp >= :startTime AND timestamp < :endTime " +
+                "GROUP BY productID, timestamp / 60000";
+        try {
+            return entityManager.createNativeQuery(sqlQuery)
+                    .setParameter("startTime", startTime)
+                    .setParameter("endTime", endTime)
+                    .getResultList();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Query failed", e.getMessage());
+        }
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Переводит временную метку в номер дня (UTC)
+     * @param timestamp временная метка в миллисекундах
+     * @return номер дня с 1970-01-01
+     */
+    public static long toEpochDay(long timestamp) {
+        return Math.floorDiv(timestamp, MILLIS_PER_DAY);
+    }
+
+    private static long startDay(long startTime) {
+        return startTime > 0 ? toEpochDay(startTime) : 0;
+    }
+
+    private static long endDay(long endTime) {
+        return endTime > 0 ? toEpochDay(endTime) : Long.MAX_VALUE;
+    }
+
+    /**
+     * Атомарно добавляет значения к дневному агрегату товарной позиции (создает строку если её нет)
+     */
+    private void upsertProductSales(long epochDay, long productID, long quantity, double revenue, long orders) {
+        String sqlQuery = "INSERT INTO DailyProductSales (epochDay, productID, quantity, revenue, orderCount) " +
+                "VALUES (:epochDay, :productID, :quantity, :revenue, :orderCount) " +
+                "ON CONFLICT (epochDay, productID) DO UPDATE SET " +
+                "quantity = DailyProductSales.quantity + EXCLUDED.quantity, " +
+                "revenue = DailyProductSales.revenue + EXCLUDED.revenue, " +
+                "orderCount = DailyProductSales.orderCount + EXCLUDED.orderCount";
+        entityManager.createNativeQuery(sqlQuery)
+                .setParameter("epochDay", epochDay)
+                .setParameter("productID", productID)
+                .setParameter("quantity", quantity)
+                .setParameter("revenue", revenue)
+                .setParameter("orderCount", orders)
+                .executeUpdate();
+    }
+
+    /**
+     * Атомарно добавляет значения к дневному агрегату клиента (создает строку если её нет)
+     */
+    private void upsertCustomerSales(long epochDay, long customerID, long quantity, double revenue, long orders) {
+        String sqlQuery = "INSERT INTO DailyCustomerSales (epochDay, customerID, quantity, revenue, orderCount) " +
+                "VALUES (:epochDay, :customerID, :quantity, :revenue, :orderCount) " +
+                "ON CONFLICT (epochDay, customerID) DO UPDATE SET " +
+                "quantity = DailyCustomerSales.quantity + EXCLUDED.quantity, " +
+                "revenue = DailyCustomerSales.revenue + EXCLUDED.revenue, " +
+                "orderCount = DailyCustomerSales.orderCount + EXCLUDED.orderCount";
+        entityManager.createNativeQuery(sqlQuery)
+                .setParameter("epochDay", epochDay)
+                .setParameter("customerID", customerID)
+                .setParameter("quantity", quantity)
+                .setParameter("revenue", revenue)
+                .setParameter("orderCount", orders)
+                .executeUpdate();
+    }
+
+}
@@ -0,0 +1,194 @@
+package com.axiom.hermes.model.analytics;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.analytics.entities.CustomerSegment;
+import com.axiom.hermes.model.analytics.entities.JobWatermark;
+import com.axiom.hermes.model.customers.entities.SalesOrder;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceException;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+import javax.transaction.Transactional;
+import java.util.List;
+import java.util.Set;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+import static com.axiom.hermes.model.analytics.entities.CustomerSegment.*;
+
+/**
+ * RFM сегментация клиентов. Пересчет инкрементальный: учитываются только подтвержденные заказы,
+ * созданные после отметки прошлого пересчета. Заказ учитывается, когда с его создания прошло
+ * settle-hours (к этому времени статус заказа уже известен), и больше не пересматривается.
+ * Агрегация заказов и расстановка баллов выполняются в базе данных, без выгрузки строк.
+ */
+@ApplicationScoped
+public class CustomerSegments {
+
+    public static final String JOB_NAME = "customer-segments";
+    public static final int DEFAULT_LIMIT = 50;              // Размер страницы по умолчанию
+    public static final int MAX_LIMIT = 500;                 // Максимальный размер страницы
+
+    private static final Set<String> SEGMENTS = Set.of(CHAMPIONS, LOYAL, NEW, AT_RISK, LOST, REGULAR);
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    @ConfigProperty(name = "hermes.segments.settle-hours", defaultValue = "24")
+    long settleHours;
+
+    @Inject EntityManager entityManager;
+    @Inject TransactionManager transactionManager;
+
+    /**
+     * Пересчитать сегменты по заказам, созданным после прошлого пересчета
+     * @return итоги пересчета
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public SegmentationRun refresh() throws HermesException {
+        long now = System.currentTimeMillis();
+        try {
+            JobWatermark watermark = lockWatermark();
+            long toTime = now - settleHours * MILLIS_PER_HOUR;
+            SegmentationRun run = new SegmentationRun(watermark.getWatermark(), toTime);
+            if (toTime <= watermark.getWatermark()) return run;
+
+            run.setOrderCount(countOrders(run.getFromTime(), toTime));
+            if (run.getOrderCount() > 0) {
+                run.setCustomerCount(accumulate(run.getFromTime(), toTime, now));
+                // Баллы относительные - меняются только если изменились показатели хотя бы одного клиента
+                run.setRescoredCount(rescore());
+            }
+            watermark.setWatermark(toTime);
+            watermark.setTimestamp(now);
+            return run;
+        } catch (PersistenceException e) {
+            try {
+                transactionManager.setRollbackOnly();
+            } catch (IllegalStateException | SystemException ex) {
+                ex.printStackTrace();
+            }
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Segmentation failed", e.getMessage());
+        }
+    }
+
+    /**
+     * Получить RFM сегмент клиента
+     * @param customerID клиента
+     * @return сегмент клиента
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public CustomerSegment getSegment(long customerID) throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        CustomerSegment segment = entityManager.find(CustomerSegment.class, customerID);
+        if (segment == null) {
+            throw new HermesException(NOT_FOUND, "Customer segment not found",
+                    "Segment of customerID=" + customerID + " is not calculated yet.");
+        }
+        return segment;
+    }
+
+    /**
+     * Получить клиентов сегмента по убыванию суммы покупок
+     * @param segment сегмент
+     * @param offset сколько клиентов пропустить
+     * @param limit размер страницы (0 - по умолчанию)
+     * @return страница сегментов клиентов
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<CustomerSegment> getSegmentCustomers(String segment, int offset, int limit) throws HermesException {
+        if (segment == null || !SEGMENTS.contains(segment)) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "Segment '" + segment + "' is not supported, use one of " + SEGMENTS + ".");
+        }
+        Validator.nonNegativeInteger("offset", offset);
+        Validator.nonNegativeInteger("limit", limit);
+        String query = "SELECT a FROM CustomerSegment a WHERE a.segment=:segment " +
+                "ORDER BY a.monetary DESC, a.customerID";
+        return entityManager.createQuery(query, CustomerSegment.class)
+                .setParameter("segment", segment)
+                .setFirstResult(offset)
+                .setMaxResults(limit == 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT))
+                .getResultList();
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Блокирует отметку пересчета (создает при первом запуске), чтобы пересчеты не шли параллельно
+     */
+    private JobWatermark lockWatermark() {
+        entityManager.createNativeQuery("INSERT INTO JobWatermark (jobName, watermark, timestamp) " +
+                "VALUES (:jobName, 0, 0) ON CONFLICT (jobName) DO NOTHING")
+                .setParameter("jobName", JOB_NAME)
+                .executeUpdate();
+        return entityManager.find(JobWatermark.class, JOB_NAME, LockModeType.PESSIMISTIC_WRITE);
+    }
+
+    private long countOrders(long fromTime, long toTime) {
+        String query = "SELECT COUNT(a.orderID) FROM SalesOrder a " +
+                "WHERE a.orderTime > :fromTime AND a.orderTime <= :toTime AND a.status >= :status";
+        return entityManager.createQuery(query, Long.class)
+                .setParameter("fromTime", fromTime)
+                .setParameter("toTime", toTime)
+                .setParameter("status", SalesOrder.STATUS_CONFIRMED)
+                .getSingleResult();
+    }
+
+    /**
+     * Добавляет новые заказы к накопленным показателям клиентов одним проходом по заказам периода
+     * @return количество клиентов с новыми заказами
+     */
+    private int accumulate(long fromTime, long toTime, long now) {
+        String sqlQuery = "INSERT INTO CustomerSegment (customerID, lastOrderTime, orderCount, monetary, " +
+                "recencyScore, frequencyScore, monetaryScore, segment, timestamp) " +
+                "SELECT o.customerID, MAX(o.orderTime), COUNT(DISTINCT o.orderID), " +
+                "COALESCE(SUM(i.quantity * i.unitPrice - i.discount), 0), 0, 0, 0, '" + REGULAR + "', :now " +
+                "FROM SalesOrder o LEFT JOIN SalesOrderItem i ON i.orderID = o.orderID " +
+                "WHERE o.orderTime > :fromTime AND o.orderTime <= :toTime AND o.status >= :status " +
+                "GROUP BY o.customerID " +
+                "ON CONFLICT (customerID) DO UPDATE SET " +
+                "lastOrderTime = GREATEST(CustomerSegment.lastOrderTime, EXCLUDED.lastOrderTime), " +
+                "orderCount = CustomerSegment.orderCount + EXCLUDED.orderCount, " +
+                "monetary = CustomerSegment.monetary + EXCLUDED.monetary, " +
+                "timestamp = EXCLUDED.timestamp";
+        return entityManager.createNativeQuery(sqlQuery)
+                .setParameter("fromTime", fromTime)
+                .setParameter("toTime", toTime)
+                .setParameter("status", SalesOrder.STATUS_CONFIRMED)
+                .setParameter("now", now)
+                .executeUpdate();
+    }
+
+    /**
+     * Расставляет баллы 1-5 по квинтилям показателей (равные показатели получают равный балл)
+     * и сегменты; перезаписываются только строки, у которых изменились баллы
+     * @return количество клиентов с измененными баллами
+     */
+    private int rescore() {
+        String sqlQuery = "UPDATE CustomerSegment s SET " +
+                "recencyScore = q.rs, frequencyScore = q.fs, monetaryScore = q.ms, segment = CASE " +
+                "WHEN q.rs >= 4 AND q.fs >= 4 AND q.ms >= 4 THEN '" + CHAMPIONS + "' " +
+                "WHEN q.rs <= 2 AND q.fs >= 4 THEN '" + AT_RISK + "' " +
+                "WHEN q.fs >= 4 THEN '" + LOYAL + "' " +
+                "WHEN q.rs >= 4 AND q.fs <= 2 THEN '" + NEW + "' " +
+                "WHEN q.rs <= 1 THEN '" + LOST + "' " +
+                "ELSE '" + REGULAR + "' END " +
+                "FROM (SELECT customerID, " +
+                "CAST(CEIL(CUME_DIST() OVER (ORDER BY lastOrderTime) * 5) AS INTEGER) AS rs, " +
+                "CAST(CEIL(CUME_DIST() OVER (ORDER BY orderCount) * 5) AS INTEGER) AS fs, " +
+                "CAST(CEIL(CUME_DIST() OVER (ORDER BY monetary) * 5) AS INTEGER) AS ms " +
+                "FROM CustomerSegment) q " +
+                "WHERE s.customerID = q.customerID AND " +
+                "(s.recencyScore <> q.rs OR s.frequencyScore <> q.fs OR s.monetaryScore <> q.ms)";
+        return entityManager.createNativeQuery(sqlQuery).executeUpdate();
+    }
+
+}
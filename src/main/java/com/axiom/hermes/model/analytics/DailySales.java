@@ -0,0 +1,51 @@
+package com.axiom.hermes.model.analytics;
+
+/**
+ * Итоги продаж за день по всем товарным позициям и клиентам
+ */
+public class DailySales {
+    private long epochDay;                   // День (количество дней с 1970-01-01 UTC)
+    private long quantity;                   // Продано товара за день (за вычетом возвратов)
+    private double revenue;                  // Выручка за день (за вычетом возвратов)
+    private long orderCount;                 // Подтверждено заказов за день
+
+    public DailySales() {}
+
+    public DailySales(long epochDay, long quantity, double revenue) {
+        this.epochDay = epochDay;
+        this.quantity = quantity;
+        this.revenue = revenue;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public void setEpochDay(long epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+}
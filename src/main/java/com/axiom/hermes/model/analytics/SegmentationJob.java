@@ -0,0 +1,60 @@
+package com.axiom.hermes.model.analytics;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static com.axiom.hermes.model.analytics.Analytics.MILLIS_PER_DAY;
+
+/**
+ * Ночной пересчет RFM сегментов клиентов: раз в сутки в заданный час (UTC)
+ */
+@ApplicationScoped
+public class SegmentationJob {
+
+    private static final Logger LOG = Logger.getLogger(SegmentationJob.class);
+    private static final long MILLIS_PER_HOUR = 60 * 60 * 1000;
+
+    @ConfigProperty(name = "hermes.segments.run-hour", defaultValue = "3")
+    int runHour;
+
+    @Inject CustomerSegments customerSegments;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "customer-segments");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    void onStart(@Observes StartupEvent event) {
+        // Отрицательный час - пересчет только по запросу
+        if (runHour < 0) return;
+        long now = System.currentTimeMillis();
+        long delay = Math.floorMod(runHour * MILLIS_PER_HOUR - now, MILLIS_PER_DAY);
+        scheduler.scheduleAtFixedRate(this::run, delay, MILLIS_PER_DAY, TimeUnit.MILLISECONDS);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        scheduler.shutdownNow();
+    }
+
+    private void run() {
+        // Ошибка не должна отменять следующие запуски
+        try {
+            SegmentationRun run = customerSegments.refresh();
+            LOG.infof("Customer segments refreshed: %d orders, %d customers, %d rescored",
+                    run.getOrderCount(), run.getCustomerCount(), run.getRescoredCount());
+        } catch (Exception e) {
+            LOG.warn("Customer segments refresh failed", e);
+        }
+    }
+
+}
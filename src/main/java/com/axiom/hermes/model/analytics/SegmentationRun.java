@@ -0,0 +1,59 @@
+package com.axiom.hermes.model.analytics;
+
+/**
+ * Итоги пересчета RFM сегментов клиентов
+ */
+public class SegmentationRun {
+    private long fromTime;                   // Учтены заказы созданные после этого момента
+    private long toTime;                     // и не позже этого момента
+    private long orderCount;                 // Учтено новых заказов
+    private long customerCount;              // Обновлено показателей клиентов
+    private long rescoredCount;              // Клиентов, у которых изменились баллы
+
+    public SegmentationRun() {}
+
+    public SegmentationRun(long fromTime, long toTime) {
+        this.fromTime = fromTime;
+        this.toTime = toTime;
+    }
+
+    public long getFromTime() {
+        return fromTime;
+    }
+
+    public void setFromTime(long fromTime) {
+        this.fromTime = fromTime;
+    }
+
+    public long getToTime() {
+        return toTime;
+    }
+
+    public void setToTime(long toTime) {
+        this.toTime = toTime;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public long getCustomerCount() {
+        return customerCount;
+    }
+
+    public void setCustomerCount(long customerCount) {
+        this.customerCount = customerCount;
+    }
+
+    public long getRescoredCount() {
+        return rescoredCount;
+    }
+
+    public void setRescoredCount(long rescoredCount) {
+        this.rescoredCount = rescoredCount;
+    }
+}
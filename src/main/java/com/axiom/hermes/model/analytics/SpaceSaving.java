@@ -0,0 +1,115 @@
+package com.axiom.hermes.model.analytics;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Скетч Space-Saving для приближенного поиска самых частых элементов потока (heavy hitters)
+ * с ограниченной памятью. Хранит не более capacity счётчиков: если элемента нет и мест нет,
+ * он вытесняет элемент с минимальным счётчиком и наследует его значение как погрешность.
+ * Любой элемент с частотой больше total/capacity гарантированно присутствует в скетче.
+ * Не потокобезопасен.
+ */
+public class SpaceSaving {
+
+    /**
+     * Счётчик элемента: count - оценка сверху, count - error - оценка снизу
+     */
+    public static class Counter {
+        private final long item;
+        private long count;
+        private long error;
+
+        Counter(long item, long count, long error) {
+            this.item = item;
+            this.count = count;
+            this.error = error;
+        }
+
+        public long getItem() {
+            return item;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getError() {
+            return error;
+        }
+    }
+
+    private final int capacity;
+    private final Map<Long, Counter> counters;
+
+    public SpaceSaving(int capacity) {
+        if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    /**
+     * Учитывает элемент с указанным весом
+     * @param item элемент
+     * @param weight вес (количество)
+     */
+    public void offer(long item, long weight) {
+        if (weight <= 0) return;
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            counter.count += weight;
+            return;
+        }
+        if (counters.size() < capacity) {
+            counters.put(item, new Counter(item, weight, 0));
+            return;
+        }
+        // Вытесняем элемент с минимальным счётчиком
+        Counter min = null;
+        for (Counter c : counters.values()) {
+            if (min == null || c.count < min.count) min = c;
+        }
+        counters.remove(min.item);
+        counters.put(item, new Counter(item, min.count + weight, min.count));
+    }
+
+    /**
+     * Добавляет в этот скетч счётчики другого скетча (используется для объединения окон).
+     * Результат может содержать больше capacity счётчиков.
+     * @param other другой скетч
+     */
+    public void addAll(SpaceSaving other) {
+        for (Counter c : other.counters.values()) {
+            Counter counter = counters.get(c.item);
+            if (counter == null) {
+                counters.put(c.item, new Counter(c.item, c.count, c.error));
+            } else {
+                counter.count += c.count;
+                counter.error += c.error;
+            }
+        }
+    }
+
+    /**
+     * Возвращает top-N элементов по убыванию счётчика
+     * @param limit количество элементов
+     * @return список счётчиков
+     */
+    public List<Counter> top(int limit) {
+        List<Counter> result = new ArrayList<>(counters.values());
+        result.sort((a, b) -> Long.compare(b.count, a.count));
+        if (result.size() > limit) return new ArrayList<>(result.subList(0, limit));
+        return result;
+    }
+
+    public boolean isEmpty() {
+        return counters.isEmpty();
+    }
+
+    public void clear() {
+        counters.clear();
+    }
+
+}
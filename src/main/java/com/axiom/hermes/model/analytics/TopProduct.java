@@ -0,0 +1,42 @@
+package com.axiom.hermes.model.analytics;
+
+/**
+ * Позиция рейтинга самых продаваемых товаров (приближенная оценка)
+ */
+public class TopProduct {
+    private long productID;                  // Код товара
+    private long quantity;                   // Продано товара за окно (оценка сверху)
+    private long error;                      // Максимальная погрешность оценки
+
+    public TopProduct() {}
+
+    public TopProduct(long productID, long quantity, long error) {
+        this.productID = productID;
+        this.quantity = quantity;
+        this.error = error;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    public void setProductID(long productID) {
+        this.productID = productID;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+
+    public long getError() {
+        return error;
+    }
+
+    public void setError(long error) {
+        this.error = error;
+    }
+}
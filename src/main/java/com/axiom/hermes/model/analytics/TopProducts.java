@@ -0,0 +1,193 @@
+package com.axiom.hermes.model.analytics;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.validation.Validator;
+import io.quarkus.runtime.StartupEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.axiom.hermes.common.exceptions.HermesException.BAD_REQUEST;
+
+/**
+ * Рейтинг самых продаваемых товаров в скользящих окнах (1h, 24h, 7d).
+ * Хранится в памяти: каждое окно - кольцо временных корзин со скетчем Space-Saving в каждой.
+ * Скетчи пополняются зафиксированными проводками продаж (OUT_SALE), а рейтинг окна
+ * пересчитывается объединением корзин не чаще одного раза в REFRESH_MILLIS.
+ */
+@ApplicationScoped
+public class TopProducts {
+
+    public static final int SKETCH_CAPACITY = 256;         // Счётчиков в скетче одной корзины
+    public static final int MAX_LIMIT = 100;               // Максимальный размер рейтинга
+    public static final long REFRESH_MILLIS = 1000;        // Как часто пересчитывать рейтинг окна
+
+    private static final long MINUTE = 60 * 1000;
+    private static final long HOUR = 60 * MINUTE;
+
+    @Inject Analytics analytics;
+
+    private final Window hourWindow = new Window("1h", MINUTE, 60);
+    private final Window dayWindow = new Window("24h", HOUR, 24);
+    private final Window weekWindow = new Window("7d", HOUR, 24 * 7);
+    private final Window[] windows = { hourWindow, dayWindow, weekWindow };
+
+    // Продажи до этого момента берутся из журнала при первичном наполнении, после - из проводок
+    private volatile long startedAt;
+    private volatile boolean warmedUp = false;
+
+    void onStart(@Observes StartupEvent event) {
+        // Граница фиксируется при запуске, а не при создании бина первой проводкой
+        startedAt = System.currentTimeMillis();
+    }
+
+    /**
+     * Учитывает зафиксированную продажу товара. Продажи с временем проводки до запуска
+     * уже учтены первичным наполнением из журнала и пропускаются.
+     * @param productID код товара
+     * @param quantity количество
+     * @param timestamp время проводки
+     */
+    public void registerSale(long productID, long quantity, long timestamp) {
+        if (timestamp < startedAt) return;
+        offer(productID, quantity, timestamp);
+    }
+
+    /**
+     * Возвращает приближенный рейтинг самых продаваемых товаров в окне
+     * @param window окно: 1h, 24h или 7d
+     * @param limit количество позиций рейтинга
+     * @return список позиций рейтинга по убыванию продаж
+     * @throws HermesException информация об ошибке
+     */
+    public List<TopProduct> getTopProducts(String window, int limit) throws HermesException {
+        Validator.nonNegativeInteger("limit", limit);
+        if (limit == 0 || limit > MAX_LIMIT) limit = MAX_LIMIT;
+        if (!warmedUp) warmUp();
+        List<TopProduct> top = getWindow(window).getTop(System.currentTimeMillis());
+        return top.size() > limit ? top.subList(0, limit) : top;
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private void offer(long productID, long quantity, long timestamp) {
+        for (Window window : windows) window.offer(productID, quantity, timestamp);
+    }
+
+    private Window getWindow(String name) throws HermesException {
+        if (name == null || name.isEmpty()) return dayWindow;
+        for (Window window : windows) {
+            if (window.name.equals(name)) return window;
+        }
+        throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                "Window '" + name + "' is not supported, use 1h, 24h or 7d.");
+    }
+
+    /**
+     * Первичное наполнение скетчей продажами за последние 7 дней из журнала (один раз после запуска)
+     */
+    private synchronized void warmUp() throws HermesException {
+        if (warmedUp) return;
+        long since = startedAt - weekWindow.length();
+        for (Object[] row : analytics.getMinuteSales(since, startedAt)) {
+            long productID = Validator.asLong(row[0]);
+            long minute = Validator.asLong(row[1]);
+            long quantity = Validator.asLong(row[2]);
+            offer(productID, quantity, minute * MINUTE);
+        }
+        warmedUp = true;
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Скользящее окно из кольца временных корзин
+     */
+    private static class Window {
+        private final String name;
+        private final long bucketMillis;
+        private final SpaceSaving[] buckets;
+        private final long[] bucketIndexes;
+        private final AtomicLong version = new AtomicLong();
+        private volatile Snapshot snapshot = new Snapshot(-1, -1, 0, Collections.emptyList());
+
+        Window(String name, long bucketMillis, int size) {
+            this.name = name;
+            this.bucketMillis = bucketMillis;
+            this.buckets = new SpaceSaving[size];
+            this.bucketIndexes = new long[size];
+            for (int i = 0; i < size; i++) {
+                buckets[i] = new SpaceSaving(SKETCH_CAPACITY);
+                bucketIndexes[i] = -1;
+            }
+        }
+
+        long length() {
+            return bucketMillis * buckets.length;
+        }
+
+        synchronized void offer(long productID, long quantity, long timestamp) {
+            long index = timestamp / bucketMillis;
+            int slot = (int) (index % buckets.length);
+            if (bucketIndexes[slot] != index) {
+                // Продажа старше окна - не учитываем
+                if (bucketIndexes[slot] > index) return;
+                buckets[slot].clear();
+                bucketIndexes[slot] = index;
+            }
+            buckets[slot].offer(productID, quantity);
+            version.incrementAndGet();
+        }
+
+        List<TopProduct> getTop(long now) {
+            long currentIndex = now / bucketMillis;
+            Snapshot current = snapshot;
+            if (current.bucketIndex == currentIndex) {
+                boolean unchanged = current.version == version.get();
+                if (unchanged || now - current.computedAt < REFRESH_MILLIS) return current.top;
+            }
+            return refresh(now, currentIndex);
+        }
+
+        private synchronized List<TopProduct> refresh(long now, long currentIndex) {
+            long currentVersion = version.get();
+            SpaceSaving merged = new SpaceSaving(SKETCH_CAPACITY);
+            long oldestIndex = currentIndex - buckets.length + 1;
+            for (int i = 0; i < buckets.length; i++) {
+                if (bucketIndexes[i] >= oldestIndex && bucketIndexes[i] <= currentIndex) {
+                    merged.addAll(buckets[i]);
+                }
+            }
+            List<TopProduct> top = new ArrayList<>(MAX_LIMIT);
+            for (SpaceSaving.Counter counter : merged.top(MAX_LIMIT)) {
+                top.add(new TopProduct(counter.getItem(), counter.getCount(), counter.getError()));
+            }
+            List<TopProduct> result = Collections.unmodifiableList(top);
+            snapshot = new Snapshot(currentIndex, currentVersion, now, result);
+            return result;
+        }
+    }
+
+    /**
+     * Рассчитанный рейтинг окна
+     */
+    private static class Snapshot {
+        final long bucketIndex;
+        final long version;
+        final long computedAt;
+        final List<TopProduct> top;
+
+        Snapshot(long bucketIndex, long version, long computedAt, List<TopProduct> top) {
+            this.bucketIndex = bucketIndex;
+            this.version = version;
+            this.computedAt = computedAt;
+            this.top = top;
+        }
+    }
+
+}
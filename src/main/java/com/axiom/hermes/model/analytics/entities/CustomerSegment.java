@@ -0,0 +1,108 @@
+package com.axiom.hermes.model.analytics.entities;
+
+import javax.persistence.*;
+
+/**
+ * RFM сегмент клиента: давность (recency), частота (frequency) и сумма (monetary) покупок.
+ * Накопленные показатели обновляются пакетным пересчетом только по новым заказам,
+ * баллы 1-5 - квинтили показателя среди всех клиентов (5 - лучший).
+ */
+@Entity
+@Table(indexes = {
+    @Index(columnList = "segment")
+})
+public class CustomerSegment {
+    //-------------------------------------------------------------------------------------------
+    public static final String CHAMPIONS = "champions";         // Покупают часто, много и недавно
+    public static final String LOYAL = "loyal";                 // Покупают часто
+    public static final String NEW = "new";                     // Недавно сделали первые заказы
+    public static final String AT_RISK = "at_risk";             // Покупали часто, но давно
+    public static final String LOST = "lost";                   // Давно не покупают
+    public static final String REGULAR = "regular";             // Остальные
+    //-------------------------------------------------------------------------------------------
+
+    @Id
+    private long customerID;                 // Код клиента
+    private long lastOrderTime;              // Время последнего учтенного заказа
+    private long orderCount;                 // Учтено подтвержденных заказов
+    private double monetary;                 // Сумма учтенных заказов (за вычетом скидок)
+    private int recencyScore;                // Балл давности 1-5
+    private int frequencyScore;              // Балл частоты 1-5
+    private int monetaryScore;               // Балл суммы 1-5
+    private String segment;                  // Сегмент клиента
+    private long timestamp;                  // Время последнего пересчета показателей
+
+    public CustomerSegment() {}
+
+    public long getCustomerID() {
+        return customerID;
+    }
+
+    public void setCustomerID(long customerID) {
+        this.customerID = customerID;
+    }
+
+    public long getLastOrderTime() {
+        return lastOrderTime;
+    }
+
+    public void setLastOrderTime(long lastOrderTime) {
+        this.lastOrderTime = lastOrderTime;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public double getMonetary() {
+        return monetary;
+    }
+
+    public void setMonetary(double monetary) {
+        this.monetary = monetary;
+    }
+
+    public int getRecencyScore() {
+        return recencyScore;
+    }
+
+    public void setRecencyScore(int recencyScore) {
+        this.recencyScore = recencyScore;
+    }
+
+    public int getFrequencyScore() {
+        return frequencyScore;
+    }
+
+    public void setFrequencyScore(int frequencyScore) {
+        this.frequencyScore = frequencyScore;
+    }
+
+    public int getMonetaryScore() {
+        return monetaryScore;
+    }
+
+    public void setMonetaryScore(int monetaryScore) {
+        this.monetaryScore = monetaryScore;
+    }
+
+    public String getSegment() {
+        return segment;
+    }
+
+    public void setSegment(String segment) {
+        this.segment = segment;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
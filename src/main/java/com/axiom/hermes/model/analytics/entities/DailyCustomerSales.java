@@ -0,0 +1,64 @@
+package com.axiom.hermes.model.analytics.entities;
+
+import javax.persistence.*;
+
+/**
+ * Дневные продажи клиента (агрегат, обновляется инкрементально)
+ */
+@Entity
+@IdClass(DailyCustomerSalesKey.class)
+@Table(indexes = {
+    @Index(columnList = "customerID"),
+    @Index(name = "DailyCustomerSalesIndex", columnList = "customerID, epochDay")
+})
+public class DailyCustomerSales {
+    @Id
+    private long epochDay;                   // День (количество дней с 1970-01-01 UTC)
+    @Id
+    private long customerID;                 // Код клиента
+    private long quantity;                   // Продано товара за день (за вычетом возвратов)
+    private double revenue;                  // Выручка за день (за вычетом возвратов)
+    private long orderCount;                 // Подтверждено заказов клиента за день
+
+    public DailyCustomerSales() {}
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public void setEpochDay(long epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    public long getProductID() {
+        return customerID;
+    }
+
+    public void setProductID(long customerID) {
+        this.customerID = customerID;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+}
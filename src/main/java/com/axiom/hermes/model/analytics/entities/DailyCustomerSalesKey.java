@@ -0,0 +1,40 @@
+package com.axiom.hermes.model.analytics.entities;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Составной ключ дневных продаж клиента
+ */
+public class DailyCustomerSalesKey implements Serializable {
+    private long epochDay;                   // День (количество дней с 1970-01-01 UTC)
+    private long customerID;                 // Код клиента
+
+    public DailyCustomerSalesKey() {}
+
+    public DailyCustomerSalesKey(long epochDay, long customerID) {
+        this.epochDay = epochDay;
+        this.customerID = customerID;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public long getProductID() {
+        return customerID;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DailyCustomerSalesKey)) return false;
+        DailyCustomerSalesKey that = (DailyCustomerSalesKey) o;
+        return epochDay == that.epochDay && customerID == that.customerID;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(epochDay, customerID);
+    }
+}
@@ -0,0 +1,64 @@
+package com.axiom.hermes.model.analytics.entities;
+
+import javax.persistence.*;
+
+/**
+ * Дневные продажи по товарной позиции (агрегат, обновляется инкрементально)
+ */
+@Entity
+@IdClass(DailyProductSalesKey.class)
+@Table(indexes = {
+    @Index(columnList = "productID"),
+    @Index(name = "DailyProductSalesIndex", columnList = "productID, epochDay")
+})
+public class DailyProductSales {
+    @Id
+    private long epochDay;                   // День (количество дней с 1970-01-01 UTC)
+    @Id
+    private long productID;                  // Код товара
+    private long quantity;                   // Продано товара за день (за вычетом возвратов)
+    private double revenue;                  // Выручка за день (за вычетом возвратов)
+    private long orderCount;                 // Подтверждено заказов с этим товаром за день
+
+    public DailyProductSales() {}
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public void setEpochDay(long epochDay) {
+        this.epochDay = epochDay;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    public void setProductID(long productID) {
+        this.productID = productID;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+
+    public double getRevenue() {
+        return revenue;
+    }
+
+    public void setRevenue(double revenue) {
+        this.revenue = revenue;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+}
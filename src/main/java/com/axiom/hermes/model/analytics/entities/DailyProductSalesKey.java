@@ -0,0 +1,40 @@
+package com.axiom.hermes.model.analytics.entities;
+
+import java.io.Serializable;
+import java.util.Objects;
+
+/**
+ * Составной ключ дневных продаж по товарной позиции
+ */
+public class DailyProductSalesKey implements Serializable {
+    private long epochDay;                   // День (количество дней с 1970-01-01 UTC)
+    private long productID;                  // Код товара
+
+    public DailyProductSalesKey() {}
+
+    public DailyProductSalesKey(long epochDay, long productID) {
+        this.epochDay = epochDay;
+        this.productID = productID;
+    }
+
+    public long getEpochDay() {
+        return epochDay;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (!(o instanceof DailyProductSalesKey)) return false;
+        DailyProductSalesKey that = (DailyProductSalesKey) o;
+        return epochDay == that.epochDay && productID == that.productID;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(epochDay, productID);
+    }
+}
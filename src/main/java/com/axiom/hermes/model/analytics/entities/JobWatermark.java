@@ -0,0 +1,44 @@
+package com.axiom.hermes.model.analytics.entities;
+
+import javax.persistence.*;
+
+/**
+ * Отметка пакетного пересчета: до какого момента данные уже обработаны
+ */
+@Entity
+public class JobWatermark {
+    @Id
+    private String jobName;                  // Имя пересчета
+    private long watermark;                  // Данные до этого момента (включительно) обработаны
+    private long timestamp;                  // Время последнего запуска
+
+    public JobWatermark() {}
+
+    public JobWatermark(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public String getJobName() {
+        return jobName;
+    }
+
+    public void setJobName(String jobName) {
+        this.jobName = jobName;
+    }
+
+    public long getWatermark() {
+        return watermark;
+    }
+
+    public void setWatermark(long watermark) {
+        this.watermark = watermark;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
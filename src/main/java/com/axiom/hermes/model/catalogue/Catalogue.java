@@ -1,23 +1,33 @@
 package com.axiom.hermes.model.catalogue;
 
 import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.http.ResourceVersion;
+import com.axiom.hermes.common.storage.BlobStore;
+import com.axiom.hermes.common.transactions.AfterCommit;
 import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.catalogue.entities.CatalogueTombstone;
 import com.axiom.hermes.model.catalogue.entities.Collection;
 import com.axiom.hermes.model.catalogue.entities.CollectionItem;
 import com.axiom.hermes.model.catalogue.entities.Product;
 import com.axiom.hermes.model.catalogue.entities.ProductImage;
+import com.axiom.hermes.model.catalogue.entities.ProductThumbnail;
 import com.axiom.hermes.model.customers.entities.SalesOrder;
 import com.axiom.hermes.model.customers.entities.SalesOrderItem;
 import com.axiom.hermes.model.inventory.Inventory;
 
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
 import javax.persistence.NoResultException;
 import javax.transaction.SystemException;
 import javax.transaction.TransactionManager;
 import javax.transaction.Transactional;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToLongFunction;
 
 import static com.axiom.hermes.common.exceptions.HermesException.*;
 
@@ -32,6 +42,16 @@ public class Catalogue {
     @Inject TransactionManager transactionManager;
 
     @Inject Inventory inventory;
+    @Inject BlobStore blobStore;
+    @Inject CatalogueSnapshots snapshots;
+    @Inject ProductSearch search;
+    @Inject ThumbnailGenerator thumbnails;
+    @Inject ProductFacets facets;
+    @Inject PriceLists priceLists;
+    @Inject Promotions promotions;
+
+    @ConfigProperty(name = "hermes.sync.tombstone-retention-days", defaultValue = "30")
+    int tombstoneRetentionDays;
 
     public Catalogue() { }
 
@@ -93,6 +113,61 @@ public class Catalogue {
         return product;
     }
 
+    /**
+     * Возвращает карточки товарных позиций по списку ID одним запросом
+     * @param productIDs список ID товарных позиций
+     * @return список найденных карточек товарных позиций
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<Product> getProducts(java.util.Collection<Long> productIDs) throws HermesException {
+        for (long productID : productIDs) Validator.nonNegativeInteger("productID", productID);
+        if (productIDs.isEmpty()) return new ArrayList<>();
+        String query = "SELECT a FROM Product a WHERE a.productID IN :productIDs";
+        try {
+            return entityManager.createQuery(query, Product.class)
+                    .setParameter("productIDs", productIDs)
+                    .getResultList();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает версию списка товарных позиций (без загрузки самих позиций)
+     * @param availableOnly только доступные для заказа позиции
+     * @return версия списка товарных позиций
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ResourceVersion getProductsVersion(boolean availableOnly) throws HermesException {
+        String query = "SELECT MAX(a.timestamp), COUNT(a) FROM Product a";
+        if (availableOnly) query += " WHERE a.available=TRUE";
+        return getListVersion(query);
+    }
+
+    /**
+     * Возвращает версию карточки товарной позиции (без загрузки самой карточки)
+     * @param productID товарной позиции
+     * @return версия карточки товарной позиции
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ResourceVersion getProductVersion(long productID) throws HermesException {
+        Validator.nonNegativeInteger("productID", productID);
+        String query = "SELECT a.timestamp FROM Product a WHERE a.productID=:productID";
+        try {
+            long timestamp = entityManager.createQuery(query, Long.class)
+                    .setParameter("productID", productID)
+                    .getSingleResult();
+            return new ResourceVersion(timestamp, Long.toHexString(timestamp));
+        } catch (NoResultException e) {
+            throw new HermesException(NOT_FOUND, "Product not found",
+                    "Requested productID=" + productID + " not found.");
+        }
+    }
+
     /**
      * Добавляет новую карточку товарной позиции
      * @param product новая карточка товарной позиации
@@ -115,6 +190,9 @@ public class Catalogue {
         try {
             entityManager.persist(product);
             inventory.createStockCard(product.getProductID());
+            snapshots.invalidateProducts();
+            search.productChanged(product);
+            facets.productChanged(product);
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -157,6 +235,10 @@ public class Catalogue {
 
         try {
             entityManager.persist(managedEntity);
+            snapshots.invalidateProducts();
+            search.productChanged(managedEntity);
+            facets.productChanged(managedEntity);
+            priceLists.productChanged(managedEntity.getProductID());
         } catch (Exception exception) {
             exception.printStackTrace();
             throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", exception.getMessage());
@@ -164,6 +246,113 @@ public class Catalogue {
         return product;
     }
 
+    /**
+     * Импортирует часть файла импорта одной транзакцией: позиции сопоставляются по артикулу,
+     * существующие обновляются (только заполненные поля), новые создаются вместе со складскими
+     * карточками, недостающие товары коллекций добавляются. Вставки и обновления уходят в базу
+     * пакетами (hibernate.jdbc.batch_size).
+     * @param rows строки файла импорта
+     * @param errors сюда добавляются сообщения о пропущенных строках
+     * @return количество созданных товарных позиций
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public int importProducts(List<ProductImportRow> rows, List<String> errors) throws HermesException {
+        Set<String> vendorCodes = new HashSet<>();
+        Set<Long> collectionIDs = new HashSet<>();
+        for (ProductImportRow row : rows) {
+            if (row.getVendorCode() != null) vendorCodes.add(row.getVendorCode());
+            if (row.getCollections() != null) collectionIDs.addAll(row.getCollections());
+        }
+
+        int created = 0;
+        long now = System.currentTimeMillis();
+        try {
+            // Существующие позиции одним запросом (при повторе артикула - позиция с меньшим ID)
+            Map<String, Product> products = new HashMap<>();
+            if (!vendorCodes.isEmpty()) {
+                String query = "SELECT a FROM Product a WHERE a.vendorCode IN :vendorCodes ORDER BY a.productID DESC";
+                for (Product product : entityManager.createQuery(query, Product.class)
+                        .setParameter("vendorCodes", vendorCodes).getResultList()) {
+                    products.put(product.getVendorCode(), product);
+                }
+            }
+            Map<Long, Collection> collections = new HashMap<>();
+            if (!collectionIDs.isEmpty()) {
+                String query = "SELECT a FROM Collection a WHERE a.collectionID IN :collectionIDs";
+                for (Collection collection : entityManager.createQuery(query, Collection.class)
+                        .setParameter("collectionIDs", collectionIDs).getResultList()) {
+                    collections.put(collection.getCollectionID(), collection);
+                }
+            }
+
+            Map<Long, List<Long>> productCollections = new HashMap<>();
+            for (ProductImportRow row : rows) {
+                Product product = products.get(row.getVendorCode());
+                String error = validateImportRow(row, product, collections);
+                if (error != null) {
+                    errors.add("line " + row.getLineNumber() + ": " + error);
+                    continue;
+                }
+                if (product == null) {
+                    product = new Product(row.getVendorCode(), row.getName(), row.getDescription(),
+                            row.getUnitPrice() != null ? row.getUnitPrice() : 0);
+                    if (row.getAvailable() != null) product.setAvailable(row.getAvailable());
+                    product.setTimestamp(now);
+                    entityManager.persist(product);
+                    inventory.createStockCard(product.getProductID());
+                    products.put(product.getVendorCode(), product);
+                    created++;
+                } else {
+                    if (row.getName() != null) product.setName(row.getName());
+                    if (row.getDescription() != null) product.setDescription(row.getDescription());
+                    if (row.getUnitPrice() != null) product.setUnitPrice(row.getUnitPrice());
+                    if (row.getAvailable() != null) product.setAvailable(row.getAvailable());
+                    product.setTimestamp(now);
+                }
+                search.productChanged(product);
+                facets.productChanged(product);
+                priceLists.productChanged(product.getProductID());
+                if (row.getCollections() != null && !row.getCollections().isEmpty()) {
+                    productCollections.computeIfAbsent(product.getProductID(), id -> new ArrayList<>())
+                            .addAll(row.getCollections());
+                }
+            }
+
+            // Добавляем товары в коллекции, в которых их ещё нет
+            if (!productCollections.isEmpty()) {
+                Set<String> existing = new HashSet<>();
+                String query = "SELECT a FROM CollectionItem a WHERE a.productID IN :productIDs";
+                for (CollectionItem item : entityManager.createQuery(query, CollectionItem.class)
+                        .setParameter("productIDs", productCollections.keySet()).getResultList()) {
+                    existing.add(item.getCollectionID() + ":" + item.getProductID());
+                }
+                for (Map.Entry<Long, List<Long>> entry : productCollections.entrySet()) {
+                    for (long collectionID : entry.getValue()) {
+                        if (!existing.add(collectionID + ":" + entry.getKey())) continue;
+                        CollectionItem item = new CollectionItem(collectionID, entry.getKey());
+                        item.setTimestamp(now);
+                        entityManager.persist(item);
+                        Collection collection = collections.get(collectionID);
+                        collection.setTimestamp(now);
+                        snapshots.invalidateCollection(collectionID);
+                    }
+                    facets.collectionItemsChanged(entry.getKey());
+                }
+                promotions.collectionItemsChanged();
+            }
+            snapshots.invalidateProducts();
+        } catch (Exception exception) {
+            try {
+                transactionManager.setRollbackOnly();
+            } catch (IllegalStateException | SystemException e) {
+                e.printStackTrace();
+            }
+            throw exception;
+        }
+        return created;
+    }
+
     /**
      * Удаляет товарную позицию если с ней не связано заказов и транзакций
      * @param productID товарной позиции
@@ -196,10 +385,24 @@ public class Catalogue {
 
         // Если нигде не используется тогда удаляем связанные данные: изображения и складские карточки
         try {
-            entityManager.createQuery("DELETE FROM ProductImage a WHERE a.productID=" + productID).executeUpdate();
+            long now = System.currentTimeMillis();
+            ProductImage productImage = entityManager.find(ProductImage.class, productID);
+            if (productImage != null) {
+                entityManager.remove(productImage);
+                removeThumbnails(productID);
+                releaseBlobs(productImage.getImageHash());
+                recordTombstone(CatalogueTombstone.PRODUCT_IMAGE, productID, now);
+            }
             entityManager.createQuery("DELETE FROM StockCard a WHERE a.productID=" + productID).executeUpdate();
-            entityManager.createQuery("DELETE FROM CollectionItem a WHERE a.productID=" + productID).executeUpdate();
+            removeCollectionItems("a.productID=" + productID, now);
+            priceLists.productRemoved(productID);
             entityManager.remove(product);
+            recordTombstone(CatalogueTombstone.PRODUCT, productID, now);
+            snapshots.invalidateProducts();
+            snapshots.invalidateAllCollections();
+            search.productRemoved(productID);
+            facets.productRemoved(productID);
+            promotions.collectionItemsChanged();
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -211,66 +414,206 @@ public class Catalogue {
     }
 
     /**
-     * Загружает изображение товарной позиции
-     * @param productImage изображение товарной позиции
+     * Назначает товарной позиции изображение, уже сохраненное в хранилище (в базе - только его хэш).
+     * Миниатюры создаются в фоне после фиксации транзакции.
+     * @param productID товарной позиции
+     * @param filename название файла
+     * @param imageHash хэш полноразмерного изображения в хранилище
+     * @return сохраненные сведения об изображении
      * @throws HermesException информация об ошибке
      */
     @Transactional
-    public void uploadImage(ProductImage productImage) throws HermesException {
-        Validator.nonNegativeInteger("productID", productImage.getProductID());
+    public ProductImage uploadImage(long productID, String filename, String imageHash) throws HermesException {
+        Validator.nonNegativeInteger("productID", productID);
 
         // Проверяем есть ли такая товарная позиция в каталоге
-        Product product = getProduct(productImage.getProductID());
+        Product product = getProduct(productID);
+        long imageSize = blobStore.size(imageHash);
+
         ProductImage managedEntity = entityManager.find(ProductImage.class, product.getProductID());
         if (managedEntity==null) {
             // Если у товарной позиции небыло изображения - добавляем
-            entityManager.persist(productImage);
+            managedEntity = new ProductImage(product.getProductID(), filename, imageHash, imageSize);
+            entityManager.persist(managedEntity);
         } else {
-            // Если у товарной позиции было изображение - обновляем
-            managedEntity.setFilename(productImage.getFilename());
-            managedEntity.setImage(productImage.getImage());
-            managedEntity.setThumbnail(productImage.getThumbnail());
+            // Если у товарной позиции было изображение - обновляем, старые миниатюры удаляем
+            String oldImageHash = managedEntity.getImageHash();
+            managedEntity.setFilename(filename);
+            managedEntity.setImageHash(imageHash);
+            managedEntity.setImageSize(imageSize);
+            managedEntity.setThumbnailStatus(ProductImage.THUMBNAILS_PENDING);
             managedEntity.setTimestamp(System.currentTimeMillis());
             entityManager.persist(managedEntity);
+            removeThumbnails(product.getProductID());
+            releaseBlobs(oldImageHash);
         }
+        thumbnails.schedule(product.getProductID(), imageHash);
+        return managedEntity;
     }
 
     /**
-     * Загружает миниатюрное изображение товарной позиции вписанное в 128x128 (до 10Kb)
-     * @param productID товарной позиации
-     * @return JPEG с миниатюрным изображением
+     * Удаляет из хранилища загруженный, но не назначенный товару файл (если на него нет ссылок)
+     * @param hash хэш файла
+     */
+    @Transactional
+    public void discardUpload(String hash) {
+        releaseBlobs(hash);
+    }
+
+    /**
+     * Сохраняет созданные в фоне миниатюры изображения товара. Если изображение было заменено
+     * или удалено пока создавались миниатюры, они отбрасываются. Если создать удалось не все
+     * размеры, уже сохраненные в хранилище миниатюры удаляются.
+     * @param productID товара
+     * @param imageHash хэш изображения, из которого созданы миниатюры
+     * @param productThumbnails созданные миниатюры
+     * @param complete созданы ли миниатюры всех размеров
      * @throws HermesException информация об ошибке
      */
     @Transactional
-    public byte[] getProductThumbnail(long productID) throws HermesException {
-        Validator.nonNegativeInteger("productID", productID);
+    public void saveThumbnails(long productID, String imageHash, List<ProductThumbnail> productThumbnails,
+                               boolean complete) throws HermesException {
+        String[] hashes = productThumbnails.stream().map(ProductThumbnail::getHash).toArray(String[]::new);
+        ProductImage productImage = entityManager.find(ProductImage.class, productID, LockModeType.PESSIMISTIC_WRITE);
+        if (productImage == null || !productImage.getImageHash().equals(imageHash)) {
+            releaseBlobs(hashes);
+            return;
+        }
         try {
-            String query = "SELECT a.thumbnail FROM ProductImage a WHERE a.productID=" + productID;
-            return entityManager.createQuery(query, byte[].class).getSingleResult();
-        } catch (NoResultException e) {
+            removeThumbnails(productID);
+            productImage.setTimestamp(System.currentTimeMillis());
+            if (!complete) {
+                releaseBlobs(hashes);
+                productImage.setThumbnailStatus(ProductImage.THUMBNAILS_FAILED);
+            } else {
+                for (ProductThumbnail productThumbnail : productThumbnails) entityManager.persist(productThumbnail);
+                productImage.setThumbnailStatus(ProductImage.THUMBNAILS_READY);
+            }
+            entityManager.persist(productImage);
+        } catch (Exception exception) {
+            try {
+                transactionManager.setRollbackOnly();
+            } catch (IllegalStateException | SystemException e) {
+                e.printStackTrace();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Возвращает изображения, миниатюры которых ещё не созданы
+     * @return список изображений
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<ProductImage> getPendingImages() throws HermesException {
+        String query = "SELECT a FROM ProductImage a WHERE a.thumbnailStatus=" + ProductImage.THUMBNAILS_PENDING;
+        return entityManager.createQuery(query, ProductImage.class).getResultList();
+    }
+
+    /**
+     * Возвращает миниатюру изображения товара наименьшего размера, не меньшего запрошенного
+     * (или наибольшую, если запрошенный размер больше всех созданных)
+     * @param productID товара
+     * @param dimension запрошенный размер (px)
+     * @return сведения о миниатюре
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ProductThumbnail getProductThumbnail(long productID, int dimension) throws HermesException {
+        Validator.nonNegativeInteger("productID", productID);
+        Validator.nonNegativeInteger("size", dimension);
+        String query = "SELECT a FROM ProductThumbnail a WHERE a.productID=:productID ORDER BY a.dimension";
+        List<ProductThumbnail> productThumbnails = entityManager.createQuery(query, ProductThumbnail.class)
+                .setParameter("productID", productID)
+                .getResultList();
+        if (productThumbnails.isEmpty()) {
             throw new HermesException(
-                    NOT_FOUND, "Product Thumbnail image not found",
-                    "Requested productID=" + productID + " Thumbnail image not found.");
+                    NOT_FOUND, "Product thumbnail not found",
+                    "Requested productID=" + productID + " thumbnail not found.");
         }
+        for (ProductThumbnail productThumbnail : productThumbnails) {
+            if (productThumbnail.getDimension() >= dimension) return productThumbnail;
+        }
+        return productThumbnails.get(productThumbnails.size() - 1);
     }
 
     /**
-     * Возвращает изображение товара
+     * Возвращает сведения об изображении товара (без содержимого файлов)
      * @param productID товара
-     * @return изображение товара
+     * @return сведения об изображении товара
      * @throws HermesException информация об ошибке
      */
     @Transactional
     public ProductImage getProductImage(long productID) throws HermesException {
         Validator.nonNegativeInteger("productID", productID);
-        try {
-            String query = "SELECT a FROM ProductImage a WHERE a.productID=" + productID;
-            return entityManager.createQuery(query, ProductImage.class).getSingleResult();
-        } catch (NoResultException e) {
+        ProductImage productImage = entityManager.find(ProductImage.class, productID);
+        if (productImage==null) {
             throw new HermesException(
                     NOT_FOUND, "Product image not found",
                     "Requested productID=" + productID + " image not found.");
         }
+        return productImage;
+    }
+
+    /**
+     * Проверяет строку импорта
+     * @param row строка импорта
+     * @param product существующая позиция с этим артикулом или null
+     * @param collections существующие коллекции, упомянутые в части файла
+     * @return сообщение об ошибке или null если строка корректна
+     */
+    private String validateImportRow(ProductImportRow row, Product product, Map<Long, Collection> collections) {
+        if (row.getVendorCode() == null || row.getVendorCode().isEmpty()) return "vendorCode can not be null or empty.";
+        if (product == null && (row.getName() == null || row.getName().isEmpty())) {
+            return "Product name can not be null or empty.";
+        }
+        if (row.getUnitPrice() != null && (row.getUnitPrice() < 0 || row.getUnitPrice().isNaN())) {
+            return "unitPrice can not be negative.";
+        }
+        if (row.getCollections() != null) {
+            for (Long collectionID : row.getCollections()) {
+                if (collectionID == null || !collections.containsKey(collectionID)) {
+                    return "collectionID=" + collectionID + " not found.";
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Удаляет миниатюры изображения товара и освобождает их файлы
+     * @param productID товара
+     */
+    private void removeThumbnails(long productID) {
+        String query = "SELECT a FROM ProductThumbnail a WHERE a.productID=:productID";
+        List<ProductThumbnail> productThumbnails = entityManager.createQuery(query, ProductThumbnail.class)
+                .setParameter("productID", productID)
+                .getResultList();
+        for (ProductThumbnail productThumbnail : productThumbnails) entityManager.remove(productThumbnail);
+        entityManager.flush();
+        releaseBlobs(productThumbnails.stream().map(ProductThumbnail::getHash).toArray(String[]::new));
+    }
+
+    /**
+     * Удаляет файлы хранилища после фиксации транзакции, если на них больше не ссылается
+     * ни одно изображение или миниатюра (одинаковые файлы хранятся один раз)
+     * @param hashes хэши файлов, на которые была ссылка
+     */
+    private void releaseBlobs(String... hashes) {
+        long checkTime = System.currentTimeMillis();
+        String imageQuery = "SELECT COUNT(a) FROM ProductImage a WHERE a.imageHash=:hash";
+        String thumbnailQuery = "SELECT COUNT(a) FROM ProductThumbnail a WHERE a.hash=:hash";
+        for (String hash : hashes) {
+            if (hash == null) continue;
+            long references = entityManager.createQuery(imageQuery, Long.class)
+                    .setParameter("hash", hash)
+                    .getSingleResult();
+            references += entityManager.createQuery(thumbnailQuery, Long.class)
+                    .setParameter("hash", hash)
+                    .getSingleResult();
+            if (references == 0) AfterCommit.run(transactionManager, () -> blobStore.delete(hash, checkTime));
+        }
     }
 
     //--------------------------------------------------------------------------------------------------------
@@ -313,6 +656,61 @@ public class Catalogue {
         return collection;
     }
 
+    /**
+     * Возвращает версию списка коллекций (без загрузки самих коллекций)
+     * @return версия списка коллекций
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ResourceVersion getCollectionsVersion() throws HermesException {
+        return getListVersion("SELECT MAX(a.timestamp), COUNT(a) FROM Collection a");
+    }
+
+    /**
+     * Возвращает версию карточки коллекции (без загрузки миниатюры коллекции)
+     * @param collectionID коллекции
+     * @return версия карточки коллекции
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ResourceVersion getCollectionVersion(long collectionID) throws HermesException {
+        Validator.nonNegativeInteger("collectionID", collectionID);
+        String query = "SELECT a.timestamp FROM Collection a WHERE a.collectionID=:collectionID";
+        try {
+            long timestamp = entityManager.createQuery(query, Long.class)
+                    .setParameter("collectionID", collectionID)
+                    .getSingleResult();
+            return new ResourceVersion(timestamp, Long.toHexString(timestamp));
+        } catch (NoResultException e) {
+            throw new HermesException(NOT_FOUND, "Collection not found",
+                    "Requested collectionID=" + collectionID + " not found.");
+        }
+    }
+
+    /**
+     * Возвращает версию списка товаров коллекции: изменение позиций коллекции обновляет
+     * время изменения коллекции, количество позиций учитывает удаление товаров из каталога
+     * @param collectionID коллекции
+     * @return версия списка товаров коллекции
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ResourceVersion getCollectionItemsVersion(long collectionID) throws HermesException {
+        Validator.nonNegativeInteger("collectionID", collectionID);
+        String query = "SELECT c.timestamp, " +
+                "(SELECT COUNT(i) FROM CollectionItem i WHERE i.collectionID=c.collectionID) " +
+                "FROM Collection c WHERE c.collectionID=:collectionID";
+        try {
+            Object[] result = entityManager.createQuery(query, Object[].class)
+                    .setParameter("collectionID", collectionID)
+                    .getSingleResult();
+            return ResourceVersion.of(Validator.asLong(result[0]), Validator.asLong(result[1]));
+        } catch (NoResultException e) {
+            throw new HermesException(NOT_FOUND, "Collection not found",
+                    "Requested collectionID=" + collectionID + " not found.");
+        }
+    }
+
     /**
      * Добавляет новую карточку коллекцию
      * @param collection карточка коллекции
@@ -332,6 +730,7 @@ public class Catalogue {
         try {
             collection.setTimestamp(System.currentTimeMillis());
             entityManager.persist(collection);
+            snapshots.invalidateCollection(collection.getCollectionID());
         } catch (Exception exception) {
             exception.printStackTrace();
             throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", exception.getMessage());
@@ -361,6 +760,7 @@ public class Catalogue {
 
         try {
             entityManager.persist(managedEntity);
+            snapshots.invalidateCollection(managedEntity.getCollectionID());
         } catch (Exception exception) {
             exception.printStackTrace();
             throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", exception.getMessage());
@@ -381,8 +781,13 @@ public class Catalogue {
         Collection managedEntity = getCollection(collectionID);
 
         try {
-            entityManager.createQuery("DELETE FROM CollectionItem a WHERE a.collectionID=" + collectionID).executeUpdate();
+            long now = System.currentTimeMillis();
+            removeCollectionItems("a.collectionID=" + collectionID, now);
             entityManager.remove(managedEntity);
+            recordTombstone(CatalogueTombstone.COLLECTION, collectionID, now);
+            snapshots.invalidateCollection(collectionID);
+            facets.collectionRemoved(collectionID);
+            promotions.collectionItemsChanged();
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -451,9 +856,13 @@ public class Catalogue {
 
         // Если всё нормально - сохраняем
         try {
+            item.setTimestamp(System.currentTimeMillis());
             entityManager.persist(item);
             collection.setTimestamp(System.currentTimeMillis());
             entityManager.persist(collection);
+            snapshots.invalidateCollection(collection.getCollectionID());
+            facets.collectionItemsChanged(product.getProductID());
+            promotions.collectionItemsChanged();
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -489,16 +898,25 @@ public class Catalogue {
         Collection collection = getCollection(item.getCollectionID());
         Product product = getProduct(item.getProductID());
 
-        // Присваиваем проверенные значения
+        // Присваиваем проверенные значения (позиция может переместиться в другую коллекцию)
+        if (managedItem.getCollectionID() != collection.getCollectionID()) {
+            snapshots.invalidateCollection(managedItem.getCollectionID());
+        }
+        long previousProductID = managedItem.getProductID();
         managedItem.setCollectionID(collection.getCollectionID());
         managedItem.setProductID(product.getProductID());
         managedItem.setOrderNumber(item.getOrderNumber());
+        managedItem.setTimestamp(System.currentTimeMillis());
 
         // Если всё нормально - сохраняем
         try {
             entityManager.persist(item);
             collection.setTimestamp(System.currentTimeMillis());
             entityManager.persist(collection);
+            snapshots.invalidateCollection(collection.getCollectionID());
+            facets.collectionItemsChanged(product.getProductID());
+            if (previousProductID != product.getProductID()) facets.collectionItemsChanged(previousProductID);
+            promotions.collectionItemsChanged();
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -530,10 +948,15 @@ public class Catalogue {
 
         try {
             // Удаляем позицию коллекции
+            long now = System.currentTimeMillis();
             entityManager.remove(managedItem);
+            recordTombstone(CatalogueTombstone.COLLECTION_ITEM, collectionItemID, now);
             // Обновить временную метку последнего изменения коллекции
-            collection.setTimestamp(System.currentTimeMillis());
+            collection.setTimestamp(now);
             entityManager.persist(collection);
+            snapshots.invalidateCollection(collection.getCollectionID());
+            facets.collectionItemsChanged(managedItem.getProductID());
+            promotions.collectionItemsChanged();
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -544,4 +967,248 @@ public class Catalogue {
         }
     }
 
+    /**
+     * Выполняет запрос версии списка, возвращающий время последнего изменения и количество
+     * @param query запрос (MAX(timestamp), COUNT)
+     * @return версия списка
+     * @throws HermesException информация об ошибке
+     */
+    private ResourceVersion getListVersion(String query) throws HermesException {
+        try {
+            Object[] result = entityManager.createQuery(query, Object[].class).getSingleResult();
+            return ResourceVersion.of(Validator.asLong(result[0]), Validator.asLong(result[1]));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
+        }
+    }
+
+    //--------------------------------------------------------------------------------------------------------
+    // Синхронизация изменений каталога
+    //--------------------------------------------------------------------------------------------------------
+
+    public static final long SYNC_LAG = 10_000;   // Запас на транзакции, зафиксированные позже своей метки времени
+    public static final int DEFAULT_CHANGES_LIMIT = 1000;    // Объектов в странице изменений по умолчанию
+    public static final int MAX_CHANGES_LIMIT = 5000;        // Максимум объектов в странице изменений
+
+    // Порядок выдачи изменений: объекты каждого типа по (timestamp, ID), затем следующий тип
+    private static final int FEED_PRODUCTS = 0;
+    private static final int FEED_COLLECTIONS = 1;
+    private static final int FEED_COLLECTION_ITEMS = 2;
+    private static final int FEED_PRODUCT_IMAGES = 3;
+    private static final int FEED_DELETED = 4;
+    private static final int FEED_END = 5;
+
+    /**
+     * Возвращает объекты каталога, созданные, измененные или удаленные с момента синхронизации,
+     * страницами не более limit объектов. Пока hasMore=true, syncToken - метка продолжения,
+     * по которой клиент запрашивает следующую страницу; в последней странице это метка следующей
+     * синхронизации. Метка следующей синхронизации отстает от начала выдачи на SYNC_LAG, поэтому
+     * изменения на границе (и объекты, измененные во время выдачи) могут прийти повторно -
+     * клиент применяет их по ID, повтор безопасен.
+     * Если метки нет или она старше срока хранения записей об удалении - возвращается весь каталог.
+     * @param syncToken метка предыдущей синхронизации или продолжения (null - первая синхронизация)
+     * @param limit максимум объектов в странице (0 - по умолчанию)
+     * @return изменения каталога
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public CatalogueChanges getChanges(String syncToken, int limit) throws HermesException {
+        Validator.nonNegativeInteger("limit", limit);
+        SyncCursor cursor = parseSyncToken(syncToken);
+        int remaining = limit == 0 ? DEFAULT_CHANGES_LIMIT : Math.min(limit, MAX_CHANGES_LIMIT);
+
+        CatalogueChanges changes = new CatalogueChanges();
+        changes.setFullSync(cursor.since == 0);
+        changes.setProducts(new ArrayList<>());
+        changes.setCollections(new ArrayList<>());
+        changes.setCollectionItems(new ArrayList<>());
+        changes.setProductImages(new ArrayList<>());
+        changes.setDeleted(new ArrayList<>());
+        try {
+            while (cursor.feed < FEED_END) {
+                int feed = cursor.feed;
+                remaining -= readFeed(cursor, changes, remaining);
+                // Объекты этого типа не поместились в страницу
+                if (cursor.feed == feed) break;
+            }
+        } catch (RuntimeException exception) {
+            exception.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Query failed", exception.getMessage());
+        }
+        changes.setHasMore(cursor.feed < FEED_END);
+        changes.setSyncToken(changes.isHasMore() ? cursor.toString() : Long.toString(cursor.until));
+        return changes;
+    }
+
+    private SyncCursor parseSyncToken(String syncToken) throws HermesException {
+        if (syncToken != null && syncToken.contains(":")) {
+            SyncCursor cursor = SyncCursor.parse(syncToken);
+            if (cursor == null) {
+                throw new HermesException(BAD_REQUEST, "Invalid parameter", "Invalid sync token " + syncToken);
+            }
+            return cursor;
+        }
+        long since = 0;
+        if (syncToken != null && !syncToken.isEmpty()) {
+            try {
+                since = Long.parseLong(syncToken);
+            } catch (NumberFormatException e) {
+                throw new HermesException(BAD_REQUEST, "Invalid parameter", "Invalid sync token " + syncToken);
+            }
+            Validator.nonNegativeInteger("since", since);
+        }
+        long now = System.currentTimeMillis();
+        if (since < now - TimeUnit.DAYS.toMillis(tombstoneRetentionDays)) since = 0;
+        return new SyncCursor(since, Math.max(now - SYNC_LAG, since));
+    }
+
+    /**
+     * Читает в страницу изменения текущего типа объектов
+     * @return количество прочитанных объектов
+     */
+    private int readFeed(SyncCursor cursor, CatalogueChanges changes, int limit) {
+        switch (cursor.feed) {
+            case FEED_PRODUCTS:
+                return readChanges(Product.class, "productID", Product::getTimestamp, Product::getProductID,
+                        cursor, changes.getProducts(), limit);
+            case FEED_COLLECTIONS:
+                return readChanges(Collection.class, "collectionID", Collection::getTimestamp,
+                        Collection::getCollectionID, cursor, changes.getCollections(), limit);
+            case FEED_COLLECTION_ITEMS:
+                return readChanges(CollectionItem.class, "itemID", CollectionItem::getTimestamp,
+                        CollectionItem::getItemID, cursor, changes.getCollectionItems(), limit);
+            case FEED_PRODUCT_IMAGES:
+                return readChanges(ProductImage.class, "productID", ProductImage::getTimestamp,
+                        ProductImage::getProductID, cursor, changes.getProductImages(), limit);
+            default:
+                // Полный каталог заменяет копию клиента - записи об удалении не нужны
+                if (cursor.since == 0) {
+                    cursor.nextFeed();
+                    return 0;
+                }
+                return readChanges(CatalogueTombstone.class, "tombstoneID", CatalogueTombstone::getTimestamp,
+                        CatalogueTombstone::getTombstoneID, cursor, changes.getDeleted(), limit);
+        }
+    }
+
+    /**
+     * Читает объекты после позиции курсора в порядке (timestamp, ID). Если прочитаны все -
+     * курсор переходит к следующему типу объектов, иначе сдвигается на последний прочитанный.
+     */
+    private <T> int readChanges(Class<T> entityClass, String idField, ToLongFunction<T> timestamp,
+                                ToLongFunction<T> id, SyncCursor cursor, List<T> page, int limit) {
+        String query = "SELECT a FROM " + entityClass.getSimpleName() + " a " +
+                "WHERE a.timestamp>:timestamp OR (a.timestamp=:timestamp AND a." + idField + ">:id) " +
+                "ORDER BY a.timestamp, a." + idField;
+        List<T> rows = entityManager.createQuery(query, entityClass)
+                .setParameter("timestamp", cursor.timestamp)
+                .setParameter("id", cursor.id)
+                .setMaxResults(limit + 1)
+                .getResultList();
+        if (rows.size() <= limit) {
+            page.addAll(rows);
+            cursor.nextFeed();
+            return rows.size();
+        }
+        if (limit == 0) return 0;
+        page.addAll(rows.subList(0, limit));
+        T last = rows.get(limit - 1);
+        cursor.timestamp = timestamp.applyAsLong(last);
+        cursor.id = id.applyAsLong(last);
+        return limit;
+    }
+
+    /**
+     * Позиция выдачи изменений: метка синхронизации клиента (0 - весь каталог), метка
+     * следующей синхронизации, тип объектов и последний выданный объект (timestamp, ID).
+     * Передается клиенту как "since:until:feed:timestamp:id".
+     */
+    private static class SyncCursor {
+        final long since;
+        final long until;
+        int feed = FEED_PRODUCTS;
+        long timestamp;
+        long id = Long.MIN_VALUE;
+
+        SyncCursor(long since, long until) {
+            this.since = since;
+            this.until = until;
+            this.timestamp = since;
+        }
+
+        void nextFeed() {
+            feed++;
+            timestamp = since;
+            id = Long.MIN_VALUE;
+        }
+
+        static SyncCursor parse(String token) {
+            String[] parts = token.split(":");
+            if (parts.length != 5) return null;
+            try {
+                SyncCursor cursor = new SyncCursor(Long.parseLong(parts[0]), Long.parseLong(parts[1]));
+                cursor.feed = Integer.parseInt(parts[2]);
+                cursor.timestamp = Long.parseLong(parts[3]);
+                cursor.id = Long.parseLong(parts[4]);
+                boolean valid = cursor.since >= 0 && cursor.until >= cursor.since
+                        && cursor.feed >= FEED_PRODUCTS && cursor.feed < FEED_END;
+                return valid ? cursor : null;
+            } catch (NumberFormatException e) {
+                return null;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return since + ":" + until + ":" + feed + ":" + timestamp + ":" + id;
+        }
+    }
+
+    /**
+     * Удаляет товары коллекций по условию, оставляя записи об их удалении
+     * @param condition условие JPQL для алиаса "a"
+     * @param now время удаления
+     */
+    private void removeCollectionItems(String condition, long now) {
+        String query = "SELECT a.itemID FROM CollectionItem a WHERE " + condition;
+        for (Long itemID : entityManager.createQuery(query, Long.class).getResultList()) {
+            recordTombstone(CatalogueTombstone.COLLECTION_ITEM, itemID, now);
+        }
+        entityManager.createQuery("DELETE FROM CollectionItem a WHERE " + condition).executeUpdate();
+    }
+
+    /**
+     * Сохраняет запись об удалении объекта каталога
+     * @param entityType тип объекта
+     * @param entityID ID объекта
+     * @param now время удаления
+     */
+    private void recordTombstone(String entityType, long entityID, long now) {
+        entityManager.persist(new CatalogueTombstone(entityType, entityID, now));
+    }
+
+    /**
+     * Удаляет записи об удалении старше срока хранения (клиенты с более старой меткой
+     * получают весь каталог). Вызывается фоновой задачей в отдельной транзакции.
+     * @return количество удаленных записей
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public int pruneTombstones() throws HermesException {
+        long horizon = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(tombstoneRetentionDays);
+        try {
+            return entityManager.createQuery("DELETE FROM CatalogueTombstone a WHERE a.timestamp<:horizon")
+                    .setParameter("horizon", horizon)
+                    .executeUpdate();
+        } catch (RuntimeException exception) {
+            try {
+                transactionManager.setRollbackOnly();
+            } catch (IllegalStateException | SystemException e) {
+                e.printStackTrace();
+            }
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Tombstone prune failed", exception.getMessage());
+        }
+    }
+
 }
@@ -0,0 +1,92 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.model.catalogue.entities.CatalogueTombstone;
+import com.axiom.hermes.model.catalogue.entities.Collection;
+import com.axiom.hermes.model.catalogue.entities.CollectionItem;
+import com.axiom.hermes.model.catalogue.entities.Product;
+import com.axiom.hermes.model.catalogue.entities.ProductImage;
+
+import java.util.List;
+
+/**
+ * Изменения каталога с момента синхронизации клиента: созданные и измененные объекты целиком,
+ * удаленные - записями об удалении. Клиент сохраняет syncToken и передает его в следующий раз.
+ * Изменения выдаются страницами: пока hasMore=true, syncToken - метка следующей страницы.
+ */
+public class CatalogueChanges {
+
+    private String syncToken;                        // Метка для следующего запроса изменений
+    private boolean fullSync;                        // Это полный каталог (клиент должен заменить свою копию)
+    private boolean hasMore;                         // Есть следующая страница изменений
+    private List<Product> products;                  // Созданные и измененные товарные позиции
+    private List<Collection> collections;            // Созданные и измененные коллекции
+    private List<CollectionItem> collectionItems;    // Созданные и измененные товары коллекций
+    private List<ProductImage> productImages;        // Загруженные изображения (без содержимого)
+    private List<CatalogueTombstone> deleted;        // Удаленные объекты
+
+    public CatalogueChanges() {}
+
+    public String getSyncToken() {
+        return syncToken;
+    }
+
+    public void setSyncToken(String syncToken) {
+        this.syncToken = syncToken;
+    }
+
+    public boolean isFullSync() {
+        return fullSync;
+    }
+
+    public void setFullSync(boolean fullSync) {
+        this.fullSync = fullSync;
+    }
+
+    public boolean isHasMore() {
+        return hasMore;
+    }
+
+    public void setHasMore(boolean hasMore) {
+        this.hasMore = hasMore;
+    }
+
+    public List<Product> getProducts() {
+        return products;
+    }
+
+    public void setProducts(List<Product> products) {
+        this.products = products;
+    }
+
+    public List<Collection> getCollections() {
+        return collections;
+    }
+
+    public void setCollections(List<Collection> collections) {
+        this.collections = collections;
+    }
+
+    public List<CollectionItem> getCollectionItems() {
+        return collectionItems;
+    }
+
+    public void setCollectionItems(List<CollectionItem> collectionItems) {
+        this.collectionItems = collectionItems;
+    }
+
+    public List<ProductImage> getProductImages() {
+        return productImages;
+    }
+
+    public void setProductImages(List<ProductImage> productImages) {
+        this.productImages = productImages;
+    }
+
+    public List<CatalogueTombstone> getDeleted() {
+        return deleted;
+    }
+
+    public void setDeleted(List<CatalogueTombstone> deleted) {
+        this.deleted = deleted;
+    }
+}
@@ -0,0 +1,165 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.http.JsonSnapshot;
+import com.axiom.hermes.common.http.ResourceVersion;
+import com.axiom.hermes.common.transactions.AfterCommit;
+import io.quarkus.runtime.ShutdownEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.json.bind.Jsonb;
+import javax.transaction.TransactionManager;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Снимки каталога для чтения с высокой нагрузкой: список доступных товаров, список коллекций
+ * и товары каждой коллекции хранятся уже сериализованными в JSON (и gzip). После изменения
+ * каталога снимок пересобирается в фоне, до окончания пересборки отдается предыдущий снимок.
+ */
+@ApplicationScoped
+public class CatalogueSnapshots {
+
+    private static final Logger LOG = Logger.getLogger(CatalogueSnapshots.class);
+
+    private static final String PRODUCTS = "products";
+    private static final String COLLECTIONS = "collections";
+    private static final String COLLECTION_ITEMS = "collection:";
+
+    @ConfigProperty(name = "hermes.catalogue.snapshot-gzip", defaultValue = "true")
+    boolean compress;
+
+    @Inject Catalogue catalogue;
+    @Inject TransactionManager transactionManager;
+    @Inject Jsonb jsonb;
+
+    private final Map<String, JsonSnapshot> snapshots = new ConcurrentHashMap<>();
+    private final Set<String> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicLong sequence = new AtomicLong();
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "catalogue-snapshots");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    /**
+     * Снимок списка доступных для заказа товарных позиций
+     * @return снимок
+     * @throws HermesException информация об ошибке
+     */
+    public JsonSnapshot getAvailableProducts() throws HermesException {
+        return getSnapshot(PRODUCTS);
+    }
+
+    /**
+     * Снимок списка всех коллекций
+     * @return снимок
+     * @throws HermesException информация об ошибке
+     */
+    public JsonSnapshot getCollections() throws HermesException {
+        return getSnapshot(COLLECTIONS);
+    }
+
+    /**
+     * Снимок списка товаров коллекции
+     * @param collectionID коллекции
+     * @return снимок
+     * @throws HermesException информация об ошибке
+     */
+    public JsonSnapshot getCollectionItems(long collectionID) throws HermesException {
+        return getSnapshot(COLLECTION_ITEMS + collectionID);
+    }
+
+    /**
+     * Пересобрать снимок списка товаров после фиксации текущей транзакции
+     */
+    public void invalidateProducts() {
+        invalidate(PRODUCTS);
+    }
+
+    /**
+     * Пересобрать снимки списка коллекций и товаров коллекции после фиксации текущей транзакции
+     * @param collectionID коллекции
+     */
+    public void invalidateCollection(long collectionID) {
+        invalidate(COLLECTIONS);
+        invalidate(COLLECTION_ITEMS + collectionID);
+    }
+
+    /**
+     * Пересобрать снимки товаров всех коллекций (при удалении товара из всех коллекций)
+     */
+    public void invalidateAllCollections() {
+        AfterCommit.run(transactionManager, () -> {
+            for (String key : snapshots.keySet()) {
+                if (key.startsWith(COLLECTION_ITEMS)) scheduleRebuild(key);
+            }
+        });
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        rebuilder.shutdownNow();
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private JsonSnapshot getSnapshot(String key) throws HermesException {
+        JsonSnapshot snapshot = snapshots.get(key);
+        // Первое обращение - собираем снимок сразу
+        return snapshot != null ? snapshot : build(key);
+    }
+
+    private void invalidate(String key) {
+        AfterCommit.run(transactionManager, () -> scheduleRebuild(key));
+    }
+
+    private void scheduleRebuild(String key) {
+        // Пока пересборка ключа стоит в очереди повторные изменения её не добавляют
+        if (!pending.add(key)) return;
+        rebuilder.submit(() -> {
+            pending.remove(key);
+            try {
+                build(key);
+            } catch (HermesException e) {
+                // Коллекция удалена - снимок больше не нужен
+                if (e.getStatus() == NOT_FOUND) snapshots.remove(key);
+                else LOG.warn("Failed to rebuild catalogue snapshot " + key + ": " + e.getMessage());
+            } catch (RuntimeException e) {
+                LOG.warn("Failed to rebuild catalogue snapshot " + key, e);
+            }
+        });
+    }
+
+    private JsonSnapshot build(String key) throws HermesException {
+        long buildSequence = sequence.incrementAndGet();
+        ResourceVersion version;
+        Object data;
+        // Версию читаем до данных: если данные изменятся между запросами, клиент просто перепроверит их
+        if (key.equals(PRODUCTS)) {
+            version = catalogue.getProductsVersion(true);
+            data = catalogue.getAvailableProducts();
+        } else if (key.equals(COLLECTIONS)) {
+            version = catalogue.getCollectionsVersion();
+            data = catalogue.getCollections();
+        } else {
+            long collectionID = Long.parseLong(key.substring(COLLECTION_ITEMS.length()));
+            version = catalogue.getCollectionItemsVersion(collectionID);
+            data = catalogue.getCollectionItems(collectionID);
+        }
+        JsonSnapshot built = new JsonSnapshot(jsonb.toJson(data), compress, version, buildSequence);
+        // Не заменяем снимок, собранный позже (по более свежим данным)
+        return snapshots.merge(key, built, (current, candidate) ->
+                current.getSequence() > candidate.getSequence() ? current : candidate);
+    }
+
+}
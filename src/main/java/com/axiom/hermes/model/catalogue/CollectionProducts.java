@@ -0,0 +1,167 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.http.ResourceVersion;
+import com.axiom.hermes.common.validation.Validator;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+import javax.transaction.Transactional;
+import java.util.*;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Развернутое содержимое коллекции: товары коллекции вместе с карточкой товара, доступным
+ * остатком и версией изображения - одним запросом вместо запроса на каждый товар.
+ * Клиент может запросить только нужные ему поля.
+ */
+@ApplicationScoped
+public class CollectionProducts {
+
+    public static final int DEFAULT_LIMIT = 100;             // Размер страницы по умолчанию
+    public static final int MAX_LIMIT = 500;                 // Максимальный размер страницы
+
+    // Поле ответа -> выражение JPQL (i - товар коллекции, p - товар, s - складская карточка, m - изображение)
+    private static final Map<String, String> FIELDS = new LinkedHashMap<>();
+    static {
+        FIELDS.put("itemID", "i.itemID");
+        FIELDS.put("productID", "p.productID");
+        FIELDS.put("orderNumber", "i.orderNumber");
+        FIELDS.put("vendorCode", "p.vendorCode");
+        FIELDS.put("name", "p.name");
+        FIELDS.put("description", "p.description");
+        FIELDS.put("unitPrice", "p.unitPrice");
+        FIELDS.put("available", "p.available");
+        FIELDS.put("availableForSale", "s.availableForSale");
+        FIELDS.put("imageHash", "m.imageHash");
+        FIELDS.put("thumbnailStatus", "m.thumbnailStatus");
+    }
+
+    private static final String JOINS = " FROM CollectionItem i " +
+            "JOIN Product p ON p.productID=i.productID " +
+            "LEFT JOIN StockCard s ON s.productID=i.productID " +
+            "LEFT JOIN ProductImage m ON m.productID=i.productID " +
+            "WHERE i.collectionID=:collectionID";
+
+    @Inject EntityManager entityManager;
+
+    /**
+     * Возвращает страницу товаров коллекции в порядке orderNumber
+     * @param collectionID коллекции
+     * @param offset сколько товаров пропустить
+     * @param limit размер страницы (0 - по умолчанию)
+     * @param fields нужные поля через запятую (null - все); itemID и productID возвращаются всегда
+     * @return товары коллекции: поле -> значение
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<Map<String, Object>> getCollectionProducts(long collectionID, int offset, int limit, String fields)
+            throws HermesException {
+        Validator.nonNegativeInteger("collectionID", collectionID);
+        Validator.nonNegativeInteger("offset", offset);
+        List<String> projection = parseFields(fields);
+
+        StringBuilder query = new StringBuilder("SELECT ");
+        for (int i = 0; i < projection.size(); i++) {
+            if (i > 0) query.append(", ");
+            query.append(FIELDS.get(projection.get(i)));
+        }
+        query.append(JOINS).append(" ORDER BY i.orderNumber, i.itemID");
+
+        List<Object[]> rows;
+        try {
+            rows = entityManager.createQuery(query.toString(), Object[].class)
+                    .setParameter("collectionID", collectionID)
+                    .setFirstResult(offset)
+                    .setMaxResults(pageSize(limit))
+                    .getResultList();
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Query failed", e.getMessage());
+        }
+
+        List<Map<String, Object>> result = new ArrayList<>(rows.size());
+        for (Object[] row : rows) {
+            Map<String, Object> item = new LinkedHashMap<>();
+            for (int i = 0; i < projection.size(); i++) item.put(projection.get(i), row[i]);
+            result.add(item);
+        }
+        return result;
+    }
+
+    /**
+     * Возвращает версию содержимого коллекции: меняется при изменении коллекции, её товаров,
+     * их карточек, остатков и изображений
+     * @param collectionID коллекции
+     * @return версия и количество товаров в коллекции
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ResourceVersion getVersion(long collectionID) throws HermesException {
+        Validator.nonNegativeInteger("collectionID", collectionID);
+        long collectionTimestamp;
+        try {
+            collectionTimestamp = entityManager
+                    .createQuery("SELECT c.timestamp FROM Collection c WHERE c.collectionID=:collectionID", Long.class)
+                    .setParameter("collectionID", collectionID)
+                    .getSingleResult();
+        } catch (NoResultException e) {
+            throw new HermesException(NOT_FOUND, "Collection not found",
+                    "Requested collectionID=" + collectionID + " not found.");
+        }
+        String query = "SELECT MAX(i.timestamp), MAX(p.timestamp), MAX(s.timestamp), MAX(m.timestamp), COUNT(i)" + JOINS;
+        try {
+            Object[] result = entityManager.createQuery(query, Object[].class)
+                    .setParameter("collectionID", collectionID)
+                    .getSingleResult();
+            long lastModified = collectionTimestamp;
+            for (int i = 0; i < 4; i++) {
+                if (result[i] != null) lastModified = Math.max(lastModified, Validator.asLong(result[i]));
+            }
+            return ResourceVersion.of(lastModified, Validator.asLong(result[4]));
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
+        }
+    }
+
+    /**
+     * Возвращает размер страницы с учетом значения по умолчанию и ограничения
+     * @param limit запрошенный размер страницы (0 - по умолчанию)
+     * @return размер страницы
+     * @throws HermesException информация об ошибке
+     */
+    public int pageSize(int limit) throws HermesException {
+        Validator.nonNegativeInteger("limit", limit);
+        return limit == 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+    }
+
+    /**
+     * Разбирает список запрошенных полей
+     * @param fields поля через запятую (null или пусто - все)
+     * @return поля в порядке FIELDS, включая itemID и productID
+     * @throws HermesException неизвестное поле
+     */
+    public List<String> parseFields(String fields) throws HermesException {
+        if (fields == null || fields.isBlank()) return new ArrayList<>(FIELDS.keySet());
+        Set<String> requested = new HashSet<>();
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (field.isEmpty()) continue;
+            if (!FIELDS.containsKey(field)) {
+                throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                        "Unknown field '" + field + "'. Available fields: " + String.join(",", FIELDS.keySet()));
+            }
+            requested.add(field);
+        }
+        requested.add("itemID");
+        requested.add("productID");
+        List<String> projection = new ArrayList<>();
+        for (String field : FIELDS.keySet()) if (requested.contains(field)) projection.add(field);
+        return projection;
+    }
+
+}
@@ -0,0 +1,25 @@
+package com.axiom.hermes.model.catalogue;
+
+/**
+ * Скидка по позиции заказа
+ */
+public class Discount {
+
+    public static final Discount NONE = new Discount(0, 0);
+
+    private final long promotionID;                          // Примененная акция (0 - без скидки)
+    private final double amount;                             // Сумма скидки по позиции
+
+    public Discount(long promotionID, double amount) {
+        this.promotionID = promotionID;
+        this.amount = amount;
+    }
+
+    public long getPromotionID() {
+        return promotionID;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+}
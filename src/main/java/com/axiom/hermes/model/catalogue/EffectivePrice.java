@@ -0,0 +1,37 @@
+package com.axiom.hermes.model.catalogue;
+
+/**
+ * Действующая цена товара для группы цен клиентов на текущий момент
+ */
+public class EffectivePrice {
+
+    public static final long BASE_PRICE = 0;                 // Код "прайс-листа" цены из карточки товара
+
+    private final long productID;                            // ID товара
+    private final long priceListID;                          // Прайс-лист, из которого взята цена (0 - карточка товара)
+    private final double unitPrice;                          // Цена отпуска товара
+    private final boolean available;                         // Доступен ли товар для заказа
+
+    public EffectivePrice(long productID, long priceListID, double unitPrice, boolean available) {
+        this.productID = productID;
+        this.priceListID = priceListID;
+        this.unitPrice = unitPrice;
+        this.available = available;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    public long getPriceListID() {
+        return priceListID;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,272 @@
+package com.axiom.hermes.model.catalogue;
+
+import java.util.*;
+
+/**
+ * Фасетный индекс товарных позиций в памяти: каждому товару присвоен плотный номер,
+ * каждому значению фасета (коллекция, ценовой диапазон, доступность, наличие) - битовый набор
+ * номеров товаров. Отбор - побитовое И/ИЛИ наборов, количество по значению фасета - мощность
+ * пересечения. Освободившиеся номера удаленных товаров используются повторно.
+ * Не потокобезопасен.
+ */
+public class FacetIndex {
+
+    public static final String COLLECTION = "collection";
+    public static final String PRICE = "price";
+    public static final String AVAILABLE = "available";
+    public static final String IN_STOCK = "inStock";
+
+    private final double[] priceBounds;                      // Границы ценовых диапазонов по возрастанию
+    private final String[] priceLabels;                      // Метки диапазонов: "0-10", ..., "500+"
+
+    private final Map<Long, Integer> docs = new HashMap<>();         // Товар -> номер
+    private final Map<Integer, Long> products = new HashMap<>();     // Номер -> товар
+    private final Deque<Integer> freeDocs = new ArrayDeque<>();      // Освободившиеся номера
+    private int nextDoc = 0;
+
+    private final BitSet all = new BitSet();                 // Товары в индексе
+    private final BitSet available = new BitSet();           // Доступные для заказа
+    private final BitSet inStock = new BitSet();             // Со свободным остатком
+    private final BitSet[] priceBands;                       // Товары по ценовым диапазонам
+    private final Map<Long, BitSet> collections = new HashMap<>();           // Товары по коллекциям
+    private final Map<Integer, Set<Long>> docCollections = new HashMap<>();  // Коллекции товара
+
+    /**
+     * @param priceBounds границы ценовых диапазонов по возрастанию (n границ - n+1 диапазон)
+     */
+    public FacetIndex(double[] priceBounds) {
+        this.priceBounds = priceBounds.clone();
+        Arrays.sort(this.priceBounds);
+        priceLabels = new String[this.priceBounds.length + 1];
+        priceBands = new BitSet[this.priceBounds.length + 1];
+        double lower = 0;
+        for (int i = 0; i < priceLabels.length; i++) {
+            priceLabels[i] = i < this.priceBounds.length ?
+                    format(lower) + "-" + format(this.priceBounds[i]) : format(lower) + "+";
+            if (i < this.priceBounds.length) lower = this.priceBounds[i];
+            priceBands[i] = new BitSet();
+        }
+    }
+
+    /**
+     * Добавляет или обновляет товарную позицию
+     * @param productID товара
+     * @param unitPrice цена
+     * @param isAvailable доступна ли для заказа
+     */
+    public void putProduct(long productID, double unitPrice, boolean isAvailable) {
+        int doc = doc(productID);
+        all.set(doc);
+        available.set(doc, isAvailable);
+        int band = priceBand(unitPrice);
+        for (int i = 0; i < priceBands.length; i++) priceBands[i].set(doc, i == band);
+    }
+
+    /**
+     * Устанавливает наличие свободного остатка товара
+     * @param productID товара
+     * @param value есть ли свободный остаток
+     */
+    public void setInStock(long productID, boolean value) {
+        inStock.set(doc(productID), value);
+    }
+
+    /**
+     * Устанавливает коллекции, в которые входит товар
+     * @param productID товара
+     * @param collectionIDs коллекции товара
+     */
+    public void setCollections(long productID, Set<Long> collectionIDs) {
+        int doc = doc(productID);
+        Set<Long> previous = docCollections.remove(doc);
+        if (previous != null) {
+            for (long collectionID : previous) {
+                BitSet members = collections.get(collectionID);
+                if (members == null) continue;
+                members.clear(doc);
+                if (members.isEmpty()) collections.remove(collectionID);
+            }
+        }
+        if (collectionIDs.isEmpty()) return;
+        docCollections.put(doc, new HashSet<>(collectionIDs));
+        for (long collectionID : collectionIDs) {
+            collections.computeIfAbsent(collectionID, id -> new BitSet()).set(doc);
+        }
+    }
+
+    /**
+     * Удаляет коллекцию
+     * @param collectionID коллекции
+     */
+    public void removeCollection(long collectionID) {
+        BitSet members = collections.remove(collectionID);
+        if (members == null) return;
+        for (int doc = members.nextSetBit(0); doc >= 0; doc = members.nextSetBit(doc + 1)) {
+            Set<Long> productCollections = docCollections.get(doc);
+            if (productCollections == null) continue;
+            productCollections.remove(collectionID);
+            if (productCollections.isEmpty()) docCollections.remove(doc);
+        }
+    }
+
+    /**
+     * Удаляет товарную позицию (её номер будет использован повторно)
+     * @param productID товара
+     */
+    public void removeProduct(long productID) {
+        Integer doc = docs.get(productID);
+        if (doc == null) return;
+        setCollections(productID, Collections.emptySet());
+        all.clear(doc);
+        available.clear(doc);
+        inStock.clear(doc);
+        for (BitSet band : priceBands) band.clear(doc);
+        docs.remove(productID);
+        products.remove(doc);
+        freeDocs.push(doc);
+    }
+
+    /**
+     * Очищает индекс
+     */
+    public void clear() {
+        docs.clear();
+        products.clear();
+        freeDocs.clear();
+        nextDoc = 0;
+        all.clear();
+        available.clear();
+        inStock.clear();
+        for (BitSet band : priceBands) band.clear();
+        collections.clear();
+        docCollections.clear();
+    }
+
+    /**
+     * Количество товарных позиций в индексе
+     * @return количество позиций
+     */
+    public int size() {
+        return all.cardinality();
+    }
+
+    /**
+     * Метки ценовых диапазонов
+     * @return метки по возрастанию цены
+     */
+    public String[] getPriceLabels() {
+        return priceLabels.clone();
+    }
+
+    /**
+     * Отбирает товары и считает количество по значениям фасетов. Для значений фасета
+     * учитываются условия всех остальных фасетов, но не его собственное.
+     * @param query условия отбора
+     * @param offset сколько найденных товаров пропустить
+     * @param limit размер страницы
+     * @return страница товаров (в порядке номеров) и количество по значениям фасетов
+     */
+    public FacetResult query(FacetQuery query, int offset, int limit) {
+        BitSet collectionFilter = null;
+        if (query.getCollectionIDs() != null && !query.getCollectionIDs().isEmpty()) {
+            collectionFilter = new BitSet();
+            for (long collectionID : query.getCollectionIDs()) {
+                BitSet members = collections.get(collectionID);
+                if (members != null) collectionFilter.or(members);
+            }
+        }
+        BitSet priceFilter = null;
+        if (query.getPriceBands() != null && !query.getPriceBands().isEmpty()) {
+            priceFilter = new BitSet();
+            for (int i = 0; i < priceLabels.length; i++) {
+                if (query.getPriceBands().contains(priceLabels[i])) priceFilter.or(priceBands[i]);
+            }
+        }
+        BitSet availableFilter = query.getAvailable() == null ? null : flag(available, query.getAvailable());
+        BitSet inStockFilter = query.getInStock() == null ? null : flag(inStock, query.getInStock());
+
+        Map<String, Map<String, Integer>> facets = new LinkedHashMap<>();
+
+        BitSet base = intersect(null, priceFilter, availableFilter, inStockFilter);
+        Map<String, Integer> collectionCounts = new TreeMap<>();
+        for (Map.Entry<Long, BitSet> entry : collections.entrySet()) {
+            int count = count(base, entry.getValue());
+            if (count > 0) collectionCounts.put(Long.toString(entry.getKey()), count);
+        }
+        facets.put(COLLECTION, collectionCounts);
+
+        base = intersect(collectionFilter, null, availableFilter, inStockFilter);
+        Map<String, Integer> priceCounts = new LinkedHashMap<>();
+        for (int i = 0; i < priceLabels.length; i++) priceCounts.put(priceLabels[i], count(base, priceBands[i]));
+        facets.put(PRICE, priceCounts);
+
+        base = intersect(collectionFilter, priceFilter, null, inStockFilter);
+        facets.put(AVAILABLE, flagCounts(base, available));
+
+        base = intersect(collectionFilter, priceFilter, availableFilter, null);
+        facets.put(IN_STOCK, flagCounts(base, inStock));
+
+        BitSet matches = intersect(collectionFilter, priceFilter, availableFilter, inStockFilter);
+        List<Long> page = new ArrayList<>(Math.min(limit, 1024));
+        int skipped = 0;
+        for (int doc = matches.nextSetBit(0); doc >= 0 && page.size() < limit; doc = matches.nextSetBit(doc + 1)) {
+            if (skipped++ < offset) continue;
+            page.add(products.get(doc));
+        }
+        return new FacetResult(matches.cardinality(), page, facets);
+    }
+
+    /**
+     * Номер ценового диапазона
+     * @param price цена
+     * @return номер диапазона
+     */
+    public int priceBand(double price) {
+        int band = 0;
+        while (band < priceBounds.length && price >= priceBounds[band]) band++;
+        return band;
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private int doc(long productID) {
+        Integer doc = docs.get(productID);
+        if (doc != null) return doc;
+        doc = freeDocs.isEmpty() ? nextDoc++ : freeDocs.pop();
+        docs.put(productID, doc);
+        products.put(doc, productID);
+        return doc;
+    }
+
+    private BitSet flag(BitSet set, boolean value) {
+        BitSet result = (BitSet) all.clone();
+        if (value) result.and(set);
+        else result.andNot(set);
+        return result;
+    }
+
+    private Map<String, Integer> flagCounts(BitSet base, BitSet set) {
+        Map<String, Integer> counts = new LinkedHashMap<>();
+        int positive = count(base, set);
+        counts.put("true", positive);
+        counts.put("false", base.cardinality() - positive);
+        return counts;
+    }
+
+    private BitSet intersect(BitSet... filters) {
+        BitSet result = (BitSet) all.clone();
+        for (BitSet filter : filters) if (filter != null) result.and(filter);
+        return result;
+    }
+
+    private static int count(BitSet base, BitSet set) {
+        BitSet intersection = (BitSet) base.clone();
+        intersection.and(set);
+        return intersection.cardinality();
+    }
+
+    private static String format(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+
+}
@@ -0,0 +1,50 @@
+package com.axiom.hermes.model.catalogue;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Условия фасетного отбора товаров: внутри фасета значения объединяются (ИЛИ),
+ * между фасетами - пересекаются (И). Пустой фасет (null) не ограничивает отбор.
+ */
+public class FacetQuery {
+
+    private Set<Long> collectionIDs = new HashSet<>();       // Коллекции
+    private Set<String> priceBands = new HashSet<>();        // Ценовые диапазоны (метки)
+    private Boolean available;                               // Доступность для заказа
+    private Boolean inStock;                                 // Наличие свободного остатка
+
+    public FacetQuery() {}
+
+    public Set<Long> getCollectionIDs() {
+        return collectionIDs;
+    }
+
+    public void setCollectionIDs(Set<Long> collectionIDs) {
+        this.collectionIDs = collectionIDs;
+    }
+
+    public Set<String> getPriceBands() {
+        return priceBands;
+    }
+
+    public void setPriceBands(Set<String> priceBands) {
+        this.priceBands = priceBands;
+    }
+
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(Boolean available) {
+        this.available = available;
+    }
+
+    public Boolean getInStock() {
+        return inStock;
+    }
+
+    public void setInStock(Boolean inStock) {
+        this.inStock = inStock;
+    }
+}
@@ -0,0 +1,33 @@
+package com.axiom.hermes.model.catalogue;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Результат фасетного отбора: страница найденных товаров и количество товаров по каждому
+ * значению каждого фасета (с учетом условий остальных фасетов)
+ */
+public class FacetResult {
+
+    private final long total;                                // Всего найдено товаров
+    private final List<Long> productIDs;                     // Страница найденных товаров
+    private final Map<String, Map<String, Integer>> facets;  // Фасет -> значение -> количество
+
+    public FacetResult(long total, List<Long> productIDs, Map<String, Map<String, Integer>> facets) {
+        this.total = total;
+        this.productIDs = productIDs;
+        this.facets = facets;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<Long> getProductIDs() {
+        return productIDs;
+    }
+
+    public Map<String, Map<String, Integer>> getFacets() {
+        return facets;
+    }
+}
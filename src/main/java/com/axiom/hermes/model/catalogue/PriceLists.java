@@ -0,0 +1,407 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.cache.LruCache;
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.transactions.AfterCommit;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.catalogue.entities.PriceList;
+import com.axiom.hermes.model.catalogue.entities.PriceListItem;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.NoResultException;
+import javax.persistence.PersistenceException;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
+import javax.transaction.Transactional;
+import java.util.*;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Прайс-листы с периодами действия и группами цен клиентов. Действующая цена товара берется
+ * из действующего прайс-листа группы клиента, затем из общего прайс-листа, затем из карточки
+ * товара; среди нескольких действующих прайс-листов одного уровня выигрывает начавшийся позже.
+ * Цены кэшируются в памяти по ключу (productID, priceListID) до изменения товара или прайс-листа,
+ * поэтому оформление заказов не поднимает карточку товара целиком.
+ */
+@ApplicationScoped
+public class PriceLists {
+
+    @ConfigProperty(name = "hermes.prices.cache-size", defaultValue = "100000")
+    int cacheSize;
+
+    @Inject EntityManager entityManager;
+    @Inject TransactionManager transactionManager;
+
+    // Цены товаров по ключу "productID:priceListID" (priceListID=0 - карточка товара)
+    private LruCache<String, CachedPrice> cache;
+    // Все прайс-листы в порядке приоритета (null - не загружены)
+    private volatile List<PriceList> priceLists;
+    private long priceListsVersion = 0;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Получить все прайс-листы
+     * @return список прайс-листов
+     */
+    @Transactional
+    public List<PriceList> getPriceLists() {
+        String query = "SELECT a FROM PriceList a ORDER BY a.priceListID";
+        return entityManager.createQuery(query, PriceList.class).getResultList();
+    }
+
+    /**
+     * Получить прайс-лист
+     * @param priceListID прайс-листа
+     * @return прайс-лист
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public PriceList getPriceList(long priceListID) throws HermesException {
+        Validator.nonNegativeInteger("priceListID", priceListID);
+        PriceList priceList = entityManager.find(PriceList.class, priceListID);
+        if (priceList == null) {
+            throw new HermesException(NOT_FOUND, "Price list not found",
+                    "Requested priceListID=" + priceListID + " not found.");
+        }
+        return priceList;
+    }
+
+    /**
+     * Добавить прайс-лист
+     * @param priceList новый прайс-лист
+     * @return сохраненный прайс-лист
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public PriceList addPriceList(PriceList priceList) throws HermesException {
+        if (priceList.getPriceListID() != 0) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "PriceListID is not zero. Do not specify priceListID when creating new PriceList.");
+        }
+        Validator.validateName(priceList.getName());
+        validatePeriod(priceList.getValidFrom(), priceList.getValidTo());
+        priceList.setPriceGroup(normalizeGroup(priceList.getPriceGroup()));
+        priceList.setTimestamp(System.currentTimeMillis());
+        entityManager.persist(priceList);
+        priceListsChanged();
+        return priceList;
+    }
+
+    /**
+     * Изменить прайс-лист
+     * @param priceList прайс-лист с измененными полями (пустая группа - для всех клиентов)
+     * @return измененный прайс-лист
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public PriceList updatePriceList(PriceList priceList) throws HermesException {
+        PriceList managed = getPriceList(priceList.getPriceListID());
+        if (priceList.getName() != null) {
+            Validator.validateName(priceList.getName());
+            managed.setName(priceList.getName());
+        }
+        if (priceList.getPriceGroup() != null) managed.setPriceGroup(normalizeGroup(priceList.getPriceGroup()));
+        // Период действия задается всегда целиком
+        validatePeriod(priceList.getValidFrom(), priceList.getValidTo());
+        managed.setValidFrom(priceList.getValidFrom());
+        managed.setValidTo(priceList.getValidTo());
+        managed.setTimestamp(System.currentTimeMillis());
+        entityManager.persist(managed);
+        priceListsChanged();
+        return managed;
+    }
+
+    /**
+     * Удалить прайс-лист вместе с его ценами
+     * @param priceListID прайс-листа
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public void removePriceList(long priceListID) throws HermesException {
+        PriceList priceList = getPriceList(priceListID);
+        try {
+            entityManager.createQuery("DELETE FROM PriceListItem a WHERE a.priceListID=" + priceListID)
+                    .executeUpdate();
+            entityManager.remove(priceList);
+            priceListsChanged();
+            String suffix = ":" + priceListID;
+            AfterCommit.run(transactionManager, () -> cache.invalidateIf(key -> key.endsWith(suffix)));
+        } catch (Exception exception) {
+            try {
+                transactionManager.setRollbackOnly();
+            } catch (IllegalStateException | SystemException e) {
+                e.printStackTrace();
+            }
+            throw exception;
+        }
+    }
+
+    /**
+     * Получить цены прайс-листа
+     * @param priceListID прайс-листа
+     * @return цены товаров в прайс-листе
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<PriceListItem> getPriceListItems(long priceListID) throws HermesException {
+        getPriceList(priceListID);
+        String query = "SELECT a FROM PriceListItem a WHERE a.priceListID=:priceListID ORDER BY a.productID";
+        return entityManager.createQuery(query, PriceListItem.class)
+                .setParameter("priceListID", priceListID)
+                .getResultList();
+    }
+
+    /**
+     * Установить цену товара в прайс-листе
+     * @param priceListID прайс-листа
+     * @param productID товара
+     * @param unitPrice цена отпуска товара
+     * @return цена товара в прайс-листе
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public PriceListItem setPrice(long priceListID, long productID, double unitPrice) throws HermesException {
+        Validator.nonNegativeInteger("productID", productID);
+        Validator.nonNegativeNumber("unitPrice", unitPrice);
+        getPriceList(priceListID);
+        String count = "SELECT COUNT(p) FROM Product p WHERE p.productID=:productID";
+        if (entityManager.createQuery(count, Long.class).setParameter("productID", productID).getSingleResult() == 0) {
+            throw new HermesException(NOT_FOUND, "Product not found",
+                    "Requested productID=" + productID + " not found.");
+        }
+
+        PriceListItem item = findItem(priceListID, productID);
+        if (item == null) {
+            item = new PriceListItem(priceListID, productID, unitPrice);
+        } else {
+            item.setUnitPrice(unitPrice);
+            item.setTimestamp(System.currentTimeMillis());
+        }
+        entityManager.persist(item);
+        priceChanged(productID, priceListID);
+        return item;
+    }
+
+    /**
+     * Удалить цену товара из прайс-листа
+     * @param priceListID прайс-листа
+     * @param productID товара
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public void removePrice(long priceListID, long productID) throws HermesException {
+        Validator.nonNegativeInteger("priceListID", priceListID);
+        Validator.nonNegativeInteger("productID", productID);
+        PriceListItem item = findItem(priceListID, productID);
+        if (item == null) {
+            throw new HermesException(NOT_FOUND, "Price not found",
+                    "Price of productID=" + productID + " in priceListID=" + priceListID + " not found.");
+        }
+        entityManager.remove(item);
+        priceChanged(productID, priceListID);
+    }
+
+    /**
+     * Возвращает действующую на текущий момент цену товара и его доступность для заказа
+     * @param productID товара
+     * @param priceGroup группа цен клиента (null - только общие прайс-листы)
+     * @return действующая цена
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public EffectivePrice getEffectivePrice(long productID, String priceGroup) throws HermesException {
+        Validator.nonNegativeInteger("productID", productID);
+        priceGroup = normalizeGroup(priceGroup);
+
+        // Действующие прайс-листы в порядке приоритета
+        long now = System.currentTimeMillis();
+        List<Long> candidates = new ArrayList<>();
+        for (PriceList priceList : priceLists()) {
+            if (!priceList.isEffective(now)) continue;
+            if (priceList.getPriceGroup() == null || priceList.getPriceGroup().equals(priceGroup)) {
+                candidates.add(priceList.getPriceListID());
+            }
+        }
+
+        Map<Long, CachedPrice> prices = prices(productID, candidates);
+        CachedPrice base = prices.get(EffectivePrice.BASE_PRICE);
+        for (long priceListID : candidates) {
+            CachedPrice price = prices.get(priceListID);
+            if (price.unitPrice != null) {
+                return new EffectivePrice(productID, priceListID, price.unitPrice, base.available);
+            }
+        }
+        return new EffectivePrice(productID, EffectivePrice.BASE_PRICE, base.unitPrice, base.available);
+    }
+
+    /**
+     * Сбросить кэшированную цену и доступность товара после фиксации текущей транзакции
+     * (вызывается при изменении карточки товара)
+     * @param productID товара
+     */
+    public void productChanged(long productID) {
+        String key = key(productID, EffectivePrice.BASE_PRICE);
+        AfterCommit.run(transactionManager, () -> cache.invalidate(key));
+    }
+
+    /**
+     * Удалить цены товара во всех прайс-листах (вызывается при удалении товара)
+     * @param productID товара
+     */
+    public void productRemoved(long productID) {
+        entityManager.createQuery("DELETE FROM PriceListItem a WHERE a.productID=" + productID).executeUpdate();
+        String prefix = productID + ":";
+        AfterCommit.run(transactionManager, () -> cache.invalidateIf(key -> key.startsWith(prefix)));
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    /**
+     * Цена товара в прайс-листе или в карточке товара, как она хранится в кэше
+     */
+    private static class CachedPrice {
+        final Double unitPrice;              // Цена (null - товара нет в прайс-листе)
+        final boolean available;             // Доступность для заказа (только для карточки товара)
+
+        CachedPrice(Double unitPrice, boolean available) {
+            this.unitPrice = unitPrice;
+            this.available = available;
+        }
+    }
+
+    private static final CachedPrice NO_PRICE = new CachedPrice(null, false);
+
+    private static String key(long productID, long priceListID) {
+        return productID + ":" + priceListID;
+    }
+
+    /**
+     * Возвращает цены товара по карточке и указанным прайс-листам, недостающие в кэше
+     * читаются из базы не более чем двумя запросами
+     */
+    private Map<Long, CachedPrice> prices(long productID, List<Long> priceListIDs) throws HermesException {
+        Map<Long, CachedPrice> prices = new HashMap<>();
+        List<Long> missing = new ArrayList<>();
+        CachedPrice base = cache.get(key(productID, EffectivePrice.BASE_PRICE));
+        if (base != null) prices.put(EffectivePrice.BASE_PRICE, base);
+        for (long priceListID : priceListIDs) {
+            CachedPrice price = cache.get(key(productID, priceListID));
+            if (price == null) missing.add(priceListID);
+            else prices.put(priceListID, price);
+        }
+        if (base != null && missing.isEmpty()) return prices;
+
+        long stamp = cache.stamp();
+        try {
+            if (base == null) {
+                String query = "SELECT p.unitPrice, p.available FROM Product p WHERE p.productID=:productID";
+                Object[] row = entityManager.createQuery(query, Object[].class)
+                        .setParameter("productID", productID)
+                        .getSingleResult();
+                base = new CachedPrice((Double) row[0], (Boolean) row[1]);
+                prices.put(EffectivePrice.BASE_PRICE, base);
+                cache.put(key(productID, EffectivePrice.BASE_PRICE), base, stamp);
+            }
+            if (!missing.isEmpty()) {
+                String query = "SELECT i.priceListID, i.unitPrice FROM PriceListItem i " +
+                        "WHERE i.productID=:productID AND i.priceListID IN :priceListIDs";
+                for (Object[] row : entityManager.createQuery(query, Object[].class)
+                        .setParameter("productID", productID)
+                        .setParameter("priceListIDs", missing)
+                        .getResultList()) {
+                    prices.put((Long) row[0], new CachedPrice((Double) row[1], false));
+                }
+                // Отсутствие цены в прайс-листе тоже кэшируется
+                for (long priceListID : missing) {
+                    CachedPrice price = prices.computeIfAbsent(priceListID, id -> NO_PRICE);
+                    cache.put(key(productID, priceListID), price, stamp);
+                }
+            }
+        } catch (NoResultException e) {
+            throw new HermesException(NOT_FOUND, "Product not found",
+                    "Requested productID=" + productID + " not found.");
+        } catch (PersistenceException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
+        }
+        return prices;
+    }
+
+    /**
+     * Возвращает все прайс-листы в порядке приоритета: сначала групповые, затем общие,
+     * внутри уровня - начавшиеся позже первыми
+     */
+    private List<PriceList> priceLists() {
+        List<PriceList> snapshot = priceLists;
+        if (snapshot != null) return snapshot;
+        long version;
+        synchronized (this) {
+            version = priceListsVersion;
+        }
+        List<PriceList> loaded = new ArrayList<>();
+        for (PriceList priceList : entityManager.createQuery("SELECT a FROM PriceList a", PriceList.class)
+                .getResultList()) {
+            // Копия, чтобы не разделять управляемую сущность между потоками
+            PriceList copy = new PriceList(priceList.getName(), priceList.getPriceGroup(),
+                    priceList.getValidFrom(), priceList.getValidTo());
+            copy.setPriceListID(priceList.getPriceListID());
+            loaded.add(copy);
+        }
+        loaded.sort(Comparator.comparing((PriceList a) -> a.getPriceGroup() == null)
+                .thenComparing(PriceList::getValidFrom, Comparator.reverseOrder())
+                .thenComparing(PriceList::getPriceListID, Comparator.reverseOrder()));
+        snapshot = Collections.unmodifiableList(loaded);
+        synchronized (this) {
+            // Не сохраняем список, если прайс-листы изменились во время чтения
+            if (version == priceListsVersion) priceLists = snapshot;
+        }
+        return snapshot;
+    }
+
+    private void priceListsChanged() {
+        AfterCommit.run(transactionManager, () -> {
+            synchronized (this) {
+                priceListsVersion++;
+                priceLists = null;
+            }
+        });
+    }
+
+    private void priceChanged(long productID, long priceListID) {
+        String key = key(productID, priceListID);
+        AfterCommit.run(transactionManager, () -> cache.invalidate(key));
+    }
+
+    private PriceListItem findItem(long priceListID, long productID) {
+        String query = "SELECT a FROM PriceListItem a WHERE a.priceListID=:priceListID AND a.productID=:productID";
+        List<PriceListItem> items = entityManager.createQuery(query, PriceListItem.class)
+                .setParameter("priceListID", priceListID)
+                .setParameter("productID", productID)
+                .getResultList();
+        return items.isEmpty() ? null : items.get(0);
+    }
+
+    private static void validatePeriod(long validFrom, long validTo) throws HermesException {
+        Validator.nonNegativeInteger("validFrom", validFrom);
+        Validator.nonNegativeInteger("validTo", validTo);
+        if (validTo != 0 && validTo <= validFrom) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "validTo must be greater than validFrom or zero for unlimited price list.");
+        }
+    }
+
+    private static String normalizeGroup(String priceGroup) {
+        if (priceGroup == null || priceGroup.isBlank()) return null;
+        return priceGroup.trim();
+    }
+
+}
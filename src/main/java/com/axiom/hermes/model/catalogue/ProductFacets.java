@@ -0,0 +1,282 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.transactions.AfterCommit;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.catalogue.entities.Product;
+import io.quarkus.runtime.ShutdownEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.TransactionManager;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Фасетный отбор товарных позиций по коллекциям, ценовым диапазонам, доступности и наличию.
+ * Индекс строится из базы при первом запросе и затем обновляется после фиксации каждого
+ * изменения товаров, товаров коллекций и складских карточек. Коллекции и наличие товара
+ * перечитываются из базы в фоне уже после фиксации, поэтому параллельные транзакции
+ * не перезаписывают индекс устаревшим состоянием.
+ */
+@ApplicationScoped
+public class ProductFacets {
+
+    public static final int DEFAULT_LIMIT = 50;              // Размер страницы по умолчанию
+    public static final int MAX_LIMIT = 500;                 // Максимальный размер страницы
+
+    @ConfigProperty(name = "hermes.facets.price-bands", defaultValue = "10,50,100,500")
+    List<Double> priceBounds;
+
+    private static final Logger LOG = Logger.getLogger(ProductFacets.class);
+
+    @Inject EntityManager entityManager;
+    @Inject TransactionManager transactionManager;
+
+    private FacetIndex index;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean built = false;
+
+    // Товары, коллекции и наличие которых нужно перечитать из базы
+    private final Set<Long> staleCollections = ConcurrentHashMap.newKeySet();
+    private final Set<Long> staleStock = ConcurrentHashMap.newKeySet();
+    private final ExecutorService refresher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "facets-refresh");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void init() {
+        double[] bounds = new double[priceBounds.size()];
+        for (int i = 0; i < bounds.length; i++) bounds[i] = priceBounds.get(i);
+        index = new FacetIndex(bounds);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        refresher.shutdownNow();
+    }
+
+    /**
+     * Отбирает товарные позиции по фасетам
+     * @param query условия отбора
+     * @param offset сколько найденных товаров пропустить
+     * @param limit размер страницы (0 - по умолчанию)
+     * @return страница найденных товаров и количество по значениям фасетов
+     * @throws HermesException информация об ошибке
+     */
+    public FacetResult browse(FacetQuery query, int offset, int limit) throws HermesException {
+        Validator.nonNegativeInteger("offset", offset);
+        Validator.nonNegativeInteger("limit", limit);
+        if (query.getPriceBands() != null) {
+            Set<String> labels = Set.of(index.getPriceLabels());
+            for (String band : query.getPriceBands()) {
+                if (!labels.contains(band)) {
+                    throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                            "Unknown price band '" + band + "'. Available bands: " + String.join(",", labels));
+                }
+            }
+        }
+        if (!built) build();
+
+        lock.readLock().lock();
+        try {
+            return index.query(query, offset, limit == 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Обновить товарную позицию в индексе после фиксации текущей транзакции
+     * @param product карточка товарной позиции
+     */
+    public void productChanged(Product product) {
+        long productID = product.getProductID();
+        double unitPrice = product.getUnitPrice();
+        boolean available = product.isAvailable();
+        update(() -> index.putProduct(productID, unitPrice, available));
+    }
+
+    /**
+     * Удалить товарную позицию из индекса после фиксации текущей транзакции
+     * @param productID товарной позиции
+     */
+    public void productRemoved(long productID) {
+        update(() -> index.removeProduct(productID));
+    }
+
+    /**
+     * Перечитать коллекции товара из базы после фиксации текущей транзакции
+     * @param productID товарной позиции
+     */
+    public void collectionItemsChanged(long productID) {
+        refreshAfterCommit(staleCollections, productID);
+    }
+
+    /**
+     * Удалить коллекцию из индекса после фиксации текущей транзакции
+     * @param collectionID коллекции
+     */
+    public void collectionRemoved(long collectionID) {
+        update(() -> index.removeCollection(collectionID));
+    }
+
+    /**
+     * Перечитать наличие товара из базы после фиксации текущей транзакции
+     * @param productID товарной позиции
+     */
+    public void stockChanged(long productID) {
+        refreshAfterCommit(staleStock, productID);
+    }
+
+    /**
+     * Загружает из базы данные для построения индекса
+     */
+    @Transactional
+    void load() {
+        index.clear();
+        String products = "SELECT p.productID, p.unitPrice, p.available FROM Product p ORDER BY p.productID";
+        for (Object[] row : entityManager.createQuery(products, Object[].class).getResultList()) {
+            index.putProduct((Long) row[0], (Double) row[1], (Boolean) row[2]);
+        }
+        String stock = "SELECT s.productID FROM StockCard s WHERE s.availableForSale>0";
+        for (Long productID : entityManager.createQuery(stock, Long.class).getResultList()) {
+            index.setInStock(productID, true);
+        }
+        String items = "SELECT i.productID, i.collectionID FROM CollectionItem i ORDER BY i.productID";
+        long currentProduct = -1;
+        Set<Long> collectionIDs = new HashSet<>();
+        for (Object[] row : entityManager.createQuery(items, Object[].class).getResultList()) {
+            long productID = (Long) row[0];
+            if (productID != currentProduct && currentProduct != -1) {
+                index.setCollections(currentProduct, collectionIDs);
+                collectionIDs = new HashSet<>();
+            }
+            currentProduct = productID;
+            collectionIDs.add((Long) row[1]);
+        }
+        if (currentProduct != -1) index.setCollections(currentProduct, collectionIDs);
+    }
+
+    /**
+     * Читает коллекции товаров из базы
+     * @param productIDs товарных позиций
+     * @return коллекции по товару (у товаров вне коллекций - пустой набор)
+     */
+    @Transactional
+    Map<Long, Set<Long>> loadCollections(List<Long> productIDs) {
+        Map<Long, Set<Long>> collections = new HashMap<>();
+        for (Long productID : productIDs) collections.put(productID, new HashSet<>());
+        String query = "SELECT i.productID, i.collectionID FROM CollectionItem i WHERE i.productID IN :productIDs";
+        for (Object[] row : entityManager.createQuery(query, Object[].class)
+                .setParameter("productIDs", productIDs)
+                .getResultList()) {
+            collections.get((Long) row[0]).add((Long) row[1]);
+        }
+        return collections;
+    }
+
+    /**
+     * Читает из базы, какие из товаров есть в наличии
+     * @param productIDs товарных позиций
+     * @return товары со свободным остатком
+     */
+    @Transactional
+    Set<Long> loadInStock(List<Long> productIDs) {
+        String query = "SELECT s.productID FROM StockCard s WHERE s.productID IN :productIDs AND s.availableForSale>0";
+        return new HashSet<>(entityManager.createQuery(query, Long.class)
+                .setParameter("productIDs", productIDs)
+                .getResultList());
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private void refreshAfterCommit(Set<Long> stale, long productID) {
+        AfterCommit.run(transactionManager, () -> {
+            stale.add(productID);
+            refresher.execute(this::refresh);
+        });
+    }
+
+    /**
+     * Перечитывает коллекции и наличие измененных товаров. Чтение начинается после фиксации
+     * изменений, поэтому последнее обновление всегда видит итоговое состояние базы.
+     */
+    private void refresh() {
+        List<Long> collectionProducts = drain(staleCollections);
+        List<Long> stockProducts = drain(staleStock);
+        if (collectionProducts.isEmpty() && stockProducts.isEmpty()) return;
+        Map<Long, Set<Long>> collections;
+        Set<Long> inStock;
+        try {
+            collections = collectionProducts.isEmpty() ? Map.of() : loadCollections(collectionProducts);
+            inStock = stockProducts.isEmpty() ? Set.of() : loadInStock(stockProducts);
+        } catch (RuntimeException e) {
+            LOG.warn("Failed to refresh product facets: " + e.getMessage());
+            staleCollections.addAll(collectionProducts);
+            staleStock.addAll(stockProducts);
+            return;
+        }
+        lock.writeLock().lock();
+        try {
+            // До построения индекса изменения не нужны: построение прочитает их из базы
+            if (!built) return;
+            collections.forEach(index::setCollections);
+            for (Long productID : stockProducts) index.setInStock(productID, inStock.contains(productID));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private static List<Long> drain(Set<Long> stale) {
+        List<Long> productIDs = new ArrayList<>();
+        for (Iterator<Long> iterator = stale.iterator(); iterator.hasNext(); ) {
+            productIDs.add(iterator.next());
+            iterator.remove();
+        }
+        return productIDs;
+    }
+
+    private void update(Runnable change) {
+        AfterCommit.run(transactionManager, () -> {
+            lock.writeLock().lock();
+            try {
+                // До построения индекса изменения не нужны: построение прочитает их из базы
+                if (built) change.run();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    private void build() {
+        lock.writeLock().lock();
+        try {
+            if (built) return;
+            load();
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.io.BulkImport;
+import io.quarkus.runtime.ShutdownEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетный импорт товарных позиций из CSV или NDJSON. Каждая часть файла - одна транзакция
+ * с пакетными вставками и обновлениями (позиции сопоставляются по артикулу).
+ */
+@ApplicationScoped
+public class ProductImport extends BulkImport<ProductImportRow> {
+
+    @Inject Catalogue catalogue;
+
+    public ProductImport() {
+        super(ProductImportRow.class, "catalogue-import");
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        shutdown();
+    }
+
+    /**
+     * CSV с заголовком: vendorCode,name,description,unitPrice,available,collections
+     * (порядок колонок любой, коллекции через ';')
+     */
+    @Override
+    protected String keyColumn() {
+        return "vendorcode";
+    }
+
+    @Override
+    protected ProductImportRow parseCsv(Map<String, String> fields, long lineNumber) throws RowException {
+        ProductImportRow row = new ProductImportRow();
+        row.setVendorCode(fields.get("vendorcode"));
+        row.setName(fields.get("name"));
+        row.setDescription(fields.get("description"));
+        try {
+            String unitPrice = fields.get("unitprice");
+            if (unitPrice != null) row.setUnitPrice(Double.parseDouble(unitPrice));
+            String collections = fields.get("collections");
+            if (collections != null) {
+                List<Long> collectionIDs = new ArrayList<>();
+                for (String id : collections.split(";")) {
+                    if (!id.isBlank()) collectionIDs.add(Long.parseLong(id.trim()));
+                }
+                row.setCollections(collectionIDs);
+            }
+        } catch (NumberFormatException e) {
+            throw new RowException(lineNumber, "invalid number " + e.getMessage());
+        }
+        String available = fields.get("available");
+        if (available != null) {
+            if (!available.equalsIgnoreCase("true") && !available.equalsIgnoreCase("false")) {
+                throw new RowException(lineNumber, "available must be true or false");
+            }
+            row.setAvailable(Boolean.parseBoolean(available));
+        }
+        return row;
+    }
+
+    @Override
+    protected int importChunk(List<ProductImportRow> chunk, List<String> errors) throws HermesException {
+        return catalogue.importProducts(chunk, errors);
+    }
+
+}
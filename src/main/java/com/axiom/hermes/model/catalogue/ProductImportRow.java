@@ -0,0 +1,81 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.io.ImportRow;
+
+import javax.json.bind.annotation.JsonbTransient;
+import java.util.List;
+
+/**
+ * Строка файла импорта каталога: товарная позиция, определяемая артикулом, и коллекции,
+ * в которые её нужно включить. Незаполненные поля (null) у существующей позиции не меняются.
+ */
+public class ProductImportRow implements ImportRow {
+
+    private long lineNumber;                 // Номер строки в файле импорта
+    private String vendorCode;               // Артикул товара
+    private String name;                     // Наименование товара
+    private String description;              // Описание товара
+    private Double unitPrice;                // Цена отпуска товара
+    private Boolean available;               // Доступно ли клиентам для выбора
+    private List<Long> collections;          // ID коллекций, в которые входит товар
+
+    public ProductImportRow() {}
+
+    @JsonbTransient
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @JsonbTransient
+    public void setLineNumber(long lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    public String getVendorCode() {
+        return vendorCode;
+    }
+
+    public void setVendorCode(String vendorCode) {
+        this.vendorCode = vendorCode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(Double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(Boolean available) {
+        this.available = available;
+    }
+
+    public List<Long> getCollections() {
+        return collections;
+    }
+
+    public void setCollections(List<Long> collections) {
+        this.collections = collections;
+    }
+}
@@ -0,0 +1,90 @@
+package com.axiom.hermes.model.catalogue;
+
+/**
+ * Строка списка товарных позиций: только поля, запрошенные клиентом (остальные null и не
+ * попадают в JSON). Заполняется конструктором прямо в запросе JPQL, без загрузки сущностей.
+ */
+public class ProductListItem {
+
+    private Long productID;                  // ID товара
+    private String vendorCode;               // Артикул товара
+    private String name;                     // Наименование товара
+    private String description;              // Описание товара
+    private Double unitPrice;                // Цена отпуска товара
+    private Boolean available;               // Доступно ли клиентам для выбора
+    private Long timestamp;                  // Время последнего изменения в миллисекундах
+
+    public ProductListItem() {}
+
+    public ProductListItem(long productID, String vendorCode, String name,
+                           double unitPrice, boolean available, long timestamp) {
+        this.productID = productID;
+        this.vendorCode = vendorCode;
+        this.name = name;
+        this.unitPrice = unitPrice;
+        this.available = available;
+        this.timestamp = timestamp;
+    }
+
+    public ProductListItem(long productID, String vendorCode, String name, String description,
+                           double unitPrice, boolean available, long timestamp) {
+        this(productID, vendorCode, name, unitPrice, available, timestamp);
+        this.description = description;
+    }
+
+    public Long getProductID() {
+        return productID;
+    }
+
+    public void setProductID(Long productID) {
+        this.productID = productID;
+    }
+
+    public String getVendorCode() {
+        return vendorCode;
+    }
+
+    public void setVendorCode(String vendorCode) {
+        this.vendorCode = vendorCode;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getDescription() {
+        return description;
+    }
+
+    public void setDescription(String description) {
+        this.description = description;
+    }
+
+    public Double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(Double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    public Boolean getAvailable() {
+        return available;
+    }
+
+    public void setAvailable(Boolean available) {
+        this.available = available;
+    }
+
+    public Long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(Long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
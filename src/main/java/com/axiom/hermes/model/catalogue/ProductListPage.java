@@ -0,0 +1,25 @@
+package com.axiom.hermes.model.catalogue;
+
+import java.util.List;
+
+/**
+ * Страница списка товарных позиций
+ */
+public class ProductListPage {
+
+    private final List<ProductListItem> items;       // Товарные позиции страницы
+    private final String nextCursor;                 // Курсор следующей страницы или null если она последняя
+
+    public ProductListPage(List<ProductListItem> items, String nextCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+    }
+
+    public List<ProductListItem> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+}
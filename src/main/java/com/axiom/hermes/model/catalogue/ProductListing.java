@@ -0,0 +1,173 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.validation.Validator;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+import javax.transaction.Transactional;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Постраничный список товарных позиций для списков и администрирования. Страницы выбираются
+ * по ключу (keyset): следующая страница начинается после последней строки предыдущей, поэтому
+ * стоимость запроса не растет с номером страницы. Строки заполняются конструктором в JPQL,
+ * описание товара читается из базы только если его запросили.
+ */
+@ApplicationScoped
+public class ProductListing {
+
+    public static final int DEFAULT_LIMIT = 50;              // Размер страницы по умолчанию
+    public static final int MAX_LIMIT = 500;                 // Максимальный размер страницы
+
+    // Сортировка -> поле сущности (вторичный ключ всегда productID)
+    private static final Map<String, String> SORT_FIELDS = Map.of(
+            "name", "name",
+            "price", "unitPrice",
+            "timestamp", "timestamp");
+
+    private static final List<String> FIELDS = List.of(
+            "productID", "vendorCode", "name", "description", "unitPrice", "available", "timestamp");
+
+    private static final String ITEM = ProductListItem.class.getName();
+
+    @Inject EntityManager entityManager;
+
+    /**
+     * Возвращает страницу товарных позиций
+     * @param availableOnly только доступные для заказа
+     * @param sort поле сортировки: name, price или timestamp (null - name)
+     * @param descending по убыванию
+     * @param cursor курсор страницы из предыдущего ответа (null - первая страница)
+     * @param limit размер страницы (0 - по умолчанию)
+     * @param fields нужные поля через запятую (null - все кроме description); productID возвращается всегда
+     * @return страница и курсор следующей страницы
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ProductListPage list(boolean availableOnly, String sort, boolean descending, String cursor,
+                                int limit, String fields) throws HermesException {
+        if (sort == null || sort.isEmpty()) sort = "name";
+        String sortField = SORT_FIELDS.get(sort);
+        if (sortField == null) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "sort must be one of: " + String.join(",", SORT_FIELDS.keySet()));
+        }
+        Validator.nonNegativeInteger("limit", limit);
+        int pageSize = limit == 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT);
+        Set<String> projection = parseFields(fields);
+        boolean withDescription = projection.contains("description");
+
+        StringBuilder query = new StringBuilder("SELECT new ").append(ITEM).append("(p.productID, p.vendorCode, p.name, ");
+        if (withDescription) query.append("p.description, ");
+        query.append("p.unitPrice, p.available, p.timestamp) FROM Product p WHERE 1=1");
+        if (availableOnly) query.append(" AND p.available=TRUE");
+
+        String compare = descending ? "<" : ">";
+        String[] after = null;
+        if (cursor != null && !cursor.isEmpty()) {
+            after = decodeCursor(cursor, sort);
+            query.append(" AND (p.").append(sortField).append(compare).append(":value OR (p.")
+                    .append(sortField).append("=:value AND p.productID").append(compare).append(":productID))");
+        }
+        String direction = descending ? " DESC" : " ASC";
+        query.append(" ORDER BY p.").append(sortField).append(direction).append(", p.productID").append(direction);
+
+        List<ProductListItem> items;
+        try {
+            TypedQuery<ProductListItem> typedQuery = entityManager.createQuery(query.toString(), ProductListItem.class);
+            if (after != null) {
+                typedQuery.setParameter("productID", Long.parseLong(after[0]));
+                typedQuery.setParameter("value", parseSortValue(sort, after[1]));
+            }
+            // Одна лишняя строка показывает, есть ли следующая страница
+            items = typedQuery.setMaxResults(pageSize + 1).getResultList();
+        } catch (NumberFormatException e) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter", "Invalid cursor " + cursor);
+        } catch (RuntimeException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Query failed", e.getMessage());
+        }
+
+        String nextCursor = null;
+        if (items.size() > pageSize) {
+            items = new ArrayList<>(items.subList(0, pageSize));
+            ProductListItem last = items.get(pageSize - 1);
+            nextCursor = encodeCursor(sort, last.getProductID(), sortValue(sort, last));
+        }
+        for (ProductListItem item : items) project(item, projection);
+        return new ProductListPage(items, nextCursor);
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private Set<String> parseFields(String fields) throws HermesException {
+        Set<String> projection = new HashSet<>();
+        if (fields == null || fields.isBlank()) {
+            projection.addAll(FIELDS);
+            projection.remove("description");
+            return projection;
+        }
+        for (String field : fields.split(",")) {
+            field = field.trim();
+            if (field.isEmpty()) continue;
+            if (!FIELDS.contains(field)) {
+                throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                        "Unknown field '" + field + "'. Available fields: " + String.join(",", FIELDS));
+            }
+            projection.add(field);
+        }
+        projection.add("productID");
+        return projection;
+    }
+
+    private static void project(ProductListItem item, Set<String> projection) {
+        if (!projection.contains("vendorCode")) item.setVendorCode(null);
+        if (!projection.contains("name")) item.setName(null);
+        if (!projection.contains("unitPrice")) item.setUnitPrice(null);
+        if (!projection.contains("available")) item.setAvailable(null);
+        if (!projection.contains("timestamp")) item.setTimestamp(null);
+    }
+
+    private static String sortValue(String sort, ProductListItem item) {
+        switch (sort) {
+            case "price": return Double.toString(item.getUnitPrice());
+            case "timestamp": return Long.toString(item.getTimestamp());
+            default: return item.getName();
+        }
+    }
+
+    private static Object parseSortValue(String sort, String value) {
+        switch (sort) {
+            case "price": return Double.parseDouble(value);
+            case "timestamp": return Long.parseLong(value);
+            default: return value;
+        }
+    }
+
+    private static String encodeCursor(String sort, long productID, String value) {
+        String cursor = sort + ":" + productID + ":" + value;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(cursor.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Разбирает курсор "сортировка:productID:значение" (курсор действителен только для той же сортировки)
+     * @return {productID, значение поля сортировки}
+     */
+    private static String[] decodeCursor(String cursor, String sort) throws HermesException {
+        try {
+            String decoded = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            String[] parts = decoded.split(":", 3);
+            if (parts.length == 3 && parts[0].equals(sort)) return new String[] {parts[1], parts[2]};
+        } catch (IllegalArgumentException e) {
+            // Некорректный base64
+        }
+        throw new HermesException(BAD_REQUEST, "Invalid parameter", "Invalid cursor " + cursor);
+    }
+
+}
@@ -0,0 +1,114 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.transactions.AfterCommit;
+import com.axiom.hermes.model.catalogue.entities.Product;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.transaction.TransactionManager;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Поиск доступных для заказа товарных позиций. Индекс строится из каталога при первом
+ * поиске и затем обновляется после фиксации каждого изменения товарной позиции.
+ */
+@ApplicationScoped
+public class ProductSearch {
+
+    public static final int DEFAULT_LIMIT = 20;              // Количество результатов по умолчанию
+    public static final int MAX_LIMIT = 100;                 // Максимальное количество результатов
+    public static final int MAX_QUERY_LENGTH = 200;          // Максимальная длина запроса
+
+    @Inject Catalogue catalogue;
+    @Inject TransactionManager transactionManager;
+
+    private final SearchIndex index = new SearchIndex();
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private volatile boolean built = false;
+
+    /**
+     * Ищет доступные для заказа товарные позиции по названию, описанию и артикулу
+     * @param query строка запроса
+     * @param limit максимальное количество результатов (0 - по умолчанию)
+     * @return найденные позиции по убыванию релевантности
+     * @throws HermesException информация об ошибке
+     */
+    public List<Product> search(String query, int limit) throws HermesException {
+        if (query == null || query.isBlank()) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter", "Search query can not be empty.");
+        }
+        if (query.length() > MAX_QUERY_LENGTH) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "Search query can not be longer than " + MAX_QUERY_LENGTH + " characters.");
+        }
+        if (limit < 0) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter", "limit can not be negative.");
+        }
+        if (limit == 0) limit = DEFAULT_LIMIT;
+        if (!built) build();
+
+        lock.readLock().lock();
+        try {
+            return index.search(query, Math.min(limit, MAX_LIMIT));
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Обновить товарную позицию в индексе после фиксации текущей транзакции
+     * @param product карточка товарной позиции
+     */
+    public void productChanged(Product product) {
+        // Значения копируем сейчас - к моменту фиксации сущность может измениться
+        Product copy = SearchIndex.copy(product);
+        AfterCommit.run(transactionManager, () -> update(copy));
+    }
+
+    /**
+     * Удалить товарную позицию из индекса после фиксации текущей транзакции
+     * @param productID товарной позиции
+     */
+    public void productRemoved(long productID) {
+        AfterCommit.run(transactionManager, () -> {
+            lock.writeLock().lock();
+            try {
+                index.remove(productID);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private void update(Product product) {
+        lock.writeLock().lock();
+        try {
+            // До построения индекса изменения не нужны: построение прочитает их из базы
+            if (!built) return;
+            if (product.isAvailable()) index.put(product);
+            else index.remove(product.getProductID());
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void build() throws HermesException {
+        lock.writeLock().lock();
+        try {
+            if (built) return;
+            index.clear();
+            for (Product product : catalogue.getAvailableProducts()) index.put(product);
+            built = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+}
@@ -0,0 +1,140 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.model.catalogue.entities.Promotion;
+
+import java.util.*;
+
+/**
+ * Скомпилированные правила скидок: акции проиндексированы по товару и по коллекции, состав
+ * коллекций с акциями хранится здесь же, поэтому расчет скидки по позиции не обращается к базе.
+ * На позицию применяется одна акция - дающая наибольшую скидку. Неизменяем после создания.
+ */
+public class PromotionRules {
+
+    public static final PromotionRules EMPTY = new PromotionRules(Collections.emptyList(), Collections.emptyMap());
+
+    private final Map<Long, List<Rule>> byProduct = new HashMap<>();        // Акции на товар
+    private final Map<Long, List<Rule>> byCollection = new HashMap<>();     // Акции на коллекцию
+    private final List<Rule> global = new ArrayList<>();                    // Акции на все товары
+    private final Map<Long, Set<Long>> productCollections;                  // Товар -> коллекции с акциями
+
+    /**
+     * @param promotions акции
+     * @param productCollections коллекции с акциями, в которые входит товар
+     */
+    public PromotionRules(List<Promotion> promotions, Map<Long, Set<Long>> productCollections) {
+        for (Promotion promotion : promotions) {
+            Rule rule = new Rule(promotion);
+            if (promotion.getProductID() != 0) {
+                byProduct.computeIfAbsent(promotion.getProductID(), id -> new ArrayList<>()).add(rule);
+            } else if (promotion.getCollectionID() != 0) {
+                byCollection.computeIfAbsent(promotion.getCollectionID(), id -> new ArrayList<>()).add(rule);
+            } else {
+                global.add(rule);
+            }
+        }
+        this.productCollections = new HashMap<>();
+        for (Map.Entry<Long, Set<Long>> entry : productCollections.entrySet()) {
+            this.productCollections.put(entry.getKey(), new HashSet<>(entry.getValue()));
+        }
+    }
+
+    /**
+     * Рассчитывает скидку по позиции заказа
+     * @param customerID клиента
+     * @param productID товара
+     * @param quantity количество
+     * @param unitPrice цена товара
+     * @param time момент расчета в миллисекундах
+     * @return наибольшая скидка среди действующих акций или Discount.NONE
+     */
+    public Discount evaluate(long customerID, long productID, long quantity, double unitPrice, long time) {
+        if (quantity <= 0 || unitPrice <= 0) return Discount.NONE;
+        Rule best = null;
+        double bestAmount = 0;
+        List<List<Rule>> candidates = new ArrayList<>(3);
+        List<Rule> productRules = byProduct.get(productID);
+        if (productRules != null) candidates.add(productRules);
+        Set<Long> collections = productCollections.get(productID);
+        if (collections != null) {
+            for (long collectionID : collections) {
+                List<Rule> collectionRules = byCollection.get(collectionID);
+                if (collectionRules != null) candidates.add(collectionRules);
+            }
+        }
+        if (!global.isEmpty()) candidates.add(global);
+
+        for (List<Rule> rules : candidates) {
+            for (Rule rule : rules) {
+                if (rule.customerID != 0 && rule.customerID != customerID) continue;
+                if (time < rule.validFrom || (rule.validTo != 0 && time >= rule.validTo)) continue;
+                double amount = rule.discount(quantity, unitPrice);
+                if (amount > bestAmount) {
+                    best = rule;
+                    bestAmount = amount;
+                }
+            }
+        }
+        return best == null ? Discount.NONE : new Discount(best.promotionID, bestAmount);
+    }
+
+    /**
+     * Есть ли акции на коллекции (тогда правила зависят от состава коллекций)
+     * @return true если есть
+     */
+    public boolean hasCollectionRules() {
+        return !byCollection.isEmpty();
+    }
+
+    /**
+     * Коллекции, на которые есть акции
+     * @return коды коллекций
+     */
+    public Set<Long> getCollectionIDs() {
+        return Collections.unmodifiableSet(byCollection.keySet());
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private static class Rule {
+        final long promotionID;
+        final int type;
+        final long customerID;
+        final double percent;
+        final long minQuantity;
+        final long freeQuantity;
+        final long validFrom;
+        final long validTo;
+
+        Rule(Promotion promotion) {
+            promotionID = promotion.getPromotionID();
+            type = promotion.getType();
+            customerID = promotion.getCustomerID();
+            percent = promotion.getPercent();
+            minQuantity = promotion.getMinQuantity();
+            freeQuantity = promotion.getFreeQuantity();
+            validFrom = promotion.getValidFrom();
+            validTo = promotion.getValidTo();
+        }
+
+        double discount(long quantity, double unitPrice) {
+            double amount;
+            switch (type) {
+                case Promotion.PERCENTAGE:
+                    amount = quantity * unitPrice * percent / 100;
+                    break;
+                case Promotion.TIERED:
+                    amount = quantity >= minQuantity ? quantity * unitPrice * percent / 100 : 0;
+                    break;
+                case Promotion.BUNDLE:
+                    amount = minQuantity > 0 ? (quantity / minQuantity) * freeQuantity * unitPrice : 0;
+                    break;
+                default:
+                    amount = 0;
+            }
+            // Скидка в копейках и не больше суммы позиции
+            return Math.min(Math.round(amount * 100) / 100.0, quantity * unitPrice);
+        }
+    }
+
+}
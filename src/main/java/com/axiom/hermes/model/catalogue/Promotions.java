@@ -0,0 +1,221 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.transactions.AfterCommit;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.catalogue.entities.Promotion;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.transaction.TransactionManager;
+import javax.transaction.Transactional;
+import java.util.*;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Управление акциями (правилами скидок). Акции компилируются в PromotionRules при первом
+ * расчете и перекомпилируются после изменения акций или состава коллекций, на которые есть
+ * акции. Расчет скидок заказа - проход по его позициям без обращений к базе.
+ */
+@ApplicationScoped
+public class Promotions {
+
+    @Inject EntityManager entityManager;
+    @Inject TransactionManager transactionManager;
+
+    // Скомпилированные правила (null - нужно скомпилировать)
+    private volatile PromotionRules rules;
+    private long rulesVersion = 0;
+
+    /**
+     * Получить все акции
+     * @return список акций
+     */
+    @Transactional
+    public List<Promotion> getPromotions() {
+        String query = "SELECT a FROM Promotion a ORDER BY a.promotionID";
+        return entityManager.createQuery(query, Promotion.class).getResultList();
+    }
+
+    /**
+     * Получить акцию
+     * @param promotionID акции
+     * @return акция
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public Promotion getPromotion(long promotionID) throws HermesException {
+        Validator.nonNegativeInteger("promotionID", promotionID);
+        Promotion promotion = entityManager.find(Promotion.class, promotionID);
+        if (promotion == null) {
+            throw new HermesException(NOT_FOUND, "Promotion not found",
+                    "Requested promotionID=" + promotionID + " not found.");
+        }
+        return promotion;
+    }
+
+    /**
+     * Добавить акцию
+     * @param promotion новая акция
+     * @return сохраненная акция
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public Promotion addPromotion(Promotion promotion) throws HermesException {
+        if (promotion.getPromotionID() != 0) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "PromotionID is not zero. Do not specify promotionID when creating new Promotion.");
+        }
+        validate(promotion);
+        promotion.setTimestamp(System.currentTimeMillis());
+        entityManager.persist(promotion);
+        rulesChanged();
+        return promotion;
+    }
+
+    /**
+     * Изменить акцию (правило задается целиком)
+     * @param promotion акция
+     * @return измененная акция
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public Promotion updatePromotion(Promotion promotion) throws HermesException {
+        Promotion managed = getPromotion(promotion.getPromotionID());
+        validate(promotion);
+        managed.setName(promotion.getName());
+        managed.setType(promotion.getType());
+        managed.setProductID(promotion.getProductID());
+        managed.setCollectionID(promotion.getCollectionID());
+        managed.setCustomerID(promotion.getCustomerID());
+        managed.setPercent(promotion.getPercent());
+        managed.setMinQuantity(promotion.getMinQuantity());
+        managed.setFreeQuantity(promotion.getFreeQuantity());
+        managed.setValidFrom(promotion.getValidFrom());
+        managed.setValidTo(promotion.getValidTo());
+        managed.setTimestamp(System.currentTimeMillis());
+        entityManager.persist(managed);
+        rulesChanged();
+        return managed;
+    }
+
+    /**
+     * Удалить акцию (скидки уже оформленных позиций заказов не меняются)
+     * @param promotionID акции
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public void removePromotion(long promotionID) throws HermesException {
+        entityManager.remove(getPromotion(promotionID));
+        rulesChanged();
+    }
+
+    /**
+     * Возвращает скомпилированные правила скидок
+     * @return правила скидок
+     */
+    @Transactional
+    public PromotionRules getRules() {
+        PromotionRules snapshot = rules;
+        if (snapshot != null) return snapshot;
+        long version;
+        synchronized (this) {
+            version = rulesVersion;
+        }
+        snapshot = compile();
+        synchronized (this) {
+            // Не сохраняем правила, если акции изменились во время компиляции
+            if (version == rulesVersion) rules = snapshot;
+        }
+        return snapshot;
+    }
+
+    /**
+     * Перекомпилировать правила после фиксации текущей транзакции, если есть акции на коллекции
+     * (вызывается при изменении состава коллекций)
+     */
+    public void collectionItemsChanged() {
+        PromotionRules snapshot = rules;
+        if (snapshot != null && !snapshot.hasCollectionRules()) return;
+        rulesChanged();
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private PromotionRules compile() {
+        List<Promotion> promotions = entityManager
+                .createQuery("SELECT a FROM Promotion a", Promotion.class)
+                .getResultList();
+        if (promotions.isEmpty()) return PromotionRules.EMPTY;
+
+        Set<Long> collectionIDs = new HashSet<>();
+        for (Promotion promotion : promotions) {
+            if (promotion.getProductID() == 0 && promotion.getCollectionID() != 0) {
+                collectionIDs.add(promotion.getCollectionID());
+            }
+        }
+        Map<Long, Set<Long>> productCollections = new HashMap<>();
+        if (!collectionIDs.isEmpty()) {
+            String query = "SELECT i.productID, i.collectionID FROM CollectionItem i WHERE i.collectionID IN :ids";
+            for (Object[] row : entityManager.createQuery(query, Object[].class)
+                    .setParameter("ids", collectionIDs)
+                    .getResultList()) {
+                productCollections.computeIfAbsent((Long) row[0], id -> new HashSet<>()).add((Long) row[1]);
+            }
+        }
+        return new PromotionRules(promotions, productCollections);
+    }
+
+    private void rulesChanged() {
+        AfterCommit.run(transactionManager, () -> {
+            synchronized (this) {
+                rulesVersion++;
+                rules = null;
+            }
+        });
+    }
+
+    private static void validate(Promotion promotion) throws HermesException {
+        Validator.validateName(promotion.getName());
+        Validator.nonNegativeInteger("productID", promotion.getProductID());
+        Validator.nonNegativeInteger("collectionID", promotion.getCollectionID());
+        Validator.nonNegativeInteger("customerID", promotion.getCustomerID());
+        Validator.nonNegativeInteger("validFrom", promotion.getValidFrom());
+        Validator.nonNegativeInteger("validTo", promotion.getValidTo());
+        if (promotion.getProductID() != 0 && promotion.getCollectionID() != 0) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "Promotion can be scoped either to productID or to collectionID, not both.");
+        }
+        if (promotion.getValidTo() != 0 && promotion.getValidTo() <= promotion.getValidFrom()) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "validTo must be greater than validFrom or zero for unlimited promotion.");
+        }
+        switch (promotion.getType()) {
+            case Promotion.TIERED:
+                if (promotion.getMinQuantity() < 1) {
+                    throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                            "Tiered promotion requires minQuantity of at least 1.");
+                }
+                // Процент проверяется так же, как для PERCENTAGE
+            case Promotion.PERCENTAGE:
+                if (promotion.getPercent() <= 0 || promotion.getPercent() > 100) {
+                    throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                            "percent must be greater than 0 and not greater than 100.");
+                }
+                break;
+            case Promotion.BUNDLE:
+                if (promotion.getMinQuantity() < 2 || promotion.getFreeQuantity() < 1 ||
+                        promotion.getFreeQuantity() >= promotion.getMinQuantity()) {
+                    throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                            "Bundle promotion requires minQuantity >= 2 and 1 <= freeQuantity < minQuantity.");
+                }
+                break;
+            default:
+                throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                        "Unknown promotion type=" + promotion.getType() + ".");
+        }
+    }
+
+}
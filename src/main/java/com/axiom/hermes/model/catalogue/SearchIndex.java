@@ -0,0 +1,254 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.model.catalogue.entities.Product;
+
+import java.util.*;
+
+/**
+ * Инвертированный индекс товарных позиций для полнотекстового поиска по названию, описанию
+ * и артикулу. Термины хранятся в отсортированном словаре (поиск по префиксу), для терминов
+ * от MIN_FUZZY_LENGTH символов хранятся варианты с одним удаленным символом (SymSpell),
+ * что позволяет находить слова с одной опечаткой без перебора словаря.
+ * Релевантность: сумма по словам запроса веса поля * IDF термина, совпадение по префиксу
+ * и с опечаткой весит меньше точного, документы с большим числом найденных слов выше.
+ * Не потокобезопасен.
+ */
+public class SearchIndex {
+
+    public static final float NAME_WEIGHT = 3.0f;            // Вес совпадения в названии
+    public static final float VENDOR_CODE_WEIGHT = 4.0f;     // Вес совпадения в артикуле
+    public static final float DESCRIPTION_WEIGHT = 1.0f;     // Вес совпадения в описании
+    public static final float PREFIX_FACTOR = 0.6f;          // Множитель совпадения по префиксу
+    public static final float FUZZY_FACTOR = 0.5f;           // Множитель совпадения с опечаткой
+    public static final int MIN_PREFIX_LENGTH = 2;           // Минимальная длина слова для поиска по префиксу
+    public static final int MIN_FUZZY_LENGTH = 4;            // Минимальная длина слова для поиска с опечаткой
+    public static final int MAX_PREFIX_EXPANSIONS = 64;      // Сколько терминов проверять по одному префиксу
+
+    // Термин -> (товар -> вес термина в товаре)
+    private final TreeMap<String, Map<Long, Float>> postings = new TreeMap<>();
+    // Термин с одним удаленным символом -> термины словаря
+    private final Map<String, Set<String>> deletes = new HashMap<>();
+    // Товар -> его термины с весами (для удаления и обновления)
+    private final Map<Long, Map<String, Float>> documents = new HashMap<>();
+    // Товар -> копия карточки для выдачи результатов без обращения к базе
+    private final Map<Long, Product> products = new HashMap<>();
+
+    /**
+     * Добавляет или заменяет товарную позицию в индексе
+     * @param product карточка товарной позиции
+     */
+    public void put(Product product) {
+        remove(product.getProductID());
+        Map<String, Float> terms = new HashMap<>();
+        addTerms(terms, product.getName(), NAME_WEIGHT);
+        addTerms(terms, product.getDescription(), DESCRIPTION_WEIGHT);
+        addTerms(terms, product.getVendorCode(), VENDOR_CODE_WEIGHT);
+        // Артикул целиком, без разделителей: "AB-123" находится и по "ab123"
+        if (product.getVendorCode() != null) {
+            String code = normalize(product.getVendorCode()).replaceAll("[^\\p{L}\\p{Nd}]", "");
+            if (!code.isEmpty()) terms.merge(code, VENDOR_CODE_WEIGHT, Math::max);
+        }
+
+        long productID = product.getProductID();
+        for (Map.Entry<String, Float> term : terms.entrySet()) {
+            Map<Long, Float> termPostings = postings.get(term.getKey());
+            if (termPostings == null) {
+                termPostings = new HashMap<>();
+                postings.put(term.getKey(), termPostings);
+                addDeletes(term.getKey());
+            }
+            termPostings.put(productID, term.getValue());
+        }
+        documents.put(productID, terms);
+        products.put(productID, copy(product));
+    }
+
+    /**
+     * Удаляет товарную позицию из индекса
+     * @param productID товарной позиции
+     */
+    public void remove(long productID) {
+        Map<String, Float> terms = documents.remove(productID);
+        products.remove(productID);
+        if (terms == null) return;
+        for (String term : terms.keySet()) {
+            Map<Long, Float> termPostings = postings.get(term);
+            if (termPostings == null) continue;
+            termPostings.remove(productID);
+            if (termPostings.isEmpty()) {
+                postings.remove(term);
+                removeDeletes(term);
+            }
+        }
+    }
+
+    /**
+     * Очищает индекс
+     */
+    public void clear() {
+        postings.clear();
+        deletes.clear();
+        documents.clear();
+        products.clear();
+    }
+
+    /**
+     * Количество товарных позиций в индексе
+     * @return количество позиций
+     */
+    public int size() {
+        return documents.size();
+    }
+
+    /**
+     * Ищет товарные позиции по запросу
+     * @param query строка запроса
+     * @param limit максимальное количество результатов
+     * @return найденные позиции по убыванию релевантности
+     */
+    public List<Product> search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) return new ArrayList<>();
+
+        Map<Long, float[]> scores = new HashMap<>();        // товар -> {сумма, найдено слов}
+        for (String token : new LinkedHashSet<>(tokens)) {
+            Map<Long, Float> tokenScores = new HashMap<>();
+            match(token, 1.0f, tokenScores);
+            if (token.length() >= MIN_PREFIX_LENGTH) {
+                int expansions = 0;
+                for (String term : postings.subMap(token, false, token + Character.MAX_VALUE, false).keySet()) {
+                    if (++expansions > MAX_PREFIX_EXPANSIONS) break;
+                    match(term, PREFIX_FACTOR, tokenScores);
+                }
+            }
+            if (token.length() >= MIN_FUZZY_LENGTH) {
+                for (String term : fuzzyCandidates(token)) match(term, FUZZY_FACTOR, tokenScores);
+            }
+            for (Map.Entry<Long, Float> entry : tokenScores.entrySet()) {
+                float[] score = scores.computeIfAbsent(entry.getKey(), id -> new float[2]);
+                score[0] += entry.getValue();
+                score[1]++;
+            }
+        }
+
+        // Отбираем limit лучших: товары, где найдены все слова запроса, выше
+        int tokenCount = new LinkedHashSet<>(tokens).size();
+        Comparator<Map.Entry<Long, Float>> byScore = Comparator.<Map.Entry<Long, Float>>comparingDouble(Map.Entry::getValue)
+                .thenComparing(Map.Entry::getKey, Comparator.reverseOrder());
+        PriorityQueue<Map.Entry<Long, Float>> top = new PriorityQueue<>(limit + 1, byScore);
+        for (Map.Entry<Long, float[]> entry : scores.entrySet()) {
+            float relevance = entry.getValue()[0] * entry.getValue()[1] / tokenCount;
+            top.add(new AbstractMap.SimpleEntry<>(entry.getKey(), relevance));
+            if (top.size() > limit) top.poll();
+        }
+        List<Product> result = new ArrayList<>(top.size());
+        while (!top.isEmpty()) result.add(products.get(top.poll().getKey()));
+        Collections.reverse(result);
+        return result;
+    }
+
+    /**
+     * Разбивает текст на слова в нижнем регистре
+     * @param text текст
+     * @return список слов
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) return tokens;
+        for (String token : normalize(text).split("[^\\p{L}\\p{Nd}]+")) {
+            if (!token.isEmpty()) tokens.add(token);
+        }
+        return tokens;
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private void match(String term, float factor, Map<Long, Float> tokenScores) {
+        Map<Long, Float> termPostings = postings.get(term);
+        if (termPostings == null) return;
+        // IDF: редкие термины весят больше
+        float idf = (float) Math.log(1.0 + (double) documents.size() / termPostings.size());
+        for (Map.Entry<Long, Float> posting : termPostings.entrySet()) {
+            float score = posting.getValue() * idf * factor;
+            // По каждому слову запроса учитываем только лучшее совпадение в товаре
+            tokenScores.merge(posting.getKey(), score, Math::max);
+        }
+    }
+
+    private Set<String> fuzzyCandidates(String token) {
+        Set<String> candidates = new HashSet<>();
+        // Термин словаря = слово без одного символа или слово с лишним символом
+        Set<String> variants = deleteVariants(token);
+        variants.add(token);
+        for (String variant : variants) {
+            if (!variant.equals(token) && postings.containsKey(variant)) candidates.add(variant);
+            Set<String> terms = deletes.get(variant);
+            if (terms != null) candidates.addAll(terms);
+        }
+        candidates.remove(token);
+        candidates.removeIf(term -> distance(token, term) > 1);
+        return candidates;
+    }
+
+    private void addTerms(Map<String, Float> terms, String text, float weight) {
+        for (String token : tokenize(text)) terms.merge(token, weight, Math::max);
+    }
+
+    private void addDeletes(String term) {
+        if (term.length() < MIN_FUZZY_LENGTH) return;
+        for (String variant : deleteVariants(term)) {
+            deletes.computeIfAbsent(variant, v -> new HashSet<>(2)).add(term);
+        }
+    }
+
+    private void removeDeletes(String term) {
+        if (term.length() < MIN_FUZZY_LENGTH) return;
+        for (String variant : deleteVariants(term)) {
+            Set<String> terms = deletes.get(variant);
+            if (terms == null) continue;
+            terms.remove(term);
+            if (terms.isEmpty()) deletes.remove(variant);
+        }
+    }
+
+    private static Set<String> deleteVariants(String term) {
+        Set<String> variants = new HashSet<>();
+        for (int i = 0; i < term.length(); i++) {
+            variants.add(term.substring(0, i) + term.substring(i + 1));
+        }
+        return variants;
+    }
+
+    /**
+     * Расстояние Дамерау-Левенштейна (с перестановкой соседних символов)
+     */
+    static int distance(String a, String b) {
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) d[i][0] = i;
+        for (int j = 0; j <= b.length(); j++) d[0][j] = j;
+        for (int i = 1; i <= a.length(); i++) {
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static String normalize(String text) {
+        return text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+    }
+
+    static Product copy(Product product) {
+        Product copy = new Product(product.getVendorCode(), product.getName(),
+                product.getDescription(), product.getUnitPrice());
+        copy.setProductID(product.getProductID());
+        copy.setAvailable(product.isAvailable());
+        copy.setTimestamp(product.getTimestamp());
+        return copy;
+    }
+
+}
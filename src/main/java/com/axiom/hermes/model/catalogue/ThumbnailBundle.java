@@ -0,0 +1,58 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.model.catalogue.entities.ProductThumbnail;
+
+import java.util.List;
+
+/**
+ * Состав архива миниатюр: выбранные миниатюры товаров и товары без миниатюр.
+ * Из коллекции больше MAX_PRODUCTS товаров в архив попадают первые MAX_PRODUCTS (truncated).
+ * Тег вычисляется из пар (товар, хэш миниатюры), поэтому совпадает для одинакового содержимого.
+ */
+public class ThumbnailBundle {
+
+    private final int dimension;                     // Запрошенный размер миниатюр (px)
+    private final List<ProductThumbnail> thumbnails; // Миниатюры в порядке товаров
+    private final List<Long> missing;                // Товары без готовых миниатюр
+    private final long total;                        // Всего товаров в коллекции или запросе
+    private final String tag;                        // Тег версии содержимого
+    private final long lastModified;                 // Время создания самой новой миниатюры
+
+    public ThumbnailBundle(int dimension, List<ProductThumbnail> thumbnails, List<Long> missing, long total,
+                           String tag, long lastModified) {
+        this.dimension = dimension;
+        this.thumbnails = thumbnails;
+        this.missing = missing;
+        this.total = total;
+        this.tag = tag;
+        this.lastModified = lastModified;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public List<ProductThumbnail> getThumbnails() {
+        return thumbnails;
+    }
+
+    public List<Long> getMissing() {
+        return missing;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public boolean isTruncated() {
+        return total > thumbnails.size() + missing.size();
+    }
+
+    public String getTag() {
+        return tag;
+    }
+
+    public long getLastModified() {
+        return lastModified;
+    }
+}
@@ -0,0 +1,202 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.cache.LruCache;
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.storage.BlobStore;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.catalogue.entities.Collection;
+import com.axiom.hermes.model.catalogue.entities.ProductThumbnail;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.json.bind.Jsonb;
+import javax.json.bind.JsonbBuilder;
+import javax.persistence.EntityManager;
+import javax.transaction.Transactional;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.Deflater;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Архивы миниатюр коллекции или списка товаров: одна загрузка вместо запроса на каждую миниатюру.
+ * Миниатюры выбираются одним запросом, собранный архив кэшируется по тегу содержимого
+ * (архивы больше hermes.catalogue.bundle-cache-max-bytes не кэшируются, чтобы кэш
+ * не занимал больше bundle-cache-size * bundle-cache-max-bytes памяти).
+ */
+@ApplicationScoped
+public class ThumbnailBundles {
+
+    public static final int MAX_PRODUCTS = 500;              // Максимум товаров в архиве
+    public static final String MANIFEST = "manifest.json";   // Описание содержимого архива
+
+    @ConfigProperty(name = "hermes.catalogue.bundle-cache-size", defaultValue = "20")
+    int cacheSize;
+    @ConfigProperty(name = "hermes.catalogue.bundle-cache-max-bytes", defaultValue = "2097152")
+    int cacheMaxBytes;
+
+    @Inject EntityManager entityManager;
+    @Inject BlobStore blobStore;
+
+    private final Jsonb jsonb = JsonbBuilder.create();
+    private LruCache<String, byte[]> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Определяет состав архива миниатюр товаров коллекции (в порядке коллекции)
+     * @param collectionID коллекции
+     * @param dimension размер миниатюр (px)
+     * @return состав архива
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ThumbnailBundle resolveCollection(long collectionID, int dimension) throws HermesException {
+        Validator.nonNegativeInteger("collectionID", collectionID);
+        if (entityManager.find(Collection.class, collectionID) == null) {
+            throw new HermesException(NOT_FOUND, "Collection not found",
+                    "Requested collectionID=" + collectionID + " not found.");
+        }
+        String query = "SELECT i.productID FROM CollectionItem i WHERE i.collectionID=:collectionID " +
+                "ORDER BY i.orderNumber, i.itemID";
+        List<Long> productIDs = entityManager.createQuery(query, Long.class)
+                .setParameter("collectionID", collectionID)
+                .setMaxResults(MAX_PRODUCTS)
+                .getResultList();
+        long total = productIDs.size();
+        if (total == MAX_PRODUCTS) {
+            // Коллекция может быть больше архива - сообщаем в описании сколько товаров не вошло
+            total = entityManager.createQuery(
+                    "SELECT COUNT(i) FROM CollectionItem i WHERE i.collectionID=:collectionID", Long.class)
+                    .setParameter("collectionID", collectionID)
+                    .getSingleResult();
+        }
+        return resolve(productIDs, total, dimension);
+    }
+
+    /**
+     * Определяет состав архива миниатюр указанных товаров
+     * @param productIDs товары (не более MAX_PRODUCTS)
+     * @param dimension размер миниатюр (px)
+     * @return состав архива
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public ThumbnailBundle resolveProducts(List<Long> productIDs, int dimension) throws HermesException {
+        if (productIDs.isEmpty() || productIDs.size() > MAX_PRODUCTS) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "productIDs must contain from 1 to " + MAX_PRODUCTS + " products.");
+        }
+        for (long productID : productIDs) Validator.nonNegativeInteger("productID", productID);
+        List<Long> distinct = new ArrayList<>(new LinkedHashSet<>(productIDs));
+        return resolve(distinct, distinct.size(), dimension);
+    }
+
+    /**
+     * Возвращает содержимое архива (zip: миниатюры {productID}.jpg и manifest.json)
+     * @param bundle состав архива
+     * @return содержимое архива
+     * @throws HermesException информация об ошибке
+     */
+    public byte[] getContent(ThumbnailBundle bundle) throws HermesException {
+        byte[] content = cache.get(bundle.getTag());
+        if (content != null) return content;
+        long stamp = cache.stamp();
+        content = build(bundle);
+        if (content.length <= cacheMaxBytes) cache.put(bundle.getTag(), content, stamp);
+        return content;
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private ThumbnailBundle resolve(List<Long> productIDs, long total, int dimension) throws HermesException {
+        Validator.nonNegativeInteger("size", dimension);
+        Map<Long, ProductThumbnail> selected = new HashMap<>();
+        if (!productIDs.isEmpty()) {
+            // Все миниатюры всех товаров одним запросом, нужный размер выбираем здесь
+            String query = "SELECT t FROM ProductThumbnail t WHERE t.productID IN :productIDs ORDER BY t.dimension";
+            for (ProductThumbnail thumbnail : entityManager.createQuery(query, ProductThumbnail.class)
+                    .setParameter("productIDs", productIDs).getResultList()) {
+                ProductThumbnail current = selected.get(thumbnail.getProductID());
+                // Наименьшая не меньше запрошенной, иначе наибольшая
+                if (current == null || current.getDimension() < dimension) selected.put(thumbnail.getProductID(), thumbnail);
+            }
+        }
+
+        List<ProductThumbnail> thumbnails = new ArrayList<>();
+        List<Long> missing = new ArrayList<>();
+        MessageDigest digest = sha256();
+        long lastModified = 0;
+        digest.update((dimension + "/" + total).getBytes(StandardCharsets.UTF_8));
+        for (long productID : productIDs) {
+            ProductThumbnail thumbnail = selected.get(productID);
+            if (thumbnail == null) {
+                missing.add(productID);
+                digest.update((";" + productID + ":-").getBytes(StandardCharsets.UTF_8));
+                continue;
+            }
+            thumbnails.add(thumbnail);
+            lastModified = Math.max(lastModified, thumbnail.getTimestamp());
+            digest.update((";" + productID + ":" + thumbnail.getHash()).getBytes(StandardCharsets.UTF_8));
+        }
+        String tag = Base64.getUrlEncoder().withoutPadding().encodeToString(digest.digest());
+        return new ThumbnailBundle(dimension, thumbnails, missing, total, tag, lastModified);
+    }
+
+    private byte[] build(ThumbnailBundle bundle) throws HermesException {
+        List<Map<String, Object>> manifestThumbnails = new ArrayList<>();
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        try (ZipOutputStream zip = new ZipOutputStream(output)) {
+            // JPEG уже сжат - не тратим процессор на повторное сжатие
+            zip.setLevel(Deflater.NO_COMPRESSION);
+            for (ProductThumbnail thumbnail : bundle.getThumbnails()) {
+                String file = thumbnail.getProductID() + ".jpg";
+                zip.putNextEntry(new ZipEntry(file));
+                Files.copy(blobStore.getPath(thumbnail.getHash()), zip);
+                zip.closeEntry();
+
+                Map<String, Object> entry = new LinkedHashMap<>();
+                entry.put("productID", thumbnail.getProductID());
+                entry.put("file", file);
+                entry.put("dimension", thumbnail.getDimension());
+                entry.put("hash", thumbnail.getHash());
+                manifestThumbnails.add(entry);
+            }
+            Map<String, Object> manifest = new LinkedHashMap<>();
+            manifest.put("size", bundle.getDimension());
+            manifest.put("thumbnails", manifestThumbnails);
+            manifest.put("missing", bundle.getMissing());
+            manifest.put("total", bundle.getTotal());
+            manifest.put("truncated", bundle.isTruncated());
+            zip.putNextEntry(new ZipEntry(MANIFEST));
+            zip.write(jsonb.toJson(manifest).getBytes(StandardCharsets.UTF_8));
+            zip.closeEntry();
+        } catch (IOException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Cannot build thumbnail bundle", e.getMessage());
+        }
+        return output.toByteArray();
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
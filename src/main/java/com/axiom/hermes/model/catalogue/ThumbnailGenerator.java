@@ -0,0 +1,166 @@
+package com.axiom.hermes.model.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.storage.BlobStore;
+import com.axiom.hermes.common.transactions.AfterCommit;
+import com.axiom.hermes.model.catalogue.entities.ProductImage;
+import com.axiom.hermes.model.catalogue.entities.ProductThumbnail;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import net.coobird.thumbnailator.Thumbnails;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import javax.transaction.TransactionManager;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Фоновое создание миниатюр изображений товаров нескольких размеров. Работает на ограниченном
+ * пуле потоков с ограниченной очередью: когда очередь заполнена, новые загрузки изображений
+ * отклоняются до её разбора. Изображения, ожидающие миниатюр, но не стоящие в очереди
+ * (очередь была заполнена или сервер остановлен), периодически ставятся в очередь заново.
+ */
+@ApplicationScoped
+public class ThumbnailGenerator {
+
+    private static final Logger LOG = Logger.getLogger(ThumbnailGenerator.class);
+
+    public static final int DEFAULT_DIMENSION = 128;          // Размер миниатюры по умолчанию (px)
+    public static final int MAX_THUMBNAIL_SIZE = 0xFFFF;      // Начальный размер буфера миниатюры
+    private static final long RETRY_INTERVAL_MINUTES = 5;     // Период повторной постановки в очередь
+
+    @ConfigProperty(name = "hermes.thumbnails.sizes", defaultValue = "64,128,256,512")
+    List<Integer> dimensions;
+
+    @ConfigProperty(name = "hermes.thumbnails.workers", defaultValue = "2")
+    int workers;
+
+    @ConfigProperty(name = "hermes.thumbnails.queue-size", defaultValue = "100")
+    int queueSize;
+
+    @Inject BlobStore blobStore;
+    @Inject Catalogue catalogue;
+    @Inject TransactionManager transactionManager;
+
+    private ThreadPoolExecutor executor;
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();   // "productID:imageHash" в очереди
+    private final ScheduledExecutorService sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "thumbnails-sweep");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    @PostConstruct
+    void init() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workers, workers, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize), runnable -> {
+                    Thread thread = new Thread(runnable, "thumbnails-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    void onStart(@Observes StartupEvent event) {
+        sweeper.scheduleWithFixedDelay(this::submitPending, 0, RETRY_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        sweeper.shutdownNow();
+        executor.shutdownNow();
+    }
+
+    /**
+     * Проверяет, есть ли место в очереди для нового изображения
+     * @throws HermesException очередь заполнена
+     */
+    public void checkCapacity() throws HermesException {
+        if (executor.getQueue().remainingCapacity() == 0) {
+            throw new HermesException(SERVICE_UNAVAILABLE, "Too many images in processing",
+                    "Thumbnail queue is full (" + queueSize + " images). Retry upload later.");
+        }
+    }
+
+    /**
+     * Ставит создание миниатюр в очередь после фиксации текущей транзакции
+     * @param productID товара
+     * @param imageHash хэш изображения, из которого создаются миниатюры
+     */
+    public void schedule(long productID, String imageHash) {
+        AfterCommit.run(transactionManager, () -> submit(productID, imageHash));
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private void submitPending() {
+        try {
+            for (ProductImage image : catalogue.getPendingImages()) submit(image.getProductID(), image.getImageHash());
+        } catch (HermesException | RuntimeException e) {
+            LOG.warn("Failed to resume thumbnail generation: " + e.getMessage());
+        }
+    }
+
+    private void submit(long productID, String imageHash) {
+        String key = productID + ":" + imageHash;
+        if (!queued.add(key)) return;
+        try {
+            executor.execute(() -> {
+                try {
+                    generate(productID, imageHash);
+                } finally {
+                    queued.remove(key);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Статус изображения остается "в обработке" - оно будет поставлено в очередь повторно
+            queued.remove(key);
+            LOG.warn("Thumbnail queue is full, productID=" + productID + " postponed");
+        }
+    }
+
+    private void generate(long productID, String imageHash) {
+        List<ProductThumbnail> thumbnails = new ArrayList<>();
+        boolean complete = false;
+        try {
+            File imageFile = blobStore.getPath(imageHash).toFile();
+            for (int dimension : dimensions) {
+                ByteArrayOutputStream thumbnailOutput = new ByteArrayOutputStream(MAX_THUMBNAIL_SIZE);
+                Thumbnails.of(imageFile)
+                        .size(dimension, dimension)
+                        .outputFormat("jpg")
+                        .toOutputStream(thumbnailOutput);
+                byte[] thumbnail = thumbnailOutput.toByteArray();
+                thumbnails.add(new ProductThumbnail(productID, dimension, blobStore.put(thumbnail), thumbnail.length));
+            }
+            complete = true;
+        } catch (IOException | HermesException | RuntimeException e) {
+            LOG.warn("Failed to create thumbnails for productID=" + productID + ": " + e.getMessage());
+        }
+        try {
+            // Миниатюры, созданные до ошибки, удаляются из хранилища
+            catalogue.saveThumbnails(productID, imageHash, thumbnails, complete);
+        } catch (HermesException | RuntimeException e) {
+            LOG.warn("Failed to save thumbnails for productID=" + productID + ": " + e.getMessage());
+        }
+    }
+
+}
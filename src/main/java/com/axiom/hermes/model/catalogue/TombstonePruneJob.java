@@ -0,0 +1,50 @@
+package com.axiom.hermes.model.catalogue;
+
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ежечасное удаление устаревших записей об удалении объектов каталога - в фоне
+ * и в своей транзакции, чтобы не задерживать и не откатывать изменения каталога
+ */
+@ApplicationScoped
+public class TombstonePruneJob {
+
+    private static final Logger LOG = Logger.getLogger(TombstonePruneJob.class);
+    private static final long PRUNE_INTERVAL_MINUTES = 60;
+
+    @Inject Catalogue catalogue;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "tombstone-prune");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    void onStart(@Observes StartupEvent event) {
+        scheduler.scheduleWithFixedDelay(this::run, PRUNE_INTERVAL_MINUTES, PRUNE_INTERVAL_MINUTES, TimeUnit.MINUTES);
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        scheduler.shutdownNow();
+    }
+
+    private void run() {
+        // Ошибка не должна отменять следующие запуски
+        try {
+            int pruned = catalogue.pruneTombstones();
+            if (pruned > 0) LOG.infof("Catalogue tombstones pruned: %d", pruned);
+        } catch (Exception e) {
+            LOG.warn("Catalogue tombstone prune failed", e);
+        }
+    }
+
+}
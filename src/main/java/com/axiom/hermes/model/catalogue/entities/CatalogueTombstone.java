@@ -0,0 +1,65 @@
+package com.axiom.hermes.model.catalogue.entities;
+
+import javax.persistence.*;
+
+/**
+ * Запись об удалении объекта каталога (для синхронизации изменений офлайн клиентами)
+ */
+@Entity
+@Table(indexes = {
+    @Index(columnList = "timestamp, tombstoneID")
+})
+public class CatalogueTombstone {
+    //-------------------------------------------------------------------------------------------
+    public static final String PRODUCT = "product";                  // Товарная позиция
+    public static final String PRODUCT_IMAGE = "productImage";       // Изображение товара
+    public static final String COLLECTION = "collection";            // Коллекция
+    public static final String COLLECTION_ITEM = "collectionItem";   // Товар в коллекции
+    //-------------------------------------------------------------------------------------------
+
+    @Id @GeneratedValue
+    private long tombstoneID;                // Код записи
+    private String entityType;               // Тип удаленного объекта
+    private long entityID;                   // ID удаленного объекта
+    private long timestamp;                  // Время удаления в миллисекундах
+
+    public CatalogueTombstone() {}
+
+    public CatalogueTombstone(String entityType, long entityID, long timestamp) {
+        this.entityType = entityType;
+        this.entityID = entityID;
+        this.timestamp = timestamp;
+    }
+
+    public long getTombstoneID() {
+        return tombstoneID;
+    }
+
+    public void setTombstoneID(long tombstoneID) {
+        this.tombstoneID = tombstoneID;
+    }
+
+    public String getEntityType() {
+        return entityType;
+    }
+
+    public void setEntityType(String entityType) {
+        this.entityType = entityType;
+    }
+
+    public long getEntityID() {
+        return entityID;
+    }
+
+    public void setEntityID(long entityID) {
+        this.entityID = entityID;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -1,13 +1,14 @@
 package com.axiom.hermes.model.catalogue.entities;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
+import javax.persistence.*;
 
 /**
  * Коллекция товаров
  */
 @Entity
+@Table(indexes = {
+    @Index(columnList = "timestamp, collectionID")
+})
 public class Collection {
 
     @Id @GeneratedValue
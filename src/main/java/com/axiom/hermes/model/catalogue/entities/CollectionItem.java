@@ -10,6 +10,7 @@ import javax.persistence.*;
     @Index(columnList = "collectionID"),
     @Index(columnList = "productID"),
     @Index(name = "CollectionItemsIndex", columnList = "collectionID, productID"),
+    @Index(columnList = "timestamp, itemID")
 })
 public class CollectionItem {
 
@@ -18,12 +19,14 @@ public class CollectionItem {
     private long collectionID;
     private long productID;
     private int orderNumber;
+    private long timestamp;                  // Время последнего изменения в миллисекундах
 
     public CollectionItem() {}
 
     public CollectionItem(long collectionID, long productID) {
         this.collectionID = collectionID;
         this.productID = productID;
+        this.timestamp = System.currentTimeMillis();
     }
 
     public long getItemID() {
@@ -57,4 +60,12 @@ public class CollectionItem {
     public void setOrderNumber(int orderNumber) {
         this.orderNumber = orderNumber;
     }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
 }
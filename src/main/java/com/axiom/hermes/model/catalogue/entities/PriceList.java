@@ -0,0 +1,89 @@
+package com.axiom.hermes.model.catalogue.entities;
+
+import javax.persistence.*;
+
+/**
+ * Прайс-лист: цены на товары, действующие в указанный период. Прайс-лист без группы цен
+ * действует для всех клиентов, прайс-лист группы - только для клиентов этой группы
+ * и имеет приоритет над общими прайс-листами.
+ */
+@Entity
+@Table(indexes = {
+    @Index(columnList = "priceGroup, validFrom")
+})
+public class PriceList {
+
+    @Id @GeneratedValue
+    private long priceListID;                // Код прайс-листа
+    private String name;                     // Наименование прайс-листа
+    private String priceGroup;               // Группа цен клиентов (null - для всех клиентов)
+    private long validFrom;                  // Начало действия в миллисекундах (включительно)
+    private long validTo;                    // Окончание действия в миллисекундах (0 - бессрочно)
+    private long timestamp;                  // Время последнего изменения в миллисекундах
+
+    public PriceList() {}
+
+    public PriceList(String name, String priceGroup, long validFrom, long validTo) {
+        this.name = name;
+        this.priceGroup = priceGroup;
+        this.validFrom = validFrom;
+        this.validTo = validTo;
+    }
+
+    /**
+     * Действует ли прайс-лист в указанный момент
+     * @param time момент времени в миллисекундах
+     * @return true если действует
+     */
+    public boolean isEffective(long time) {
+        return validFrom <= time && (validTo == 0 || time < validTo);
+    }
+
+    public long getPriceListID() {
+        return priceListID;
+    }
+
+    public void setPriceListID(long priceListID) {
+        this.priceListID = priceListID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getPriceGroup() {
+        return priceGroup;
+    }
+
+    public void setPriceGroup(String priceGroup) {
+        this.priceGroup = priceGroup;
+    }
+
+    public long getValidFrom() {
+        return validFrom;
+    }
+
+    public void setValidFrom(long validFrom) {
+        this.validFrom = validFrom;
+    }
+
+    public long getValidTo() {
+        return validTo;
+    }
+
+    public void setValidTo(long validTo) {
+        this.validTo = validTo;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
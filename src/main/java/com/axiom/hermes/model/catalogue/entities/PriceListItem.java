@@ -0,0 +1,70 @@
+package com.axiom.hermes.model.catalogue.entities;
+
+import javax.persistence.*;
+
+/**
+ * Цена товара в прайс-листе
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "PriceListItemIndex", columnList = "priceListID, productID", unique = true),
+    @Index(columnList = "productID")
+})
+public class PriceListItem {
+
+    @Id @GeneratedValue
+    private long itemID;                     // Код позиции прайс-листа
+    private long priceListID;                // Код прайс-листа
+    private long productID;                  // ID товара
+    private double unitPrice;                // Цена отпуска товара по прайс-листу
+    private long timestamp;                  // Время последнего изменения в миллисекундах
+
+    public PriceListItem() {}
+
+    public PriceListItem(long priceListID, long productID, double unitPrice) {
+        this.priceListID = priceListID;
+        this.productID = productID;
+        this.unitPrice = unitPrice;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public long getItemID() {
+        return itemID;
+    }
+
+    public void setItemID(long itemID) {
+        this.itemID = itemID;
+    }
+
+    public long getPriceListID() {
+        return priceListID;
+    }
+
+    public void setPriceListID(long priceListID) {
+        this.priceListID = priceListID;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    public void setProductID(long productID) {
+        this.productID = productID;
+    }
+
+    public double getUnitPrice() {
+        return unitPrice;
+    }
+
+    public void setUnitPrice(double unitPrice) {
+        this.unitPrice = unitPrice;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
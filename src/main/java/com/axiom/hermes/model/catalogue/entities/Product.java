@@ -1,14 +1,19 @@
 package com.axiom.hermes.model.catalogue.entities;
 
-import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
-import javax.persistence.Id;
+import javax.persistence.*;
 
 /**
  * Карточка товарной позиции
  * Примечание: дополнительные аттрибуты в ProductAttributes
  */
 @Entity
+@Table(indexes = {
+    @Index(columnList = "available, timestamp"),
+    @Index(columnList = "vendorCode"),
+    @Index(columnList = "name, productID"),
+    @Index(columnList = "unitPrice, productID"),
+    @Index(columnList = "timestamp, productID")
+})
 public class Product {
     @Id
     @GeneratedValue
@@ -3,27 +3,42 @@ package com.axiom.hermes.model.catalogue.entities;
 
 import javax.persistence.Entity;
 import javax.persistence.Id;
+import javax.persistence.Index;
+import javax.persistence.Table;
 
 /**
- * Изображение товара с миниатюрой
+ * Изображение товара (файл хранится в BlobStore, здесь только его хэш).
+ * Миниатюры создаются в фоне и хранятся в ProductThumbnail.
  */
 @Entity
+@Table(indexes = {
+    @Index(columnList = "imageHash"),
+    @Index(columnList = "thumbnailStatus"),
+    @Index(columnList = "timestamp, productID")
+})
 public class ProductImage {
+    //-------------------------------------------------------------------------------------------
+    public static final int THUMBNAILS_PENDING = 0;          // Миниатюры ещё создаются
+    public static final int THUMBNAILS_READY = 1;            // Миниатюры созданы
+    public static final int THUMBNAILS_FAILED = 2;           // Не удалось создать миниатюры
+    //-------------------------------------------------------------------------------------------
 
     @Id
     private long productID;                  // ID товара
     private String filename;                 // Название файла
-    private byte[] thumbnail;                // Миниатюрное изображение
-    private byte[] image;                    // Полноразмерное изображение
+    private String imageHash;                // SHA-256 полноразмерного изображения
+    private long imageSize;                  // Размер полноразмерного изображения в байтах
+    private int thumbnailStatus;             // Статус создания миниатюр
     private long timestamp;                  // Время последнего изменения в миллисекундах
 
     public ProductImage() {}
 
-    public ProductImage(long productID, String filename, byte[] imageFile, byte[] thumbnail) {
+    public ProductImage(long productID, String filename, String imageHash, long imageSize) {
         this.productID = productID;
         this.filename = filename;
-        this.image = imageFile;
-        this.thumbnail = thumbnail;
+        this.imageHash = imageHash;
+        this.imageSize = imageSize;
+        this.thumbnailStatus = THUMBNAILS_PENDING;
         this.timestamp = System.currentTimeMillis();
     }
 
@@ -43,20 +58,28 @@ public class ProductImage {
         this.filename = filename;
     }
 
-    public byte[] getThumbnail() {
-        return thumbnail;
+    public String getImageHash() {
+        return imageHash;
     }
 
-    public void setThumbnail(byte[] thumbnail) {
-        this.thumbnail = thumbnail;
+    public void setImageHash(String imageHash) {
+        this.imageHash = imageHash;
     }
 
-    public byte[] getImage() {
-        return image;
+    public long getImageSize() {
+        return imageSize;
     }
 
-    public void setImage(byte[] image) {
-        this.image = image;
+    public void setImageSize(long imageSize) {
+        this.imageSize = imageSize;
+    }
+
+    public int getThumbnailStatus() {
+        return thumbnailStatus;
+    }
+
+    public void setThumbnailStatus(int thumbnailStatus) {
+        this.thumbnailStatus = thumbnailStatus;
     }
 
     public long getTimestamp() {
@@ -0,0 +1,80 @@
+package com.axiom.hermes.model.catalogue.entities;
+
+import javax.persistence.*;
+
+/**
+ * Миниатюра изображения товара определенного размера (файл хранится в BlobStore)
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "ProductThumbnailIndex", columnList = "productID, dimension", unique = true),
+    @Index(columnList = "hash")
+})
+public class ProductThumbnail {
+
+    @Id @GeneratedValue
+    private long thumbnailID;                // Код миниатюры
+    private long productID;                  // ID товара
+    private int dimension;                   // Размер, в который вписана миниатюра (px)
+    private String hash;                     // SHA-256 файла миниатюры
+    private long fileSize;                   // Размер файла миниатюры в байтах
+    private long timestamp;                  // Время создания в миллисекундах
+
+    public ProductThumbnail() {}
+
+    public ProductThumbnail(long productID, int dimension, String hash, long fileSize) {
+        this.productID = productID;
+        this.dimension = dimension;
+        this.hash = hash;
+        this.fileSize = fileSize;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    public long getThumbnailID() {
+        return thumbnailID;
+    }
+
+    public void setThumbnailID(long thumbnailID) {
+        this.thumbnailID = thumbnailID;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    public void setProductID(long productID) {
+        this.productID = productID;
+    }
+
+    public int getDimension() {
+        return dimension;
+    }
+
+    public void setDimension(int dimension) {
+        this.dimension = dimension;
+    }
+
+    public String getHash() {
+        return hash;
+    }
+
+    public void setHash(String hash) {
+        this.hash = hash;
+    }
+
+    public long getFileSize() {
+        return fileSize;
+    }
+
+    public void setFileSize(long fileSize) {
+        this.fileSize = fileSize;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
@@ -0,0 +1,128 @@
+package com.axiom.hermes.model.catalogue.entities;
+
+import javax.persistence.*;
+
+/**
+ * Правило скидки (акция). Действует на товар или на все товары коллекции (если не указано
+ * ни то, ни другое - на все товары), для одного клиента или для всех клиентов,
+ * в течение указанного периода.
+ */
+@Entity
+public class Promotion {
+
+    public static final int PERCENTAGE = 1;          // Процент от цены при любом количестве
+    public static final int TIERED = 2;              // Процент от цены начиная с minQuantity в позиции
+    public static final int BUNDLE = 3;              // За каждые minQuantity единиц freeQuantity бесплатно
+
+    @Id @GeneratedValue
+    private long promotionID;                // Код акции
+    private String name;                     // Наименование акции
+    private int type;                        // Тип скидки
+    private long productID;                  // Товар (0 - не ограничено товаром)
+    private long collectionID;               // Коллекция (0 - не ограничено коллекцией)
+    private long customerID;                 // Клиент (0 - все клиенты)
+    private double percent;                  // Процент скидки (PERCENTAGE, TIERED)
+    private long minQuantity;                // Порог количества (TIERED) или размер комплекта (BUNDLE)
+    private long freeQuantity;               // Бесплатных единиц в комплекте (BUNDLE)
+    private long validFrom;                  // Начало действия в миллисекундах (включительно)
+    private long validTo;                    // Окончание действия в миллисекундах (0 - бессрочно)
+    private long timestamp;                  // Время последнего изменения в миллисекундах
+
+    public Promotion() {}
+
+    public long getPromotionID() {
+        return promotionID;
+    }
+
+    public void setPromotionID(long promotionID) {
+        this.promotionID = promotionID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public void setType(int type) {
+        this.type = type;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    public void setProductID(long productID) {
+        this.productID = productID;
+    }
+
+    public long getCollectionID() {
+        return collectionID;
+    }
+
+    public void setCollectionID(long collectionID) {
+        this.collectionID = collectionID;
+    }
+
+    public long getCustomerID() {
+        return customerID;
+    }
+
+    public void setCustomerID(long customerID) {
+        this.customerID = customerID;
+    }
+
+    public double getPercent() {
+        return percent;
+    }
+
+    public void setPercent(double percent) {
+        this.percent = percent;
+    }
+
+    public long getMinQuantity() {
+        return minQuantity;
+    }
+
+    public void setMinQuantity(long minQuantity) {
+        this.minQuantity = minQuantity;
+    }
+
+    public long getFreeQuantity() {
+        return freeQuantity;
+    }
+
+    public void setFreeQuantity(long freeQuantity) {
+        this.freeQuantity = freeQuantity;
+    }
+
+    public long getValidFrom() {
+        return validFrom;
+    }
+
+    public void setValidFrom(long validFrom) {
+        this.validFrom = validFrom;
+    }
+
+    public long getValidTo() {
+        return validTo;
+    }
+
+    public void setValidTo(long validTo) {
+        this.validTo = validTo;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+}
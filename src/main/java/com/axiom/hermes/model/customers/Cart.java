@@ -0,0 +1,79 @@
+package com.axiom.hermes.model.customers;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Корзина клиента - черновик заказа, который хранится только в памяти до оформления
+ */
+public class Cart implements Serializable {
+    private long customerID;                                  // Код клиента
+    private final Map<Long, CartItem> items = new LinkedHashMap<>();  // Позиции корзины по коду товара
+    private long timestamp;                                   // Время последнего изменения корзины
+
+    public Cart() {}
+
+    public Cart(long customerID) {
+        this.customerID = customerID;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * Создает копию корзины (чтобы отдавать наружу, не держа блокировку хранилища)
+     * @return копия корзины
+     */
+    public Cart copy() {
+        Cart copy = new Cart(customerID);
+        for (CartItem item : items.values()) {
+            copy.items.put(item.getProductID(), new CartItem(item.getProductID(), item.getQuantity()));
+        }
+        copy.timestamp = timestamp;
+        return copy;
+    }
+
+    public long getCustomerID() {
+        return customerID;
+    }
+
+    public void setCustomerID(long customerID) {
+        this.customerID = customerID;
+    }
+
+    public List<CartItem> getItems() {
+        return new ArrayList<>(items.values());
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    int size() {
+        return items.size();
+    }
+
+    long getQuantity(long productID) {
+        CartItem item = items.get(productID);
+        return item == null ? 0 : item.getQuantity();
+    }
+
+    void setQuantity(long productID, long quantity) {
+        if (quantity <= 0) items.remove(productID);
+        else items.put(productID, new CartItem(productID, quantity));
+        timestamp = System.currentTimeMillis();
+    }
+
+    Map<Long, Long> toQuantities() {
+        Map<Long, Long> quantities = new LinkedHashMap<>();
+        for (CartItem item : items.values()) quantities.put(item.getProductID(), item.getQuantity());
+        return quantities;
+    }
+}
@@ -0,0 +1,34 @@
+package com.axiom.hermes.model.customers;
+
+import java.io.Serializable;
+
+/**
+ * Позиция корзины клиента
+ */
+public class CartItem implements Serializable {
+    private long productID;                  // Код товара
+    private long quantity;                   // Количество
+
+    public CartItem() {}
+
+    public CartItem(long productID, long quantity) {
+        this.productID = productID;
+        this.quantity = quantity;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    public void setProductID(long productID) {
+        this.productID = productID;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+}
@@ -0,0 +1,241 @@
+package com.axiom.hermes.model.customers;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.customers.entities.SalesOrder;
+import io.quarkus.runtime.ShutdownEvent;
+import io.quarkus.runtime.StartupEvent;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.jboss.logging.Logger;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * Корзины клиентов. Черновики заказов хранятся в памяти (ограниченное число корзин, вытеснение
+ * по времени жизни и давности использования) и попадают в базу данных только при оформлении,
+ * одной транзакцией. Опционально корзины сохраняются на диск при остановке сервера.
+ */
+@ApplicationScoped
+public class Carts {
+
+    private static final Logger LOG = Logger.getLogger(Carts.class);
+
+    public static final int MAX_CART_ITEMS = 500;                  // Максимум позиций в корзине
+    public static final long SWEEP_INTERVAL = 60 * 1000;           // Как часто удалять просроченные корзины
+
+    @ConfigProperty(name = "hermes.carts.max-carts", defaultValue = "10000")
+    int maxCarts;
+
+    @ConfigProperty(name = "hermes.carts.ttl-minutes", defaultValue = "1440")
+    long ttlMinutes;
+
+    @ConfigProperty(name = "hermes.carts.snapshot-path")
+    Optional<String> snapshotPath;
+
+    @Inject SalesOrders salesOrders;
+
+    // Корзины по коду клиента в порядке последнего обращения (LRU)
+    private final LinkedHashMap<Long, Cart> carts = new LinkedHashMap<>(256, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Long, Cart> eldest) {
+            return size() > maxCarts;
+        }
+    };
+    private long lastSweep = System.currentTimeMillis();
+
+    /**
+     * Получить корзину клиента (пустую если её нет)
+     * @param customerID клиента
+     * @return корзина клиента
+     * @throws HermesException информация об ошибке
+     */
+    public Cart getCart(long customerID) throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        synchronized (carts) {
+            Cart cart = getActiveCart(customerID, System.currentTimeMillis());
+            return cart == null ? new Cart(customerID) : cart.copy();
+        }
+    }
+
+    /**
+     * Добавить товар в корзину (количество суммируется с уже имеющимся)
+     * @param customerID клиента
+     * @param productID товара
+     * @param quantity количество
+     * @return обновленная корзина
+     * @throws HermesException информация об ошибке
+     */
+    public Cart addItem(long customerID, long productID, long quantity) throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        Validator.nonNegativeInteger("productID", productID);
+        Validator.nonNegativeInteger("quantity", quantity);
+        synchronized (carts) {
+            Cart cart = getOrCreateCart(customerID);
+            return setQuantity(cart, productID, cart.getQuantity(productID) + quantity);
+        }
+    }
+
+    /**
+     * Изменить количество товара в корзине (0 - удалить позицию)
+     * @param customerID клиента
+     * @param productID товара
+     * @param quantity новое количество
+     * @return обновленная корзина
+     * @throws HermesException информация об ошибке
+     */
+    public Cart updateItem(long customerID, long productID, long quantity) throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        Validator.nonNegativeInteger("productID", productID);
+        Validator.nonNegativeInteger("quantity", quantity);
+        synchronized (carts) {
+            Cart cart = getOrCreateCart(customerID);
+            return setQuantity(cart, productID, quantity);
+        }
+    }
+
+    /**
+     * Удалить корзину клиента
+     * @param customerID клиента
+     * @throws HermesException информация об ошибке
+     */
+    public void clearCart(long customerID) throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        synchronized (carts) {
+            carts.remove(customerID);
+        }
+    }
+
+    /**
+     * Оформить заказ из корзины: заказ и все его позиции сохраняются одной транзакцией.
+     * Корзина забирается до создания заказа, поэтому параллельное оформление той же корзины
+     * не создаст второй заказ; если заказ создать не удалось - корзина возвращается.
+     * @param customerID клиента
+     * @return созданный заказ
+     * @throws HermesException информация об ошибке
+     */
+    public SalesOrder checkout(long customerID) throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        Cart cart;
+        synchronized (carts) {
+            cart = getActiveCart(customerID, System.currentTimeMillis());
+            if (cart == null || cart.size() == 0) {
+                throw new HermesException(NOT_FOUND, "Cart is empty",
+                        "Cart of customerID=" + customerID + " is empty or expired.");
+            }
+            carts.remove(customerID);
+        }
+
+        boolean ordered = false;
+        try {
+            SalesOrder salesOrder = salesOrders.addOrder(customerID, cart.toQuantities());
+            ordered = true;
+            return salesOrder;
+        } finally {
+            // Возвращаем корзину, если клиент не начал новую пока оформлялся заказ
+            if (!ordered) {
+                synchronized (carts) {
+                    carts.putIfAbsent(customerID, cart);
+                }
+            }
+        }
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+    // Сохранение корзин на диск
+    //-----------------------------------------------------------------------------------------------------
+
+    void onStart(@Observes StartupEvent event) {
+        if (snapshotPath.isEmpty()) return;
+        Path path = Paths.get(snapshotPath.get());
+        if (!Files.exists(path)) return;
+        try (ObjectInputStream input = new ObjectInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+            @SuppressWarnings("unchecked")
+            List<Cart> saved = (List<Cart>) input.readObject();
+            long now = System.currentTimeMillis();
+            synchronized (carts) {
+                for (Cart cart : saved) {
+                    if (!isExpired(cart, now)) carts.put(cart.getCustomerID(), cart);
+                }
+            }
+            LOG.infof("Loaded %d carts from %s", carts.size(), path);
+        } catch (IOException | ClassNotFoundException | ClassCastException e) {
+            LOG.warn("Failed to load carts snapshot " + path, e);
+        }
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        if (snapshotPath.isEmpty()) return;
+        Path path = Paths.get(snapshotPath.get());
+        List<Cart> snapshot;
+        synchronized (carts) {
+            snapshot = new ArrayList<>(carts.values());
+        }
+        // Пишем во временный файл и заменяем, чтобы не оставить повреждённый снимок
+        Path temp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (ObjectOutputStream output = new ObjectOutputStream(new BufferedOutputStream(Files.newOutputStream(temp)))) {
+            output.writeObject(snapshot);
+        } catch (IOException e) {
+            LOG.warn("Failed to save carts snapshot " + path, e);
+            return;
+        }
+        try {
+            Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            LOG.infof("Saved %d carts to %s", snapshot.size(), path);
+        } catch (IOException e) {
+            LOG.warn("Failed to save carts snapshot " + path, e);
+        }
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+    // Вызываются под блокировкой carts
+    //-----------------------------------------------------------------------------------------------------
+
+    private Cart getActiveCart(long customerID, long now) {
+        sweepExpired(now);
+        Cart cart = carts.get(customerID);
+        if (cart != null && isExpired(cart, now)) {
+            carts.remove(customerID);
+            return null;
+        }
+        return cart;
+    }
+
+    private Cart getOrCreateCart(long customerID) {
+        Cart cart = getActiveCart(customerID, System.currentTimeMillis());
+        if (cart == null) {
+            cart = new Cart(customerID);
+            carts.put(customerID, cart);
+        }
+        return cart;
+    }
+
+    private Cart setQuantity(Cart cart, long productID, long quantity) throws HermesException {
+        if (quantity > 0 && cart.getQuantity(productID) == 0 && cart.size() >= MAX_CART_ITEMS) {
+            throw new HermesException(FORBIDDEN, "Cart is full",
+                    "Cart cannot contain more than " + MAX_CART_ITEMS + " items.");
+        }
+        cart.setQuantity(productID, quantity);
+        return cart.copy();
+    }
+
+    private boolean isExpired(Cart cart, long now) {
+        return now - cart.getTimestamp() > ttlMinutes * 60 * 1000;
+    }
+
+    private void sweepExpired(long now) {
+        if (now - lastSweep < SWEEP_INTERVAL) return;
+        lastSweep = now;
+        carts.values().removeIf(cart -> isExpired(cart, now));
+    }
+
+}
@@ -0,0 +1,65 @@
+package com.axiom.hermes.model.customers;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.io.BulkImport;
+import io.quarkus.runtime.ShutdownEvent;
+
+import javax.enterprise.context.ApplicationScoped;
+import javax.enterprise.event.Observes;
+import javax.inject.Inject;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Пакетный импорт клиентов из CSV или NDJSON. Клиенты сопоставляются по нормализованному
+ * мобильному номеру: существующие дополняются заполненными полями, новые создаются пакетными
+ * вставками; каждая часть файла - одна транзакция.
+ */
+@ApplicationScoped
+public class CustomerImport extends BulkImport<CustomerImportRow> {
+
+    @Inject Customers customers;
+
+    public CustomerImport() {
+        super(CustomerImportRow.class, "customers-import");
+    }
+
+    void onStop(@Observes ShutdownEvent event) {
+        shutdown();
+    }
+
+    /**
+     * CSV с заголовком: mobile,businessID,name,address,city,country,verified,priceGroup
+     * (порядок колонок любой)
+     */
+    @Override
+    protected String keyColumn() {
+        return "mobile";
+    }
+
+    @Override
+    protected CustomerImportRow parseCsv(Map<String, String> fields, long lineNumber) throws RowException {
+        CustomerImportRow row = new CustomerImportRow();
+        row.setMobile(fields.get("mobile"));
+        row.setBusinessID(fields.get("businessid"));
+        row.setName(fields.get("name"));
+        row.setAddress(fields.get("address"));
+        row.setCity(fields.get("city"));
+        row.setCountry(fields.get("country"));
+        row.setPriceGroup(fields.get("pricegroup"));
+        String verified = fields.get("verified");
+        if (verified != null) {
+            if (!verified.equalsIgnoreCase("true") && !verified.equalsIgnoreCase("false")) {
+                throw new RowException(lineNumber, "verified must be true or false");
+            }
+            row.setVerified(Boolean.parseBoolean(verified));
+        }
+        return row;
+    }
+
+    @Override
+    protected int importChunk(List<CustomerImportRow> chunk, List<String> errors) throws HermesException {
+        return customers.importCustomers(chunk, errors);
+    }
+
+}
@@ -0,0 +1,112 @@
+package com.axiom.hermes.model.customers;
+
+import com.axiom.hermes.common.io.ImportRow;
+
+import javax.json.bind.annotation.JsonbTransient;
+
+/**
+ * Строка файла импорта клиентов: клиент определяется мобильным номером.
+ * Незаполненные поля (null) у существующего клиента не меняются.
+ */
+public class CustomerImportRow implements ImportRow {
+
+    private long lineNumber;                 // Номер строки в файле импорта
+    private String mobile;                   // Мобильный номер
+    private String businessID;               // БИН/ИИН клиента
+    private String name;                     // Имя клиента (ФИО/ИП/ТОО)
+    private String address;                  // Адрес клиента
+    private String city;                     // Город
+    private String country;                  // Страна
+    private Boolean verified;                // Проверенный ли клиент
+    private String priceGroup;               // Группа цен клиента
+
+    public CustomerImportRow() {}
+
+    @JsonbTransient
+    public long getLineNumber() {
+        return lineNumber;
+    }
+
+    @JsonbTransient
+    public void setLineNumber(long lineNumber) {
+        this.lineNumber = lineNumber;
+    }
+
+    public String getMobile() {
+        return mobile;
+    }
+
+    public void setMobile(String mobile) {
+        this.mobile = mobile;
+    }
+
+    public String getBusinessID() {
+        return businessID;
+    }
+
+    public void setBusinessID(String businessID) {
+        this.businessID = businessID;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getAddress() {
+        return address;
+    }
+
+    public void setAddress(String address) {
+        this.address = address;
+    }
+
+    public String getCity() {
+        return city;
+    }
+
+    public void setCity(String city) {
+        this.city = city;
+    }
+
+    public String getCountry() {
+        return country;
+    }
+
+    public void setCountry(String country) {
+        this.country = country;
+    }
+
+    public Boolean getVerified() {
+        return verified;
+    }
+
+    public void setVerified(Boolean verified) {
+        this.verified = verified;
+    }
+
+    public String getPriceGroup() {
+        return priceGroup;
+    }
+
+    public void setPriceGroup(String priceGroup) {
+        this.priceGroup = priceGroup;
+    }
+
+    /**
+     * Дополняет строку заполненными полями более поздней строки с тем же мобильным номером
+     * @param later более поздняя строка
+     */
+    public void merge(CustomerImportRow later) {
+        if (later.businessID != null) businessID = later.businessID;
+        if (later.name != null) name = later.name;
+        if (later.address != null) address = later.address;
+        if (later.city != null) city = later.city;
+        if (later.country != null) country = later.country;
+        if (later.verified != null) verified = later.verified;
+        if (later.priceGroup != null) priceGroup = later.priceGroup;
+    }
+}
@@ -0,0 +1,27 @@
+package com.axiom.hermes.model.customers;
+
+import com.axiom.hermes.model.customers.entities.Customer;
+
+import java.util.List;
+
+/**
+ * Страница результатов поиска клиентов
+ */
+public class CustomerSearchResult {
+
+    private final long total;                                // Всего найдено клиентов
+    private final List<Customer> customers;                  // Страница найденных клиентов
+
+    public CustomerSearchResult(long total, List<Customer> customers) {
+        this.total = total;
+        this.customers = customers;
+    }
+
+    public long getTotal() {
+        return total;
+    }
+
+    public List<Customer> getCustomers() {
+        return customers;
+    }
+}
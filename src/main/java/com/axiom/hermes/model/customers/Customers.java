@@ -1,28 +1,55 @@
 package com.axiom.hermes.model.customers;
 
+import com.axiom.hermes.common.cache.LruCache;
 import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.transactions.AfterCommit;
 import com.axiom.hermes.common.validation.Validator;
 import com.axiom.hermes.model.customers.entities.Customer;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+import org.hibernate.exception.ConstraintViolationException;
 
+import javax.annotation.PostConstruct;
 import javax.enterprise.context.ApplicationScoped;
 import javax.inject.Inject;
 import javax.persistence.EntityManager;
-import javax.persistence.NoResultException;
 import javax.persistence.PersistenceException;
+import javax.persistence.TypedQuery;
+import javax.transaction.SystemException;
+import javax.transaction.TransactionManager;
 import javax.transaction.Transactional;
-import java.util.List;
+import java.util.*;
 
 import static com.axiom.hermes.common.exceptions.HermesException.*;
 
 /**
- * Управление клиентами
+ * Управление клиентами. Мобильный номер клиента уникален (уникальный индекс по нормализованному
+ * номеру), соответствие номера и кода клиента кэшируется: вход в приложение по номеру телефона
+ * выполняется при каждом начале сессии.
  */
 @ApplicationScoped
 public class Customers {
 
+    public static final int DEFAULT_LIMIT = 50;              // Размер страницы поиска по умолчанию
+    public static final int MAX_LIMIT = 500;                 // Максимальный размер страницы поиска
+    private static final String MOBILE_INDEX = "CustomerMobileIndex";  // Уникальный индекс Customer.mobile
+
+    @ConfigProperty(name = "hermes.customers.mobile-cache-size", defaultValue = "10000")
+    int cacheSize;
+
     @Inject
     EntityManager entityManager;
 
+    @Inject
+    TransactionManager transactionManager;
+
+    // Код клиента по нормализованному мобильному номеру
+    private LruCache<String, Long> customerIDs;
+
+    @PostConstruct
+    void init() {
+        customerIDs = new LruCache<>(cacheSize);
+    }
+
     /**
      * Получит список всех клиентов
      * @return список карточек клиентов
@@ -35,6 +62,74 @@ public class Customers {
         return customers;
     }
 
+    /**
+     * Поиск клиентов: имя и город - по подстроке без учета регистра, БИН/ИИН - по префиксу,
+     * мобильный номер - по любой части цифр. Условия объединяются по И. Поиск использует
+     * триграммные и префиксный индексы (см. import.sql).
+     * @param name часть имени (null - не важно)
+     * @param businessID начало БИН/ИИН (null - не важно)
+     * @param city часть названия города (null - не важно)
+     * @param mobile часть мобильного номера (null - не важно)
+     * @param offset сколько найденных клиентов пропустить
+     * @param limit размер страницы (0 - по умолчанию)
+     * @return страница найденных клиентов в порядке имени и общее количество найденных
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public CustomerSearchResult searchCustomers(String name, String businessID, String city, String mobile,
+                                                int offset, int limit) throws HermesException {
+        Validator.nonNegativeInteger("offset", offset);
+        Validator.nonNegativeInteger("limit", limit);
+
+        List<String> conditions = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        if (name != null && !name.isBlank()) {
+            conditions.add("LOWER(a.name) LIKE :p" + values.size() + " ESCAPE '!'");
+            values.add("%" + escapeLike(name.trim().toLowerCase()) + "%");
+        }
+        if (city != null && !city.isBlank()) {
+            conditions.add("LOWER(a.city) LIKE :p" + values.size() + " ESCAPE '!'");
+            values.add("%" + escapeLike(city.trim().toLowerCase()) + "%");
+        }
+        if (businessID != null && !businessID.isBlank()) {
+            conditions.add("a.businessID LIKE :p" + values.size() + " ESCAPE '!'");
+            values.add(escapeLike(businessID.trim()) + "%");
+        }
+        if (mobile != null && !mobile.isBlank()) {
+            // Мобильные номера хранятся нормализованными: +XXXXXXXXXXX
+            String digits = mobile.replaceAll("\\D", "");
+            if (digits.isEmpty()) {
+                throw new HermesException(BAD_REQUEST, "Invalid parameter", "Mobile must contain digits.");
+            }
+            conditions.add("a.mobile LIKE :p" + values.size());
+            values.add("%" + digits + "%");
+        }
+        if (conditions.isEmpty()) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "Specify at least one of name, businessID, city or mobile.");
+        }
+
+        String where = " WHERE " + String.join(" AND ", conditions);
+        try {
+            TypedQuery<Long> count = entityManager.createQuery("SELECT COUNT(a) FROM Customer a" + where, Long.class);
+            TypedQuery<Customer> page = entityManager.createQuery(
+                    "SELECT a FROM Customer a" + where + " ORDER BY a.name, a.customerID", Customer.class);
+            for (int i = 0; i < values.size(); i++) {
+                count.setParameter("p" + i, values.get(i));
+                page.setParameter("p" + i, values.get(i));
+            }
+            long total = count.getSingleResult();
+            List<Customer> customers = total == 0 ? new ArrayList<>() : page
+                    .setFirstResult(offset)
+                    .setMaxResults(limit == 0 ? DEFAULT_LIMIT : Math.min(limit, MAX_LIMIT))
+                    .getResultList();
+            return new CustomerSearchResult(total, customers);
+        } catch (PersistenceException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
+        }
+    }
+
     /**
      * Получить карточку клиента
      * @param customerID карточки клиента
@@ -61,15 +156,19 @@ public class Customers {
     @Transactional
     public Customer getCustomerByMobile(String mobile) throws HermesException {
         mobile = Validator.validateMobile(mobile);
-        try {
-            String query = "SELECT a FROM Customer a WHERE a.mobile='" + mobile + "'";
-            return entityManager.createQuery(query, Customer.class).getSingleResult();
-        } catch (NoResultException e){
+        Long customerID = customerIDs.get(mobile);
+        if (customerID != null) {
+            Customer customer = entityManager.find(Customer.class, customerID);
+            if (customer != null && mobile.equals(customer.getMobile())) return customer;
+        }
+        long stamp = customerIDs.stamp();
+        Customer customer = findByMobile(mobile);
+        if (customer == null) {
             throw new HermesException(NOT_FOUND, "Customer not found",
                     "Customer where mobile='" + mobile + "' not found.");
-        } catch (PersistenceException e) {
-            throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
         }
+        customerIDs.put(mobile, customer.getCustomerID(), stamp);
+        return customer;
     }
 
     /**
@@ -79,22 +178,95 @@ public class Customers {
      */
     @Transactional
     public Customer addCustomer(Customer customer) throws HermesException {
-        String mobile = customer.getMobile();
-        mobile = Validator.validateMobile(mobile);
+        String mobile = Validator.validateMobile(customer.getMobile());
         customer.setMobile(mobile);
+        checkMobileIsFree(mobile, 0, "Cannot add customer");
+        persistUnique(customer, "Cannot add customer");
+        return customer;
+    }
+
+    /**
+     * Импортирует часть файла импорта одной транзакцией: клиенты сопоставляются по нормализованному
+     * мобильному номеру, повторы номера в части файла объединяются, существующие клиенты дополняются
+     * заполненными полями, новые создаются пакетами (hibernate.jdbc.batch_size). Строка с другим
+     * БИН/ИИН, чем у клиента с тем же номером, считается конфликтом и пропускается.
+     * @param rows строки файла импорта
+     * @param errors сюда добавляются сообщения о пропущенных строках и конфликтах
+     * @return количество созданных клиентов
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public int importCustomers(List<CustomerImportRow> rows, List<String> errors) throws HermesException {
+        // Проверяем строки и объединяем повторы мобильного номера
+        Map<String, CustomerImportRow> byMobile = new LinkedHashMap<>();
+        for (CustomerImportRow row : rows) {
+            try {
+                row.setMobile(Validator.validateMobile(row.getMobile()));
+                if (row.getBusinessID() != null) Validator.validateBusinessID(row.getBusinessID());
+            } catch (HermesException e) {
+                errors.add("line " + row.getLineNumber() + ": " + e.getMessage());
+                continue;
+            }
+            CustomerImportRow previous = byMobile.get(row.getMobile());
+            if (previous == null) {
+                byMobile.put(row.getMobile(), row);
+            } else if (isConflict(previous.getBusinessID(), row.getBusinessID())) {
+                errors.add("line " + row.getLineNumber() + ": conflict with line " + previous.getLineNumber() +
+                        ", same mobile " + row.getMobile() + " but businessID " + row.getBusinessID() +
+                        " instead of " + previous.getBusinessID());
+            } else {
+                previous.merge(row);
+            }
+        }
+        if (byMobile.isEmpty()) return 0;
+
+        int created = 0;
         try {
-            // Ищем клиента с таким же мобильным номером
-            Customer found = getCustomerByMobile(customer.getMobile());
-            // Если нашли - добавлять клиента нельзя
-            throw new HermesException(FORBIDDEN, "Cannot add customer",
-                    "Customer with the same mobile already exist, its customerID=" + found.getCustomerID());
-        } catch (HermesException exception) {
-            // Если не нашли - добавляем
-            if (exception.getStatus()== NOT_FOUND) {
-                entityManager.persist(customer);
-                return customer;
-            } else throw exception;
+            // Существующие клиенты одним запросом
+            Map<String, Customer> existing = new HashMap<>();
+            String query = "SELECT a FROM Customer a WHERE a.mobile IN :mobiles";
+            for (Customer customer : entityManager.createQuery(query, Customer.class)
+                    .setParameter("mobiles", byMobile.keySet()).getResultList()) {
+                existing.put(customer.getMobile(), customer);
+            }
+
+            for (CustomerImportRow row : byMobile.values()) {
+                Customer customer = existing.get(row.getMobile());
+                if (customer != null && isConflict(customer.getBusinessID(), row.getBusinessID())) {
+                    errors.add("line " + row.getLineNumber() + ": conflict with customerID=" +
+                            customer.getCustomerID() + ", same mobile " + row.getMobile() + " but businessID " +
+                            row.getBusinessID() + " instead of " + customer.getBusinessID());
+                    continue;
+                }
+                boolean isNew = customer == null;
+                if (isNew) {
+                    customer = new Customer();
+                    customer.setMobile(row.getMobile());
+                }
+                if (row.getBusinessID() != null) customer.setBusinessID(row.getBusinessID());
+                if (row.getName() != null) customer.setName(row.getName());
+                if (row.getAddress() != null) customer.setAddress(row.getAddress());
+                if (row.getCity() != null) customer.setCity(row.getCity());
+                if (row.getCountry() != null) customer.setCountry(row.getCountry());
+                if (row.getVerified() != null) customer.setVerified(row.getVerified());
+                if (row.getPriceGroup() != null) {
+                    customer.setPriceGroup(row.getPriceGroup().isBlank() ? null : row.getPriceGroup().trim());
+                }
+                if (isNew) {
+                    entityManager.persist(customer);
+                    created++;
+                }
+            }
+            entityManager.flush();
+        } catch (PersistenceException exception) {
+            try {
+                transactionManager.setRollbackOnly();
+            } catch (IllegalStateException | SystemException e) {
+                e.printStackTrace();
+            }
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Import failed", exception.getMessage());
         }
+        return created;
     }
 
     /**
@@ -105,10 +277,14 @@ public class Customers {
     @Transactional
     public Customer updateCustomer(Customer customer) throws HermesException {
         Customer managed = getCustomer(customer.getCustomerID());
+        String previousMobile = managed.getMobile();
         if (customer.getMobile()!=null) {
             String mobile = customer.getMobile();
             mobile = Validator.validateMobile(mobile);
-            managed.setMobile(mobile);
+            if (!mobile.equals(previousMobile)) {
+                checkMobileIsFree(mobile, managed.getCustomerID(), "Cannot update customer");
+                managed.setMobile(mobile);
+            }
         }
         if (customer.getBusinessID()!=null) {
             Validator.validateBusinessID(customer.getBusinessID());
@@ -118,10 +294,14 @@ public class Customers {
         if (customer.getAddress()!=null) managed.setAddress(customer.getAddress());
         if (customer.getCity()!=null) managed.setCity(customer.getCity());
         if (customer.getCountry()!=null) managed.setCountry(customer.getCountry());
+        // Пустая группа цен - общие прайс-листы
+        if (customer.getPriceGroup()!=null)
+            managed.setPriceGroup(customer.getPriceGroup().isBlank() ? null : customer.getPriceGroup().trim());
 
         managed.setVerified(customer.isVerified());
 
-        entityManager.persist(managed);
+        persistUnique(managed, "Cannot update customer");
+        if (!managed.getMobile().equals(previousMobile)) invalidate(previousMobile);
         return customer;
     }
 
@@ -142,6 +322,77 @@ public class Customers {
                     "CustomerID=" + customerID + " cannot be deleted because mentioned in Orders");
         }
         entityManager.remove(customer);
+        invalidate(customer.getMobile());
+    }
+
+    //-----------------------------------------------------------------------------------------------------
+
+    private Customer findByMobile(String mobile) throws HermesException {
+        try {
+            List<Customer> found = entityManager
+                    .createQuery("SELECT a FROM Customer a WHERE a.mobile=:mobile", Customer.class)
+                    .setParameter("mobile", mobile)
+                    .getResultList();
+            return found.isEmpty() ? null : found.get(0);
+        } catch (PersistenceException e) {
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
+        }
+    }
+
+    private void checkMobileIsFree(String mobile, long customerID, String title) throws HermesException {
+        Customer found = findByMobile(mobile);
+        if (found != null && found.getCustomerID() != customerID) {
+            throw new HermesException(FORBIDDEN, title,
+                    "Customer with the same mobile already exist, its customerID=" + found.getCustomerID());
+        }
+    }
+
+    private void persistUnique(Customer customer, String title) throws HermesException {
+        try {
+            // Уникальный индекс защищает от одновременной регистрации одного номера
+            entityManager.persist(customer);
+            entityManager.flush();
+        } catch (PersistenceException exception) {
+            try {
+                transactionManager.setRollbackOnly();
+            } catch (IllegalStateException | SystemException e) {
+                e.printStackTrace();
+            }
+            if (isMobileConflict(exception)) {
+                throw new HermesException(FORBIDDEN, title,
+                        "Customer with the same mobile already exist: " + customer.getMobile());
+            }
+            throw new HermesException(INTERNAL_SERVER_ERROR, title, exception.getMessage());
+        }
+    }
+
+    /**
+     * Нарушен ли уникальный индекс номера мобильного телефона (PostgreSQL приводит имя к нижнему регистру)
+     */
+    private static boolean isMobileConflict(Throwable exception) {
+        for (Throwable cause = exception; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException) {
+                String constraint = ((ConstraintViolationException) cause).getConstraintName();
+                return MOBILE_INDEX.equalsIgnoreCase(constraint);
+            }
+        }
+        return false;
+    }
+
+    private static boolean isConflict(String businessID, String otherBusinessID) {
+        return businessID != null && otherBusinessID != null && !businessID.equals(otherBusinessID);
+    }
+
+    private static String escapeLike(String value) {
+        return value.replace("!", "!!").replace("%", "!%").replace("_", "!_");
+    }
+
+    private void invalidate(String mobile) {
+        if (mobile == null) return;
+        // Сразу, чтобы не вернуть удаленного клиента, и после фиксации, чтобы в кэш
+        // не попал код, прочитанный параллельно до фиксации
+        customerIDs.invalidate(mobile);
+        AfterCommit.run(transactionManager, () -> customerIDs.invalidate(mobile));
     }
 
 }
@@ -0,0 +1,127 @@
+package com.axiom.hermes.model.customers;
+
+import com.axiom.hermes.common.cache.LruCache;
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.transactions.AfterCommit;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.customers.entities.SalesOrder;
+import com.axiom.hermes.model.customers.entities.SalesOrderSummary;
+import org.eclipse.microprofile.config.inject.ConfigProperty;
+
+import javax.annotation.PostConstruct;
+import javax.enterprise.context.ApplicationScoped;
+import javax.inject.Inject;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceException;
+import javax.transaction.TransactionManager;
+import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.axiom.hermes.common.exceptions.HermesException.*;
+
+/**
+ * История заказов клиента: сводки заказов с итогами по позициям, которые обновляются
+ * в той же транзакции, что и заказ. История клиента читается одним запросом по индексу
+ * (customerID, orderTime) и кэшируется до следующего изменения заказов клиента.
+ */
+@ApplicationScoped
+public class OrderHistory {
+
+    @ConfigProperty(name = "hermes.orders.history-cache-size", defaultValue = "1000")
+    int cacheSize;
+
+    @Inject EntityManager entityManager;
+    @Inject TransactionManager transactionManager;
+
+    // Сводки всех заказов клиента по коду клиента
+    private LruCache<Long, List<SalesOrderSummary>> cache;
+
+    @PostConstruct
+    void init() {
+        cache = new LruCache<>(cacheSize);
+    }
+
+    /**
+     * Получить историю заказов клиента (новые заказы первыми)
+     * @param customerID клиента
+     * @param status статус заказов (0 - любой статус)
+     * @return список сводок заказов клиента
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public List<SalesOrderSummary> getOrderHistory(long customerID, int status) throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        Validator.nonNegativeInteger("status", status);
+
+        List<SalesOrderSummary> history = cache.get(customerID);
+        if (history == null) {
+            long stamp = cache.stamp();
+            String query = "SELECT a FROM SalesOrderSummary a WHERE a.customerID=:customerID " +
+                    "ORDER BY a.orderTime DESC, a.orderID DESC";
+            try {
+                history = entityManager.createQuery(query, SalesOrderSummary.class)
+                        .setParameter("customerID", customerID)
+                        .getResultList();
+            } catch (PersistenceException e) {
+                e.printStackTrace();
+                throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
+            }
+            cache.put(customerID, history, stamp);
+        }
+
+        if (status == 0) return new ArrayList<>(history);
+        List<SalesOrderSummary> filtered = new ArrayList<>();
+        for (SalesOrderSummary summary : history) {
+            if (summary.getStatus() == status) filtered.add(summary);
+        }
+        return filtered;
+    }
+
+    /**
+     * Пересчитывает сводку заказа по его позициям (вызывается в транзакции изменения заказа)
+     * @param salesOrder заказ
+     */
+    void refresh(SalesOrder salesOrder) {
+        String query = "SELECT COUNT(a), COALESCE(SUM(a.quantity), 0), COALESCE(SUM(a.fulfilledQuantity), 0), " +
+                "COALESCE(SUM(a.quantity * a.unitPrice - a.discount), 0), COALESCE(SUM(a.discount), 0) " +
+                "FROM SalesOrderItem a WHERE a.orderID=:orderID";
+        Object[] totals = entityManager.createQuery(query, Object[].class)
+                .setParameter("orderID", salesOrder.getOrderID())
+                .getSingleResult();
+
+        SalesOrderSummary summary = entityManager.find(SalesOrderSummary.class, salesOrder.getOrderID());
+        boolean isNew = summary == null;
+        if (isNew) summary = new SalesOrderSummary(salesOrder.getOrderID());
+        summary.setCustomerID(salesOrder.getCustomerID());
+        summary.setOrderTime(salesOrder.getOrderTime());
+        summary.setStatus(salesOrder.getStatus());
+        summary.setTimestamp(salesOrder.getTimestamp());
+        summary.setItemCount(Validator.asLong(totals[0]));
+        summary.setTotalQuantity(Validator.asLong(totals[1]));
+        summary.setFulfilledQuantity(Validator.asLong(totals[2]));
+        summary.setTotalAmount(((Number) totals[3]).doubleValue());
+        summary.setDiscountAmount(((Number) totals[4]).doubleValue());
+        if (isNew) entityManager.persist(summary);
+
+        invalidateAfterCommit(salesOrder.getCustomerID());
+    }
+
+    /**
+     * Удаляет сводку заказа (вызывается в транзакции удаления заказа)
+     * @param salesOrder заказ
+     */
+    void remove(SalesOrder salesOrder) {
+        SalesOrderSummary summary = entityManager.find(SalesOrderSummary.class, salesOrder.getOrderID());
+        if (summary != null) entityManager.remove(summary);
+        invalidateAfterCommit(salesOrder.getCustomerID());
+    }
+
+    private void invalidateAfterCommit(long customerID) {
+        // Инвалидируем сразу, чтобы не отдавать старую историю, и после фиксации, чтобы
+        // в кэш не попала история, прочитанная параллельно до фиксации
+        cache.invalidate(customerID);
+        AfterCommit.run(transactionManager, () -> cache.invalidate(customerID));
+    }
+
+}
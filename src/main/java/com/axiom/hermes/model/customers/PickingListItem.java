@@ -0,0 +1,65 @@
+package com.axiom.hermes.model.customers;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Строка листа сборки: сколько товара нужно собрать по заказам волны
+ */
+public class PickingListItem {
+    private long wave;                       // Номер волны сборки (с нуля)
+    private long productID;                  // Код товара
+    private long quantity;                   // Количество к сборке (заказано минус отгружено)
+    private long orderCount;                 // Количество заказов волны с этим товаром
+    private List<Long> orderIDs = new ArrayList<>(); // Заказы волны с этим товаром (по возрастанию)
+
+    public PickingListItem() {}
+
+    public PickingListItem(long wave, long productID, long quantity, long orderCount, List<Long> orderIDs) {
+        this.wave = wave;
+        this.productID = productID;
+        this.quantity = quantity;
+        this.orderCount = orderCount;
+        this.orderIDs = orderIDs;
+    }
+
+    public long getWave() {
+        return wave;
+    }
+
+    public void setWave(long wave) {
+        this.wave = wave;
+    }
+
+    public long getProductID() {
+        return productID;
+    }
+
+    public void setProductID(long productID) {
+        this.productID = productID;
+    }
+
+    public long getQuantity() {
+        return quantity;
+    }
+
+    public void setQuantity(long quantity) {
+        this.quantity = quantity;
+    }
+
+    public long getOrderCount() {
+        return orderCount;
+    }
+
+    public void setOrderCount(long orderCount) {
+        this.orderCount = orderCount;
+    }
+
+    public List<Long> getOrderIDs() {
+        return orderIDs;
+    }
+
+    public void setOrderIDs(List<Long> orderIDs) {
+        this.orderIDs = orderIDs;
+    }
+}
@@ -1,8 +1,13 @@
 package com.axiom.hermes.model.customers;
 
 import com.axiom.hermes.common.exceptions.HermesException;
-import com.axiom.hermes.model.catalogue.Catalogue;
-import com.axiom.hermes.model.catalogue.entities.Product;
+import com.axiom.hermes.common.metrics.HermesMetrics;
+import com.axiom.hermes.model.analytics.Analytics;
+import com.axiom.hermes.model.catalogue.Discount;
+import com.axiom.hermes.model.catalogue.EffectivePrice;
+import com.axiom.hermes.model.catalogue.PriceLists;
+import com.axiom.hermes.model.catalogue.PromotionRules;
+import com.axiom.hermes.model.catalogue.Promotions;
 import com.axiom.hermes.model.customers.entities.Customer;
 import com.axiom.hermes.model.customers.entities.SalesOrder;
 import com.axiom.hermes.model.customers.entities.SalesOrderItem;
@@ -18,7 +23,13 @@ import javax.persistence.PersistenceException;
 import javax.transaction.SystemException;
 import javax.transaction.TransactionManager;
 import javax.transaction.Transactional;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 import static com.axiom.hermes.common.exceptions.HermesException.*;
 
@@ -28,12 +39,18 @@ import static com.axiom.hermes.common.exceptions.HermesException.*;
 @ApplicationScoped
 public class SalesOrders {
 
+    public static final int PICKING_FETCH_SIZE = 512;
+
     @Inject EntityManager entityManager;
     @Inject TransactionManager transactionManager;
 
-    @Inject Catalogue catalogue;
+    @Inject PriceLists priceLists;
+    @Inject Promotions promotions;
     @Inject Customers customers;
     @Inject Inventory inventory;
+    @Inject Analytics analytics;
+    @Inject OrderHistory orderHistory;
+    @Inject HermesMetrics metrics;
 
     /**
      * Получить все заказы всех клиентов за указанный период
@@ -99,10 +116,68 @@ public class SalesOrders {
         Customer customer = customers.getCustomer(customerID);
         SalesOrder salesOrder = new SalesOrder(customer.getCustomerID());
         entityManager.persist(salesOrder);
+        orderHistory.refresh(salesOrder);
         return salesOrder;
     }
 
 
+    /**
+     * Добавить новый заказ клиента сразу с позициями (оформление корзины) одной транзакцией
+     * @param customerID клиент
+     * @param items количество заказанного товара по коду товара
+     * @return созданный новый заказ
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    public SalesOrder addOrder(long customerID, Map<Long, Long> items) throws HermesException {
+        Validator.nonNegativeInteger("customerID", customerID);
+        if (items == null || items.isEmpty()) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter", "Sales order items can not be empty.");
+        }
+        for (Map.Entry<Long, Long> entry : items.entrySet()) {
+            Validator.nonNegativeInteger("productID", entry.getKey());
+            Validator.nonNegativeInteger("quantity", entry.getValue());
+        }
+
+        Customer customer = customers.getCustomer(customerID);
+
+        // Действующие цены клиента и доступность товаров берем из кэша прайс-листов
+        Map<Long, EffectivePrice> prices = new HashMap<>();
+        for (long productID : items.keySet()) {
+            EffectivePrice price = priceLists.getEffectivePrice(productID, customer.getPriceGroup());
+            prices.put(productID, price);
+            if (!price.isAvailable()) {
+                throw new HermesException(FORBIDDEN, "Cannot add sales order item",
+                        "Product status=" + productID + " is not available.");
+            }
+        }
+
+        SalesOrder salesOrder = new SalesOrder(customer.getCustomerID());
+        try {
+            // Позиции сохраняются пакетно (hibernate.jdbc.batch_size), скидки считаются
+            // одним проходом по позициям по скомпилированным правилам акций
+            entityManager.persist(salesOrder);
+            PromotionRules rules = promotions.getRules();
+            long now = System.currentTimeMillis();
+            for (Map.Entry<Long, Long> entry : items.entrySet()) {
+                EffectivePrice price = prices.get(entry.getKey());
+                SalesOrderItem item = new SalesOrderItem(salesOrder.getOrderID(), price.getProductID(),
+                        entry.getValue(), price.getUnitPrice());
+                applyDiscount(item, customerID, rules, now);
+                entityManager.persist(item);
+            }
+            orderHistory.refresh(salesOrder);
+        } catch (Exception exception) {
+            try {
+                transactionManager.setRollbackOnly();
+            } catch (IllegalStateException | SystemException e) {
+                e.printStackTrace();
+            }
+            throw exception;
+        }
+        return salesOrder;
+    }
+
     /**
      * Получить заказа по ID
      * @param orderID заказа
@@ -132,7 +207,9 @@ public class SalesOrders {
     public SalesOrder changeStatus(long orderID, int status) throws HermesException {
         Validator.nonNegativeInteger("orderID", orderID);
         Validator.nonNegativeInteger("status", status);
+        long lockStarted = System.nanoTime();
         SalesOrder salesOrder = entityManager.find(SalesOrder.class, orderID, LockModeType.PESSIMISTIC_WRITE);
+        metrics.lockWait("SalesOrder", System.nanoTime() - lockStarted);
         if (salesOrder==null)
             throw new HermesException(NOT_FOUND, "Sales order not found",
                     "Sales order where orderID=" + orderID + " not found.");
@@ -141,6 +218,7 @@ public class SalesOrders {
         if (salesOrder.getStatus()==status) return salesOrder;
 
         // Пробуем обновить статус заказа и пересчитать остатки по каждой позиции
+        int oldStatus = salesOrder.getStatus();
         try {
             salesOrder.setStatus(status);
             entityManager.persist(salesOrder);
@@ -150,6 +228,9 @@ public class SalesOrders {
             for (SalesOrderItem item : items) {
                 inventory.updateCommittedStock(item.getProductID());
             }
+            // Обновляем количество подтвержденных заказов в агрегатах продаж
+            analytics.registerOrderStatus(salesOrder, oldStatus, items);
+            orderHistory.refresh(salesOrder);
         } catch (HermesException exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -170,7 +251,9 @@ public class SalesOrders {
     @Transactional
     public void removeOrder(long orderID) throws HermesException {
         Validator.nonNegativeInteger("orderID", orderID);
+        long lockStarted = System.nanoTime();
         SalesOrder salesOrder = entityManager.find(SalesOrder.class, orderID, LockModeType.PESSIMISTIC_WRITE);
+        metrics.lockWait("SalesOrder", System.nanoTime() - lockStarted);
         if (salesOrder==null) {
             throw new HermesException(NOT_FOUND, "Sales order not found",
                     "Sales order where orderID=" + orderID + " not found.");
@@ -183,6 +266,7 @@ public class SalesOrders {
         try {
             entityManager.createQuery(query).executeUpdate();
             entityManager.remove(salesOrder);
+            orderHistory.remove(salesOrder);
         } catch (Exception e) {
             try {
                 transactionManager.setRollbackOnly();
@@ -193,6 +277,66 @@ public class SalesOrders {
         }
     }
 
+    /**
+     * Формирует лист сборки: неотгруженное количество товара по заказам с указанными статусами,
+     * сгруппированное по товару и (опционально) по волнам из waveSize заказов в порядке их создания.
+     * В каждой строке перечислены заказы волны с этим товаром - номера волн пересчитываются
+     * при каждом вызове, поэтому собирать нужно по кодам заказов, а не по номеру волны.
+     * Выполняется одним запросом, строки передаются потребителю по мере чтения курсора.
+     * @param statuses статусы заказов, которые нужно собрать
+     * @param waveSize количество заказов в волне (0 - одна волна со всеми заказами)
+     * @param consumer потребитель строк листа сборки
+     * @throws HermesException информация об ошибке
+     */
+    @Transactional
+    @SuppressWarnings("unchecked")
+    public void getPickingList(List<Integer> statuses, int waveSize, Consumer<PickingListItem> consumer)
+            throws HermesException {
+        Validator.nonNegativeInteger("waveSize", waveSize);
+        if (statuses == null || statuses.isEmpty()) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter", "At least one order status required.");
+        }
+        for (int status : statuses) Validator.nonNegativeInteger("status", status);
+
+        // Заказы нумеруются в порядке создания и делятся на волны, в нумерацию попадают
+        // только заказы, у которых есть что собирать
+        String sqlQuery = "SELECT w.wave, SalesOrderItem.productID, " +
+                "SUM(SalesOrderItem.quantity - SalesOrderItem.fulfilledQuantity), " +
+                "COUNT(DISTINCT SalesOrderItem.orderID), " +
+                "STRING_AGG(DISTINCT CAST(SalesOrderItem.orderID AS VARCHAR), ',') " +
+                "FROM SalesOrderItem JOIN (" +
+                    "SELECT SalesOrder.orderID, " +
+                    "(ROW_NUMBER() OVER (ORDER BY SalesOrder.orderTime, SalesOrder.orderID) - 1) / :waveSize AS wave " +
+                    "FROM SalesOrder WHERE SalesOrder.status IN (:statuses) AND EXISTS (" +
+                        "SELECT 1 FROM SalesOrderItem x WHERE x.orderID=SalesOrder.orderID " +
+                        "AND x.quantity > x.fulfilledQuantity)" +
+                ") w ON w.orderID=SalesOrderItem.orderID " +
+                "WHERE SalesOrderItem.quantity > SalesOrderItem.fulfilledQuantity " +
+                "GROUP BY w.wave, SalesOrderItem.productID " +
+                "ORDER BY w.wave, SalesOrderItem.productID";
+
+        try (Stream<Object[]> rows = entityManager.createNativeQuery(sqlQuery)
+                .setParameter("waveSize", waveSize > 0 ? waveSize : Integer.MAX_VALUE)
+                .setParameter("statuses", statuses)
+                .setHint("org.hibernate.fetchSize", PICKING_FETCH_SIZE)
+                .getResultStream()) {
+            rows.forEach(row -> consumer.accept(new PickingListItem(
+                    Validator.asLong(row[0]), Validator.asLong(row[1]),
+                    Validator.asLong(row[2]), Validator.asLong(row[3]), parseOrderIDs((String) row[4]))));
+        } catch (PersistenceException e) {
+            e.printStackTrace();
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Internal Server Error", e.getMessage());
+        }
+    }
+
+    private static List<Long> parseOrderIDs(String orderIDs) {
+        List<Long> result = new ArrayList<>();
+        if (orderIDs == null || orderIDs.isEmpty()) return result;
+        for (String orderID : orderIDs.split(",")) result.add(Long.parseLong(orderID));
+        Collections.sort(result);
+        return result;
+    }
+
     //---------------------------------------------------------------------------------------------------
 
     /**
@@ -279,8 +423,8 @@ public class SalesOrders {
                             salesOrder.getStatus() + " and its not changeable.");
 
         // Если такая товарная позиция недоступна для заказа
-        Product product = catalogue.getProduct(productID);
-        if (!product.isAvailable()) {
+        EffectivePrice price = priceLists.getEffectivePrice(productID, customerPriceGroup(salesOrder));
+        if (!price.isAvailable()) {
             throw new HermesException(FORBIDDEN, "Cannot add sales order item",
                     "Product status=" + productID + " is not available.");
         }
@@ -293,16 +437,17 @@ public class SalesOrders {
             long totalQuantity = item.getQuantity() + quantity;
             item.setQuantity(totalQuantity);
             // Обновляем на текущую цену
-            item.setUnitPrice(product.getUnitPrice());
+            item.setUnitPrice(price.getUnitPrice());
         } catch (HermesException exception) {
             // Если такой позиции заказа нет - создаем новую
             if (exception.getStatus()== NOT_FOUND) {
-                item = new SalesOrderItem(orderID, productID, quantity, product.getUnitPrice());
+                item = new SalesOrderItem(orderID, productID, quantity, price.getUnitPrice());
             } else {
                 // Если произошла какая-то другая ошибка
                 throw exception;
             }
         }
+        applyDiscount(item, salesOrder.getCustomerID(), promotions.getRules(), System.currentTimeMillis());
 
         try {
             // Сохраняем позицию заказа
@@ -310,6 +455,7 @@ public class SalesOrders {
             // Обновить временную метку последнего изменения заказа
             salesOrder.setTimestamp(System.currentTimeMillis());
             entityManager.persist(salesOrder);
+            orderHistory.refresh(salesOrder);
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -346,20 +492,22 @@ public class SalesOrders {
 
         // Если изменился код товара
         if (managedItem.getProductID() != productID) {
-            Product product = catalogue.getProduct(productID);
-            if (product==null || !product.isAvailable()) return null;
+            EffectivePrice price = priceLists.getEffectivePrice(productID, customerPriceGroup(salesOrder));
+            if (!price.isAvailable()) return null;
             managedItem.setProductID(productID);
-            // Цену товарной позиции берем из каталога
-            managedItem.setUnitPrice(product.getUnitPrice());
+            // Цену товарной позиции берем из действующего прайс-листа клиента
+            managedItem.setUnitPrice(price.getUnitPrice());
         }
 
         try {
-            // Обновляем позицию заказа
+            // Обновляем позицию заказа, скидка зависит от товара и количества
             managedItem.setQuantity(quantity);
+            applyDiscount(managedItem, salesOrder.getCustomerID(), promotions.getRules(), System.currentTimeMillis());
             entityManager.persist(managedItem);
             // Обновить временную метку последнего изменения заказа
             salesOrder.setTimestamp(System.currentTimeMillis());
             entityManager.persist(salesOrder);
+            orderHistory.refresh(salesOrder);
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -388,6 +536,7 @@ public class SalesOrders {
         long newFulfilledQuantity = salesOrderItem.getFulfilledQuantity() + fulfilledQuantity;
         salesOrderItem.setFulfilledQuantity(newFulfilledQuantity);
         entityManager.persist(salesOrderItem);
+        orderHistory.refresh(getOrder(orderID));
         return salesOrderItem;
     }
 
@@ -417,6 +566,7 @@ public class SalesOrders {
         if (newFulfilledquantity < 0) return;
         salesOrderItem.setFulfilledQuantity(newFulfilledquantity);
         entityManager.persist(salesOrderItem);
+        orderHistory.refresh(getOrder(orderID));
     }
 
     /**
@@ -442,6 +592,7 @@ public class SalesOrders {
             // Обновить временную метку последнего изменения заказа
             salesOrder.setTimestamp(System.currentTimeMillis());
             entityManager.persist(salesOrder);
+            orderHistory.refresh(salesOrder);
         } catch (Exception exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -472,4 +623,27 @@ public class SalesOrders {
         return Validator.asLong(result);
     }
 
+    /**
+     * Возвращает группу цен клиента, оформившего заказ
+     * @param salesOrder заказ
+     * @return группа цен клиента (null - общие прайс-листы)
+     * @throws HermesException информация об ошибке
+     */
+    private String customerPriceGroup(SalesOrder salesOrder) throws HermesException {
+        return customers.getCustomer(salesOrder.getCustomerID()).getPriceGroup();
+    }
+
+    /**
+     * Рассчитывает скидку позиции заказа по действующим акциям
+     * @param item позиция заказа
+     * @param customerID клиента
+     * @param rules скомпилированные правила акций
+     * @param time момент расчета
+     */
+    private void applyDiscount(SalesOrderItem item, long customerID, PromotionRules rules, long time) {
+        Discount discount = rules.evaluate(customerID, item.getProductID(), item.getQuantity(), item.getUnitPrice(), time);
+        item.setDiscount(discount.getAmount());
+        item.setPromotionID(discount.getPromotionID());
+    }
+
 }
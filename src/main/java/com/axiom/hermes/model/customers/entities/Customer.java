@@ -7,7 +7,7 @@ import javax.persistence.*;
  */
 @Entity
 @Table(indexes = {
-        @Index(columnList = "mobile"),
+        @Index(name = "CustomerMobileIndex", columnList = "mobile", unique = true),
         @Index(columnList = "businessID")
 })
 public class Customer {
@@ -20,6 +20,7 @@ public class Customer {
     private String city;                       // Город
     private String country;                    // Страна
     private boolean verified;                  // Проверенный ли клиент
+    private String priceGroup;                 // Группа цен клиента (null - общие прайс-листы)
 
     public Customer() {}
 
@@ -86,4 +87,12 @@ public class Customer {
     public void setVerified(boolean verified) {
         this.verified = verified;
     }
+
+    public String getPriceGroup() {
+        return priceGroup;
+    }
+
+    public void setPriceGroup(String priceGroup) {
+        this.priceGroup = priceGroup;
+    }
 }
@@ -11,7 +11,8 @@ import javax.persistence.*;
     @Index(columnList = "timestamp"),
     @Index(columnList = "status"),
     @Index(name = "SalesOrderIndex1", columnList = "timestamp, status"),
-    @Index(name = "SalesOrderIndex2", columnList = "customerID, status")
+    @Index(name = "SalesOrderIndex2", columnList = "customerID, status"),
+    @Index(name = "SalesOrderIndex3", columnList = "orderTime, status")
 })
 public class SalesOrder {
     //-------------------------------------------------------------------------------------------
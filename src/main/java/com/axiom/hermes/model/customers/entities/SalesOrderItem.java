@@ -18,6 +18,8 @@ public class SalesOrderItem {
     private long quantity;                   // Количество заказанного товара
     private double unitPrice;                // Цена товара на момент заказа
     private long fulfilledQuantity;          // Позиция заказа выполнена
+    private double discount;                 // Сумма скидки по позиции
+    private long promotionID;                // Примененная акция (0 - без скидки)
 
     public SalesOrderItem() { }
 
@@ -75,4 +77,20 @@ public class SalesOrderItem {
     public void setFulfilledQuantity(long fulfilledQuantity) {
         this.fulfilledQuantity = fulfilledQuantity;
     }
+
+    public double getDiscount() {
+        return discount;
+    }
+
+    public void setDiscount(double discount) {
+        this.discount = discount;
+    }
+
+    public long getPromotionID() {
+        return promotionID;
+    }
+
+    public void setPromotionID(long promotionID) {
+        this.promotionID = promotionID;
+    }
 }
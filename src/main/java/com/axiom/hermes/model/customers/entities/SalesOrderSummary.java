@@ -0,0 +1,111 @@
+package com.axiom.hermes.model.customers.entities;
+
+import javax.persistence.*;
+
+/**
+ * Сводка заказа клиента для истории заказов (денормализованная карточка заказа с итогами
+ * по позициям, обновляется вместе с заказом и его позициями)
+ */
+@Entity
+@Table(indexes = {
+    @Index(name = "SalesOrderSummaryIndex", columnList = "customerID, orderTime")
+})
+public class SalesOrderSummary {
+    @Id
+    private long orderID;                    // Код заказа
+    private long customerID;                 // Код клиента
+    private long orderTime;                  // Время создания заказа
+    private int status;                      // Статус заказа
+    private long timestamp;                  // Время изменения заказа
+    private long itemCount;                  // Количество позиций заказа
+    private long totalQuantity;              // Общее количество заказанного товара
+    private long fulfilledQuantity;          // Общее количество исполненного товара
+    private double totalAmount;              // Сумма заказа с учетом скидок
+    private double discountAmount;           // Сумма скидок по позициям
+
+    public SalesOrderSummary() { }
+
+    public SalesOrderSummary(long orderID) {
+        this.orderID = orderID;
+    }
+
+    public long getOrderID() {
+        return orderID;
+    }
+
+    public void setOrderID(long orderID) {
+        this.orderID = orderID;
+    }
+
+    public long getCustomerID() {
+        return customerID;
+    }
+
+    public void setCustomerID(long customerID) {
+        this.customerID = customerID;
+    }
+
+    public long getOrderTime() {
+        return orderTime;
+    }
+
+    public void setOrderTime(long orderTime) {
+        this.orderTime = orderTime;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    public void setStatus(int status) {
+        this.status = status;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public void setTimestamp(long timestamp) {
+        this.timestamp = timestamp;
+    }
+
+    public long getItemCount() {
+        return itemCount;
+    }
+
+    public void setItemCount(long itemCount) {
+        this.itemCount = itemCount;
+    }
+
+    public long getTotalQuantity() {
+        return totalQuantity;
+    }
+
+    public void setTotalQuantity(long totalQuantity) {
+        this.totalQuantity = totalQuantity;
+    }
+
+    public long getFulfilledQuantity() {
+        return fulfilledQuantity;
+    }
+
+    public void setFulfilledQuantity(long fulfilledQuantity) {
+        this.fulfilledQuantity = fulfilledQuantity;
+    }
+
+    public double getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(double totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public double getDiscountAmount() {
+        return discountAmount;
+    }
+
+    public void setDiscountAmount(double discountAmount) {
+        this.discountAmount = discountAmount;
+    }
+}
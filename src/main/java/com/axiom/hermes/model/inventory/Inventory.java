@@ -2,8 +2,14 @@ package com.axiom.hermes.model.inventory;
 
 
 import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.metrics.HermesMetrics;
+import com.axiom.hermes.common.transactions.AfterCommit;
 import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.analytics.Analytics;
+import com.axiom.hermes.model.analytics.TopProducts;
 import com.axiom.hermes.model.catalogue.Catalogue;
+import com.axiom.hermes.model.catalogue.PriceLists;
+import com.axiom.hermes.model.catalogue.ProductFacets;
 import com.axiom.hermes.model.catalogue.entities.Product;
 import com.axiom.hermes.model.customers.SalesOrders;
 import com.axiom.hermes.model.customers.entities.SalesOrderItem;
@@ -36,7 +42,12 @@ public class Inventory {
     @Inject TransactionManager transactionManager;
 
     @Inject Catalogue catalogue;
+    @Inject ProductFacets facets;
+    @Inject PriceLists priceLists;
     @Inject SalesOrders salesOrders;
+    @Inject Analytics analytics;
+    @Inject TopProducts topProducts;
+    @Inject HermesMetrics metrics;
 
     //-----------------------------------------------------------------------------------------------------
     // Проведение складских транзакций в журнале складского учёта
@@ -231,9 +242,11 @@ public class Inventory {
         Validator.nonNegativeInteger("productID", productID);
 
         // Поднимаем складскую карточку товара
+        long lockStarted = System.nanoTime();
         StockCard stockInfo = entityManager.find(
                 StockCard.class, productID,
                 LockModeType.PESSIMISTIC_WRITE);
+        metrics.lockWait("StockCard", System.nanoTime() - lockStarted);
 
         if (stockInfo==null) {
             throw new HermesException(NOT_FOUND, "Inventory stock card missing",
@@ -249,6 +262,7 @@ public class Inventory {
         stockInfo.setAvailableForSale(availableForSale);
         stockInfo.setTimestamp(System.currentTimeMillis());
         entityManager.persist(stockInfo);
+        facets.stockChanged(productID);
         return stockInfo;
     }
 
@@ -312,6 +326,9 @@ public class Inventory {
             entityManager.persist(transaction);
             // Обновляем складскую карточку
             updateStockBalance(SIDE_IN, opCode, false, productID, quantity, transaction.getTimestamp());
+            // Обновляем агрегаты продаж
+            analytics.registerTransaction(transaction);
+            AfterCommit.run(transactionManager, () -> metrics.stockPosted(opCode));
         } catch (HermesException exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -350,10 +367,13 @@ public class Inventory {
                 SalesOrderItem salesOrderItem = salesOrders.addFulfilledQuantity(orderID, productID, quantity);
                 // Если такая позиция заказа есть - устанавливаем флаг продажи с забронированных остатков
                 useCommittedStock = true;                                      // Расходуем с committedStock
-                unitCost = salesOrderItem.getUnitPrice();                               // Берем цену из самого заказа
+                // Берем цену из самого заказа с учетом скидки по позиции
+                unitCost = salesOrderItem.getQuantity() > 0 ?
+                        (salesOrderItem.getQuantity() * salesOrderItem.getUnitPrice() - salesOrderItem.getDiscount())
+                                / salesOrderItem.getQuantity() : salesOrderItem.getUnitPrice();
             } catch (HermesException exception) {
                 if (exception.getStatus()== NOT_FOUND) {                       // Если такой позиции заказа нет
-                    unitCost = catalogue.getProduct(productID).getUnitPrice();     // Берём цену из каталога
+                    unitCost = priceLists.getEffectivePrice(productID, null).getUnitPrice(); // Цена общего прайс-листа
                     useCommittedStock = false;                                 // Расходуем с availableForSale
                 } else throw exception;                                        // Если что-то другое кидаем ошибку
             }
@@ -368,6 +388,14 @@ public class Inventory {
             entityManager.persist(transaction);
             // Обновляем складскую карточку
             updateStockBalance(SIDE_OUT, opCode, useCommittedStock, productID, quantity, transaction.getTimestamp());
+            // Обновляем агрегаты продаж
+            analytics.registerTransaction(transaction);
+            AfterCommit.run(transactionManager, () -> metrics.stockPosted(opCode));
+            // После фиксации транзакции учитываем продажу в рейтинге самых продаваемых товаров
+            if (opCode == OUT_SALE) {
+                long timestamp = transaction.getTimestamp();
+                AfterCommit.run(transactionManager, () -> topProducts.registerSale(productID, quantity, timestamp));
+            }
         } catch (HermesException exception) {
             try {
                 transactionManager.setRollbackOnly();
@@ -403,20 +431,26 @@ public class Inventory {
         Validator.nonNegativeInteger("quantity", quantity);
 
         // Поднимаем складскую карточку товара и блокируем на запись/чтение пока не закончим обновление
+        long lockStarted = System.nanoTime();
         StockCard stockInfo = entityManager.find(StockCard.class, productID, LockModeType.PESSIMISTIC_WRITE);
+        metrics.lockWait("StockCard", System.nanoTime() - lockStarted);
 
         // Если складской карточки нет
         if (stockInfo==null) {
             // Если это поступление товара - создаем складскую карточку под товарную позицию
             if (side==SIDE_IN) stockInfo = createStockCard(productID);
             // Если это расход товара - сообщаем, что остатков в любом случае нет
-            else throw new HermesException(NOT_FOUND, "Inventory out of stock",
-                          "Requested productID=" + productID + " stock on hand not found.");
+            else {
+                metrics.outOfStock(opCode);
+                throw new HermesException(NOT_FOUND, "Inventory out of stock",
+                        "Requested productID=" + productID + " stock on hand not found.");
+            }
         }
 
         // Если это расход товара - проверяем общие остатки
         long stockOnHand = stockInfo.getStockOnHand();
         if (side==SIDE_OUT && stockOnHand < quantity) {
+            metrics.outOfStock(opCode);
             throw new HermesException(NOT_FOUND, "Inventory out of stock",
                     "ProductID=" + productID + " stock on hand: " + stockOnHand + " requested quantity: " + quantity);
         }
@@ -432,6 +466,7 @@ public class Inventory {
             else {
                 // Если это конкретно операция продажи, то при недостаче свободных остатков кидаем исключение
                 if (opCode==OUT_SALE && availableForSale < quantity) {
+                    metrics.outOfStock(opCode);
                     throw new HermesException(NOT_FOUND, "Inventory out of stock", "ProductID=" + productID +
                             " available for sale: " + availableForSale + " requested quantity: " + quantity);
                 }
@@ -450,6 +485,7 @@ public class Inventory {
         stockInfo.setAvailableForSale(availableForSale);
         stockInfo.setTimestamp(timestamp);
         entityManager.persist(stockInfo);
+        facets.stockChanged(productID);
 
         return stockInfo;
     }
@@ -0,0 +1,145 @@
+package com.axiom.hermes.services.analytics;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.model.analytics.Analytics;
+import com.axiom.hermes.model.analytics.CustomerSegments;
+import com.axiom.hermes.model.analytics.DailySales;
+import com.axiom.hermes.model.analytics.SegmentationRun;
+import com.axiom.hermes.model.analytics.TopProduct;
+import com.axiom.hermes.model.analytics.TopProducts;
+import com.axiom.hermes.model.analytics.entities.CustomerSegment;
+import com.axiom.hermes.model.analytics.entities.DailyCustomerSales;
+import com.axiom.hermes.model.analytics.entities.DailyProductSales;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+/**
+ * Сервис аналитики продаж
+ */
+@Path("/analytics")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class AnalyticsService {
+
+    @Inject
+    Analytics analytics;
+
+    @Inject
+    TopProducts topProducts;
+
+    @Inject
+    CustomerSegments customerSegments;
+
+    public AnalyticsService() { }
+
+    /**
+     * Получить итоги продаж по дням за период
+     * @param startTime временная метка начала периода
+     * @param endTime временная метка конца периода
+     * @return список итогов продаж по дням
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getDailySales")
+    public Response getDailySales(@QueryParam("startTime") long startTime,
+                                  @QueryParam("endTime") long endTime) throws HermesException {
+        List<DailySales> dailySales = analytics.getDailySales(startTime, endTime);
+        return Response.ok(dailySales).build();
+    }
+
+    /**
+     * Получить дневные продажи товарной позиции за период
+     * @param productID товарной позиции
+     * @param startTime временная метка начала периода
+     * @param endTime временная метка конца периода
+     * @return список дневных продаж товарной позиции
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getProductSales")
+    public Response getProductSales(@QueryParam("productID") long productID,
+                                    @QueryParam("startTime") long startTime,
+                                    @QueryParam("endTime") long endTime) throws HermesException {
+        List<DailyProductSales> productSales = analytics.getProductSales(productID, startTime, endTime);
+        return Response.ok(productSales).build();
+    }
+
+    /**
+     * Получить дневные покупки клиента за период
+     * @param customerID клиента
+     * @param startTime временная метка начала периода
+     * @param endTime временная метка конца периода
+     * @return список дневных покупок клиента
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getCustomerSales")
+    public Response getCustomerSales(@QueryParam("customerID") long customerID,
+                                     @QueryParam("startTime") long startTime,
+                                     @QueryParam("endTime") long endTime) throws HermesException {
+        List<DailyCustomerSales> customerSales = analytics.getCustomerSales(customerID, startTime, endTime);
+        return Response.ok(customerSales).build();
+    }
+
+    /**
+     * Получить приближенный рейтинг самых продаваемых товаров в скользящем окне
+     * @param window окно: 1h, 24h (по умолчанию) или 7d
+     * @param limit количество позиций рейтинга (0 - максимальное)
+     * @return список позиций рейтинга по убыванию количества проданного товара
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/topProducts")
+    public Response getTopProducts(@QueryParam("window") String window,
+                                   @QueryParam("limit") int limit) throws HermesException {
+        List<TopProduct> top = topProducts.getTopProducts(window, limit);
+        return Response.ok(top).build();
+    }
+
+    /**
+     * Получить RFM сегмент клиента
+     * @param customerID клиента
+     * @return сегмент клиента с баллами давности, частоты и суммы покупок
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getCustomerSegment")
+    public Response getCustomerSegment(@QueryParam("customerID") long customerID) throws HermesException {
+        CustomerSegment segment = customerSegments.getSegment(customerID);
+        return Response.ok(segment).build();
+    }
+
+    /**
+     * Получить клиентов RFM сегмента по убыванию суммы покупок
+     * @param segment champions, loyal, new, at_risk, lost или regular
+     * @param offset сколько клиентов пропустить
+     * @param limit размер страницы (по умолчанию 50, не более 500)
+     * @return страница сегментов клиентов
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getSegmentCustomers")
+    public Response getSegmentCustomers(@QueryParam("segment") String segment,
+                                        @QueryParam("offset") int offset,
+                                        @QueryParam("limit") int limit) throws HermesException {
+        List<CustomerSegment> segments = customerSegments.getSegmentCustomers(segment, offset, limit);
+        return Response.ok(segments).build();
+    }
+
+    /**
+     * Пересчитать RFM сегменты по новым заказам, не дожидаясь ночного пересчета
+     * @return итоги пересчета
+     * @throws HermesException информация об ошибке
+     */
+    @POST
+    @Path("/refreshSegments")
+    public Response refreshSegments() throws HermesException {
+        SegmentationRun run = customerSegments.refresh();
+        return Response.ok(run).build();
+    }
+
+}
@@ -1,28 +1,48 @@
 package com.axiom.hermes.services.catalogue;
 
 import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.io.ImportStatus;
+import com.axiom.hermes.common.http.ResourceVersion;
+import com.axiom.hermes.common.storage.BlobResponse;
+import com.axiom.hermes.common.storage.BlobStore;
 import com.axiom.hermes.common.validation.Validator;
 import com.axiom.hermes.model.catalogue.Catalogue;
+import com.axiom.hermes.model.catalogue.CatalogueSnapshots;
+import com.axiom.hermes.model.catalogue.CollectionProducts;
+import com.axiom.hermes.model.catalogue.FacetQuery;
+import com.axiom.hermes.model.catalogue.FacetResult;
+import com.axiom.hermes.model.catalogue.ProductFacets;
+import com.axiom.hermes.model.catalogue.ProductImport;
+import com.axiom.hermes.model.catalogue.ProductListPage;
+import com.axiom.hermes.model.catalogue.ProductListing;
+import com.axiom.hermes.model.catalogue.ProductSearch;
+import com.axiom.hermes.model.catalogue.ThumbnailBundle;
+import com.axiom.hermes.model.catalogue.ThumbnailBundles;
+import com.axiom.hermes.model.catalogue.ThumbnailGenerator;
 import com.axiom.hermes.model.catalogue.entities.Collection;
 import com.axiom.hermes.model.catalogue.entities.CollectionItem;
 import com.axiom.hermes.model.catalogue.entities.Product;
 import com.axiom.hermes.model.catalogue.entities.ProductImage;
-import net.coobird.thumbnailator.Thumbnails;
-import org.apache.commons.io.IOUtils;
+import com.axiom.hermes.model.catalogue.entities.ProductThumbnail;
 import org.jboss.logging.Logger;
 import org.jboss.resteasy.plugins.providers.multipart.InputPart;
 import org.jboss.resteasy.plugins.providers.multipart.MultipartFormDataInput;
 
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
 import javax.inject.Inject;
 import javax.transaction.SystemException;
 import javax.transaction.Transactional;
 import javax.ws.rs.*;
+import javax.ws.rs.core.Context;
+import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.MultivaluedMap;
 import javax.ws.rs.core.Response;
 import java.io.*;
-import java.util.List;
-import java.util.Map;
+import java.nio.channels.FileChannel;
+import java.util.*;
 
 import static com.axiom.hermes.common.exceptions.HermesException.*;
 
@@ -36,53 +56,187 @@ public class CatalogueService {
 
     private static final Logger LOG = Logger.getLogger(Catalogue.class);
 
-    public static final int MAX_IMAGE_SIZE = 512 * 1024;      // 512Kb
-    public static final int MAX_THUMBNAIL_SIZE = 0xFFFF;      // 65Kb
-    public static final int MAX_THUMBNAIL_DIMENSION = 128;    // 128x128px
+    public static final int MAX_IMAGE_SIZE = 8 * 1024 * 1024; // 8Mb
 
     private static final int INVALID = -1;
 
     @Inject
     Catalogue catalogue;
 
+    @Inject
+    BlobStore blobStore;
+
+    @Inject
+    CatalogueSnapshots snapshots;
+
+    @Inject
+    ThumbnailGenerator thumbnails;
+
+    @Inject
+    ProductImport productImport;
+
+    @Inject
+    CollectionProducts collectionProducts;
+
+    @Inject
+    ThumbnailBundles thumbnailBundles;
+
+    @Inject
+    ProductListing productListing;
+
+    @Inject
+    ProductFacets facets;
+
+    @Inject
+    ProductSearch search;
+
     public CatalogueService() { }
 
     /**
      * Предоставляет перечень всех доступных для заказа товарных позиций
-     * @return список товарных позиций
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return список товарных позиций (из снимка каталога) или 304 если список не изменился
      * @throws HermesException информация об ошибке
      */
     @GET
-    public Response getAvailableProducts() throws HermesException  {
-        List<Product> availableProducts = catalogue.getAvailableProducts();
-        if (availableProducts==null) return Response.status(Response.Status.NOT_FOUND).build();
-        return Response.ok(availableProducts).build();
+    public Response getAvailableProducts(@Context HttpHeaders headers) throws HermesException  {
+        return snapshots.getAvailableProducts().toResponse(headers);
     }
 
     /**
      * Предоставляет полный перчень товарных позиций, включая недоступные для заказа
-     * @return список товарных позиций
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return список товарных позиций или 304 если список не изменился
      * @throws HermesException информация об ошибке
      */
     @GET
     @Path("/getAllProducts")
-    public Response getAllProducts() throws HermesException  {
+    public Response getAllProducts(@Context HttpHeaders headers) throws HermesException  {
+        ResourceVersion version = catalogue.getProductsVersion(false);
+        Response.ResponseBuilder notModified = version.evaluate(headers);
+        if (notModified != null) return notModified.build();
         List<Product> allProducts = catalogue.getAllProducts();
         if (allProducts==null) return Response.status(Response.Status.NOT_FOUND).build();
-        return Response.ok(allProducts).build();
+        return version.tag(Response.ok(allProducts)).build();
+    }
+
+    /**
+     * Постраничный список товарных позиций с сортировкой и выбором полей
+     * @param availableOnly только доступные для заказа
+     * @param sort поле сортировки: name (по умолчанию), price или timestamp
+     * @param order порядок сортировки: asc (по умолчанию) или desc
+     * @param cursor курсор страницы (из заголовка X-Next-Cursor предыдущего ответа)
+     * @param limit размер страницы (по умолчанию 50, не более 500)
+     * @param fields нужные поля через запятую (по умолчанию все кроме description)
+     * @return страница товарных позиций, курсор следующей страницы в X-Next-Cursor
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/listProducts")
+    public Response listProducts(@QueryParam("availableOnly") boolean availableOnly,
+                                 @QueryParam("sort") String sort,
+                                 @QueryParam("order") String order,
+                                 @QueryParam("cursor") String cursor,
+                                 @QueryParam("limit") int limit,
+                                 @QueryParam("fields") String fields) throws HermesException {
+        if (order != null && !order.equals("asc") && !order.equals("desc")) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter", "order must be asc or desc");
+        }
+        ProductListPage page = productListing.list(availableOnly, sort, "desc".equals(order), cursor, limit, fields);
+        Response.ResponseBuilder response = Response.ok(page.getItems());
+        if (page.getNextCursor() != null) response.header("X-Next-Cursor", page.getNextCursor());
+        return response.build();
+    }
+
+    /**
+     * Фасетный отбор товарных позиций: по коллекциям, ценовым диапазонам, доступности и наличию.
+     * Несколько значений одного фасета объединяются, разные фасеты пересекаются.
+     * @param collectionIDs коллекции (параметр можно повторять)
+     * @param priceBands ценовые диапазоны, например 10-50 (параметр можно повторять)
+     * @param available доступность для заказа
+     * @param inStock наличие свободного остатка
+     * @param offset сколько найденных товаров пропустить
+     * @param limit размер страницы (по умолчанию 50, не более 500)
+     * @return всего найдено, страница товарных позиций и количество по значениям фасетов
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/browse")
+    public Response browse(@QueryParam("collectionID") List<Long> collectionIDs,
+                           @QueryParam("priceBand") List<String> priceBands,
+                           @QueryParam("available") Boolean available,
+                           @QueryParam("inStock") Boolean inStock,
+                           @QueryParam("offset") int offset,
+                           @QueryParam("limit") int limit) throws HermesException {
+        FacetQuery query = new FacetQuery();
+        query.setCollectionIDs(new HashSet<>(collectionIDs));
+        query.setPriceBands(new HashSet<>(priceBands));
+        query.setAvailable(available);
+        query.setInStock(inStock);
+        FacetResult result = facets.browse(query, offset, limit);
+
+        // Карточки страницы одним запросом, в порядке результата
+        Map<Long, Product> products = new HashMap<>();
+        for (Product product : catalogue.getProducts(result.getProductIDs())) products.put(product.getProductID(), product);
+        List<Product> page = new ArrayList<>();
+        for (Long productID : result.getProductIDs()) {
+            Product product = products.get(productID);
+            if (product != null) page.add(product);
+        }
+        Map<String, Object> response = new LinkedHashMap<>();
+        response.put("total", result.getTotal());
+        response.put("products", page);
+        response.put("facets", result.getFacets());
+        return Response.ok(response).build();
+    }
+
+    /**
+     * Поиск доступных для заказа товарных позиций по названию, описанию и артикулу
+     * (с поиском по началу слова и с одной опечаткой)
+     * @param query строка запроса
+     * @param limit максимальное количество результатов (0 - по умолчанию)
+     * @return найденные товарные позиции по убыванию релевантности
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/search")
+    public Response search(@QueryParam("q") String query, @QueryParam("limit") int limit) throws HermesException {
+        List<Product> products = search.search(query, limit);
+        return Response.ok(products).build();
+    }
+
+    /**
+     * Изменения каталога для офлайн клиентов: товары, коллекции, товары коллекций и изображения,
+     * созданные, измененные или удаленные с момента предыдущей синхронизации. Изменения выдаются
+     * страницами: пока в ответе hasMore=true, клиент запрашивает следующую страницу по syncToken.
+     * @param since метка предыдущей синхронизации (syncToken из прошлого ответа, пусто - весь каталог)
+     * @param limit максимум объектов в странице (0 - по умолчанию)
+     * @return изменения каталога и метка для следующего запроса
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/changes")
+    public Response getChanges(@QueryParam("since") String since,
+                               @QueryParam("limit") int limit) throws HermesException {
+        return Response.ok(catalogue.getChanges(since, limit)).build();
     }
 
     /**
      * Возвращает информацию по товарной позици по указнному ID
      * @param productID товарной позиции
-     * @return информация товарной позиции
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return информация товарной позиции или 304 если она не изменилась
      * @throws HermesException информация об ошибке
      */
     @GET
     @Path("/getProduct")
-    public Response getProduct(@QueryParam("productID") long productID) throws HermesException {
+    public Response getProduct(@QueryParam("productID") long productID,
+                               @Context HttpHeaders headers) throws HermesException {
+        ResourceVersion version = catalogue.getProductVersion(productID);
+        Response.ResponseBuilder notModified = version.evaluate(headers);
+        if (notModified != null) return notModified.build();
         Product product = catalogue.getProduct(productID);
-        return Response.ok(product).build();
+        return version.tag(Response.ok(product)).build();
     }
 
     /**
@@ -125,38 +279,126 @@ public class CatalogueService {
     }
 
     /**
-     * Возвращает миниатюру изображения вписанную в размер 128x128
+     * Принимает файл импорта товарных позиций (CSV с заголовком или NDJSON) и обрабатывает его в фоне:
+     * позиции сопоставляются по артикулу (vendorCode) - существующие обновляются, новые создаются,
+     * товары добавляются в указанные коллекции (collections).
+     * Файлы больше общего лимита тела запроса передаются по частям (Transfer-Encoding: chunked).
+     * @param contentType формат файла: text/csv или application/x-ndjson
+     * @param input содержимое файла
+     * @return 202 Accepted и состояние импорта
+     * @throws HermesException информация об ошибке
+     */
+    @POST
+    @Path("/import")
+    @Consumes({ProductImport.FORMAT_CSV, ProductImport.FORMAT_NDJSON})
+    public Response importProducts(@HeaderParam("Content-Type") String contentType,
+                                   InputStream input) throws HermesException {
+        String format = contentType == null ? null : contentType.split(";")[0].trim().toLowerCase();
+        ImportStatus status = productImport.start(input, format);
+        return Response.accepted(status).build();
+    }
+
+    /**
+     * Возвращает ход импорта товарных позиций
+     * @param importID импорта
+     * @return состояние импорта
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getImportStatus")
+    public Response getImportStatus(@QueryParam("importID") long importID) throws HermesException {
+        return Response.ok(productImport.getStatus(importID)).build();
+    }
+
+    /**
+     * Возвращает миниатюру изображения наименьшего размера, в который вписывается запрошенный.
+     * Пока миниатюры создаются (или если создать их не удалось) возвращается полноразмерное изображение.
      * @param productID товарной позиции
-     * @return изображение миниатюры (image/jpeg)
+     * @param size размер миниатюры в пикселях (по умолчанию 128)
+     * @param range запрашиваемая часть файла (заголовок Range)
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return изображение миниатюры (image/jpeg) или 304 если оно не изменилось
      * @throws HermesException информация об ошибке
      */
     @GET
     @Path("/downloadThumbnail")
-    public Response downloadThumbnail(@QueryParam("productID") long productID) throws HermesException {
-        byte[] bytes = catalogue.getProductThumbnail(productID);
+    public Response downloadThumbnail(@QueryParam("productID") long productID,
+                                      @QueryParam("size") int size,
+                                      @HeaderParam("Range") String range,
+                                      @Context HttpHeaders headers) throws HermesException {
+        Validator.nonNegativeInteger("size", size);
+        if (size == 0) size = ThumbnailGenerator.DEFAULT_DIMENSION;
+        ProductImage productImage = catalogue.getProductImage(productID);
         String filename = "thumbnail" + productID + ".jpg";
-        Response.ResponseBuilder responseBuilder = Response.ok(bytes);
-        responseBuilder.header("Content-Disposition", "inline; filename=\"" + filename + "\"")
-                       .header("Content-Type", "image/jpeg");
-        return responseBuilder.build();
+        if (productImage.getThumbnailStatus() == ProductImage.THUMBNAILS_READY) {
+            ProductThumbnail thumbnail = catalogue.getProductThumbnail(productID, size);
+            ResourceVersion version = new ResourceVersion(thumbnail.getTimestamp(), thumbnail.getHash());
+            return downloadBlob(thumbnail.getHash(), filename, range, version, headers);
+        }
+        ResourceVersion version = new ResourceVersion(productImage.getTimestamp(), productImage.getImageHash());
+        return downloadBlob(productImage.getImageHash(), filename, range, version, headers);
+    }
+
+    /**
+     * Возвращает миниатюры всех товаров коллекции или указанных товаров одним zip архивом:
+     * файлы {productID}.jpg и manifest.json (выбранные размеры, хэши, товары без миниатюр,
+     * общее количество товаров и признак truncated, если коллекция больше архива)
+     * @param collectionID коллекции (или productIDs)
+     * @param productIDs товары через запятую (или collectionID)
+     * @param size размер миниатюр в пикселях (по умолчанию 128)
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return архив миниатюр (application/zip) или 304 если он не изменился
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/downloadThumbnails")
+    @Produces("application/zip")
+    public Response downloadThumbnails(@QueryParam("collectionID") Long collectionID,
+                                       @QueryParam("productIDs") String productIDs,
+                                       @QueryParam("size") int size,
+                                       @Context HttpHeaders headers) throws HermesException {
+        Validator.nonNegativeInteger("size", size);
+        if (size == 0) size = ThumbnailGenerator.DEFAULT_DIMENSION;
+        if ((collectionID == null) == (productIDs == null)) {
+            throw new HermesException(BAD_REQUEST, "Invalid parameter",
+                    "Specify either collectionID or productIDs.");
+        }
+        ThumbnailBundle bundle;
+        if (collectionID != null) {
+            bundle = thumbnailBundles.resolveCollection(collectionID, size);
+        } else {
+            List<Long> ids = new ArrayList<>();
+            try {
+                for (String id : productIDs.split(",")) if (!id.isBlank()) ids.add(Long.parseLong(id.trim()));
+            } catch (NumberFormatException e) {
+                throw new HermesException(BAD_REQUEST, "Invalid parameter", "Invalid productIDs: " + productIDs);
+            }
+            bundle = thumbnailBundles.resolveProducts(ids, size);
+        }
+        ResourceVersion version = new ResourceVersion(bundle.getLastModified(), bundle.getTag());
+        Response.ResponseBuilder notModified = version.evaluate(headers);
+        if (notModified != null) return notModified.build();
+        return version.tag(Response.ok(thumbnailBundles.getContent(bundle), "application/zip"))
+                .header("Content-Disposition", "attachment; filename=\"thumbnails.zip\"")
+                .build();
     }
 
     /**
      * Возвращает полноразмерное изображение товара
      * @param productID товарной позиции
-     * @return полноразмерное изображение (image/jpeg)
+     * @param range запрашиваемая часть файла (заголовок Range)
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return полноразмерное изображение (image/jpeg) или 304 если оно не изменилось
      * @throws HermesException информация об ошибке
      */
     @GET
     @Path("/downloadImage")
-    public Response downloadImage(@QueryParam("productID") long productID) throws HermesException {
+    public Response downloadImage(@QueryParam("productID") long productID,
+                                  @HeaderParam("Range") String range,
+                                  @Context HttpHeaders headers) throws HermesException {
         ProductImage productImage = catalogue.getProductImage(productID);
-        byte[] imageBytes = productImage.getImage();
-        String filename = productImage.getFilename();
-        Response.ResponseBuilder responseBuilder = Response.ok(imageBytes);
-        responseBuilder.header("Content-Disposition", "inline; filename=\"" + filename + "\"")
-                       .header("Content-Type", "image/jpeg");
-        return responseBuilder.build();
+        ResourceVersion version = new ResourceVersion(productImage.getTimestamp(), productImage.getImageHash());
+        return downloadBlob(productImage.getImageHash(), productImage.getFilename(), range, version, headers);
     }
 
 
@@ -208,24 +450,28 @@ public class CatalogueService {
                     "Only image/jpeg mime type is supported");
         }
         //------------------------------------------------------------------------------------
-        // Получаем тело файла и создаём миниатюрное изображение
+        // Записываем тело файла сразу в хранилище и проверяем, что это изображение
         //------------------------------------------------------------------------------------
-        byte[] originalImage = loadFile(inputPart, filename);
-        byte[] thumbnail = createThumbnail(originalImage, filename);
+        thumbnails.checkCapacity();
+        String imageHash = storeFile(inputPart, filename);
+        if (!isImage(imageHash)) {
+            catalogue.discardUpload(imageHash);
+            throw new HermesException(UNSUPPORTED_MEDIA, "Cannot read image",
+                    "Failed to read '" + filename + "' image. Product image not saved.");
+        }
 
         //------------------------------------------------------------------------------------
-        // Создаем объект ProductImage и сохраняем его в базе данных
+        // Сохраняем сведения об изображении в базе данных, миниатюры создаются в фоне
         //------------------------------------------------------------------------------------
-        ProductImage productImage = new ProductImage(product.getProductID(), filename, originalImage, thumbnail);
-        catalogue.uploadImage(productImage);
+        ProductImage productImage = catalogue.uploadImage(product.getProductID(), filename, imageHash);
 
         // Отправляем ответ клиентом с мини отчётом о загруженном изображении
         String response =
                 "{\n"+
                 "    \"productID\": " + product.getProductID() + ",\n" +
                 "    \"filename\": \"" + filename + "\",\n" +
-                "    \"imageSize\": " + originalImage.length + ",\n" +
-                "    \"thumbnailSize\": " + thumbnail.length + "\n" +
+                "    \"imageSize\": " + productImage.getImageSize() + ",\n" +
+                "    \"thumbnailStatus\": \"pending\"\n" +
                 "}";
 
         return Response.ok().entity(response).build();
@@ -238,27 +484,32 @@ public class CatalogueService {
 
     /**
      * Возвращает список всех коллекций
-     * @return список всех коллекций
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return список всех коллекций (из снимка каталога) или 304 если список не изменился
      * @throws HermesException информация об ошибке
      */
     @GET
     @Path("/getCollections")
-    public Response getCollections() throws HermesException {
-        List<Collection> collections = catalogue.getCollections();
-        return Response.ok().entity(collections).build();
+    public Response getCollections(@Context HttpHeaders headers) throws HermesException {
+        return snapshots.getCollections().toResponse(headers);
     }
 
     /**
      * Получить карточку коллекции товаров
      * @param collectionID коллекции
-     * @return карточка коллекции
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return карточка коллекции или 304 если она не изменилась
      * @throws HermesException информация об ошибке
      */
     @GET
     @Path("/getCollection")
-    public Response getCollection(@QueryParam("collectionID") long collectionID) throws HermesException {
+    public Response getCollection(@QueryParam("collectionID") long collectionID,
+                                  @Context HttpHeaders headers) throws HermesException {
+        ResourceVersion version = catalogue.getCollectionVersion(collectionID);
+        Response.ResponseBuilder notModified = version.evaluate(headers);
+        if (notModified != null) return notModified.build();
         Collection collection = catalogue.getCollection(collectionID);
-        return Response.ok().entity(collection).build();
+        return version.tag(Response.ok().entity(collection)).build();
     }
 
     /**
@@ -302,14 +553,43 @@ public class CatalogueService {
     /**
      * Получить список всех товаров в коллекции
      * @param collectionID коллекции
-     * @return список товаров коллекции
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return список товаров коллекции (из снимка каталога) или 304 если он не изменился
      * @throws HermesException информация об ошибке
      */
     @GET
     @Path("/getCollectionItems")
-    public Response getCollectionItems(@QueryParam("collectionID") long collectionID) throws HermesException {
-        List<CollectionItem> collectionItems = catalogue.getCollectionItems(collectionID);
-        return Response.ok().entity(collectionItems).build();
+    public Response getCollectionItems(@QueryParam("collectionID") long collectionID,
+                                       @Context HttpHeaders headers) throws HermesException {
+        return snapshots.getCollectionItems(collectionID).toResponse(headers);
+    }
+
+    /**
+     * Получить страницу товаров коллекции вместе с карточками товаров, доступным остатком
+     * и версией изображения (одним запросом)
+     * @param collectionID коллекции
+     * @param offset сколько товаров пропустить
+     * @param limit размер страницы (по умолчанию 100, не более 500)
+     * @param fields нужные поля через запятую (по умолчанию все)
+     * @param headers заголовки запроса (If-None-Match, If-Modified-Since)
+     * @return товары коллекции (общее количество в X-Total-Count) или 304 если они не изменились
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getCollectionProducts")
+    public Response getCollectionProducts(@QueryParam("collectionID") long collectionID,
+                                          @QueryParam("offset") int offset,
+                                          @QueryParam("limit") int limit,
+                                          @QueryParam("fields") String fields,
+                                          @Context HttpHeaders headers) throws HermesException {
+        // Версия страницы зависит и от параметров запроса
+        String page = offset + "-" + collectionProducts.pageSize(limit) + "-" +
+                Integer.toHexString(String.join(",", collectionProducts.parseFields(fields)).hashCode());
+        ResourceVersion version = collectionProducts.getVersion(collectionID).variant(page);
+        Response.ResponseBuilder notModified = version.evaluate(headers);
+        if (notModified != null) return notModified.build();
+        List<Map<String, Object>> items = collectionProducts.getCollectionProducts(collectionID, offset, limit, fields);
+        return version.tag(Response.ok(items)).header("X-Total-Count", version.getCount()).build();
     }
 
     /**
@@ -397,57 +677,76 @@ public class CatalogueService {
     }
 
     /**
-     * Загружает файл изображения из multipart/form-data
+     * Отдает файл из хранилища без загрузки в память (с поддержкой Range и условных запросов)
+     * @param hash хэш файла в хранилище
+     * @param filename название файла
+     * @param range запрашиваемая часть файла (заголовок Range)
+     * @param version версия файла (ETag - хэш файла)
+     * @param headers заголовки запроса
+     * @return ответ с содержимым файла или 304 если файл не изменился
+     * @throws HermesException информация об ошибке
+     */
+    private Response downloadBlob(String hash, String filename, String range,
+                                  ResourceVersion version, HttpHeaders headers) throws HermesException {
+        Response.ResponseBuilder notModified = version.evaluate(headers);
+        if (notModified != null) return notModified.build();
+        FileChannel channel = blobStore.open(hash);
+        try {
+            return version.tag(BlobResponse.build(channel, "image/jpeg", filename, range)).build();
+        } catch (IOException e) {
+            e.printStackTrace();
+            try {
+                channel.close();
+            } catch (IOException ignored) { }
+            throw new HermesException(INTERNAL_SERVER_ERROR, "Cannot read file", e.getMessage());
+        }
+    }
+
+    /**
+     * Записывает файл изображения из multipart/form-data в хранилище, не загружая его в память
      * @param inputPart часть multipart/form-data
      * @param filename названия файла
-     * @return массив байт файла
+     * @return хэш файла в хранилище
      * @throws HermesException информация об ошибке
      */
-    private byte[] loadFile(InputPart inputPart, String filename) throws HermesException {
-        InputStream inputStream;
-        byte[] originalImage;
-        try {
-            inputStream = inputPart.getBody(InputStream.class,null);
-            originalImage = IOUtils.toByteArray(inputStream);
+    private String storeFile(InputPart inputPart, String filename) throws HermesException {
+        try (InputStream inputStream = inputPart.getBody(InputStream.class, null)) {
+            return blobStore.put(inputStream, MAX_IMAGE_SIZE);
+        } catch (HermesException e) {
+            if (e.getStatus() == REQUEST_TOO_LARGE) {
+                throw new HermesException(REQUEST_TOO_LARGE, "Image size is too large",
+                        "Maximum JPEG image file size is limited to " + MAX_IMAGE_SIZE + " bytes");
+            }
+            throw e;
         } catch (IOException e) {
             e.printStackTrace();
             throw new HermesException(UNSUPPORTED_MEDIA, "Cannot load product image body",
                     "Failed to load '" + filename + "' image.");
         }
-        // Проверка ограничения на размер файла
-        if (originalImage.length > MAX_IMAGE_SIZE) {
-            throw new HermesException(REQUEST_TOO_LARGE, "Image size is too large",
-                    "Maximum JPEG image file size is limited to " + MAX_IMAGE_SIZE + " bytes");
-        }
-        return originalImage;
     }
 
 
     /**
-     * Создает миниатюру 128x128 из оригинального изображения
-     * @param originalImage оригинальное изображение
-     * @param filename название файла
-     * @return массив байт миниатюры в формате JPEG
+     * Проверяет, что сохраненный файл является изображением (читается только заголовок)
+     * @param hash хэш файла в хранилище
+     * @return true если файл читается как изображение
      * @throws HermesException информация об ошибке
      */
-    private byte[] createThumbnail(byte[] originalImage, String filename) throws HermesException {
-        // Формируем буфер под миниатюрное изображение 128x128 image/jpeg (до 64Kb)
-        ByteArrayOutputStream thumbnailOutput = new ByteArrayOutputStream(MAX_THUMBNAIL_SIZE);
-        byte[] thumbnail;
-        try {
-            // Уменьшаем изображение изображение до 128x128
-            Thumbnails.of(new ByteArrayInputStream(originalImage))
-                    .size(MAX_THUMBNAIL_DIMENSION, MAX_THUMBNAIL_DIMENSION)
-                    .toOutputStream(thumbnailOutput);
-            thumbnail = thumbnailOutput.toByteArray();
+    private boolean isImage(String hash) throws HermesException {
+        try (ImageInputStream imageInput = ImageIO.createImageInputStream(blobStore.getPath(hash).toFile())) {
+            Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInput);
+            if (!readers.hasNext()) return false;
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(imageInput, true, true);
+                return reader.getWidth(0) > 0 && reader.getHeight(0) > 0;
+            } finally {
+                reader.dispose();
+            }
         } catch (IOException e) {
             e.printStackTrace();
-            throw new HermesException(UNSUPPORTED_MEDIA, "Cannot create image thumbnail",
-                    "Failed to create '" + filename + "' thumbnail. Product image not saved.");
+            return false;
         }
-        return thumbnail;
     }
 
-
-
 }
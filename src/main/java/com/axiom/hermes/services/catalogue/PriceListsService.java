@@ -0,0 +1,144 @@
+package com.axiom.hermes.services.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.model.catalogue.EffectivePrice;
+import com.axiom.hermes.model.catalogue.PriceLists;
+import com.axiom.hermes.model.catalogue.entities.PriceList;
+import com.axiom.hermes.model.catalogue.entities.PriceListItem;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+/**
+ * Сервис управления прайс-листами
+ */
+@Path("/priceLists")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class PriceListsService {
+
+    @Inject
+    PriceLists priceLists;
+
+    /**
+     * Получить список всех прайс-листов
+     * @return список прайс-листов
+     */
+    @GET
+    public Response getPriceLists() {
+        List<PriceList> allPriceLists = priceLists.getPriceLists();
+        return Response.ok(allPriceLists).build();
+    }
+
+    /**
+     * Получить прайс-лист по ID
+     * @param priceListID прайс-листа
+     * @return прайс-лист
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getPriceList")
+    public Response getPriceList(@QueryParam("priceListID") long priceListID) throws HermesException {
+        PriceList priceList = priceLists.getPriceList(priceListID);
+        return Response.ok(priceList).build();
+    }
+
+    /**
+     * Добавить прайс-лист
+     * @param newPriceList прайс-лист
+     * @return сохраненный прайс-лист
+     * @throws HermesException информация об ошибке
+     */
+    @POST
+    @Path("/addPriceList")
+    public Response addPriceList(PriceList newPriceList) throws HermesException {
+        PriceList priceList = priceLists.addPriceList(newPriceList);
+        return Response.ok(priceList).build();
+    }
+
+    /**
+     * Изменить прайс-лист
+     * @param priceList прайс-лист с измененными полями
+     * @return измененный прайс-лист
+     * @throws HermesException информация об ошибке
+     */
+    @PUT
+    @Path("/updatePriceList")
+    public Response updatePriceList(PriceList priceList) throws HermesException {
+        PriceList managed = priceLists.updatePriceList(priceList);
+        return Response.ok(managed).build();
+    }
+
+    /**
+     * Удалить прайс-лист вместе с его ценами
+     * @param priceListID прайс-листа
+     * @return 200 ОК если удален
+     * @throws HermesException информация об ошибке
+     */
+    @DELETE
+    @Path("/removePriceList")
+    public Response removePriceList(@QueryParam("priceListID") long priceListID) throws HermesException {
+        priceLists.removePriceList(priceListID);
+        return Response.ok().build();
+    }
+
+    /**
+     * Получить цены прайс-листа
+     * @param priceListID прайс-листа
+     * @return цены товаров в прайс-листе
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getPriceListItems")
+    public Response getPriceListItems(@QueryParam("priceListID") long priceListID) throws HermesException {
+        List<PriceListItem> items = priceLists.getPriceListItems(priceListID);
+        return Response.ok(items).build();
+    }
+
+    /**
+     * Установить цену товара в прайс-листе
+     * @param item цена товара в прайс-листе (priceListID, productID, unitPrice)
+     * @return сохраненная цена товара в прайс-листе
+     * @throws HermesException информация об ошибке
+     */
+    @PUT
+    @Path("/setPrice")
+    public Response setPrice(PriceListItem item) throws HermesException {
+        PriceListItem entry = priceLists.setPrice(item.getPriceListID(), item.getProductID(), item.getUnitPrice());
+        return Response.ok(entry).build();
+    }
+
+    /**
+     * Удалить цену товара из прайс-листа
+     * @param priceListID прайс-листа
+     * @param productID товара
+     * @return 200 ОК если удалена
+     * @throws HermesException информация об ошибке
+     */
+    @DELETE
+    @Path("/removePrice")
+    public Response removePrice(@QueryParam("priceListID") long priceListID,
+                                @QueryParam("productID") long productID) throws HermesException {
+        priceLists.removePrice(priceListID, productID);
+        return Response.ok().build();
+    }
+
+    /**
+     * Получить действующую цену товара для группы цен клиентов
+     * @param productID товара
+     * @param priceGroup группа цен (не указана - общие прайс-листы)
+     * @return действующая цена и прайс-лист, из которого она взята
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getEffectivePrice")
+    public Response getEffectivePrice(@QueryParam("productID") long productID,
+                                      @QueryParam("priceGroup") String priceGroup) throws HermesException {
+        EffectivePrice price = priceLists.getEffectivePrice(productID, priceGroup);
+        return Response.ok(price).build();
+    }
+
+}
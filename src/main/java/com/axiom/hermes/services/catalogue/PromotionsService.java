@@ -0,0 +1,86 @@
+package com.axiom.hermes.services.catalogue;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.model.catalogue.Promotions;
+import com.axiom.hermes.model.catalogue.entities.Promotion;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+/**
+ * Сервис управления акциями (правилами скидок)
+ */
+@Path("/promotions")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class PromotionsService {
+
+    @Inject
+    Promotions promotions;
+
+    /**
+     * Получить список всех акций
+     * @return список акций
+     */
+    @GET
+    public Response getPromotions() {
+        List<Promotion> allPromotions = promotions.getPromotions();
+        return Response.ok(allPromotions).build();
+    }
+
+    /**
+     * Получить акцию по ID
+     * @param promotionID акции
+     * @return акция
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getPromotion")
+    public Response getPromotion(@QueryParam("promotionID") long promotionID) throws HermesException {
+        Promotion promotion = promotions.getPromotion(promotionID);
+        return Response.ok(promotion).build();
+    }
+
+    /**
+     * Добавить акцию
+     * @param newPromotion акция
+     * @return сохраненная акция
+     * @throws HermesException информация об ошибке
+     */
+    @POST
+    @Path("/addPromotion")
+    public Response addPromotion(Promotion newPromotion) throws HermesException {
+        Promotion promotion = promotions.addPromotion(newPromotion);
+        return Response.ok(promotion).build();
+    }
+
+    /**
+     * Изменить акцию
+     * @param promotion акция (правило задается целиком)
+     * @return измененная акция
+     * @throws HermesException информация об ошибке
+     */
+    @PUT
+    @Path("/updatePromotion")
+    public Response updatePromotion(Promotion promotion) throws HermesException {
+        Promotion managed = promotions.updatePromotion(promotion);
+        return Response.ok(managed).build();
+    }
+
+    /**
+     * Удалить акцию
+     * @param promotionID акции
+     * @return 200 ОК если удалена
+     * @throws HermesException информация об ошибке
+     */
+    @DELETE
+    @Path("/removePromotion")
+    public Response removePromotion(@QueryParam("promotionID") long promotionID) throws HermesException {
+        promotions.removePromotion(promotionID);
+        return Response.ok().build();
+    }
+
+}
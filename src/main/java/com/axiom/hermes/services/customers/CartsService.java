@@ -0,0 +1,111 @@
+package com.axiom.hermes.services.customers;
+
+import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.model.customers.Cart;
+import com.axiom.hermes.model.customers.CartItem;
+import com.axiom.hermes.model.customers.Carts;
+import com.axiom.hermes.model.customers.entities.SalesOrder;
+
+import javax.inject.Inject;
+import javax.ws.rs.*;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+
+/**
+ * Сервис корзин клиентов (черновиков заказов до оформления)
+ */
+@Path("/carts")
+@Produces(MediaType.APPLICATION_JSON)
+@Consumes(MediaType.APPLICATION_JSON)
+public class CartsService {
+
+    @Inject
+    Carts carts;
+
+    public CartsService() { }
+
+    /**
+     * Получить корзину клиента
+     * @param customerID клиента
+     * @return корзина клиента
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getCart")
+    public Response getCart(@QueryParam("customerID") long customerID) throws HermesException {
+        Cart cart = carts.getCart(customerID);
+        return Response.ok(cart).build();
+    }
+
+    /**
+     * Добавить товар в корзину клиента
+     * @param customerID клиента
+     * @param item позиция корзины (товар, количество)
+     * @return обновленная корзина
+     * @throws HermesException информация об ошибке
+     */
+    @POST
+    @Path("/addCartItem")
+    public Response addCartItem(@QueryParam("customerID") long customerID, CartItem item)
+            throws HermesException {
+        Cart cart = carts.addItem(customerID, item.getProductID(), item.getQuantity());
+        return Response.ok(cart).build();
+    }
+
+    /**
+     * Изменить количество товара в корзине клиента (0 - удалить позицию)
+     * @param customerID клиента
+     * @param item позиция корзины (товар, количество)
+     * @return обновленная корзина
+     * @throws HermesException информация об ошибке
+     */
+    @PUT
+    @Path("/updateCartItem")
+    public Response updateCartItem(@QueryParam("customerID") long customerID, CartItem item)
+            throws HermesException {
+        Cart cart = carts.updateItem(customerID, item.getProductID(), item.getQuantity());
+        return Response.ok(cart).build();
+    }
+
+    /**
+     * Удалить товар из корзины клиента
+     * @param customerID клиента
+     * @param productID товара
+     * @return обновленная корзина
+     * @throws HermesException информация об ошибке
+     */
+    @DELETE
+    @Path("/removeCartItem")
+    public Response removeCartItem(@QueryParam("customerID") long customerID,
+                                   @QueryParam("productID") long productID) throws HermesException {
+        Cart cart = carts.updateItem(customerID, productID, 0);
+        return Response.ok(cart).build();
+    }
+
+    /**
+     * Очистить корзину клиента
+     * @param customerID клиента
+     * @return 200 ОК
+     * @throws HermesException информация об ошибке
+     */
+    @DELETE
+    @Path("/clearCart")
+    public Response clearCart(@QueryParam("customerID") long customerID) throws HermesException {
+        carts.clearCart(customerID);
+        return Response.ok().build();
+    }
+
+    /**
+     * Оформить заказ из корзины клиента
+     * @param customerID клиента
+     * @return карточка созданного заказа
+     * @throws HermesException информация об ошибке
+     */
+    @POST
+    @Path("/checkout")
+    public Response checkout(@QueryParam("customerID") long customerID) throws HermesException {
+        SalesOrder order = carts.checkout(customerID);
+        return Response.ok(order).build();
+    }
+
+}
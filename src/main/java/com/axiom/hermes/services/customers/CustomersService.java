@@ -1,6 +1,9 @@
 package com.axiom.hermes.services.customers;
 
 import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.io.ImportStatus;
+import com.axiom.hermes.model.customers.CustomerImport;
+import com.axiom.hermes.model.customers.CustomerSearchResult;
 import com.axiom.hermes.model.customers.Customers;
 import com.axiom.hermes.model.customers.entities.Customer;
 
@@ -8,6 +11,7 @@ import javax.inject.Inject;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.io.InputStream;
 import java.util.List;
 
 /**
@@ -21,6 +25,9 @@ public class CustomersService {
     @Inject
     Customers customers;
 
+    @Inject
+    CustomerImport customerImport;
+
     /**
      * Получить список всех клиентов
      * @return список клиентов
@@ -32,6 +39,29 @@ public class CustomersService {
         return Response.ok(allCustomers).build();
     }
 
+    /**
+     * Поиск клиентов по части имени, города, мобильного номера и началу БИН/ИИН
+     * @param name часть имени
+     * @param businessID начало БИН/ИИН
+     * @param city часть названия города
+     * @param mobile часть мобильного номера
+     * @param offset сколько найденных клиентов пропустить
+     * @param limit размер страницы (по умолчанию 50, не более 500)
+     * @return страница клиентов (общее количество найденных в X-Total-Count)
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/searchCustomers")
+    public Response searchCustomers(@QueryParam("name") String name,
+                                    @QueryParam("businessID") String businessID,
+                                    @QueryParam("city") String city,
+                                    @QueryParam("mobile") String mobile,
+                                    @QueryParam("offset") int offset,
+                                    @QueryParam("limit") int limit) throws HermesException {
+        CustomerSearchResult result = customers.searchCustomers(name, businessID, city, mobile, offset, limit);
+        return Response.ok(result.getCustomers()).header("X-Total-Count", result.getTotal()).build();
+    }
+
     /**
      * Добавить нового клиента
      * @param newCustomer карточка клиента
@@ -98,4 +128,36 @@ public class CustomersService {
         return Response.ok().build();
     }
 
+    /**
+     * Принимает файл импорта клиентов (CSV с заголовком или NDJSON) и обрабатывает его в фоне:
+     * клиенты сопоставляются по мобильному номеру - существующие дополняются, новые создаются,
+     * строки с другим БИН/ИИН у того же номера попадают в ошибки как конфликты.
+     * Файлы больше общего лимита тела запроса передаются по частям (Transfer-Encoding: chunked).
+     * @param contentType формат файла: text/csv или application/x-ndjson
+     * @param input содержимое файла
+     * @return 202 Accepted и состояние импорта
+     * @throws HermesException информация об ошибке
+     */
+    @POST
+    @Path("/import")
+    @Consumes({CustomerImport.FORMAT_CSV, CustomerImport.FORMAT_NDJSON})
+    public Response importCustomers(@HeaderParam("Content-Type") String contentType,
+                                    InputStream input) throws HermesException {
+        String format = contentType == null ? null : contentType.split(";")[0].trim().toLowerCase();
+        ImportStatus status = customerImport.start(input, format);
+        return Response.accepted(status).build();
+    }
+
+    /**
+     * Возвращает ход импорта клиентов
+     * @param importID импорта
+     * @return состояние импорта
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getImportStatus")
+    public Response getImportStatus(@QueryParam("importID") long importID) throws HermesException {
+        return Response.ok(customerImport.getStatus(importID)).build();
+    }
+
 }
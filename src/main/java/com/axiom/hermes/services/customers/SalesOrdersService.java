@@ -1,16 +1,26 @@
 package com.axiom.hermes.services.customers;
 
 import com.axiom.hermes.common.exceptions.HermesException;
+import com.axiom.hermes.common.validation.Validator;
+import com.axiom.hermes.model.customers.OrderHistory;
 import com.axiom.hermes.model.customers.SalesOrders;
 import com.axiom.hermes.model.customers.entities.SalesOrder;
 import com.axiom.hermes.model.customers.entities.SalesOrderItem;
+import com.axiom.hermes.model.customers.entities.SalesOrderSummary;
 
 import javax.inject.Inject;
+import javax.json.bind.Jsonb;
 import javax.ws.rs.*;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import javax.ws.rs.core.StreamingOutput;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 
+import static com.axiom.hermes.model.customers.entities.SalesOrder.STATUS_CONFIRMED;
+import static com.axiom.hermes.model.customers.entities.SalesOrder.STATUS_PAID;
+
 /**
  * Сервис управления клиентскими заказами
  */
@@ -23,6 +33,12 @@ public class SalesOrdersService {
     @Inject
     SalesOrders salesOrders;
 
+    @Inject
+    OrderHistory orderHistory;
+
+    @Inject
+    Jsonb jsonb;
+
     public SalesOrdersService() { }
 
     /**
@@ -56,6 +72,21 @@ public class SalesOrdersService {
         return Response.ok(orders).build();
     }
 
+    /**
+     * Получить историю заказов клиента: сводки заказов с количеством позиций и итогами
+     * @param customerID клиента
+     * @param status статус искомых заказов (0 - любой статус)
+     * @return список сводок заказов (новые заказы первыми)
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getOrderHistory")
+    public Response getOrderHistory(@QueryParam("customerID") long customerID, @QueryParam("status") int status)
+    throws HermesException{
+        List<SalesOrderSummary> history = orderHistory.getOrderHistory(customerID, status);
+        return Response.ok(history).build();
+    }
+
     /**
      * Создать новую карточку заказа от имени клиента
      * @param newOrder новый заказ с указанным клиентом
@@ -108,6 +139,56 @@ public class SalesOrdersService {
         return Response.ok().build();
     }
 
+    /**
+     * Получить лист сборки: неотгруженное количество товаров по заказам в указанных статусах,
+     * сгруппированное по товару и волнам сборки, с кодами заказов волны. Ответ передаётся
+     * потоком по мере чтения из базы. Открывающая скобка пишется только после получения
+     * первой строки курсора, поэтому ошибка выполнения запроса возвращается обычным
+     * ответом с кодом ошибки. Если чтение прервалось после начала передачи, массив
+     * не закрывается и соединение обрывается - клиент должен считать такой ответ ошибкой.
+     * @param statuses статусы заказов (по умолчанию подтвержденные и оплаченные)
+     * @param waveSize количество заказов в волне сборки (0 - без разбивки на волны)
+     * @return список строк листа сборки
+     * @throws HermesException информация об ошибке
+     */
+    @GET
+    @Path("/getPickingList")
+    public Response getPickingList(@QueryParam("status") List<Integer> statuses,
+                                   @QueryParam("waveSize") int waveSize) throws HermesException {
+        if (statuses == null || statuses.isEmpty()) statuses = List.of(STATUS_CONFIRMED, STATUS_PAID);
+        // Проверяем параметры до начала передачи ответа, чтобы вернуть корректную ошибку
+        Validator.nonNegativeInteger("waveSize", waveSize);
+        for (int status : statuses) Validator.nonNegativeInteger("status", status);
+        final List<Integer> pickingStatuses = statuses;
+        StreamingOutput stream = output -> {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(output, StandardCharsets.UTF_8));
+            boolean[] first = { true };
+            try {
+                salesOrders.getPickingList(pickingStatuses, waveSize, item -> {
+                    try {
+                        writer.write(first[0] ? '[' : ',');
+                        writer.write(jsonb.toJson(item));
+                        first[0] = false;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (HermesException e) {
+                // Массив не закрываем: ответ либо ещё не начат, либо должен оборваться
+                throw new WebApplicationException(e, Response
+                        .status(e.getStatus())
+                        .entity(e.getPrettyJSON())
+                        .build());
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            if (first[0]) writer.write('[');
+            writer.write(']');
+            writer.flush();
+        };
+        return Response.ok(stream).build();
+    }
+
     //------------------------------------------------------------------------------------------------------
     // Управление позициями заказа
     //------------------------------------------------------------------------------------------------------
@@ -0,0 +1,7 @@
+-- Выполняется Hibernate после создания схемы (quarkus.hibernate-orm.sql-load-script)
+-- Поиск клиентов: триграммные индексы для поиска по подстроке, индекс для поиска БИН/ИИН по префиксу
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE INDEX IF NOT EXISTS CustomerNameTrgmIndex ON Customer USING gin (lower(name) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS CustomerCityTrgmIndex ON Customer USING gin (lower(city) gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS CustomerMobileTrgmIndex ON Customer USING gin (mobile gin_trgm_ops);
+CREATE INDEX IF NOT EXISTS CustomerBusinessIDPrefixIndex ON Customer (businessID text_pattern_ops);
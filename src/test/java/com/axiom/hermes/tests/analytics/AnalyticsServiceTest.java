@@ -0,0 +1,204 @@
+package com.axiom.hermes.tests.analytics;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class AnalyticsServiceTest {
+
+    private static final Logger LOG = Logger.getLogger(AnalyticsServiceTest.class);
+
+    private static int productID;
+    private static int customerID;
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(1)
+    public void registerSales() {
+        // Добавить продукт
+        productID =
+                given()
+                        .header("Content-Type", "application/json")
+                        .body("{\n" +
+                                "    \"name\": \"CUP OF TEA\",\n" +
+                                "    \"description\": \"GREENFIELD\",\n" +
+                                "    \"unitPrice\": 4,\n" +
+                                "    \"vendorCode\": \"CTGRF\",\n" +
+                                "    \"available\": true\n" +
+                                "}")
+                .when()
+                        .post("/catalogue/addProduct")
+                .then()
+                        .statusCode(200)
+                .extract().path("productID");
+
+        LOG.info("Product created productID=" + productID);
+
+        // Закуп, продажа и возврат без заказа
+        given().when().get("/inventory/purchase?productID=" + productID + "&quantity=100&unitCost=2")
+                .then().statusCode(200);
+        given().when().get("/inventory/sale?productID=" + productID + "&quantity=10")
+                .then().statusCode(200);
+        given().when().get("/inventory/saleReturn?productID=" + productID + "&quantity=3&unitCost=4")
+                .then().statusCode(200);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(2)
+    public void getProductSales() {
+        String response =
+                given()
+                .when()
+                        .get("/analytics/getProductSales?productID=" + productID)
+                .then()
+                        .statusCode(200)
+                        .assertThat()
+                        .body("size()", equalTo(1))
+                        .body("[0].productID", equalTo(productID))
+                        .body("[0].quantity", equalTo(7))
+                        .body("[0].revenue", equalTo(28f))
+                .extract().asString();
+        LOG.info("Product sales: " + response);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(3)
+    public void getDailySales() {
+        String response =
+                given()
+                .when()
+                        .get("/analytics/getDailySales")
+                .then()
+                        .statusCode(200)
+                        .assertThat()
+                        .body("size()", greaterThan(0))
+                .extract().asString();
+        LOG.info("Daily sales: " + response);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(4)
+    public void getTopProducts() {
+        String response =
+                given()
+                .when()
+                        .get("/analytics/topProducts?window=1h&limit=10")
+                .then()
+                        .statusCode(200)
+                        .assertThat()
+                        .body("productID", hasItem(productID))
+                .extract().asString();
+        LOG.info("Top products: " + response);
+
+        given()
+        .when()
+                .get("/analytics/topProducts?window=1y")
+        .then()
+                .statusCode(400);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(5)
+    public void customerSegments() {
+        customerID =
+                given()
+                        .header("Content-Type", "application/json")
+                        .body("{\"mobile\": \"+77071110003\", \"name\": \"RFM CUSTOMER\"}")
+                .when()
+                        .post("/customers/addCustomer")
+                .then()
+                        .statusCode(200)
+                .extract().path("customerID");
+
+        int orderID =
+                given()
+                        .header("Content-Type", "application/json")
+                        .body("{ \"customerID\":" + customerID + "}")
+                .when()
+                        .post("/salesOrders/addOrder")
+                .then()
+                        .statusCode(200)
+                .extract().path("orderID");
+
+        given()
+                .header("Content-Type", "application/json")
+                .body("{ \"orderID\":" + orderID + ", \"productID\":" + productID + ", \"quantity\":5 }")
+        .when()
+                .post("/salesOrders/addOrderItem")
+        .then()
+                .statusCode(200);
+
+        // В сегментах учитываются только подтвержденные заказы
+        given()
+                .contentType("application/json")
+                .body("{\"orderID\":" + orderID + ",\"status\":5 }")
+        .when()
+                .put("/salesOrders/changeStatus")
+        .then()
+                .statusCode(200);
+
+        given()
+        .when()
+                .post("/analytics/refreshSegments")
+        .then()
+                .statusCode(200)
+                .assertThat()
+                .body("orderCount", greaterThan(0))
+                .body("customerCount", greaterThan(0));
+
+        String response =
+                given()
+                .when()
+                        .get("/analytics/getCustomerSegment?customerID=" + customerID)
+                .then()
+                        .statusCode(200)
+                        .assertThat()
+                        .body("orderCount", equalTo(1))
+                        .body("monetary", equalTo(20f))
+                        .body("recencyScore", greaterThan(0))
+                        .body("segment", notNullValue())
+                .extract().asString();
+        LOG.info("Customer segment: " + response);
+
+        // Повторный пересчет не учитывает уже учтенные заказы
+        given()
+        .when()
+                .post("/analytics/refreshSegments")
+        .then()
+                .statusCode(200)
+                .assertThat()
+                .body("orderCount", equalTo(0));
+
+        given()
+        .when()
+                .get("/analytics/getCustomerSegment?customerID=" + customerID)
+        .then()
+                .statusCode(200)
+                .assertThat()
+                .body("orderCount", equalTo(1));
+
+        given()
+        .when()
+                .get("/analytics/getSegmentCustomers?segment=vip")
+        .then()
+                .statusCode(400);
+    }
+
+}
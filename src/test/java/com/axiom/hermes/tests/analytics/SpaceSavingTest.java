@@ -0,0 +1,47 @@
+package com.axiom.hermes.tests.analytics;
+
+import com.axiom.hermes.model.analytics.SpaceSaving;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SpaceSavingTest {
+
+    @Test
+    public void findsHeavyHitters() {
+        SpaceSaving sketch = new SpaceSaving(8);
+        // Два частых товара и длинный хвост редких
+        for (int i = 0; i < 1000; i++) {
+            sketch.offer(1, 5);
+            sketch.offer(2, 3);
+            sketch.offer(100 + i, 1);
+        }
+        List<SpaceSaving.Counter> top = sketch.top(2);
+        assertEquals(1, top.get(0).getItem());
+        assertEquals(2, top.get(1).getItem());
+        // Оценка сверху не меньше реального значения, оценка снизу не больше
+        assertTrue(top.get(0).getCount() >= 5000);
+        assertTrue(top.get(0).getCount() - top.get(0).getError() <= 5000);
+    }
+
+    @Test
+    public void mergesSketches() {
+        SpaceSaving first = new SpaceSaving(4);
+        SpaceSaving second = new SpaceSaving(4);
+        first.offer(1, 10);
+        second.offer(1, 5);
+        second.offer(2, 7);
+
+        SpaceSaving merged = new SpaceSaving(4);
+        merged.addAll(first);
+        merged.addAll(second);
+        List<SpaceSaving.Counter> top = merged.top(10);
+        assertEquals(2, top.size());
+        assertEquals(1, top.get(0).getItem());
+        assertEquals(15, top.get(0).getCount());
+    }
+
+}
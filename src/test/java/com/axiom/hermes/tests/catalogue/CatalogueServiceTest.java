@@ -1,20 +1,32 @@
 package com.axiom.hermes.tests.catalogue;
 
 import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.RestAssured;
 import io.restassured.http.ContentType;
+import io.restassured.path.json.JsonPath;
 import org.jboss.logging.Logger;
 import org.junit.jupiter.api.MethodOrderer;
 import org.junit.jupiter.api.Order;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.TestMethodOrder;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
 @QuarkusTest
@@ -33,6 +45,7 @@ public class CatalogueServiceTest {
     private static int collectionID;
     private static int collectionItemID;
     private static long imageSize;
+    private static String syncToken;
 
     //---------------------------------------------------------------------------------------------------
 
@@ -45,6 +58,19 @@ public class CatalogueServiceTest {
                 .statusCode(200);
     }
 
+    @Test
+    @Order(1)
+    public void getChangesFullSync() {
+        syncToken =
+        given()
+                .when().get("/catalogue/changes")
+        .then()
+                .statusCode(200)
+                .body("fullSync", equalTo(true))
+                .body("hasMore", equalTo(false))
+        .extract().path("syncToken");
+    }
+
     //---------------------------------------------------------------------------------------------------
 
     @Test
@@ -115,6 +141,30 @@ public class CatalogueServiceTest {
 
     //---------------------------------------------------------------------------------------------------
 
+    @Test
+    @Order(3)
+    public void getProductNotModified() {
+        String eTag =
+                given().
+                when().get("/catalogue/getProduct?productID=" + productID).
+                then().statusCode(200).assertThat()
+                        .header("ETag", notNullValue())
+                        .header("Last-Modified", notNullValue())
+                .extract().header("ETag");
+
+        given()
+                .header("If-None-Match", eTag).
+        when().get("/catalogue/getProduct?productID=" + productID).
+        then().statusCode(304);
+
+        given()
+                .header("If-None-Match", "\"outdated\"").
+        when().get("/catalogue/getProduct?productID=" + productID).
+        then().statusCode(200);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
     @Test
     @Order(4)
     public void updateProduct() {
@@ -161,6 +211,86 @@ public class CatalogueServiceTest {
         LOG.info("Get Available Product response :" + makePretty(body));
     }
 
+    @Test
+    @Order(5)
+    public void listProducts() {
+        String response =
+        given()
+                .when().get("/catalogue/listProducts?sort=price&order=desc&limit=500&fields=name,unitPrice")
+        .then()
+                .statusCode(200)
+                .body("productID", hasItem(productID))
+                .body("find { it.productID == " + productID + " }.name", equalTo("CUP OF COFFEE"))
+                .body("find { it.productID == " + productID + " }.description", nullValue())
+        .extract().asString();
+        LOG.info("List products: " + makePretty(response));
+
+        given()
+                .when().get("/catalogue/listProducts?cursor=broken")
+        .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(5)
+    public void browseProducts() {
+        String response =
+        given()
+                .when().get("/catalogue/browse?available=true&priceBand=10-50&limit=500")
+        .then()
+                .statusCode(200)
+                .body("products.productID", hasItem(productID))
+                .body("facets.price.'10-50'", greaterThanOrEqualTo(1))
+        .extract().asString();
+        LOG.info("Browse products: " + makePretty(response));
+
+        given()
+                .when().get("/catalogue/browse?priceBand=unknown")
+        .then()
+                .statusCode(400);
+    }
+
+    @Test
+    @Order(5)
+    public void searchProducts() {
+        given().
+        when().get("/catalogue/search?q=cofee&limit=10").
+        then().statusCode(200).assertThat()
+                .body("productID", hasItem(productID));
+
+        given().
+        when().get("/catalogue/search?q=CCMA").
+        then().statusCode(200).assertThat()
+                .body("productID", hasItem(productID));
+
+        given().
+        when().get("/catalogue/search?q=").
+        then().statusCode(400);
+    }
+
+    @Test
+    @Order(5)
+    public void getAvailableProductsSnapshot() {
+        // Снимок каталога отдается сжатым и поддерживает условные запросы
+        String eTag =
+        given()
+                .header("Accept-Encoding", "gzip")
+        .when()
+                .get("/catalogue")
+        .then()
+                .statusCode(200)
+                .header("Content-Encoding", equalTo("gzip"))
+                .header("ETag", notNullValue())
+        .extract().header("ETag");
+
+        given()
+                .header("If-None-Match", eTag)
+        .when()
+                .get("/catalogue")
+        .then()
+                .statusCode(304);
+    }
+
     //---------------------------------------------------------------------------------------------------
 
     @Test
@@ -254,6 +384,42 @@ public class CatalogueServiceTest {
     }
 
 
+    @Test
+    @Order(9)
+    public void downloadImageRange() {
+        byte[] part =
+                given()
+                        .header("Range", "bytes=0-99").
+                when().get("/catalogue/downloadImage?productID=" + productID).
+                then().statusCode(206).
+                        assertThat().
+                        header("Content-Range", equalTo("bytes 0-99/" + imageSize)).
+                        extract().
+                        asByteArray();
+        assertTrue(part.length == 100);
+
+        given()
+                .header("Range", "bytes=" + imageSize + "-").
+        when().get("/catalogue/downloadImage?productID=" + productID).
+        then().statusCode(416);
+
+        given()
+                .header("Range", "bytes=-0").
+        when().get("/catalogue/downloadImage?productID=" + productID).
+        then().statusCode(416);
+
+        // Некорректный диапазон игнорируется - отдается весь файл
+        byte[] image =
+                given()
+                        .header("Range", "bytes=100-0").
+                when().get("/catalogue/downloadImage?productID=" + productID).
+                then().statusCode(200).
+                        extract().
+                        asByteArray();
+        assertTrue(image.length == imageSize);
+    }
+
+
     @Test
     @Order(10)
     public void downloadThumbnail() {
@@ -346,6 +512,71 @@ public class CatalogueServiceTest {
         LOG.info("Get collection items: " + makePretty(response));
     }
 
+    @Test
+    @Order(13)
+    public void getCollectionProducts() {
+        String response =
+                given().
+                        when().get("/catalogue/getCollectionProducts?collectionID=" + collectionID +
+                                "&fields=name,unitPrice,availableForSale").
+                        then().statusCode(200).assertThat()
+                        .header("X-Total-Count", equalTo("1"))
+                        .header("ETag", notNullValue())
+                        .body("[0].itemID", equalTo(collectionItemID))
+                        .body("[0].productID", equalTo(productID))
+                        .body("[0].name", equalTo("CUP OF COFFEE"))
+                        .body("[0].availableForSale", equalTo(0))
+                        .body("[0].description", nullValue())
+                        .extract().asString();
+        LOG.info("Get collection products: " + makePretty(response));
+    }
+
+    @Test
+    @Order(13)
+    public void browseByCollection() throws InterruptedException {
+        // Коллекции товара перечитываются в фоне после фиксации
+        List<Integer> found = List.of();
+        for (int i = 0; i < 50 && !found.contains(productID); i++) {
+            Thread.sleep(100);
+            found = given()
+                    .when().get("/catalogue/browse?collectionID=" + collectionID)
+            .then()
+                    .statusCode(200)
+            .extract().path("products.productID");
+        }
+        assertTrue(found.contains(productID));
+    }
+
+    @Test
+    @Order(13)
+    public void downloadThumbnails() throws IOException {
+        io.restassured.response.Response bundle =
+                given().
+                        when().get("/catalogue/downloadThumbnails?collectionID=" + collectionID).
+                        then().statusCode(200).assertThat()
+                        .contentType("application/zip")
+                        .extract().response();
+        String etag = bundle.header("ETag");
+
+        String manifest = null;
+        try (ZipInputStream zip = new ZipInputStream(new ByteArrayInputStream(bundle.asByteArray()))) {
+            for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+                if (entry.getName().equals("manifest.json")) manifest = new String(zip.readAllBytes());
+            }
+        }
+        assertTrue(manifest != null);
+        JsonPath json = new JsonPath(manifest);
+        assertEquals(1, json.getInt("total"));
+        assertFalse(json.getBoolean("truncated"));
+
+        given()
+                .header("If-None-Match", etag)
+        .when()
+                .get("/catalogue/downloadThumbnails?productIDs=" + productID)
+        .then()
+                .statusCode(304);
+    }
+
     //---------------------------------------------------------------------------------------------------
 
     @Test
@@ -388,6 +619,106 @@ public class CatalogueServiceTest {
         LOG.info("Product deleted ProductID=" + productID + " check response:\n" + response);
     }
 
+    @Test
+    @Order(17)
+    public void getChangesSince() {
+        String response =
+        given()
+                .when().get("/catalogue/changes?since=" + syncToken)
+        .then()
+                .statusCode(200)
+                .body("fullSync", equalTo(false))
+                .body("deleted.findAll { it.entityType == 'product' }.entityID", hasItem(productID))
+                .body("deleted.findAll { it.entityType == 'collection' }.entityID", hasItem(collectionID))
+        .extract().asString();
+        LOG.info("Catalogue changes:\n" + makePretty(response));
+    }
+
+    @Test
+    @Order(17)
+    public void getChangesPaged() {
+        // Страницами по одному объекту выдаются те же изменения
+        List<Integer> deletedProducts = new ArrayList<>();
+        String token = syncToken;
+        boolean hasMore = true;
+        for (int page = 0; hasMore && page < 1000; page++) {
+            JsonPath changes =
+            given()
+                    .when().get("/catalogue/changes?limit=1&since=" + token)
+            .then()
+                    .statusCode(200)
+                    .body("fullSync", equalTo(false))
+            .extract().jsonPath();
+            int size = changes.getList("products").size() + changes.getList("collections").size() +
+                    changes.getList("collectionItems").size() + changes.getList("productImages").size() +
+                    changes.getList("deleted").size();
+            assertTrue(size <= 1);
+            deletedProducts.addAll(changes.getList("deleted.findAll { it.entityType == 'product' }.entityID"));
+            hasMore = changes.getBoolean("hasMore");
+            token = changes.getString("syncToken");
+        }
+        assertFalse(hasMore);
+        assertTrue(deletedProducts.contains(productID));
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(17)
+    public void importProducts() throws InterruptedException {
+        String csv = "vendorCode,name,description,unitPrice,available\n" +
+                "IMP-001,\"IMPORTED TEA, GREEN\",CHINA,3.5,true\n" +
+                "IMP-002,IMPORTED TEA BLACK,INDIA,4.0,false\n" +
+                "IMP-003,,NO NAME,1.0,true\n" +
+                "IMP-001,,UPDATED,,\n";
+        int importID =
+        given()
+                .header("Content-Type", "text/csv")
+                .body(csv)
+        .when()
+                .post("/catalogue/import")
+        .then()
+                .statusCode(202)
+        .extract().path("importID");
+
+        String state = "queued";
+        for (int i = 0; i < 50 && (state.equals("queued") || state.equals("running")); i++) {
+            Thread.sleep(100);
+            state = given().when().get("/catalogue/getImportStatus?importID=" + importID)
+                    .then().statusCode(200).extract().path("state");
+        }
+        String response =
+        given()
+                .when().get("/catalogue/getImportStatus?importID=" + importID)
+        .then()
+                .statusCode(200)
+                .body("state", equalTo("completed"))
+                .body("created", equalTo(2))
+                .body("updated", equalTo(1))
+                .body("failed", equalTo(1))
+        .extract().asString();
+        LOG.info("Import status:\n" + makePretty(response));
+    }
+
+    @Test
+    @Order(18)
+    public void importChunkedAboveBodyLimit() throws IOException {
+        // Файл больше общего лимита тела запроса (10M) принимается при передаче по частям
+        URL url = new URL(RestAssured.baseURI + ":" + RestAssured.port + "/catalogue/import");
+        HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+        connection.setRequestMethod("POST");
+        connection.setRequestProperty("Content-Type", "application/x-ndjson");
+        connection.setDoOutput(true);
+        connection.setChunkedStreamingMode(64 * 1024);
+        byte[] blankLines = new byte[1024 * 1024];
+        Arrays.fill(blankLines, (byte) '\n');
+        try (OutputStream output = connection.getOutputStream()) {
+            for (int i = 0; i < 11; i++) output.write(blankLines);
+        }
+        assertEquals(202, connection.getResponseCode());
+        connection.disconnect();
+    }
+
     //--------------------------------------------------------------------------------------------------
     private String makePretty(String response) {
         StringBuffer sb = new StringBuffer(response);
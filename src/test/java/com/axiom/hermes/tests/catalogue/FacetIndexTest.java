@@ -0,0 +1,91 @@
+package com.axiom.hermes.tests.catalogue;
+
+import com.axiom.hermes.model.catalogue.FacetIndex;
+import com.axiom.hermes.model.catalogue.FacetQuery;
+import com.axiom.hermes.model.catalogue.FacetResult;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class FacetIndexTest {
+
+    private FacetIndex createIndex() {
+        FacetIndex index = new FacetIndex(new double[] {10, 50});
+        index.putProduct(1, 5, true);
+        index.putProduct(2, 20, true);
+        index.putProduct(3, 70, false);
+        index.putProduct(4, 30, true);
+        index.setInStock(1, true);
+        index.setInStock(2, true);
+        index.setCollections(1, Set.of(100L));
+        index.setCollections(2, Set.of(100L, 200L));
+        index.setCollections(4, Set.of(200L));
+        return index;
+    }
+
+    @Test
+    public void intersectsFacets() {
+        FacetIndex index = createIndex();
+        FacetQuery query = new FacetQuery();
+        query.setCollectionIDs(Set.of(200L));
+        query.setAvailable(true);
+        FacetResult result = index.query(query, 0, 10);
+        assertEquals(2, result.getTotal());
+        assertEquals(List.of(2L, 4L), result.getProductIDs());
+
+        query.setInStock(true);
+        assertEquals(List.of(2L), index.query(query, 0, 10).getProductIDs());
+    }
+
+    @Test
+    public void countsIgnoreOwnFacet() {
+        FacetIndex index = createIndex();
+        FacetQuery query = new FacetQuery();
+        query.setPriceBands(Set.of("10-50"));
+        FacetResult result = index.query(query, 0, 10);
+        assertEquals(List.of(2L, 4L), result.getProductIDs());
+        // Количество по ценовым диапазонам не зависит от выбранного диапазона
+        assertEquals(1, result.getFacets().get(FacetIndex.PRICE).get("0-10"));
+        assertEquals(2, result.getFacets().get(FacetIndex.PRICE).get("10-50"));
+        assertEquals(1, result.getFacets().get(FacetIndex.PRICE).get("50+"));
+        // Количество по коллекциям учитывает выбранный диапазон
+        assertEquals(1, result.getFacets().get(FacetIndex.COLLECTION).get("100"));
+        assertEquals(2, result.getFacets().get(FacetIndex.COLLECTION).get("200"));
+        assertEquals(1, result.getFacets().get(FacetIndex.IN_STOCK).get("true"));
+        assertEquals(1, result.getFacets().get(FacetIndex.IN_STOCK).get("false"));
+    }
+
+    @Test
+    public void updatesIncrementally() {
+        FacetIndex index = createIndex();
+        index.putProduct(2, 60, false);
+        index.setCollections(2, Set.of(300L));
+        index.removeProduct(1);
+        index.removeCollection(200L);
+
+        FacetQuery query = new FacetQuery();
+        query.setCollectionIDs(Set.of(100L));
+        assertEquals(0, index.query(query, 0, 10).getTotal());
+        query.setCollectionIDs(Set.of(300L));
+        assertEquals(List.of(2L), index.query(query, 0, 10).getProductIDs());
+        assertEquals(3, index.size());
+
+        // Номер удаленного товара используется повторно
+        index.putProduct(5, 1, true);
+        FacetQuery cheap = new FacetQuery();
+        cheap.setPriceBands(Set.of("0-10"));
+        assertEquals(List.of(5L), index.query(cheap, 0, 10).getProductIDs());
+    }
+
+    @Test
+    public void pagesResults() {
+        FacetIndex index = createIndex();
+        FacetResult result = index.query(new FacetQuery(), 1, 2);
+        assertEquals(4, result.getTotal());
+        assertEquals(List.of(2L, 3L), result.getProductIDs());
+    }
+
+}
@@ -0,0 +1,187 @@
+package com.axiom.hermes.tests.catalogue;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class PriceListsServiceTest {
+
+    private static final Logger LOG = Logger.getLogger(PriceListsServiceTest.class);
+
+    private static int productID;
+    private static int commonListID;
+    private static int groupListID;
+
+    //---------------------------------------------------------------------------------------------------
+    @Test
+    @Order(1)
+    public void addPriceLists() {
+        productID =
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"vendorCode\": \"PRICE-TEST\", \"name\": \"PRICED TEA\", \"unitPrice\": 10.0, \"available\": true}")
+        .when()
+            .post("/catalogue/addProduct")
+        .then()
+            .statusCode(200)
+        .extract().path("productID");
+
+        commonListID =
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"name\": \"Retail\", \"validFrom\": 0, \"validTo\": 0}")
+        .when()
+            .post("/priceLists/addPriceList")
+        .then()
+            .statusCode(200)
+        .extract().path("priceListID");
+
+        groupListID =
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"name\": \"Wholesale\", \"priceGroup\": \"wholesale\", \"validFrom\": 0, \"validTo\": 0}")
+        .when()
+            .post("/priceLists/addPriceList")
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("priceGroup", equalTo("wholesale"))
+        .extract().path("priceListID");
+
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"name\": \"Invalid\", \"validFrom\": 1000, \"validTo\": 500}")
+        .when()
+            .post("/priceLists/addPriceList")
+        .then()
+            .statusCode(400);
+
+        LOG.info("Price lists created: common=" + commonListID + " group=" + groupListID);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+    @Test
+    @Order(2)
+    public void effectivePrice() {
+        // Без цен в прайс-листах действует цена карточки товара
+        given()
+        .when()
+            .get("/priceLists/getEffectivePrice?productID=" + productID + "&priceGroup=wholesale")
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("priceListID", equalTo(0))
+            .body("unitPrice", equalTo(10f));
+
+        setPrice(commonListID, 9.0);
+        setPrice(groupListID, 7.5);
+
+        given()
+        .when()
+            .get("/priceLists/getEffectivePrice?productID=" + productID)
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("priceListID", equalTo(commonListID))
+            .body("unitPrice", equalTo(9f))
+            .body("available", equalTo(true));
+
+        given()
+        .when()
+            .get("/priceLists/getEffectivePrice?productID=" + productID + "&priceGroup=wholesale")
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("priceListID", equalTo(groupListID))
+            .body("unitPrice", equalTo(7.5f));
+
+        given()
+        .when()
+            .get("/priceLists/getEffectivePrice?productID=0")
+        .then()
+            .statusCode(404);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+    @Test
+    @Order(3)
+    public void expiredPriceList() {
+        // Групповой прайс-лист закончился - действует общий
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"priceListID\": " + groupListID + ", \"validFrom\": 1000, \"validTo\": 2000}")
+        .when()
+            .put("/priceLists/updatePriceList")
+        .then()
+            .statusCode(200);
+
+        given()
+        .when()
+            .get("/priceLists/getEffectivePrice?productID=" + productID + "&priceGroup=wholesale")
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("priceListID", equalTo(commonListID))
+            .body("unitPrice", equalTo(9f));
+
+        given()
+        .when()
+            .delete("/priceLists/removePrice?priceListID=" + commonListID + "&productID=" + productID)
+        .then()
+            .statusCode(200);
+
+        String response =
+        given()
+        .when()
+            .get("/priceLists/getEffectivePrice?productID=" + productID + "&priceGroup=wholesale")
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("priceListID", equalTo(0))
+            .body("unitPrice", equalTo(10f))
+        .extract().asString();
+        LOG.info(response);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+    @Test
+    @Order(4)
+    public void removePriceLists() {
+        given()
+        .when()
+            .get("/priceLists/getPriceListItems?priceListID=" + groupListID)
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("size()", equalTo(1));
+
+        given().when().delete("/priceLists/removePriceList?priceListID=" + groupListID).then().statusCode(200);
+        given().when().delete("/priceLists/removePriceList?priceListID=" + commonListID).then().statusCode(200);
+        given().when().get("/priceLists/getPriceList?priceListID=" + groupListID).then().statusCode(404);
+        given().when().delete("/catalogue/removeProduct?productID=" + productID).then().statusCode(200);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    private void setPrice(int priceListID, double unitPrice) {
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"priceListID\": " + priceListID + ", \"productID\": " + productID +
+                    ", \"unitPrice\": " + unitPrice + "}")
+        .when()
+            .put("/priceLists/setPrice")
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("unitPrice", equalTo((float) unitPrice));
+    }
+
+}
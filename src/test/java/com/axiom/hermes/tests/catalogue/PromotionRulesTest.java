@@ -0,0 +1,71 @@
+package com.axiom.hermes.tests.catalogue;
+
+import com.axiom.hermes.model.catalogue.Discount;
+import com.axiom.hermes.model.catalogue.PromotionRules;
+import com.axiom.hermes.model.catalogue.entities.Promotion;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class PromotionRulesTest {
+
+    private static Promotion promotion(long promotionID, int type, double percent, long minQuantity, long freeQuantity) {
+        Promotion promotion = new Promotion();
+        promotion.setPromotionID(promotionID);
+        promotion.setName("Promotion " + promotionID);
+        promotion.setType(type);
+        promotion.setPercent(percent);
+        promotion.setMinQuantity(minQuantity);
+        promotion.setFreeQuantity(freeQuantity);
+        return promotion;
+    }
+
+    @Test
+    public void appliesBestProductOrCollectionRule() {
+        Promotion percentage = promotion(1, Promotion.PERCENTAGE, 10, 0, 0);
+        percentage.setProductID(5);
+        Promotion tiered = promotion(2, Promotion.TIERED, 25, 10, 0);
+        tiered.setCollectionID(100);
+        PromotionRules rules = new PromotionRules(List.of(percentage, tiered), Map.of(5L, Set.of(100L)));
+
+        Discount discount = rules.evaluate(1, 5, 4, 10.0, 0);
+        assertEquals(1, discount.getPromotionID());
+        assertEquals(4.0, discount.getAmount(), 0.001);
+
+        discount = rules.evaluate(1, 5, 10, 10.0, 0);
+        assertEquals(2, discount.getPromotionID());
+        assertEquals(25.0, discount.getAmount(), 0.001);
+
+        assertSame(Discount.NONE, rules.evaluate(1, 6, 10, 10.0, 0));
+    }
+
+    @Test
+    public void bundleGivesFreeUnitsPerFullSet() {
+        Promotion bundle = promotion(3, Promotion.BUNDLE, 0, 3, 1);
+        bundle.setProductID(7);
+        PromotionRules rules = new PromotionRules(List.of(bundle), Map.of());
+
+        assertEquals(0, rules.evaluate(1, 7, 2, 5.0, 0).getAmount(), 0.001);
+        assertEquals(5.0, rules.evaluate(1, 7, 3, 5.0, 0).getAmount(), 0.001);
+        assertEquals(10.0, rules.evaluate(1, 7, 7, 5.0, 0).getAmount(), 0.001);
+    }
+
+    @Test
+    public void respectsCustomerAndPeriod() {
+        Promotion personal = promotion(4, Promotion.PERCENTAGE, 50, 0, 0);
+        personal.setCustomerID(42);
+        personal.setValidFrom(1000);
+        personal.setValidTo(2000);
+        PromotionRules rules = new PromotionRules(List.of(personal), Map.of());
+
+        assertEquals(4, rules.evaluate(42, 9, 1, 10.0, 1500).getPromotionID());
+        assertSame(Discount.NONE, rules.evaluate(43, 9, 1, 10.0, 1500));
+        assertSame(Discount.NONE, rules.evaluate(42, 9, 1, 10.0, 2000));
+        assertSame(Discount.NONE, rules.evaluate(42, 9, 1, 10.0, 999));
+    }
+
+}
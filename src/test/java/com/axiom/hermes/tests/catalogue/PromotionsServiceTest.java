@@ -0,0 +1,58 @@
+package com.axiom.hermes.tests.catalogue;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.equalTo;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class PromotionsServiceTest {
+
+    private static final Logger LOG = Logger.getLogger(PromotionsServiceTest.class);
+
+    private static int promotionID;
+
+    //---------------------------------------------------------------------------------------------------
+    @Test
+    @Order(1)
+    public void addPromotion() {
+        promotionID =
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"name\": \"Buy 3 pay 2\", \"type\": 3, \"productID\": 1, \"minQuantity\": 3, \"freeQuantity\": 1}")
+        .when()
+            .post("/promotions/addPromotion")
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body("type", equalTo(3))
+            .body("minQuantity", equalTo(3))
+        .extract().path("promotionID");
+
+        // Скидка больше 100% недопустима
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"name\": \"Too generous\", \"type\": 1, \"percent\": 150}")
+        .when()
+            .post("/promotions/addPromotion")
+        .then()
+            .statusCode(400);
+
+        LOG.info("Promotion created promotionID=" + promotionID);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+    @Test
+    @Order(2)
+    public void removePromotion() {
+        given().when().delete("/promotions/removePromotion?promotionID=" + promotionID).then().statusCode(200);
+        given().when().get("/promotions/getPromotion?promotionID=" + promotionID).then().statusCode(404);
+    }
+
+}
@@ -0,0 +1,62 @@
+package com.axiom.hermes.tests.catalogue;
+
+import com.axiom.hermes.model.catalogue.SearchIndex;
+import com.axiom.hermes.model.catalogue.entities.Product;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class SearchIndexTest {
+
+    private static Product product(long productID, String vendorCode, String name, String description) {
+        Product product = new Product(vendorCode, name, description, 1);
+        product.setProductID(productID);
+        product.setAvailable(true);
+        return product;
+    }
+
+    private static SearchIndex sampleIndex() {
+        SearchIndex index = new SearchIndex();
+        index.put(product(1, "CCMAC", "Cup of coffee", "MacCoffee 3 in 1"));
+        index.put(product(2, "CTGRF", "Cup of tea", "Greenfield green tea"));
+        index.put(product(3, "AB-123", "Кофе молотый", "Арабика, обжарка средняя"));
+        return index;
+    }
+
+    @Test
+    public void exactMatchRanksFirst() {
+        List<Product> result = sampleIndex().search("cup tea", 10);
+        assertEquals(2, result.get(0).getProductID());
+        assertEquals(2, result.size());
+    }
+
+    @Test
+    public void vendorCodePrefix() {
+        SearchIndex index = sampleIndex();
+        assertEquals(1, index.search("ccm", 10).get(0).getProductID());
+        assertEquals(3, index.search("ab12", 10).get(0).getProductID());
+    }
+
+    @Test
+    public void typoTolerance() {
+        SearchIndex index = sampleIndex();
+        assertEquals(1, index.search("cofee", 10).get(0).getProductID());
+        assertEquals(1, index.search("cofefe", 10).get(0).getProductID());
+        assertEquals(3, index.search("арабиак", 10).get(0).getProductID());
+    }
+
+    @Test
+    public void updateAndRemove() {
+        SearchIndex index = sampleIndex();
+        index.put(product(2, "CTGRF", "Cup of cocoa", "Nesquik"));
+        assertTrue(index.search("greenfield", 10).isEmpty());
+        assertEquals(2, index.search("cocoa", 10).get(0).getProductID());
+        index.remove(2);
+        assertTrue(index.search("cocoa", 10).isEmpty());
+        assertEquals(2, index.size());
+    }
+
+}
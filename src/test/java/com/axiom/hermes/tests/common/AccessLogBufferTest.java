@@ -0,0 +1,58 @@
+package com.axiom.hermes.tests.common;
+
+import com.axiom.hermes.common.http.AccessLogBuffer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class AccessLogBufferTest {
+
+    @Test
+    public void drainsInOrderAndDropsWhenFull() {
+        AccessLogBuffer<Integer> buffer = new AccessLogBuffer<>(3);
+        assertEquals(4, buffer.getCapacity());
+        for (int i = 0; i < 4; i++) assertTrue(buffer.offer(i));
+        assertFalse(buffer.offer(4));
+        assertEquals(1, buffer.getDropped());
+
+        List<Integer> drained = new ArrayList<>();
+        assertEquals(2, buffer.drain(drained::add, 2));
+        assertTrue(buffer.offer(5));
+        assertTrue(buffer.offer(6));
+        assertEquals(4, buffer.drain(drained::add, 10));
+        assertEquals(List.of(0, 1, 2, 3, 5, 6), drained);
+        assertEquals(0, buffer.drain(drained::add, 10));
+    }
+
+    @Test
+    public void concurrentWritersLoseNothingBelowCapacity() throws InterruptedException {
+        int writers = 4;
+        int perWriter = 10000;
+        AccessLogBuffer<Integer> buffer = new AccessLogBuffer<>(1024);
+        Set<Integer> received = new HashSet<>();
+        Thread[] threads = new Thread[writers];
+        for (int w = 0; w < writers; w++) {
+            int base = w * perWriter;
+            threads[w] = new Thread(() -> {
+                for (int i = 0; i < perWriter; i++) {
+                    // Читатель успевает не всегда - повторяем, пока запись не принята
+                    while (!buffer.offer(base + i)) Thread.yield();
+                }
+            });
+            threads[w].start();
+        }
+        while (received.size() < writers * perWriter) {
+            buffer.drain(received::add, 256);
+        }
+        for (Thread thread : threads) thread.join();
+        assertEquals(writers * perWriter, received.size());
+        assertEquals(0, buffer.drain(received::add, 256));
+    }
+
+}
@@ -0,0 +1,71 @@
+package com.axiom.hermes.tests.common;
+
+import com.axiom.hermes.common.storage.BlobResponse;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import javax.ws.rs.core.Response;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class BlobResponseTest {
+
+    private static final int SIZE = 1000;
+    private static Path file;
+
+    @BeforeAll
+    public static void createFile() throws IOException {
+        file = Files.createTempFile("blob-response", ".bin");
+        Files.write(file, new byte[SIZE]);
+    }
+
+    @AfterAll
+    public static void deleteFile() throws IOException {
+        Files.deleteIfExists(file);
+    }
+
+    @Test
+    public void servesSingleRange() throws IOException {
+        Response response = build("bytes=0-99");
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 0-99/" + SIZE, response.getHeaderString("Content-Range"));
+
+        response = build("bytes=-10");
+        assertEquals(206, response.getStatus());
+        assertEquals("bytes 990-999/" + SIZE, response.getHeaderString("Content-Range"));
+    }
+
+    @Test
+    public void rejectsUnsatisfiableRange() throws IOException {
+        assertEquals(416, build("bytes=" + SIZE + "-").getStatus());
+        // Нулевой суффикс не выбирает ни одного байта
+        Response response = build("bytes=-0");
+        assertEquals(416, response.getStatus());
+        assertEquals("bytes */" + SIZE, response.getHeaderString("Content-Range"));
+    }
+
+    @Test
+    public void ignoresInvalidRange() throws IOException {
+        // first > last - заголовок игнорируется (RFC 7233, 2.1)
+        Response response = build("bytes=50-10");
+        assertEquals(200, response.getStatus());
+        assertEquals(String.valueOf(SIZE), response.getHeaderString("Content-Length"));
+        assertNull(response.getHeaderString("Content-Range"));
+
+        assertEquals(200, build("bytes=abc-").getStatus());
+    }
+
+    private static Response build(String range) throws IOException {
+        FileChannel channel = FileChannel.open(file);
+        Response response = BlobResponse.build(channel, "application/octet-stream", "blob.bin", range).build();
+        channel.close();
+        return response;
+    }
+
+}
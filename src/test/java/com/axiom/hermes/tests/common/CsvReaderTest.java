@@ -0,0 +1,47 @@
+package com.axiom.hermes.tests.common;
+
+import com.axiom.hermes.common.io.CsvReader;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class CsvReaderTest {
+
+    @Test
+    public void readsPlainRecords() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("a,b,c\r\n1,,3\n"));
+        assertEquals(List.of("a", "b", "c"), csv.next());
+        assertEquals(List.of("1", "", "3"), csv.next());
+        assertEquals(2, csv.getLineNumber());
+        assertNull(csv.next());
+    }
+
+    @Test
+    public void readsQuotedFields() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("\"a,b\",\"say \"\"hi\"\"\",\"multi\nline\"\nnext,row"));
+        assertEquals(List.of("a,b", "say \"hi\"", "multi\nline"), csv.next());
+        assertEquals(List.of("next", "row"), csv.next());
+        assertEquals(3, csv.getLineNumber());
+        assertNull(csv.next());
+    }
+
+    @Test
+    public void skipsEmptyLines() throws IOException {
+        CsvReader csv = new CsvReader(new StringReader("\n\na;b\n\n"), ';');
+        assertEquals(List.of("a", "b"), csv.next());
+        assertEquals(3, csv.getLineNumber());
+        assertNull(csv.next());
+    }
+
+    @Test
+    public void failsOnUnclosedQuote() {
+        CsvReader csv = new CsvReader(new StringReader("\"open,field"));
+        assertThrows(IOException.class, csv::next);
+    }
+
+}
@@ -0,0 +1,42 @@
+package com.axiom.hermes.tests.common;
+
+import com.axiom.hermes.common.cache.LruCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+
+public class LruCacheTest {
+
+    @Test
+    public void evictsLeastRecentlyUsed() {
+        LruCache<Integer, String> cache = new LruCache<>(2);
+        cache.put(1, "one", cache.stamp());
+        cache.put(2, "two", cache.stamp());
+        assertEquals("one", cache.get(1));
+        cache.put(3, "three", cache.stamp());
+        assertEquals(2, cache.size());
+        assertNull(cache.get(2));
+        assertEquals("one", cache.get(1));
+        assertEquals("three", cache.get(3));
+    }
+
+    @Test
+    public void ignoresStalePut() {
+        LruCache<Integer, String> cache = new LruCache<>(10);
+        long stamp = cache.stamp();
+        cache.invalidate(1);
+        cache.put(1, "stale", stamp);
+        assertNull(cache.get(1));
+        cache.put(1, "fresh", cache.stamp());
+        assertEquals("fresh", cache.get(1));
+    }
+
+    @Test
+    public void disabledWhenEmptyCapacity() {
+        LruCache<Integer, String> cache = new LruCache<>(0);
+        cache.put(1, "one", cache.stamp());
+        assertNull(cache.get(1));
+    }
+
+}
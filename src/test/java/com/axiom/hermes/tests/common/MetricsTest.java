@@ -0,0 +1,61 @@
+package com.axiom.hermes.tests.common;
+
+import io.quarkus.test.junit.QuarkusTest;
+import org.eclipse.microprofile.config.ConfigProvider;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.containsString;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@QuarkusTest
+public class MetricsTest {
+
+    private static final Logger LOG = Logger.getLogger(MetricsTest.class);
+
+    @Test
+    public void scrapeMetrics() {
+        given().when().get("/analytics/getDailySales").then().statusCode(200);
+        given().when().get("/analytics/topProducts?window=1y").then().statusCode(400);
+        given().when().get("/analytics/noSuchEndpoint").then().statusCode(404);
+
+        String response =
+        given()
+        .when()
+            .get("/metrics")
+        .then()
+            .statusCode(200)
+            .assertThat()
+            .body(containsString("hermes_http_requests_seconds_bucket"))
+            .body(containsString("endpoint=\"/analytics/getDailySales\""))
+            .body(containsString("hermes_http_errors_total{status=\"400\""))
+            .body(containsString("endpoint=\"UNMATCHED\""))
+            .body(containsString("hermes_http_inflight"))
+            .body(containsString("hermes_jdbc_connections_active"))
+            .body(containsString("hermes_hibernate_statements_total"))
+        .extract().asString();
+        LOG.info("Metrics scraped: " + response.length() + " bytes");
+    }
+
+    @Test
+    public void accessLogRecordsRequest() throws IOException, InterruptedException {
+        // Ошибки записываются всегда, независимо от выборки успешных запросов
+        String probe = "/analytics/accessLogProbe" + System.nanoTime();
+        given().when().get(probe).then().statusCode(404);
+
+        Path log = Paths.get(ConfigProvider.getConfig().getValue("hermes.access-log.path", String.class));
+        boolean recorded = false;
+        for (int i = 0; i < 50 && !recorded; i++) {
+            Thread.sleep(100);
+            recorded = Files.exists(log) && Files.readString(log).contains("GET " + probe + " 404 ");
+        }
+        assertTrue(recorded);
+    }
+
+}
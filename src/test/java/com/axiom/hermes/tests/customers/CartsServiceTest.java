@@ -0,0 +1,179 @@
+package com.axiom.hermes.tests.customers;
+
+import io.quarkus.test.junit.QuarkusTest;
+import io.restassured.response.Response;
+import org.jboss.logging.Logger;
+import org.junit.jupiter.api.MethodOrderer;
+import org.junit.jupiter.api.Order;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestMethodOrder;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+import static io.restassured.RestAssured.given;
+import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+@QuarkusTest
+@TestMethodOrder(MethodOrderer.OrderAnnotation.class)
+public class CartsServiceTest {
+
+    private static final Logger LOG = Logger.getLogger(CartsServiceTest.class);
+
+    private static int customerID;
+    private static int productID;
+    private static int orderID;
+    private static int concurrentOrderID;
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(1)
+    public void addCartItem() {
+        // Добавить пользователя
+        customerID =
+                given()
+                        .header("Content-Type", "application/json")
+                        .body("{\n" +
+                                "    \"mobile\": \"+77011234567\",\n" +
+                                "    \"businessID\": \"850415308451\",\n" +
+                                "    \"name\": \"Корзина Тестовая\",\n" +
+                                "    \"city\": \"Алматы\",\n" +
+                                "    \"country\": \"Казахстан\"\n" +
+                                "}")
+                .when()
+                        .post("/customers/addCustomer")
+                .then()
+                        .statusCode(200)
+                .extract().path("customerID");
+
+        // Добавить продукт
+        productID =
+                given()
+                        .header("Content-Type", "application/json")
+                        .body("{\n" +
+                                "    \"name\": \"CUP OF COCOA\",\n" +
+                                "    \"description\": \"NESQUIK\",\n" +
+                                "    \"unitPrice\": 3,\n" +
+                                "    \"vendorCode\": \"CCNSQ\",\n" +
+                                "    \"available\": true\n" +
+                                "}")
+                .when()
+                        .post("/catalogue/addProduct")
+                .then()
+                        .statusCode(200)
+                .extract().path("productID");
+
+        // Дважды добавляем товар в корзину - количество суммируется
+        for (int i = 0; i < 2; i++) {
+            given()
+                    .header("Content-Type", "application/json")
+                    .body("{ \"productID\":" + productID + ", \"quantity\":5 }").
+            when().post("/carts/addCartItem?customerID=" + customerID).
+            then().statusCode(200);
+        }
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(2)
+    public void getCart() {
+        String response =
+        given().
+        when().get("/carts/getCart?customerID=" + customerID).
+        then().statusCode(200).assertThat()
+                .body("customerID", equalTo(customerID))
+                .body("items.size()", equalTo(1))
+                .body("items[0].productID", equalTo(productID))
+                .body("items[0].quantity", equalTo(10))
+                .extract().asString();
+        LOG.info("Cart: " + response);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(3)
+    public void checkout() {
+        orderID =
+        given().
+        when().post("/carts/checkout?customerID=" + customerID).
+        then().statusCode(200).assertThat()
+                .body("customerID", equalTo(customerID))
+                .body("status", equalTo(1))
+                .extract().path("orderID");
+
+        given().
+        when().get("/salesOrders/getOrderItems?orderID=" + orderID).
+        then().statusCode(200).assertThat()
+                .body("productID", hasItem(productID))
+                .body("quantity", hasItem(10));
+
+        // После оформления корзина пуста
+        given().
+        when().get("/carts/getCart?customerID=" + customerID).
+        then().statusCode(200).assertThat()
+                .body("items.size()", equalTo(0));
+
+        given().
+        when().post("/carts/checkout?customerID=" + customerID).
+        then().statusCode(404);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(4)
+    public void concurrentCheckout() throws Exception {
+        given()
+                .header("Content-Type", "application/json")
+                .body("{ \"productID\":" + productID + ", \"quantity\":3 }").
+        when().post("/carts/addCartItem?customerID=" + customerID).
+        then().statusCode(200);
+
+        // Одновременное оформление одной корзины создает ровно один заказ
+        int threads = 8;
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<Response>> futures = new ArrayList<>();
+        for (int i = 0; i < threads; i++) {
+            futures.add(executor.submit(() -> {
+                start.await();
+                return given().when().post("/carts/checkout?customerID=" + customerID);
+            }));
+        }
+        start.countDown();
+        int created = 0;
+        for (Future<Response> future : futures) {
+            Response response = future.get(30, TimeUnit.SECONDS);
+            if (response.statusCode() == 200) {
+                created++;
+                concurrentOrderID = response.path("orderID");
+            } else {
+                assertEquals(404, response.statusCode());
+            }
+        }
+        executor.shutdown();
+        assertEquals(1, created);
+
+        given().
+        when().get("/salesOrders/getOrderItems?orderID=" + concurrentOrderID).
+        then().statusCode(200).assertThat()
+                .body("quantity", hasItem(3));
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(5)
+    public void cleanup() {
+        given().when().delete("/salesOrders/removeOrder?orderID=" + orderID).then().statusCode(200);
+        given().when().delete("/salesOrders/removeOrder?orderID=" + concurrentOrderID).then().statusCode(200);
+        given().when().delete("/customers/removeCustomer?customerID=" + customerID).then().statusCode(200);
+        given().when().delete("/catalogue/removeProduct?productID=" + productID).then().statusCode(200);
+    }
+
+}
@@ -13,6 +13,7 @@ import javax.ws.rs.core.Response;
 
 import static io.restassured.RestAssured.given;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.hasItem;
 
 @QuarkusTest
 @TestMethodOrder(MethodOrderer.OrderAnnotation.class)
@@ -110,6 +111,38 @@ public class CustomersServiceTest {
 
     @Test
     @Order(5)
+    public void searchCustomers() {
+        given().
+        when()
+            .get("/customers/searchCustomers?name=башеев&city=нур").
+        then()
+            .statusCode(200)
+            .assertThat()
+            .body("customerID", hasItem(customerID));
+
+        given().
+        when()
+            .get("/customers/searchCustomers?mobile=600-49&businessID=850415").
+        then()
+            .statusCode(200)
+            .assertThat()
+            .body("[0].customerID", equalTo(customerID));
+
+        given().
+        when()
+            .get("/customers/searchCustomers?businessID=415308").
+        then()
+            .statusCode(200)
+            .assertThat()
+            .header("X-Total-Count", "0");
+
+        given().when().get("/customers/searchCustomers").then().statusCode(400);
+    }
+
+    //---------------------------------------------------------------------------------------
+
+    @Test
+    @Order(6)
     public void updateCustomer() {
         String response =
         given()
@@ -133,7 +166,37 @@ public class CustomersServiceTest {
     //---------------------------------------------------------------------------------------
 
     @Test
-    @Order(6)
+    @Order(7)
+    public void changeMobile() {
+        // Номер уже занят этим же клиентом (в другом формате записи)
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"mobile\": \"+7 (705) 600-49-27\", \"name\": \"Дубликат\"}")
+        .when()
+            .post("/customers/addCustomer")
+        .then()
+            .statusCode(403);
+
+        given()
+            .header("Content-Type", "application/json")
+            .body("{\"customerID\":" + customerID + ", \"mobile\": \"+77056004928\"}")
+        .when()
+            .put("/customers/updateCustomer")
+        .then()
+            .statusCode(200);
+
+        // Старый номер больше не находится, новый - находится
+        given().when().get("/customers/getCustomerByMobile?mobile=" + mobile).then().statusCode(404);
+        given().when().get("/customers/getCustomerByMobile?mobile=+77056004928").then()
+            .statusCode(200)
+            .assertThat()
+            .body("customerID", equalTo(customerID));
+    }
+
+    //---------------------------------------------------------------------------------------
+
+    @Test
+    @Order(8)
     public void removeCustomer() {
         String response =
                 given().
@@ -142,4 +205,61 @@ public class CustomersServiceTest {
         LOG.info("CustomerID=" + customerID + " deleted response=" + response);
     }
 
+    //---------------------------------------------------------------------------------------
+
+    @Test
+    @Order(9)
+    public void importCustomers() throws InterruptedException {
+        String csv = "mobile,businessID,name,city,verified\n" +
+                "+77071110001,850415308452,Импорт Один,Алматы,true\n" +
+                "8 (707) 111-00-02,,\"Импорт Два, ИП\",Шымкент,false\n" +
+                "+7 707 111 00 01,,,Алматинская обл.,\n" +
+                "12345,,Неверный номер,,\n" +
+                "+77071110001,850415308453,Конфликт,,\n";
+        int importID =
+        given()
+                .header("Content-Type", "text/csv")
+                .body(csv)
+        .when()
+                .post("/customers/import")
+        .then()
+                .statusCode(202)
+        .extract().path("importID");
+
+        String state = "queued";
+        for (int i = 0; i < 50 && (state.equals("queued") || state.equals("running")); i++) {
+            Thread.sleep(100);
+            state = given().when().get("/customers/getImportStatus?importID=" + importID)
+                    .then().statusCode(200).extract().path("state");
+        }
+        String response =
+        given()
+                .when().get("/customers/getImportStatus?importID=" + importID)
+        .then()
+                .statusCode(200)
+                .body("state", equalTo("completed"))
+                .body("created", equalTo(2))
+                .body("updated", equalTo(1))
+                .body("failed", equalTo(2))
+        .extract().asString();
+        LOG.info("Import status: " + response);
+
+        // Повтор номера объединен с первой строкой
+        int firstID =
+        given().when().get("/customers/getCustomerByMobile?mobile=+77071110001").then()
+                .statusCode(200)
+                .body("name", equalTo("Импорт Один"))
+                .body("city", equalTo("Алматинская обл."))
+                .body("businessID", equalTo("850415308452"))
+        .extract().path("customerID");
+        int secondID =
+        given().when().get("/customers/getCustomerByMobile?mobile=+87071110002").then()
+                .statusCode(200)
+                .body("name", equalTo("Импорт Два, ИП"))
+        .extract().path("customerID");
+
+        given().when().delete("/customers/removeCustomer?customerID=" + firstID).then().statusCode(200);
+        given().when().delete("/customers/removeCustomer?customerID=" + secondID).then().statusCode(200);
+    }
+
 }
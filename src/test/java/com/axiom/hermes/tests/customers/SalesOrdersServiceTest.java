@@ -144,6 +144,35 @@ public class SalesOrdersServiceTest {
 
     //---------------------------------------------------------------------------------------------------
 
+    @Test
+    @Order(5)
+    public void getPickingList() {
+        String response =
+        given().
+        when().get("/salesOrders/getPickingList?status=1&waveSize=10").
+        then().statusCode(200).assertThat()
+              .body("productID", hasItem(productID))
+              .body("quantity", hasItem(12))
+              .body("orderIDs.flatten()", hasItem(addedOrderID))
+              .extract().asString();
+        LOG.info("Picking list: " + response);
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
+    @Test
+    @Order(5)
+    public void getOrderHistory() {
+        given().
+        when().get("/salesOrders/getOrderHistory?customerID=" + customerID).
+        then().statusCode(200).assertThat()
+              .body("orderID", hasItem(addedOrderID))
+              .body("[0].itemCount", equalTo(1))
+              .body("[0].totalQuantity", equalTo(12));
+    }
+
+    //---------------------------------------------------------------------------------------------------
+
     @Test
     @Order(6)
     public void removeOrderItems() {